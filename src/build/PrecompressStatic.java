@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step (single-file program, run by exec-maven-plugin in process-resources):
+ * writes precompressed siblings of text static resources — file.gz always, file.br when the brotli CLI
+ * is on the PATH. Spring's EncodedResourceResolver (spring.web.resources.chain.compressed) serves them.
+ *
+ *   java src/build/PrecompressStatic.java target/classes/static
+ */
+public class PrecompressStatic {
+
+    private static final Set<String> EXTENSIONS = Set.of("css", "js", "svg", "html", "json", "txt", "map");
+    private static final long MIN_SIZE = 1024;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Path.of(args.length > 0 ? args[0] : "target/classes/static");
+        if (!Files.isDirectory(root)) {
+            System.out.println("PrecompressStatic: " + root + " does not exist, nothing to do");
+            return;
+        }
+        boolean brotli = brotliAvailable();
+        if (!brotli) System.out.println("PrecompressStatic: brotli CLI not found, writing .gz only");
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).filter(PrecompressStatic::compressible).toList();
+        }
+        int written = 0;
+        for (Path file : files) {
+            Path gz = file.resolveSibling(file.getFileName() + ".gz");
+            if (isStale(gz, file)) {
+                gzip(file, gz);
+                written++;
+            }
+            Path br = file.resolveSibling(file.getFileName() + ".br");
+            if (brotli && isStale(br, file)) {
+                brotli(file, br);
+                written++;
+            }
+        }
+        System.out.println("PrecompressStatic: " + files.size() + " resources, " + written + " compressed files written");
+    }
+
+    private static boolean compressible(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || !EXTENSIONS.contains(name.substring(dot + 1))) return false;
+        try {
+            return Files.size(file) >= MIN_SIZE;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isStale(Path compressed, Path source) throws IOException {
+        return !Files.exists(compressed)
+                || Files.getLastModifiedTime(compressed).compareTo(Files.getLastModifiedTime(source)) < 0;
+    }
+
+    private static void gzip(Path source, Path target) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(source, out);
+        }
+    }
+
+    private static void brotli(Path source, Path target) throws IOException {
+        run("brotli", "-q", "11", "-f", "-o", target.toString(), source.toString());
+    }
+
+    private static boolean brotliAvailable() {
+        try {
+            return run("brotli", "--version") == 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static int run(String... command) throws IOException {
+        Process p = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            if (!p.waitFor(60, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                throw new IOException("timeout: " + String.join(" ", command));
+            }
+            return p.exitValue();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+}
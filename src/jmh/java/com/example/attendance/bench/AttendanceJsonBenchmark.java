@@ -0,0 +1,36 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.controller.TeacherAttendanceController;
+import com.example.attendance.service.AttendanceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembly of GET /teacher/attendance/json (roster + attendance of the day) through the real controller bean.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class AttendanceJsonBenchmark {
+
+    @State(Scope.Thread)
+    public static class Controller {
+        TeacherAttendanceController controller;
+
+        @Setup(Level.Trial)
+        public void init(SeededApp app) {
+            controller = app.bean(TeacherAttendanceController.class);
+            app.bean(AttendanceService.class)
+                    .saveAttendancesForDate(app.teacherId, SeededApp.BASE_DATE, app.marksFor(SeededApp.BASE_DATE, false));
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> attendanceJson(SeededApp app, Controller c) {
+        return c.controller.attendanceJson(SeededApp.BASE_DATE, app.principal);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.service.AttendanceService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AttendanceService.saveAttendancesForDate for a whole class:
+ * - saveNewDate: every invocation marks a fresh date (inserts + EXCUSED fill + lesson consumption)
+ * - resaveSameDate: flips statuses on one date (updates + consume/restore transitions)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class AttendanceSaveBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        LocalDate nextDate = SeededApp.BASE_DATE.plusDays(1);
+        boolean flip;
+        AttendanceService service;
+        Map<Long, AttendanceStatus> plain;
+        Map<Long, AttendanceStatus> flipped;
+
+        @Setup(Level.Trial)
+        public void init(SeededApp app) {
+            service = app.bean(AttendanceService.class);
+            plain = app.marksFor(SeededApp.BASE_DATE, false);
+            flipped = app.marksFor(SeededApp.BASE_DATE, true);
+            service.saveAttendancesForDate(app.teacherId, SeededApp.BASE_DATE, plain);
+        }
+    }
+
+    @Benchmark
+    public void saveNewDate(SeededApp app, Cursor cursor) {
+        LocalDate date = cursor.nextDate;
+        cursor.nextDate = date.plusDays(1);
+        cursor.service.saveAttendancesForDate(app.teacherId, date, cursor.plain);
+    }
+
+    @Benchmark
+    public void resaveSameDate(SeededApp app, Cursor cursor) {
+        cursor.flip = !cursor.flip;
+        cursor.service.saveAttendancesForDate(app.teacherId, SeededApp.BASE_DATE, cursor.flip ? cursor.flipped : cursor.plain);
+    }
+}
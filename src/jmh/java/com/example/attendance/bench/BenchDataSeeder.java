@@ -0,0 +1,81 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.LessonPackage;
+import com.example.attendance.entities.Student;
+import com.example.attendance.entities.TimeSlot;
+import com.example.attendance.enums.Shift;
+import com.example.attendance.repository.LessonPackageRepository;
+import com.example.attendance.repository.StudentRepository;
+import com.example.attendance.service.AppUserService;
+import com.example.attendance.service.TeacherService;
+import com.example.attendance.service.TimeSlotService;
+import org.springframework.context.ApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic seed data for benchmarks: one teacher with default time slots and N students
+ * spread over the lesson packages. Same seed and size always produce the same rows.
+ */
+final class BenchDataSeeder {
+
+    private static final String[] FIRST_NAMES = {"Айбек", "Нурлан", "Алина", "Мария", "Иван", "Элина", "Бакыт", "Асель", "Тимур", "Дана"};
+    private static final String[] LAST_NAMES = {"Иванов", "Садыков", "Ким", "Петрова", "Абдыкадыров", "Осмонова", "Смирнов", "Токтогулов"};
+
+    private BenchDataSeeder() {
+    }
+
+    record Seeded(String teacherUsername, Long teacherId, List<Long> studentIds) {
+    }
+
+    static Seeded seed(ApplicationContext ctx, long seed, int studentsPerTeacher) {
+        Random rnd = new Random(seed);
+        List<LessonPackage> packages = ensurePackages(ctx.getBean(LessonPackageRepository.class));
+
+        String username = "bench_teacher_" + studentsPerTeacher;
+        AppUser user = ctx.getBean(AppUserService.class).createTeacherUser(username, "bench");
+        ctx.getBean(TeacherService.class).createTeacherForUserById(user.getId(), "Bench", "Teacher", "+000", Shift.FULL);
+        List<TimeSlot> slots = ctx.getBean(TimeSlotService.class).findByTeacherId(user.getId());
+
+        StudentRepository students = ctx.getBean(StudentRepository.class);
+        List<Long> ids = new ArrayList<>(studentsPerTeacher);
+        List<Student> chunk = new ArrayList<>();
+        for (int i = 0; i < studentsPerTeacher; i++) {
+            LessonPackage pkg = packages.get(rnd.nextInt(packages.size()));
+            Student s = Student.builder()
+                    .firstName(FIRST_NAMES[rnd.nextInt(FIRST_NAMES.length)])
+                    .lastName(LAST_NAMES[rnd.nextInt(LAST_NAMES.length)])
+                    .phone(String.format("+996%09d", rnd.nextInt(1_000_000_000)))
+                    .studentCode(String.format("B%d-%06d", studentsPerTeacher, i))
+                    .teacherId(user.getId())
+                    .timeSlotId(slots.get(rnd.nextInt(slots.size())).getId())
+                    .remainingLessons(rnd.nextInt(pkg.getLessonsCount() + 1))
+                    .needsBook(rnd.nextInt(5) == 0)
+                    .createdAt(Instant.EPOCH)
+                    .updatedAt(Instant.EPOCH)
+                    .build();
+            s.assignPackage(pkg);
+            chunk.add(s);
+            if (chunk.size() == 500 || i == studentsPerTeacher - 1) {
+                for (Student saved : students.saveAll(chunk)) ids.add(saved.getId());
+                chunk.clear();
+            }
+        }
+        return new Seeded(username, user.getId(), ids);
+    }
+
+    private static List<LessonPackage> ensurePackages(LessonPackageRepository repo) {
+        if (repo.count() == 0) {
+            repo.save(LessonPackage.builder().code("LESSONS_12_MWF").title("12 lessons (Mon/Wed/Fri)").price(BigDecimal.valueOf(3400)).scheduleCode("MWF").lessonsCount(12).build());
+            repo.save(LessonPackage.builder().code("LESSONS_12_TTS").title("12 lessons (Tue/Thu/Sat)").price(BigDecimal.valueOf(3000)).scheduleCode("TTS").lessonsCount(12).build());
+            repo.save(LessonPackage.builder().code("LESSONS_6_MON_SAT").title("6 lessons/week (Mon-Sat)").price(BigDecimal.valueOf(5400)).scheduleCode("MON_SAT").lessonsCount(24).build());
+            repo.save(LessonPackage.builder().code("LESSONS_24").title("24 lessons").price(BigDecimal.valueOf(5400)).scheduleCode("CUSTOM").lessonsCount(24).build());
+        }
+        return repo.findAll();
+    }
+}
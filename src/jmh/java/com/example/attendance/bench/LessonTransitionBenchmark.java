@@ -0,0 +1,47 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.service.AttendanceService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pure consumesLesson / remaining-lessons transition logic (no database): applies 1024 random
+ * status transitions (including "no previous attendance") to a remaining-lessons counter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LessonTransitionBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private final AttendanceStatus[] prev = new AttendanceStatus[SIZE];
+    private final AttendanceStatus[] next = new AttendanceStatus[SIZE];
+
+    @Setup
+    public void init() {
+        Random rnd = new Random(SeededApp.SEED);
+        AttendanceStatus[] values = AttendanceStatus.values();
+        for (int i = 0; i < SIZE; i++) {
+            int p = rnd.nextInt(values.length + 1);
+            prev[i] = p == values.length ? null : values[p];
+            next[i] = values[rnd.nextInt(values.length)];
+        }
+    }
+
+    @Benchmark
+    public int applyTransitions() {
+        int remaining = SIZE;
+        for (int i = 0; i < SIZE; i++) {
+            remaining += AttendanceService.remainingDelta(prev[i], next[i]);
+            if (remaining < 0) remaining = 0;
+        }
+        return remaining;
+    }
+}
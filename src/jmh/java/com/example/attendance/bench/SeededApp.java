@@ -0,0 +1,80 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.AttendanceApplication;
+import com.example.attendance.enums.AttendanceStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.Principal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark state: full Spring context on an in-memory H2 database (PostgreSQL mode),
+ * seeded deterministically with one teacher and studentsPerTeacher students.
+ */
+@State(Scope.Benchmark)
+public class SeededApp {
+
+    static final long SEED = 42L;
+    static final LocalDate BASE_DATE = LocalDate.of(2026, 1, 5);
+
+    @Param({"50", "500", "5000"})
+    public int studentsPerTeacher;
+
+    ConfigurableApplicationContext context;
+    Long teacherId;
+    Principal principal;
+    List<Long> studentIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(AttendanceApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench" + studentsPerTeacher + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.flyway.enabled=false",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        BenchDataSeeder.Seeded seeded = BenchDataSeeder.seed(context, SEED, studentsPerTeacher);
+        teacherId = seeded.teacherId();
+        studentIds = seeded.studentIds();
+        String username = seeded.teacherUsername();
+        principal = () -> username;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) context.close();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Deterministic marks for a date: roughly 70% present, 10% late, 10% absent, 10% left unmarked (EXCUSED fill).
+     */
+    Map<Long, AttendanceStatus> marksFor(LocalDate date, boolean flip) {
+        Random rnd = new Random(SEED ^ date.toEpochDay());
+        Map<Long, AttendanceStatus> out = new HashMap<>();
+        for (Long id : studentIds) {
+            int r = rnd.nextInt(10);
+            if (r == 9) continue;
+            AttendanceStatus st = r < 7 ? AttendanceStatus.PRESENT : (r == 7 ? AttendanceStatus.LATE : AttendanceStatus.ABSENT);
+            if (flip) st = st == AttendanceStatus.PRESENT ? AttendanceStatus.EXCUSED : AttendanceStatus.PRESENT;
+            out.put(id, st);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.attendance.bench;
+
+import com.example.attendance.entities.Student;
+import com.example.attendance.service.StudentService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StudentService.searchByNameOrCode with a rotating set of queries: common name fragment, code prefix,
+ * rare surname and a miss.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class StudentSearchBenchmark {
+
+    private static final String[] QUERIES = {"ов", "B500-0001", "Токтогулов", "нет-такого"};
+
+    @State(Scope.Thread)
+    public static class Search {
+        StudentService service;
+        int next;
+
+        @Setup(Level.Trial)
+        public void init(SeededApp app) {
+            service = app.bean(StudentService.class);
+        }
+    }
+
+    @Benchmark
+    public List<Student> searchByNameOrCode(Search s) {
+        String q = QUERIES[s.next++ & 3];
+        return s.service.searchByNameOrCode(q);
+    }
+}
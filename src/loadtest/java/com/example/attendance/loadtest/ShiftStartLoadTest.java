@@ -0,0 +1,280 @@
+package com.example.attendance.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load driver simulating the morning shift start.
+ *
+ * Every teacher runs on its own virtual thread with its own cookie jar:
+ * form login (CSRF token from the login page), then {@code iterations} times the real dashboard flow —
+ * GET /teacher, and for each date GET /teacher/attendance/json and POST /teacher/attendance/save_batch.
+ * All teachers log in first and start the flow at the same moment, like at 8:00.
+ *
+ * Teachers are expected to exist, e.g. from the dataset generator ({@code gen-t0000 .. }, password "teacher"):
+ * <pre>
+ * java -jar target/attendance.jar --spring.profiles.active=h2,generate --attendance.generator.exitOnFinish=true
+ * java -jar target/attendance.jar --spring.profiles.active=h2
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--teachers=50 --iterations=5"
+ * </pre>
+ * Prints throughput and latency percentiles per endpoint; full distributions go to target/loadtest/*.hgrm.
+ */
+public class ShiftStartLoadTest {
+
+    private static final Pattern HIDDEN_CSRF = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern META_CSRF = Pattern.compile("<meta[^>]*name=\"_csrf\"[^>]*content=\"([^\"]+)\"");
+    private static final Pattern META_CSRF_HEADER = Pattern.compile("<meta[^>]*name=\"_csrf_header\"[^>]*content=\"([^\"]+)\"");
+    private static final String[] STATUSES = {"PRESENT", "PRESENT", "PRESENT", "PRESENT", "PRESENT", "PRESENT", "LATE", "ABSENT"};
+
+    private final Config config;
+    private final ObjectMapper json = JsonMapper.builder().build();
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    ShiftStartLoadTest(Config config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.parse(args);
+        new ShiftStartLoadTest(config).run(System.out);
+    }
+
+    void run(PrintStream out) throws Exception {
+        out.printf("Shift start: %d teachers x %d iterations x %d dates against %s%n",
+                config.teachers, config.iterations, config.dates, config.baseUrl);
+
+        CountDownLatch loggedIn = new CountDownLatch(config.teachers);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicLong failedTeachers = new AtomicLong();
+        long[] flowNanos = new long[2];
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < config.teachers; t++) {
+                String username = String.format("%s%04d", config.prefix, t);
+                long seed = config.seed * 31 + t;
+                futures.add(executor.submit(() -> {
+                    TeacherSession session = new TeacherSession(username, seed);
+                    boolean ok = false;
+                    try {
+                        ok = session.login();
+                    } catch (Exception ex) {
+                        out.printf("login failed for %s: %s%n", username, ex);
+                    } finally {
+                        loggedIn.countDown();
+                    }
+                    if (!ok) {
+                        failedTeachers.incrementAndGet();
+                        return null;
+                    }
+                    go.await();
+                    session.shift();
+                    return null;
+                }));
+            }
+            loggedIn.await();
+            flowNanos[0] = System.nanoTime();
+            go.countDown();
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    failedTeachers.incrementAndGet();
+                    out.printf("teacher flow aborted: %s%n", ex.getCause());
+                }
+            }
+            flowNanos[1] = System.nanoTime();
+        }
+
+        report(out, Duration.ofNanos(flowNanos[1] - flowNanos[0]), failedTeachers.get());
+    }
+
+    /* ---------- one simulated teacher ---------- */
+
+    private final class TeacherSession {
+        private final String username;
+        private final Random rnd;
+        private final HttpClient client;
+        private String csrfToken;
+        private String csrfHeader = "X-CSRF-TOKEN";
+
+        TeacherSession(String username, long seed) {
+            this.username = username;
+            this.rnd = new Random(seed);
+            this.client = HttpClient.newBuilder()
+                    .cookieHandler(new CookieManager())
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+        }
+
+        boolean login() throws IOException, InterruptedException {
+            HttpResponse<String> page = send("GET /login", get("/login"));
+            Matcher m = HIDDEN_CSRF.matcher(page.body());
+            String form = "username=" + enc(username) + "&password=" + enc(config.password)
+                    + (m.find() ? "&_csrf=" + enc(m.group(1)) : "");
+            HttpResponse<String> res = send("POST /login", request("/login")
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form))
+                    .build());
+            String location = res.headers().firstValue("Location").orElse("");
+            return res.statusCode() == 302 && !location.contains("error");
+        }
+
+        void shift() throws IOException, InterruptedException {
+            for (int i = 0; i < config.iterations; i++) {
+                HttpResponse<String> dashboard = send("GET /teacher", get("/teacher"));
+                Matcher token = META_CSRF.matcher(dashboard.body());
+                if (token.find()) csrfToken = token.group(1);
+                Matcher header = META_CSRF_HEADER.matcher(dashboard.body());
+                if (header.find()) csrfHeader = header.group(1);
+
+                for (int d = 0; d < config.dates; d++) {
+                    LocalDate date = config.startDate.plusDays(d);
+                    HttpResponse<String> list = send("GET /teacher/attendance/json",
+                            get("/teacher/attendance/json?date=" + date));
+                    if (list.statusCode() != 200) continue;
+                    String body = saveBody(date, list.body());
+                    send("POST /teacher/attendance/save_batch", request("/teacher/attendance/save_batch")
+                            .header("Content-Type", "application/json")
+                            .header("Idempotency-Key", UUID.randomUUID().toString())
+                            .header(csrfHeader, csrfToken == null ? "" : csrfToken)
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build());
+                    if (config.thinkMs > 0) Thread.sleep(config.thinkMs);
+                }
+            }
+        }
+
+        private String saveBody(LocalDate date, String listJson) {
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Object row : json.readValue(listJson, List.class)) {
+                if (rnd.nextInt(10) == 0) continue; // teacher leaves some students unmarked
+                items.add(Map.of(
+                        "studentId", ((Map<?, ?>) row).get("id"),
+                        "status", STATUSES[rnd.nextInt(STATUSES.length)],
+                        "extraLessons", 0));
+            }
+            return json.writeValueAsString(Map.of("date", date.toString(), "items", items));
+        }
+
+        private HttpRequest get(String path) {
+            return request(path).GET().build();
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create(config.baseUrl + path)).timeout(Duration.ofSeconds(60));
+        }
+
+        private HttpResponse<String> send(String name, HttpRequest request) throws IOException, InterruptedException {
+            Endpoint ep = endpoints.computeIfAbsent(name, Endpoint::new);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> res = client.send(request, HttpResponse.BodyHandlers.ofString());
+                ep.record(System.nanoTime() - start, res.statusCode() >= 400);
+                return res;
+            } catch (IOException ex) {
+                ep.record(System.nanoTime() - start, true);
+                throw ex;
+            }
+        }
+    }
+
+    /* ---------- reporting ---------- */
+
+    private void report(PrintStream out, Duration elapsed, long failedTeachers) throws IOException {
+        double seconds = Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        out.printf("%nFlow wall time: %.2fs, failed teachers: %d%n", seconds, failedTeachers);
+        out.printf("%-38s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Path dir = Path.of(config.outputDir);
+        Files.createDirectories(dir);
+        for (Endpoint ep : endpoints.values()) {
+            Histogram h = ep.histogram;
+            boolean timed = !ep.name.endsWith("/login");
+            out.printf("%-38s %8d %7d %9s %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    ep.name, h.getTotalCount(), ep.errors.get(),
+                    timed ? String.format("%.1f", h.getTotalCount() / seconds) : "-",
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+            String file = ep.name.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+            try (PrintStream ps = new PrintStream(Files.newOutputStream(dir.resolve(file)), true, StandardCharsets.UTF_8)) {
+                h.outputPercentileDistribution(ps, 1_000_000.0);
+            }
+        }
+        out.printf("Percentile distributions written to %s%n", dir.toAbsolutePath());
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static final class Endpoint {
+        final String name;
+        // 1 µs .. 5 min, 3 significant digits
+        final Histogram histogram = new ConcurrentHistogram(1_000L, TimeUnit.MINUTES.toNanos(5), 3);
+        final AtomicLong errors = new AtomicLong();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, boolean error) {
+            histogram.recordValue(Math.min(Math.max(nanos, 1_000L), histogram.getHighestTrackableValue()));
+            if (error) errors.incrementAndGet();
+        }
+    }
+
+    /* ---------- arguments ---------- */
+
+    record Config(String baseUrl, int teachers, String prefix, String password, int iterations, int dates,
+                  LocalDate startDate, long thinkMs, long seed, String outputDir) {
+
+        static Config parse(String[] args) {
+            Map<String, String> a = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("expected --name=value, got " + arg);
+                }
+                int eq = arg.indexOf('=');
+                a.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+            return new Config(
+                    a.getOrDefault("baseUrl", "http://localhost:8080"),
+                    Integer.parseInt(a.getOrDefault("teachers", "10")),
+                    a.getOrDefault("prefix", "gen-t"),
+                    a.getOrDefault("password", "teacher"),
+                    Integer.parseInt(a.getOrDefault("iterations", "3")),
+                    Integer.parseInt(a.getOrDefault("dates", "1")),
+                    LocalDate.parse(a.getOrDefault("startDate", LocalDate.now().toString())),
+                    Long.parseLong(a.getOrDefault("thinkMs", "0")),
+                    Long.parseLong(a.getOrDefault("seed", "42")),
+                    a.getOrDefault("outputDir", "target/loadtest"));
+        }
+    }
+}
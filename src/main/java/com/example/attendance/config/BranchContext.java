@@ -0,0 +1,47 @@
+package com.example.attendance.config;
+
+import com.example.attendance.entities.AppUser;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * The branch the current thread works for: the logged-in user's branch, or one set explicitly with callAs
+ * (jobs, worker threads). null means all branches (admins, background jobs).
+ */
+public final class BranchContext {
+
+    /**
+     * Tenant id of "all branches" sessions (Hibernate root tenant).
+     */
+    public static final Long ALL_BRANCHES = 0L;
+
+    private static final ThreadLocal<Long> OVERRIDE = new ThreadLocal<>();
+
+    private BranchContext() {
+    }
+
+    public static Long current() {
+        Long explicit = OVERRIDE.get();
+        if (explicit != null) return ALL_BRANCHES.equals(explicit) ? null : explicit;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof AppUser user) return user.getBranchId();
+        return null;
+    }
+
+    /**
+     * Run an action for one branch (null = all branches). Sessions and connections opened inside it use that
+     * branch; an already open session (open-in-view) keeps the branch it was opened with.
+     */
+    public static <T> T callAs(Long branchId, Supplier<T> action) {
+        Long previous = OVERRIDE.get();
+        OVERRIDE.set(branchId == null ? ALL_BRANCHES : branchId);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) OVERRIDE.remove();
+            else OVERRIDE.set(previous);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.attendance.config;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.env.Environment;
+
+import java.util.Map;
+
+/**
+ * Every branch lives in the shared database (spring.datasource.*); isolation is the branch_id tenant column
+ * (@TenantId, BranchTenantResolver). Branches on databases of their own are not supported:
+ * - logins, users and the cluster leases are looked up without a branch, so they would have to stay shared,
+ *   while attendance and the ledger reference users by foreign key
+ * - the jobs (outbox relay, archive, partitions, alerts, write-behind flush, snapshots) run without a branch
+ *   against one database and would each need a per-database loop
+ * - a dedicated database would need the same migrations and its branch row before its first connection
+ * The attendance.branches.dedicated.* settings of an earlier version are rejected at startup instead of being
+ * ignored, so such a branch is not silently served from the shared database.
+ */
+@Configuration
+public class BranchDatabaseConfig {
+
+    public BranchDatabaseConfig(Environment environment) {
+        // branch id -> url, username, ...
+        Bindable<Map<Long, Map<String, String>>> settings = Bindable.of(ResolvableType.forClassWithGenerics(Map.class,
+                ResolvableType.forClass(Long.class), ResolvableType.forClassWithGenerics(Map.class, String.class, String.class)));
+        Map<Long, Map<String, String>> dedicated = Binder.get(environment)
+                .bind("attendance.branches.dedicated", settings)
+                .orElse(Map.of());
+        if (!dedicated.isEmpty()) {
+            throw new IllegalStateException("attendance.branches.dedicated is not supported (branches " + dedicated.keySet()
+                    + "): every branch lives in the shared database");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.attendance.config;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+
+/**
+ * Hibernate tenant of new sessions = BranchContext.current(); sessions without a branch are the root tenant
+ * and see every branch. Registered with spring.jpa.properties.hibernate.tenant_identifier_resolver.
+ */
+public class BranchTenantResolver implements CurrentTenantIdentifierResolver<Long> {
+
+    @Override
+    public Long resolveCurrentTenantIdentifier() {
+        Long branch = BranchContext.current();
+        return branch != null ? branch : BranchContext.ALL_BRANCHES;
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return false;
+    }
+
+    @Override
+    public boolean isRoot(Long tenantId) {
+        return BranchContext.ALL_BRANCHES.equals(tenantId);
+    }
+}
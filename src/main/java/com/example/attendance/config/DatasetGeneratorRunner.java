@@ -0,0 +1,67 @@
+package com.example.attendance.config;
+
+import com.example.attendance.service.DatasetGenerator;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Fills the configured database with synthetic data when started with the "generate" profile, e.g.
+ * <pre>
+ * java -jar attendance.jar --spring.profiles.active=h2,generate \
+ *      --attendance.generator.teachers=20 --attendance.generator.studentsPerTeacher=500
+ * </pre>
+ * Generated teachers log in as {prefix}0000.. with password "teacher".
+ */
+@Component
+@Profile("generate")
+@RequiredArgsConstructor
+public class DatasetGeneratorRunner implements ApplicationRunner {
+
+    private final Logger log = LoggerFactory.getLogger(DatasetGeneratorRunner.class);
+
+    private final DatasetGenerator generator;
+    private final ApplicationContext context;
+
+    @Value("${attendance.generator.seed:42}")
+    private long seed;
+
+    @Value("${attendance.generator.teachers:10}")
+    private int teachers;
+
+    @Value("${attendance.generator.studentsPerTeacher:200}")
+    private int studentsPerTeacher;
+
+    @Value("${attendance.generator.months:6}")
+    private int months;
+
+    // empty = today
+    @Value("${attendance.generator.endDate:}")
+    private String endDate;
+
+    @Value("${attendance.generator.usernamePrefix:gen-t}")
+    private String usernamePrefix;
+
+    @Value("${attendance.generator.exitOnFinish:true}")
+    private boolean exitOnFinish;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        LocalDate end = endDate == null || endDate.isBlank() ? LocalDate.now() : LocalDate.parse(endDate);
+        DatasetGenerator.Result result = generator.generate(
+                new DatasetGenerator.Spec(seed, teachers, studentsPerTeacher, months, end, usernamePrefix));
+        log.info("Dataset ready: teachers {} .. {}", result.usernames().get(0), result.usernames().get(result.usernames().size() - 1));
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Micrometer wiring. Services are annotated with class-level @Observed("attendance.service"):
+ * every public method gets a timer tagged with class and method and, when tracing is on, a span.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry registry) {
+        return new ObservedAspect(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Wraps the password encoder so BCrypt checks during login show up as their own spans / timer.
+ */
+public class ObservedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ObservationRegistry registry;
+
+    public ObservedPasswordEncoder(PasswordEncoder delegate, ObservationRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return Observation.createNotStarted("attendance.password", registry)
+                .contextualName("password encode")
+                .lowCardinalityKeyValue("operation", "encode")
+                .observe(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Boolean matches = Observation.createNotStarted("attendance.password", registry)
+                .contextualName("password matches")
+                .lowCardinalityKeyValue("operation", "matches")
+                .observe(() -> delegate.matches(rawPassword, encodedPassword));
+        return Boolean.TRUE.equals(matches);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
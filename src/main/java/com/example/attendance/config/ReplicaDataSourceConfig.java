@@ -0,0 +1,60 @@
+package com.example.attendance.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * With attendance.replica.url set, the application DataSource routes read-only transactions
+ * (@Transactional(readOnly = true)) to a replica pool and everything else to the primary (spring.datasource.*).
+ *
+ * LazyConnectionDataSourceProxy fetches the physical connection only at the first statement, after the
+ * transaction manager has marked the connection read-only, so the routing decision sees the transaction type.
+ * See ReplicaRouting for the lag and read-your-writes rules.
+ */
+@Configuration
+@ConditionalOnProperty(name = "attendance.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRouting replicaRouting(@Value("${spring.datasource.url}") String primaryUrl,
+                                         @Value("${spring.datasource.username:}") String primaryUser,
+                                         @Value("${spring.datasource.password:}") String primaryPassword,
+                                         @Value("${spring.datasource.hikari.maximum-pool-size:10}") int primaryPoolSize,
+                                         @Value("${attendance.replica.url}") String replicaUrl,
+                                         @Value("${attendance.replica.username:${spring.datasource.username:}}") String replicaUser,
+                                         @Value("${attendance.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                         @Value("${attendance.replica.poolSize:10}") int replicaPoolSize,
+                                         @Value("${attendance.replica.stickyWindow:PT5S}") Duration stickyWindow,
+                                         @Value("${attendance.replica.maxLag:PT30S}") Duration maxLag) {
+        HikariDataSource primary = pool("primary", primaryUrl, primaryUser, primaryPassword, primaryPoolSize);
+        HikariDataSource replica = pool("replica", replicaUrl, replicaUser, replicaPassword, replicaPoolSize);
+        replica.setReadOnly(true);
+        return new ReplicaRouting(primary, replica, stickyWindow, maxLag);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRouting routing) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing.primary());
+        dataSource.setReadOnlyDataSource(routing.reads());
+        return dataSource;
+    }
+
+    private static HikariDataSource pool(String name, String url, String user, String password, int size) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setPoolName(name);
+        ds.setJdbcUrl(url);
+        ds.setUsername(user);
+        ds.setPassword(password);
+        ds.setMaximumPoolSize(size);
+        return ds;
+    }
+}
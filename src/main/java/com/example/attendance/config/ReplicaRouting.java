@@ -0,0 +1,161 @@
+package com.example.attendance.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Primary / replica pools behind the application DataSource (see ReplicaDataSourceConfig).
+ *
+ * - primary(): used for read-write transactions and work outside transactions. A user whose read-write
+ *   transaction commits is remembered for the sticky window.
+ * - reads(): used for read-only transactions. It goes to the replica unless the current user wrote within
+ *   max(stickyWindow, measured lag), or the replica is down or lags more than maxLag; then it goes to the primary.
+ * Stickiness is per node and per user name; background jobs have no user and are never sticky.
+ */
+public class ReplicaRouting {
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRouting.class);
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final Duration stickyWindow;
+    private final Duration maxLag;
+
+    private final Map<String, Long> lastWriteMillis = new ConcurrentHashMap<>();
+    private volatile long lagMillis;
+    private volatile boolean replicaUsable = true;
+
+    public ReplicaRouting(HikariDataSource primary, HikariDataSource replica, Duration stickyWindow, Duration maxLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.stickyWindow = stickyWindow;
+        this.maxLag = maxLag;
+    }
+
+    public DataSource primary() {
+        return new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                noteWrite();
+                return super.getConnection();
+            }
+        };
+    }
+
+    public DataSource reads() {
+        return new DelegatingDataSource(replica) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (!replicaUsable || stickyToPrimary()) return primary.getConnection();
+                try {
+                    return replica.getConnection();
+                } catch (SQLException ex) {
+                    replicaUsable = false; // until the next lag check
+                    log.warn("Replica unavailable, reading from the primary: {}", ex.getMessage());
+                    return primary.getConnection();
+                }
+            }
+        };
+    }
+
+    public long lagMillis() {
+        return lagMillis;
+    }
+
+    public boolean replicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * Measures replication lag on the replica. A replica with everything received replayed has no lag,
+     * even when the primary has been idle. A database that is not a standby (local setups) has no lag either.
+     */
+    @Scheduled(fixedDelayString = "${attendance.replica.lagCheckMs:5000}")
+    public void checkLag() {
+        boolean usable;
+        try (Connection con = replica.getConnection()) {
+            if (!con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres")) {
+                lagMillis = 0; // H2 replica of a local setup
+            } else {
+                try (Statement st = con.createStatement();
+                     ResultSet rs = st.executeQuery("select case when not pg_is_in_recovery() " +
+                             "or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+                             "else extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000 end")) {
+                    rs.next();
+                    lagMillis = (long) rs.getDouble(1);
+                }
+            }
+            usable = lagMillis <= maxLag.toMillis();
+        } catch (SQLException ex) {
+            log.debug("Replica lag check failed: {}", ex.getMessage());
+            usable = false;
+        }
+        if (usable != replicaUsable) {
+            log.info("Replica {} (lag {} ms)", usable ? "back in use" : "taken out of use", lagMillis);
+        }
+        replicaUsable = usable;
+
+        long cutoff = System.currentTimeMillis() - window();
+        lastWriteMillis.values().removeIf(t -> t < cutoff);
+    }
+
+    @PreDestroy
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void noteWrite() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) return;
+        String user = currentUser();
+        if (user == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the window starts when the write is visible on the primary
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lastWriteMillis.put(user, System.currentTimeMillis());
+                }
+            });
+        } else {
+            lastWriteMillis.put(user, System.currentTimeMillis());
+        }
+    }
+
+    private boolean stickyToPrimary() {
+        String user = currentUser();
+        if (user == null) return false;
+        Long last = lastWriteMillis.get(user);
+        return last != null && System.currentTimeMillis() - last < window();
+    }
+
+    private long window() {
+        return Math.max(stickyWindow.toMillis(), lagMillis);
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth == null || !auth.isAuthenticated() ? null : auth.getName();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.attendance.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts SQL statements and JDBC time per HTTP request (N+1 detector).
+ *
+ * - Metrics: attendance.http.sql.statements / attendance.http.sql.time per URI pattern.
+ * - Headers X-Sql-Statements / X-Sql-Time-Ms only with attendance.sqlStats.headers=true (off by default,
+ *   on in tests): the response is then buffered so the numbers include queries run while rendering the view.
+ *   Without it nothing is buffered and only the metrics are recorded.
+ * - Requests above attendance.sqlStats.warnStatements or warnMillis are logged as WARN.
+ * Runs before the security chain, so user lookups during authentication are counted too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+public class RequestSqlMetricsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private final Logger log = LoggerFactory.getLogger(RequestSqlMetricsFilter.class);
+
+    private final MeterRegistry registry;
+
+    @Value("${attendance.sqlStats.headers:false}")
+    private boolean headers;
+
+    @Value("${attendance.sqlStats.warnStatements:30}")
+    private long warnStatements;
+
+    @Value("${attendance.sqlStats.warnMillis:500}")
+    private long warnMillis;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return uri.startsWith("/css/") || uri.startsWith("/js/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper buffered = headers ? new ContentCachingResponseWrapper(response) : null;
+        SqlStats.Scope scope = SqlStats.open();
+        try {
+            chain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            scope.close();
+            if (buffered != null) {
+                if (!buffered.isCommitted()) {
+                    buffered.setHeader(STATEMENTS_HEADER, Long.toString(scope.statements()));
+                    buffered.setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.1f", scope.millis()));
+                }
+                buffered.copyBodyToResponse();
+            }
+            record(request, scope);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStats.Scope scope) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("attendance.http.sql.statements")
+                .description("SQL statements executed per HTTP request")
+                .tags("uri", uri, "method", request.getMethod())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(scope.statements());
+        Timer.builder("attendance.http.sql.time")
+                .description("Time spent in JDBC per HTTP request")
+                .tags("uri", uri, "method", request.getMethod())
+                .register(registry)
+                .record(scope.nanos(), TimeUnit.NANOSECONDS);
+
+        if (scope.statements() > warnStatements || scope.millis() > warnMillis) {
+            log.warn("SQL heavy request {} {}: {} statements, {} ms in JDBC", request.getMethod(),
+                    request.getRequestURI(), scope.statements(), String.format(Locale.ROOT, "%.1f", scope.millis()));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.attendance.config;
 
 import com.example.attendance.service.AppUserService;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -41,9 +42,10 @@ public class SecurityConfig {
     }
 
     @Bean
-    public DaoAuthenticationProvider authProvider(AppUserService appUserService, BCryptPasswordEncoder passwordEncoder) {
+    public DaoAuthenticationProvider authProvider(AppUserService appUserService, BCryptPasswordEncoder passwordEncoder,
+                                                  ObservationRegistry observationRegistry) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider(appUserService);
-        provider.setPasswordEncoder(passwordEncoder);
+        provider.setPasswordEncoder(new ObservedPasswordEncoder(passwordEncoder, observationRegistry));
         return provider;
     }
 
@@ -62,7 +64,8 @@ public class SecurityConfig {
                 )
                 .headers(headers -> headers.frameOptions(frame -> frame.sameOrigin()))
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/css/**", "/js/**", "/h2-console/**", "/login").permitAll()
+                        .requestMatchers("/css/**", "/js/**", "/webjars/**", "/teacher-sw.js", "/h2-console/**", "/login").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers("/teacher/**").hasRole("TEACHER")
                         .requestMatchers("/manager/**").hasRole("MANAGER")
                         .requestMatchers("/admin/**").hasRole("ADMIN")
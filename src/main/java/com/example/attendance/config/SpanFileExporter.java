@@ -0,0 +1,148 @@
+package com.example.attendance.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Turns Micrometer observations into OpenTelemetry-style spans and writes slow traces to a local file
+ * (attendance.tracing.enabled=true), one JSON span per line — a stand-in for an OTLP collector.
+ *
+ * - Spans: HTTP requests (controller handlers), @Observed service methods, JDBC statements,
+ *   password checks and view rendering; parent/child links follow the observation hierarchy.
+ * - Spans are buffered per trace; when the root span ends, the whole trace is written if the root took
+ *   at least attendance.tracing.minRootMs, otherwise it is dropped.
+ */
+@Component
+@RequiredArgsConstructor
+public class SpanFileExporter implements ObservationHandler<Observation.Context> {
+
+    private static final int MAX_SPANS_PER_TRACE = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(SpanFileExporter.class);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${attendance.tracing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.tracing.file:data/traces/spans.jsonl}")
+    private String file;
+
+    @Value("${attendance.tracing.minRootMs:200}")
+    private long minRootMs;
+
+    private final Map<String, List<Map<String, Object>>> openTraces = new ConcurrentHashMap<>();
+    private BufferedWriter writer;
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return enabled;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        SpanState parent = parentOf(context);
+        String traceId = parent != null ? parent.traceId() : randomHex(16);
+        context.put(SpanState.class, new SpanState(traceId, randomHex(8), parent != null ? parent.spanId() : null,
+                Instant.now(), System.nanoTime()));
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        SpanState span = context.get(SpanState.class);
+        if (span == null) return;
+        long durationNanos = System.nanoTime() - span.startNanos();
+
+        Map<String, Object> attributes = new TreeMap<>();
+        for (KeyValue kv : context.getLowCardinalityKeyValues()) attributes.put(kv.getKey(), kv.getValue());
+        for (KeyValue kv : context.getHighCardinalityKeyValues()) attributes.put(kv.getKey(), kv.getValue());
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("traceId", span.traceId());
+        out.put("spanId", span.spanId());
+        out.put("parentSpanId", span.parentSpanId());
+        out.put("name", context.getContextualName() != null ? context.getContextualName() : context.getName());
+        out.put("startTime", span.start().toString());
+        out.put("durationMs", durationNanos / 1_000_000.0);
+        out.put("status", context.getError() != null ? "ERROR" : "OK");
+        if (context.getError() != null) out.put("error", context.getError().toString());
+        out.put("attributes", attributes);
+
+        if (span.parentSpanId() != null) {
+            List<Map<String, Object>> trace = openTraces.computeIfAbsent(span.traceId(), k -> Collections.synchronizedList(new ArrayList<>()));
+            if (trace.size() < MAX_SPANS_PER_TRACE) trace.add(out);
+            return;
+        }
+        List<Map<String, Object>> children = openTraces.remove(span.traceId());
+        if (durationNanos / 1_000_000 < minRootMs) return;
+        List<Map<String, Object>> spans = new ArrayList<>();
+        if (children != null) spans.addAll(children);
+        spans.add(out);
+        write(spans);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close span file {}", file, ex);
+        }
+        writer = null;
+    }
+
+    /* ---------- helpers ---------- */
+
+    private SpanState parentOf(Observation.Context context) {
+        var parent = context.getParentObservation();
+        return parent == null ? null : parent.getContextView().get(SpanState.class);
+    }
+
+    private synchronized void write(List<Map<String, Object>> spans) {
+        try {
+            if (writer == null) {
+                Path path = Path.of(file);
+                if (path.getParent() != null) Files.createDirectories(path.getParent());
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (Map<String, Object> span : spans) {
+                writer.write(objectMapper.writeValueAsString(span));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            log.warn("Failed to export {} spans to {}", spans.size(), file, ex);
+        }
+    }
+
+    private static String randomHex(int bytes) {
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) sb.append(String.format("%02x", rnd.nextInt(256)));
+        return sb.toString();
+    }
+
+    private record SpanState(String traceId, String spanId, String parentSpanId, Instant start, long startNanos) {
+    }
+}
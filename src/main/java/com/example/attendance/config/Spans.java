@@ -0,0 +1,18 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Adds attributes (teacherId, date, student counts ...) to the current span, if any.
+ */
+public final class Spans {
+
+    private Spans() {
+    }
+
+    public static void tag(ObservationRegistry registry, String key, Object value) {
+        Observation current = registry.getCurrentObservation();
+        if (current != null && value != null) current.highCardinalityKeyValue(key, value.toString());
+    }
+}
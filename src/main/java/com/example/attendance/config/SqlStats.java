@@ -0,0 +1,66 @@
+package com.example.attendance.config;
+
+/**
+ * Per-thread SQL statement statistics (count and time spent in JDBC execute calls).
+ *
+ * Statements are recorded by SqlStatsDataSource into the innermost open Scope of the current thread;
+ * closing a nested scope adds its numbers to the enclosing one. RequestSqlMetricsFilter opens a scope
+ * per HTTP request, tests can open their own (see SqlStatementAssertions).
+ */
+public final class SqlStats {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private SqlStats() {
+    }
+
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void record(long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.statements++;
+            scope.nanos += nanos;
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private long statements;
+        private long nanos;
+        private boolean closed;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public long statements() {
+            return statements;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        public double millis() {
+            return nanos / 1_000_000.0;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (parent != null) {
+                parent.statements += statements;
+                parent.nanos += nanos;
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in SqlStatsDataSource.
+ */
+@Configuration
+public class SqlStatsConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourcePostProcessor(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof SqlStatsDataSource)) {
+                    return new SqlStatsDataSource(ds, observationRegistry);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource wrapper that times every Statement.execute* call and reports it to SqlStats.
+ * Covers Hibernate and JdbcTemplate alike; unwrap() still reaches the pool (Hikari metrics, COPY API).
+ * Inside an ongoing observation (request, service method) each execute also becomes a "jdbc.statement" span.
+ */
+public class SqlStatsDataSource extends DelegatingDataSource {
+
+    // resolved per connection, so wrapping the DataSource does not force early creation of the registry
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+    public SqlStatsDataSource(DataSource target, ObjectProvider<ObservationRegistry> observationRegistry) {
+        super(target);
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection target) {
+        return (Connection) Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(target, observationRegistry.getIfAvailable()));
+    }
+
+    private record ConnectionHandler(Connection target, ObservationRegistry registry) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(target, method, args);
+            if (result instanceof Statement statement) {
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                // prepareStatement(sql, ...) / prepareCall(sql, ...) carry the SQL text
+                String sql = args != null && args.length > 0 && args[0] instanceof String str ? str : null;
+                return Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(),
+                        new Class<?>[]{type}, new StatementHandler(statement, (Connection) proxy, sql, registry));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target, Connection connection, String preparedSql,
+                                    ObservationRegistry registry) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getConnection") && method.getParameterCount() == 0) return connection;
+            if (!method.getName().startsWith("execute")) return call(target, method, args);
+
+            Observation observation = null;
+            if (registry != null && registry.getCurrentObservation() != null) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String str ? str : preparedSql;
+                observation = Observation.createNotStarted("jdbc.statement", registry)
+                        .contextualName("jdbc " + method.getName())
+                        .highCardinalityKeyValue("db.statement", sql == null ? "" : sql)
+                        .start();
+            }
+            long start = System.nanoTime();
+            try {
+                return call(target, method, args);
+            } catch (Throwable ex) {
+                if (observation != null) observation.error(ex);
+                throw ex;
+            } finally {
+                SqlStats.record(System.nanoTime() - start);
+                if (observation != null) observation.stop();
+            }
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
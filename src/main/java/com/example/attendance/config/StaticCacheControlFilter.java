@@ -0,0 +1,56 @@
+package com.example.attendance.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Cache-Control for static resources:
+ * - content-hashed URLs (app-&lt;md5&gt;.css, produced by the resource chain for @{...} links) never change,
+ *   so they are cached for a year as immutable;
+ * - plain URLs are revalidated on every use (no-cache + ETag / Last-Modified), so a deploy is picked up at once.
+ */
+@Component
+public class StaticCacheControlFilter extends OncePerRequestFilter {
+
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "no-cache";
+
+    private static final Pattern HASHED = Pattern.compile(".*-[0-9a-f]{32}\\.[A-Za-z0-9]+$");
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !(uri.startsWith("/css/") || uri.startsWith("/js/") || uri.startsWith("/webjars/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String cacheControl = HASHED.matcher(request.getRequestURI()).matches() ? IMMUTABLE : REVALIDATE;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        chain.doFilter(request, new HttpServletResponseWrapper(response) {
+            @Override
+            public void setHeader(String name, String value) {
+                super.setHeader(name, HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(name) ? cacheControl : value);
+            }
+
+            @Override
+            public void addHeader(String name, String value) {
+                if (HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(name)) {
+                    super.setHeader(name, cacheControl);
+                } else {
+                    super.addHeader(name, value);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.attendance.config;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+
+/**
+ * Parses all templates once at startup (attendance.templates.warmup=true, with spring.thymeleaf.cache=true),
+ * so the first request of the morning finds them in the template cache.
+ *
+ * Templates are processed with an empty context: rendering usually fails on missing model data,
+ * but parsing (and caching) has already happened by then, which is all we need.
+ */
+@Component
+@RequiredArgsConstructor
+public class TemplateWarmup {
+
+    private final Logger log = LoggerFactory.getLogger(TemplateWarmup.class);
+
+    private final ITemplateEngine templateEngine;
+
+    @Value("${attendance.templates.warmup:false}")
+    private boolean enabled;
+
+    @Value("${spring.thymeleaf.prefix:classpath:/templates/}")
+    private String prefix;
+
+    @Value("${spring.thymeleaf.suffix:.html}")
+    private String suffix;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) return;
+        long started = System.nanoTime();
+        int count = 0;
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver().getResources(prefix + "**/*" + suffix);
+        } catch (IOException ex) {
+            log.warn("Template warm-up skipped: {}", ex.toString());
+            return;
+        }
+        for (Resource resource : resources) {
+            String name = templateName(resource);
+            if (name == null) continue;
+            try {
+                templateEngine.process(name, new Context());
+            } catch (RuntimeException ex) {
+                log.trace("Warm-up render of {} stopped: {}", name, ex.toString());
+            }
+            count++;
+        }
+        log.info("Warmed up {} templates in {} ms", count, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private String templateName(Resource resource) {
+        try {
+            String url = resource.getURL().toString();
+            String root = prefix.replace("classpath:", "");
+            int idx = url.lastIndexOf(root);
+            if (idx < 0 || !url.endsWith(suffix)) return null;
+            return url.substring(idx + root.length(), url.length() - suffix.length());
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.attendance.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Observes template rendering: starts after the handler returned a view, stops when the response is complete.
+ */
+@Component
+@RequiredArgsConstructor
+public class ViewRenderObservationInterceptor implements HandlerInterceptor {
+
+    private static final String OBSERVATION_ATTR = ViewRenderObservationInterceptor.class.getName() + ".observation";
+    private static final String SCOPE_ATTR = ViewRenderObservationInterceptor.class.getName() + ".scope";
+
+    private final ObservationRegistry registry;
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView mav) {
+        if (mav == null || mav.getViewName() == null || mav.getViewName().startsWith("redirect:")) return;
+        Observation observation = Observation.createNotStarted("attendance.view.render", registry)
+                .contextualName("render " + mav.getViewName())
+                .lowCardinalityKeyValue("view", mav.getViewName())
+                .start();
+        request.setAttribute(OBSERVATION_ATTR, observation);
+        request.setAttribute(SCOPE_ATTR, observation.openScope());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object scope = request.getAttribute(SCOPE_ATTR);
+        if (scope instanceof Observation.Scope s) s.close();
+        if (request.getAttribute(OBSERVATION_ATTR) instanceof Observation observation) {
+            if (ex != null) observation.error(ex);
+            observation.stop();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.attendance.controller;
+
+import com.example.attendance.config.BranchContext;
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.service.AlertService;
+import com.example.attendance.service.AppUserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Students needing attention (low balance, debt) as JSON: the teacher's own students, or the manager's branch.
+ */
+@RestController
+@RequiredArgsConstructor
+public class AlertController {
+
+    private final AlertService alertService;
+    private final AppUserService appUserService;
+
+    @GetMapping("/teacher/alerts")
+    public Map<String, Object> teacherAlerts(Authentication auth) {
+        var appUser = (AppUser) appUserService.loadUserByUsername(auth.getName());
+        return body(alertService.forTeacher(appUser.getId()));
+    }
+
+    @GetMapping("/manager/alerts")
+    public Map<String, Object> managerAlerts() {
+        return body(alertService.forBranch(BranchContext.current()));
+    }
+
+    private Map<String, Object> body(List<AlertService.Alert> alerts) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("warnBelow", alertService.warnBelow());
+        out.put("criticalBelow", alertService.criticalBelow());
+        out.put("count", alerts.size());
+        out.put("alerts", alerts);
+        return out;
+    }
+}
@@ -4,12 +4,14 @@ import com.example.attendance.entities.AppUser;
 import com.example.attendance.entities.Student;
 import com.example.attendance.entities.Teacher;
 import com.example.attendance.entities.TimeSlot;
-import com.example.attendance.entities.LessonPackage;
 import com.example.attendance.enums.PackageType;
 import com.example.attendance.repository.LessonPackageRepository;
 import com.example.attendance.service.AppUserService;
 import com.example.attendance.service.AttendanceService;
+import com.example.attendance.service.DataVersionService;
+import com.example.attendance.service.FragmentCacheService;
 import com.example.attendance.service.PaymentService;
+import com.example.attendance.service.SchoolOverviewService;
 import com.example.attendance.service.StudentService;
 import com.example.attendance.service.TeacherService;
 import com.example.attendance.service.TimeSlotService;
@@ -21,8 +23,10 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -40,31 +44,23 @@ public class ManagerController {
     private final PaymentService paymentService;
     private final AttendanceService attendanceService;
     private final LessonPackageRepository lessonPackageRepository;
+    private final FragmentCacheService fragmentCacheService;
+    private final DataVersionService dataVersionService;
+    private final SchoolOverviewService schoolOverviewService;
 
     @GetMapping
-    public String dashboard(Model model) {
+    public String dashboard(Model model, ServletWebRequest webRequest) {
+        if (notModified(webRequest)) return null;
         List<Teacher> teachers = teacherService.findAll();
 
-        // Загрузить всех студентов один раз
-        List<Student> allStudents = studentService.findAll();
-
-        // Общая сумма студентов
-        long totalStudents = allStudents == null ? 0L : allStudents.size();
-
-        // Map teacherUserId -> count
-        Map<Long, Long> studentsCountMap = new HashMap<>();
-        if (allStudents != null) {
-            for (Student s : allStudents) {
-                Long tid = s.getTeacherId();
-                if (tid == null) {
-                }
-                studentsCountMap.merge(tid, 1L, Long::sum);
-            }
-        }
+        // счётчики из кэшированной сводки: GROUP BY, без загрузки студентов
+        SchoolOverviewService.Overview overview = schoolOverviewService.overview();
 
         model.addAttribute("teachers", teachers);
-        model.addAttribute("studentsCountMap", studentsCountMap);
-        model.addAttribute("totalStudents", totalStudents);
+        model.addAttribute("studentsCountMap", overview.studentsByTeacher());
+        model.addAttribute("totalStudents", overview.totalStudents());
+        model.addAttribute("debtorsCount", overview.debtors());
+        model.addAttribute("lowBalanceCount", overview.lowBalance());
         return "manager/dashboard";
     }
 
@@ -131,10 +127,8 @@ public class ManagerController {
 
     @GetMapping("/add_student")
     public String addStudentForm(Model model) {
-        List<LessonPackage> packages = lessonPackageRepository.findAll();
-        model.addAttribute("packages", packages);
-
-        model.addAttribute("teachers", teacherService.findAll());
+        model.addAttribute("packageOptions", packageOptions());
+        model.addAttribute("teacherOptions", teacherOptions());
         return "manager/add_student";
     }
 
@@ -162,7 +156,9 @@ public class ManagerController {
     @GetMapping("/student_list")
     public String studentList(Model model,
                               @RequestParam(required = false) String q,
-                              @RequestParam(required = false) Long teacherFilter) {
+                              @RequestParam(required = false) Long teacherFilter,
+                              ServletWebRequest webRequest) {
+        if (notModified(webRequest)) return null;
         List<Student> students;
         if (q != null && !q.isBlank()) {
             students = studentService.searchByNameOrCode(q);
@@ -174,11 +170,11 @@ public class ManagerController {
         Map<Long, Teacher> teacherMap = teachers.stream().collect(Collectors.toMap(Teacher::getUserId, t -> t));
 
         Map<Long, Long> missedMap = new HashMap<>();
-        Map<Long, List<com.example.attendance.entities.Payment>> paymentsMap = new HashMap<>();
         for (Student s : students) {
             missedMap.put(s.getId(), attendanceService.countMissedThisMonth(s.getId()));
-            paymentsMap.put(s.getId(), paymentService.findPaymentsForStudent(s.getId()));
         }
+        Map<Long, List<com.example.attendance.entities.Payment>> paymentsMap = paymentService.findPaymentsForStudents(
+                students.stream().map(Student::getId).toList());
 
         model.addAttribute("students", students);
         model.addAttribute("teachers", teachers);
@@ -191,25 +187,12 @@ public class ManagerController {
     }
 
     @GetMapping("/teacher_list")
-    public String teacherList(Model model) {
+    public String teacherList(Model model, ServletWebRequest webRequest) {
+        if (notModified(webRequest)) return null;
         List<Teacher> teachers = teacherService.findAll();
 
-        Map<Long, Long> studentsCountMap = new HashMap<>();
-        for (Teacher t : teachers) {
-            Long tid = t.getUserId();
-            if (tid != null) {
-                try {
-                    long cnt = studentService.countByTeacherId(tid);
-                    studentsCountMap.put(tid, cnt);
-                } catch (Exception ex) {
-                    log.warn("Failed to count students for teacherId={}", tid, ex);
-                    studentsCountMap.put(tid, 0L);
-                }
-            }
-        }
-
         model.addAttribute("teachers", teachers);
-        model.addAttribute("studentsCountMap", studentsCountMap);
+        model.addAttribute("studentsCountMap", schoolOverviewService.overview().studentsByTeacher());
         return "manager/teacher_list";
     }
 
@@ -259,9 +242,9 @@ public class ManagerController {
         Student s = sOpt.get();
         model.addAttribute("student", s);
 
-        List<LessonPackage> packages = lessonPackageRepository.findAll();
-        model.addAttribute("packages", packages);
-        model.addAttribute("teachers", teacherService.findAll());
+        model.addAttribute("packageOptions", FragmentCacheService.selectOption(packageOptions(),
+                s.getLessonPackage() != null ? s.getLessonPackage().getId() : null));
+        model.addAttribute("teacherOptions", FragmentCacheService.selectOption(teacherOptions(), s.getTeacherId()));
 
         Long teacherId = s.getTeacherId();
         List<TimeSlot> slots = teacherId == null ? List.of() : timeSlotService.findByTeacherId(teacherId);
@@ -284,94 +267,17 @@ public class ManagerController {
         log.info("updateStudent called: id={}, first='{}', last='{}', phone='{}', packageId={}, teacherId={}, timeSlotId={}, book={}, initialPayment={}, paymentNote={}",
                 id, firstName, lastName, phone, packageId, teacherId, timeSlotId, book, initialPayment, (paymentNote == null ? null : paymentNote.trim()));
 
-        Optional<Student> sOpt = studentService.findById(id);
-        if (sOpt.isEmpty()) {
-            log.warn("updateStudent: student not found id={}", id);
-            return "redirect:/manager/student_list?error=not_found";
-        }
-        Student s = sOpt.get();
-
-        s.setFirstName(firstName);
-        s.setLastName(lastName);
-        s.setPhone(phone);
-        s.setTeacherId(teacherId);
-        s.setNeedsBook(Boolean.TRUE.equals(book));
-
-        s.setTimeSlotId(timeSlotId);
-
-        BigDecimal previousDebt = s.getDebt() == null ? BigDecimal.ZERO : s.getDebt();
-
-        if (packageId != null) {
-            LessonPackage pkg = lessonPackageRepository.findById(packageId).orElse(null);
-            if (pkg != null) {
-                Long currentPkgId = s.getLessonPackage() != null ? s.getLessonPackage().getId() : null;
-                boolean changed = (currentPkgId == null && packageId != null) || (currentPkgId != null && !currentPkgId.equals(packageId));
-
-                if (changed) {
-                    // если выбран новый пакет — старая логика: назначаем пакет, считаем долг по пакету
-                    s.assignPackage(pkg);
-                    if (pkg.getLessonsCount() != null) {
-                        s.setRemainingLessons(pkg.getLessonsCount());
-                    }
-
-                    BigDecimal paid = initialPayment == null ? BigDecimal.ZERO : initialPayment;
-                    BigDecimal packagePrice = pkg.getPrice() == null ? BigDecimal.ZERO : pkg.getPrice();
-                    BigDecimal newPackageDebt = packagePrice.subtract(paid);
-                    if (newPackageDebt.compareTo(BigDecimal.ZERO) < 0) newPackageDebt = BigDecimal.ZERO;
-
-                    BigDecimal resultingDebt = previousDebt.add(newPackageDebt);
-                    s.setDebt(resultingDebt);
-
-                    // save payment note if provided
-                    if (paymentNote != null && !paymentNote.isBlank()) {
-                        s.setPaymentNote(paymentNote.trim());
-                    }
-
-                    log.info("updateStudent: package changed for id={} -> newDebt={}", id, s.getDebt());
-                } else {
-                    // если пакет тот же — раньше платёж игнорировался. Сейчас: если есть initialPayment > 0, применяем его.
-                    if (initialPayment != null && initialPayment.compareTo(BigDecimal.ZERO) > 0) {
-                        try {
-                            BigDecimal newDebt = studentService.applyPayment(s.getId(), initialPayment);
-                            // обновим сущность s с новым долгом (applyPayment уже сохранил)
-                            s.setDebt(newDebt);
-                            log.info("updateStudent: applied payment {} for student {} -> newDebt={}", initialPayment, s.getId(), newDebt);
-                        } catch (Exception ex) {
-                            log.error("updateStudent: failed to apply payment for studentId={} amount={}", s.getId(), initialPayment, ex);
-                            return "redirect:/manager/student_list?error=payment_failed";
-                        }
-                        if (paymentNote != null && !paymentNote.isBlank()) {
-                            s.setPaymentNote(paymentNote.trim());
-                        }
-                    } else {
-                        log.info("updateStudent: same package and no payment for id={}", id);
-                    }
-                }
-            } else {
-                log.warn("updateStudent: package not found id={}", packageId);
-            }
-        } else {
-            // no package provided: возможно пользователь редактирует только другие поля.
-            // Если пришёл initialPayment — применим его к долгу.
-            if (initialPayment != null && initialPayment.compareTo(BigDecimal.ZERO) > 0) {
-                try {
-                    BigDecimal newDebt = studentService.applyPayment(s.getId(), initialPayment);
-                    s.setDebt(newDebt);
-                    log.info("updateStudent: applied payment {} for student {} (no package change) -> newDebt={}", initialPayment, s.getId(), newDebt);
-                } catch (Exception ex) {
-                    log.error("updateStudent: failed to apply payment for studentId={} amount={}", s.getId(), initialPayment, ex);
-                    return "redirect:/manager/student_list?error=payment_failed";
-                }
-                if (paymentNote != null && !paymentNote.isBlank()) {
-                    s.setPaymentNote(paymentNote.trim());
-                }
-            } else {
-                log.info("updateStudent: no packageId and no payment for id={}", id);
+        // fields, package charge and payment are saved together or not at all
+        try {
+            if (studentService.editStudent(id, firstName, lastName, phone, packageId, teacherId, timeSlotId, book,
+                    initialPayment, paymentNote).isEmpty()) {
+                log.warn("updateStudent: student not found id={}", id);
+                return "redirect:/manager/student_list?error=not_found";
             }
+        } catch (Exception ex) {
+            log.error("updateStudent: failed to update studentId={}, nothing was saved", id, ex);
+            return "redirect:/manager/student_list?error=update_failed";
         }
-
-        // Финальное сохранение (если applyPayment уже сохранён, это сделает дополнительный save — безопасно)
-        studentService.updateStudent(s);
         return "redirect:/manager/student_list?success=updated";
     }
 
@@ -452,4 +358,36 @@ public class ManagerController {
         }
         return "redirect:/manager/teacher_list?success=deleted";
     }
-}
\ No newline at end of file
+
+    /* ---------- conditional GET ---------- */
+
+    /**
+     * ETag for the list pages: students/teachers data versions plus everything else the page depends on —
+     * query string (search, success/error flags), the session cookies (user and CSRF token rendered into
+     * the forms) and today's date (missed-this-month counters). True when a 304 has been sent.
+     */
+    private boolean notModified(ServletWebRequest webRequest) {
+        var request = webRequest.getRequest();
+        int context = Objects.hash(request.getRequestURI(), request.getQueryString(),
+                request.getHeader("Cookie"), LocalDate.now());
+        String etag = "\"m-" + dataVersionService.studentsTag()
+                + "-" + dataVersionService.version(DataVersionService.TEACHERS)
+                + "-" + dataVersionService.version(DataVersionService.ALERTS)
+                + "-" + Integer.toHexString(context) + "\"";
+        // private + no-cache: the browser keeps the page but revalidates it on every navigation
+        webRequest.getResponse().setHeader("Cache-Control", "private, no-cache");
+        return webRequest.checkNotModified(etag);
+    }
+
+    /* ---------- cached select options ---------- */
+
+    private String teacherOptions() {
+        return fragmentCacheService.render("fragments/select_options", "teacherOptions", DataVersionService.TEACHERS,
+                () -> Map.of("teachers", teacherService.findAll()));
+    }
+
+    private String packageOptions() {
+        return fragmentCacheService.render("fragments/select_options", "packageOptions", DataVersionService.PACKAGES,
+                () -> Map.of("packages", lessonPackageRepository.findAll()));
+    }
+}
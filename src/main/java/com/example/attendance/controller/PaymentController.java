@@ -3,16 +3,25 @@ package com.example.attendance.controller;
 import com.example.attendance.entities.AppUser;
 import com.example.attendance.entities.Payment;
 import com.example.attendance.service.AppUserService;
+import com.example.attendance.service.IdempotencyService;
 import com.example.attendance.service.PaymentService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequiredArgsConstructor
@@ -20,15 +29,19 @@ public class PaymentController {
 
     private final PaymentService paymentService;
     private final AppUserService appUserService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * Handle payment form submission.
      * Only authenticated users can access; we additionally allow only MANAGER or ADMIN (checked via authorities).
+     * A repeated submit with the same idempotencyKey (form field or Idempotency-Key header) does not record a second payment.
      */
     @PostMapping("/payments/pay")
     public String pay(@RequestParam Long studentId,
                       @RequestParam BigDecimal amount,
                       @RequestParam(required = false) String note,
+                      @RequestParam(required = false) String idempotencyKey,
+                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyHeader,
                       Authentication authentication,
                       HttpServletRequest request,
                       RedirectAttributes redirectAttributes) {
@@ -47,8 +60,16 @@ public class PaymentController {
         Long userId = user.getId();
 
         try {
-            Payment p = paymentService.makePayment(studentId, amount, userId, note);
-            redirectAttributes.addFlashAttribute("success", "Payment recorded: " + p.getAmount());
+            String key = idempotencyHeader != null ? idempotencyHeader : idempotencyKey;
+            ResponseEntity<?> result = idempotencyService.execute("payment", userId, key, () -> {
+                Payment p = paymentService.makePayment(studentId, amount, userId, note);
+                return ResponseEntity.ok(Map.of("success", true, "paymentId", p.getId(), "amount", p.getAmount()));
+            });
+            if (result.getBody() instanceof Map<?, ?> body && Boolean.TRUE.equals(body.get("success"))) {
+                redirectAttributes.addFlashAttribute("success", "Payment recorded: " + body.get("amount"));
+            } else {
+                redirectAttributes.addFlashAttribute("error", "Payment failed: " + result.getBody());
+            }
         } catch (Exception ex) {
             redirectAttributes.addFlashAttribute("error", "Payment failed: " + ex.getMessage());
         }
@@ -56,4 +77,91 @@ public class PaymentController {
         String referer = request.getHeader("Referer");
         return "redirect:" + (referer != null ? referer : "/manager/student_list");
     }
-}
\ No newline at end of file
+
+    /**
+     * POST /payments/batch — record many payments in one request (end-of-day cash reconciliation).
+     * Body JSON: { "entries": [ { "studentId": 1, "amount": 1500, "note": "наличные" }, ... ] }
+     *
+     * All entries are validated before anything is written. Response contains the created payments
+     * and the new debt of every affected student.
+     */
+    @PostMapping("/payments/batch")
+    @ResponseBody
+    public ResponseEntity<?> payBatch(@RequestBody Map<String, Object> payload,
+                                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                      Authentication authentication) {
+        boolean allowed = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_MANAGER") || a.getAuthority().equals("ROLE_ADMIN"));
+        if (!allowed) {
+            return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+        }
+        AppUser user = (AppUser) appUserService.loadUserByUsername(authentication.getName());
+
+        List<PaymentService.PaymentBatchEntry> entries = new ArrayList<>();
+        if (payload.get("entries") instanceof List<?> raw) {
+            for (Object o : raw) {
+                if (!(o instanceof Map<?, ?> m)) {
+                    entries.add(new PaymentService.PaymentBatchEntry(null, null, null));
+                    continue;
+                }
+                entries.add(new PaymentService.PaymentBatchEntry(
+                        parseLong(m.get("studentId")),
+                        parseBigDecimal(m.get("amount")),
+                        m.get("note") == null ? null : m.get("note").toString()));
+            }
+        }
+
+        // validated before the idempotent transaction starts: an invalid batch is a plain 400, not stored
+        try {
+            paymentService.validateBatch(entries);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "validation_failed", "message", ex.getMessage()));
+        }
+
+        return idempotencyService.execute("payment-batch", user.getId(), idempotencyKey, () -> {
+            try {
+                PaymentService.PaymentBatchResult result = paymentService.recordBatch(entries, user.getId());
+                List<Map<String, Object>> payments = new ArrayList<>();
+                for (Payment p : result.payments()) {
+                    Map<String, Object> m = new HashMap<>();
+                    m.put("paymentId", p.getId());
+                    m.put("studentId", p.getStudentId());
+                    m.put("amount", p.getAmount());
+                    payments.add(m);
+                }
+                Map<String, Object> resp = new HashMap<>();
+                resp.put("success", true);
+                resp.put("count", payments.size());
+                resp.put("payments", payments);
+                resp.put("balances", result.balances());
+                return ResponseEntity.ok(resp);
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "error", "validation_failed", "message", ex.getMessage()));
+            }
+        });
+    }
+
+    /* ---------- helpers ---------- */
+
+    private Long parseLong(Object o) {
+        if (o == null) return null;
+        try {
+            if (o instanceof Number n) return n.longValue();
+            String s = o.toString().trim();
+            return s.isEmpty() ? null : Long.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private BigDecimal parseBigDecimal(Object o) {
+        if (o == null) return null;
+        try {
+            if (o instanceof BigDecimal b) return b;
+            String s = o.toString().trim();
+            return s.isEmpty() ? null : new BigDecimal(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
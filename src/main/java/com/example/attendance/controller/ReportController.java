@@ -0,0 +1,84 @@
+package com.example.attendance.controller;
+
+import com.example.attendance.service.ReportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Manager reports: one page with all reports for a period of months, and the same data as JSON.
+ * An invalid period (from after to, longer than MAX_MONTHS) is a 400 on both, not a server error.
+ */
+@Controller
+@RequestMapping("/manager/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    static final int MAX_MONTHS = 120;
+
+    private final ReportService reportService;
+
+    @GetMapping
+    public String reports(@RequestParam(required = false) YearMonth from,
+                          @RequestParam(required = false) YearMonth to,
+                          @RequestParam(defaultValue = "TEACHER") ReportService.Dimension by,
+                          Model model, HttpServletResponse response) {
+        if (to == null) to = YearMonth.now();
+        if (from == null) from = to.minusMonths(2);
+        model.addAttribute("dimensions", ReportService.Dimension.values());
+        String error = periodError(from, to);
+        if (error != null) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            model.addAttribute("from", from);
+            model.addAttribute("to", to);
+            model.addAttribute("by", by);
+            model.addAttribute("error", error);
+            return "manager/reports";
+        }
+        model.addAllAttributes(build(from, to, by));
+        return "manager/reports";
+    }
+
+    @GetMapping("/json")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reportsJson(@RequestParam(required = false) YearMonth from,
+                                                           @RequestParam(required = false) YearMonth to,
+                                                           @RequestParam(defaultValue = "TEACHER") ReportService.Dimension by) {
+        if (to == null) to = YearMonth.now();
+        if (from == null) from = to.minusMonths(2);
+        String error = periodError(from, to);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_period", "message", error));
+        }
+        return ResponseEntity.ok(build(from, to, by));
+    }
+
+    static String periodError(YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) return "Начало периода позже его конца";
+        if (from.plusMonths(MAX_MONTHS).isBefore(to)) return "Период длиннее " + MAX_MONTHS + " месяцев";
+        return null;
+    }
+
+    private Map<String, Object> build(YearMonth from, YearMonth to, ReportService.Dimension by) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", from);
+        out.put("to", to);
+        out.put("by", by);
+        out.put("rates", reportService.attendanceRates(from, to, by));
+        out.put("consumption", reportService.consumedVersusPaid(from, to));
+        out.put("revenue", reportService.revenueByMonth(from, to));
+        out.put("aging", reportService.debtAging());
+        return out;
+    }
+}
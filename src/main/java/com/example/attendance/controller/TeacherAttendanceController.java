@@ -1,19 +1,30 @@
 package com.example.attendance.controller;
 
+import com.example.attendance.config.Spans;
 import com.example.attendance.entities.Attendance;
 import com.example.attendance.entities.Student;
 import com.example.attendance.entities.Teacher;
+import com.example.attendance.enums.AttendanceStatus;
 import com.example.attendance.service.AttendanceService;
+import com.example.attendance.service.AttendanceSyncService;
+import com.example.attendance.service.AttendanceWriteBehindService;
+import com.example.attendance.service.DataVersionService;
+import com.example.attendance.service.IdempotencyService;
+import com.example.attendance.service.PaymentService;
 import com.example.attendance.service.StudentService;
 import com.example.attendance.service.TeacherService;
 import com.example.attendance.service.AppUserService;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
 import java.security.Principal;
@@ -32,14 +43,24 @@ public class TeacherAttendanceController {
     private final StudentService studentService;
     private final AttendanceService attendanceService;
     private final AppUserService appUserService;
+    private final AttendanceWriteBehindService writeBehindService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentService paymentService;
+    private final ObservationRegistry observationRegistry;
+    private final DataVersionService dataVersionService;
+    private final AttendanceSyncService attendanceSyncService;
 
     @Value("${attendance.minDate:2025-12-01}")
     private String minDateStr;
 
+    @Value("${attendance.maxDaysAhead:31}")
+    private int maxDaysAhead;
+
     @GetMapping("/attendance/json")
     @ResponseBody
     public ResponseEntity<?> attendanceJson(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
-                                            Principal principal) {
+                                            Principal principal,
+                                            WebRequest webRequest) {
         if (date == null) date = LocalDate.now();
 
         // validate against minDate
@@ -50,10 +71,24 @@ public class TeacherAttendanceController {
 
         var appUser = appUserService.findByUsernameSafe(principal.getName());
         if (appUser == null) return ResponseEntity.status(403).body("forbidden");
+
+        // strong ETag from the (teacher, date) data version: unchanged data -> 304 before any student query
+        String etag = "\"" + dataVersionService.teacherDateTag(appUser.getId(), date) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache().cachePrivate()).build();
+        }
+
         Teacher teacher = teacherService.findById(appUser.getId());
         if (teacher == null) return ResponseEntity.status(403).body("forbidden");
 
         List<Student> students = studentService.findByTeacherId(teacher.getUserId());
+        Spans.tag(observationRegistry, "teacherId", teacher.getUserId());
+        Spans.tag(observationRegistry, "date", date);
+        Spans.tag(observationRegistry, "students", students.size());
+        // marks accepted by the write-behind path but not flushed yet
+        List<Long> studentIds = students.stream().map(Student::getId).toList();
+        Map<Long, AttendanceStatus> pendingStatuses = writeBehindService.pendingStatuses(date, studentIds);
+        Map<Long, Attendance> attendanceByStudent = attendanceService.findByDateForStudents(date, studentIds);
         List<Map<String, Object>> out = new ArrayList<>();
         for (Student s : students) {
             Map<String, Object> m = new HashMap<>();
@@ -66,19 +101,213 @@ public class TeacherAttendanceController {
             m.put("remainingLessons", s.getRemainingLessons());
             m.put("needsBook", s.getNeedsBook());
             m.put("debt", s.getDebt() == null ? BigDecimal.ZERO : s.getDebt());
-            Optional<Attendance> att = attendanceService.findByStudentAndDate(s.getId(), date);
-            if (att.isPresent()) {
+            Optional<Attendance> att = Optional.ofNullable(attendanceByStudent.get(s.getId()));
+            AttendanceStatus pendingStatus = pendingStatuses.get(s.getId());
+            if (pendingStatus != null) {
+                Map<String, Object> am = new HashMap<>();
+                am.put("status", pendingStatus.name());
+                am.put("checkinTime", att.map(Attendance::getCheckinTime).map(Object::toString).orElse(null));
+                am.put("revision", AttendanceService.revisionOf(att.orElse(null)));
+                am.put("pending", true);
+                m.put("attendance", am);
+            } else if (att.isPresent()) {
                 Attendance a = att.get();
                 Map<String, Object> am = new HashMap<>();
                 am.put("status", a.getStatus().name());
                 am.put("checkinTime", a.getCheckinTime() == null ? null : a.getCheckinTime().toString());
+                am.put("revision", AttendanceService.revisionOf(a));
                 m.put("attendance", am);
             } else {
                 m.put("attendance", null);
             }
             out.add(m);
         }
-        return ResponseEntity.ok(out);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(out);
+    }
+
+    /**
+     * POST /teacher/attendance/save_batch
+     * Body JSON: { "date": "YYYY-MM-DD", "items": [ { "studentId": 1, "status": "PRESENT", "extraLessons": 0 } ] }
+     *
+     * With attendance.writeBehind.enabled=true the marks are journaled and acknowledged immediately
+     * (applied by the background flusher); otherwise they are saved synchronously.
+     * Retries with the same Idempotency-Key header return the stored response without saving again.
+     */
+    @PostMapping("/attendance/save_batch")
+    @ResponseBody
+    public ResponseEntity<?> saveBatch(@RequestBody Map<String, Object> payload,
+                                       @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                       Principal principal) {
+        var appUser = appUserService.findByUsernameSafe(principal.getName());
+        if (appUser == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+        Teacher teacher = teacherService.findById(appUser.getId());
+        if (teacher == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+
+        LocalDate date;
+        try {
+            Object d = payload.get("date");
+            date = (d == null || d.toString().isBlank()) ? LocalDate.now() : LocalDate.parse(d.toString());
+        } catch (Exception ex) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_date"));
+        }
+        LocalDate minDate = LocalDate.parse(minDateStr);
+        if (date.isBefore(minDate)) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "date_too_early", "minDate", minDate.toString()));
+        }
+        if (date.isAfter(maxDate())) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "date_too_late", "maxDate", maxDate().toString()));
+        }
+
+        Map<Long, AttendanceStatus> statuses = new HashMap<>();
+        Map<Long, Integer> extras = new HashMap<>();
+        Object rawItems = payload.get("items");
+        if (rawItems instanceof List<?> items) {
+            for (Object o : items) {
+                if (!(o instanceof Map<?, ?> item)) continue;
+                Long sid = parseLongFromObject(item.get("studentId"));
+                if (sid == null) continue;
+                Object st = item.get("status");
+                if (st != null && !st.toString().isBlank()) {
+                    try {
+                        statuses.put(sid, AttendanceStatus.valueOf(st.toString()));
+                    } catch (IllegalArgumentException ex) {
+                        return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_status", "studentId", sid));
+                    }
+                }
+                Long extra = parseLongFromObject(item.get("extraLessons"));
+                if (extra != null && extra != 0) extras.put(sid, extra.intValue());
+            }
+        }
+
+        // ownership check: teacher can only mark own students
+        Set<Long> own = new HashSet<>(studentService.findIdsByTeacherId(teacher.getUserId()));
+        for (Long sid : union(statuses.keySet(), extras.keySet())) {
+            if (!own.contains(sid)) {
+                return ResponseEntity.status(403).body(Map.of("success", false, "error", "not_your_student", "studentId", sid));
+            }
+        }
+
+        Spans.tag(observationRegistry, "teacherId", teacher.getUserId());
+        Spans.tag(observationRegistry, "date", date);
+        Spans.tag(observationRegistry, "marks", statuses.size());
+
+        final LocalDate lessonDate = date;
+        return idempotencyService.execute("attendance", teacher.getUserId(), idempotencyKey, () -> {
+            if (writeBehindService.isEnabled()) {
+                long seq = writeBehindService.submit(teacher.getUserId(), lessonDate, statuses, extras);
+                return ResponseEntity.accepted().body(Map.of("success", true, "queued", true, "journalSeq", seq));
+            }
+            attendanceService.saveAttendancesForDate(teacher.getUserId(), lessonDate, statuses, extras);
+            return ResponseEntity.ok(Map.of("success", true, "queued", false));
+        });
+    }
+
+    /**
+     * POST /teacher/attendance/sync — batches queued by the dashboard while offline.
+     * Body JSON: { "clientId": "...", "batches": [ { "seq": 1, "date": "YYYY-MM-DD",
+     *              "items": [ { "studentId": 1, "status": "PRESENT", "extraLessons": 0, "baseRevision": 2 } ] } ] }
+     *
+     * Batches are applied in seq order, each in its own transaction under the idempotency key clientId:seq,
+     * so a resent batch is answered from the stored result. A batch that can never apply (bad, too early or too late date)
+     * gets an error result and should be dropped by the client; a batch naming a student of another teacher
+     * gets "not_your_student" (nothing of it is written) and should be parked, not resent.
+     */
+    @PostMapping("/attendance/sync")
+    @ResponseBody
+    public ResponseEntity<?> sync(@RequestBody Map<String, Object> payload, Principal principal) {
+        var appUser = appUserService.findByUsernameSafe(principal.getName());
+        if (appUser == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+        Teacher teacher = teacherService.findById(appUser.getId());
+        if (teacher == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+
+        Object clientId = payload.get("clientId");
+        if (clientId == null || clientId.toString().isBlank() || clientId.toString().length() > 64) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_client_id"));
+        }
+        if (!(payload.get("batches") instanceof List<?> rawBatches)) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_batches"));
+        }
+
+        // parse everything first: ordering and ownership are checked before anything is written
+        LocalDate minDate = LocalDate.parse(minDateStr);
+        Set<Long> own = new HashSet<>(studentService.findIdsByTeacherId(teacher.getUserId()));
+        TreeMap<Long, Object> bySeq = new TreeMap<>();
+        for (Object o : rawBatches) {
+            if (!(o instanceof Map<?, ?> batch)) continue;
+            Long seq = parseLongFromObject(batch.get("seq"));
+            if (seq == null) return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_seq"));
+            LocalDate date;
+            try {
+                date = LocalDate.parse(String.valueOf(batch.get("date")));
+            } catch (Exception ex) {
+                bySeq.put(seq, Map.of("seq", seq, "error", "bad_date"));
+                continue;
+            }
+            if (date.isBefore(minDate)) {
+                bySeq.put(seq, Map.of("seq", seq, "error", "date_too_early"));
+                continue;
+            }
+            if (date.isAfter(maxDate())) {
+                bySeq.put(seq, Map.of("seq", seq, "error", "date_too_late"));
+                continue;
+            }
+            List<AttendanceSyncService.Item> items = new ArrayList<>();
+            Long foreign = null;
+            if (batch.get("items") instanceof List<?> rawItems) {
+                for (Object io : rawItems) {
+                    if (!(io instanceof Map<?, ?> item)) continue;
+                    Long sid = parseLongFromObject(item.get("studentId"));
+                    if (sid == null) continue;
+                    if (!own.contains(sid)) {
+                        foreign = sid;
+                        break;
+                    }
+                    AttendanceStatus status = null;
+                    Object st = item.get("status");
+                    if (st != null && !st.toString().isBlank()) {
+                        try {
+                            status = AttendanceStatus.valueOf(st.toString());
+                        } catch (IllegalArgumentException ex) {
+                            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_status", "studentId", sid));
+                        }
+                    }
+                    Long extra = parseLongFromObject(item.get("extraLessons"));
+                    items.add(new AttendanceSyncService.Item(sid, status, extra == null ? 0 : extra.intValue(),
+                            parseLongFromObject(item.get("baseRevision"))));
+                }
+            }
+            if (foreign != null) {
+                bySeq.put(seq, Map.of("seq", seq, "date", date.toString(), "error", "not_your_student", "studentId", foreign));
+                continue;
+            }
+            bySeq.put(seq, new PendingBatch(seq, date, items));
+        }
+
+        Spans.tag(observationRegistry, "teacherId", teacher.getUserId());
+        Spans.tag(observationRegistry, "batches", bySeq.size());
+
+        List<Object> results = new ArrayList<>();
+        for (Object entry : bySeq.values()) {
+            if (!(entry instanceof PendingBatch batch)) {
+                results.add(entry);
+                continue;
+            }
+            ResponseEntity<?> r = idempotencyService.execute("attendance-sync", teacher.getUserId(),
+                    clientId.toString().trim() + ":" + batch.seq(),
+                    () -> ResponseEntity.ok(attendanceSyncService.apply(teacher.getUserId(), batch.seq(), batch.date(), batch.items())));
+            results.add(r.getBody());
+        }
+        return ResponseEntity.ok(Map.of("success", true, "results", results));
+    }
+
+    /**
+     * Latest lesson date a mark may be saved for (attendance.maxDaysAhead days from today).
+     */
+    private LocalDate maxDate() {
+        return LocalDate.now().plusDays(maxDaysAhead);
+    }
+
+    private record PendingBatch(long seq, LocalDate date, List<AttendanceSyncService.Item> items) {
     }
 
     /**
@@ -133,13 +362,21 @@ public class TeacherAttendanceController {
      * POST /teacher/student/{id}/payment
      * Body JSON: { "amount": 500, "note": "Оплата за урок" }
      *
-     * Handles BigDecimal debt on Student.
+     * Handles BigDecimal debt on Student. Honors the Idempotency-Key header so a double click applies the payment once.
      */
     @PostMapping("/student/{id}/payment")
     @ResponseBody
     public ResponseEntity<?> postStudentPayment(@PathVariable("id") Long studentId,
                                                 @RequestBody Map<String, Object> payload,
+                                                @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                                 Principal principal) {
+        var user = appUserService.findByUsernameSafe(principal.getName());
+        if (user == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
+        return idempotencyService.execute("teacher-payment", user.getId(), idempotencyKey,
+                () -> applyStudentPayment(studentId, payload, principal));
+    }
+
+    private ResponseEntity<?> applyStudentPayment(Long studentId, Map<String, Object> payload, Principal principal) {
         try {
             var appUser = appUserService.findByUsernameSafe(principal.getName());
             if (appUser == null) return ResponseEntity.status(403).body(Map.of("success", false, "error", "forbidden"));
@@ -158,17 +395,15 @@ public class TeacherAttendanceController {
 
             // parse amount into BigDecimal
             BigDecimal amount = parseBigDecimalFromObject(payload.get("amount"));
-            if (amount == null) amount = BigDecimal.ZERO;
+            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_amount"));
+            }
 
             String note = payload.get("note") == null ? "" : payload.get("note").toString();
 
-            // current debt (BigDecimal)
-            BigDecimal currentDebt = s.getDebt() == null ? BigDecimal.ZERO : s.getDebt();
-            BigDecimal newDebt = currentDebt.subtract(amount);
-
-            s.setDebt(newDebt);
-            s.setUpdatedAt(java.time.Instant.now());
-            studentService.updateStudent(s);
+            // recorded as a Payment + ledger entry like manager payments; debt is derived from the ledger
+            paymentService.makePayment(studentId, amount, appUser.getId(), note);
+            BigDecimal newDebt = paymentService.currentDebt(studentId);
 
             Map<String, Object> resp = new HashMap<>();
             resp.put("success", true);
@@ -184,6 +419,24 @@ public class TeacherAttendanceController {
 
     /* ---------- helpers ---------- */
 
+    private Set<Long> union(Set<Long> a, Set<Long> b) {
+        Set<Long> out = new HashSet<>(a);
+        out.addAll(b);
+        return out;
+    }
+
+    private Long parseLongFromObject(Object o) {
+        if (o == null) return null;
+        try {
+            if (o instanceof Number) return ((Number) o).longValue();
+            String s = o.toString().trim();
+            if (s.isEmpty()) return null;
+            return Long.valueOf(s);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private BigDecimal parseBigDecimalFromObject(Object o) {
         if (o == null) return null;
         try {
@@ -1,15 +1,18 @@
 package com.example.attendance.controller;
 
+import com.example.attendance.config.Spans;
 import com.example.attendance.entities.Attendance;
 import com.example.attendance.entities.Payment;
 import com.example.attendance.entities.Student;
 import com.example.attendance.entities.Teacher;
 import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.service.AlertService;
 import com.example.attendance.service.AttendanceService;
 import com.example.attendance.service.PaymentService;
 import com.example.attendance.service.StudentService;
 import com.example.attendance.service.TeacherService;
 import com.example.attendance.service.AppUserService;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
@@ -20,7 +23,6 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.math.BigDecimal;
 
 @Controller
 @RequestMapping("/teacher")
@@ -32,6 +34,8 @@ public class TeacherController {
     private final AttendanceService attendanceService;
     private final AppUserService appUserService;
     private final PaymentService paymentService;
+    private final ObservationRegistry observationRegistry;
+    private final AlertService alertService;
 
     /**
      * Dashboard: now accepts optional date request parameter.
@@ -54,6 +58,9 @@ public class TeacherController {
 
         // use provided date if present, otherwise today
         LocalDate today = (date != null) ? date : LocalDate.now();
+        Spans.tag(observationRegistry, "teacherId", userId);
+        Spans.tag(observationRegistry, "date", today);
+        Spans.tag(observationRegistry, "students", students.size());
 
         // today's attendance map (studentId -> Attendance)
         Map<Long, Attendance> todays = new HashMap<>();
@@ -65,29 +72,16 @@ public class TeacherController {
 
         // missed count map and payments map
         Map<Long, Long> missedMap = new HashMap<>();
-        Map<Long, List<Payment>> paymentsMap = new HashMap<>();
         for (Student s : students) {
-            Long sid = s.getId();
-            missedMap.put(sid, attendanceService.countMissedThisMonth(sid));
-            paymentsMap.put(sid, paymentService.findPaymentsForStudent(sid));
+            missedMap.put(s.getId(), attendanceService.countMissedThisMonth(s.getId()));
         }
+        Map<Long, List<Payment>> paymentsMap = paymentService.findPaymentsForStudents(
+                students.stream().map(Student::getId).toList());
 
-        // compute rowClassMap for highlighting rows in template (id -> css class)
+        // row highlighting (id -> css class), same rules as the alert lists
         Map<Long, String> rowClassMap = new HashMap<>();
         for (Student s : students) {
-            String cls = "";
-            if (s != null) {
-                if (s.getDebt() != null && s.getDebt().compareTo(BigDecimal.ZERO) > 0) {
-                    cls = "row-debt";
-                } else if (s.getRemainingLessons() != null) {
-                    if (s.getRemainingLessons() < 2) {
-                        cls = "row-low";
-                    } else if (s.getRemainingLessons() < 4) {
-                        cls = "row-warn";
-                    }
-                }
-                rowClassMap.put(s.getId(), cls);
-            }
+            if (s != null) rowClassMap.put(s.getId(), alertService.rowClass(s));
         }
 
         long presentCount = todays.values().stream().filter(a -> a != null && a.getStatus() == AttendanceStatus.PRESENT).count();
@@ -104,6 +98,8 @@ public class TeacherController {
 
         model.addAttribute("today", today);
         model.addAttribute("rowClassMap", rowClassMap);
+        model.addAttribute("warnBelow", alertService.warnBelow());
+        model.addAttribute("criticalBelow", alertService.criticalBelow());
         model.addAttribute("presentCount", presentCount);
         model.addAttribute("lateCount", lateCount);
         model.addAttribute("absentCount", absentCount);
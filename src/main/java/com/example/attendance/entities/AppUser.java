@@ -10,13 +10,14 @@ import java.util.Collection;
 import java.util.List;
 
 @Entity
+@EntityListeners(BranchAssigner.class)
 @Table(name = "app_user")
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class AppUser implements UserDetails {
+public class AppUser implements UserDetails, BranchScoped {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -29,6 +30,11 @@ public class AppUser implements UserDetails {
     @Enumerated(EnumType.STRING)
     private UserRole role;
 
+    // branch of managers and teachers (BranchScoped); null for admins, who see all branches.
+    // Not a @TenantId: a tenant column cannot stay null, and usernames are unique across branches.
+    @Column(name = "branch_id")
+    private Long branchId;
+
     // UserDetails methods
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
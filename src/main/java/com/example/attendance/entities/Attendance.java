@@ -10,6 +10,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "attendance", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"student_id", "lesson_date"})
+}, indexes = {
+        @Index(name = "idx_attendance_marker_date", columnList = "marked_by_user_id, lesson_date"),
+        @Index(name = "idx_attendance_student_status_date", columnList = "student_id, status, lesson_date")
 })
 @Getter
 @Setter
@@ -34,4 +37,8 @@ public class Attendance {
     private Long markedByUserId;
     private LocalDateTime markedAt;
     private LocalDateTime checkinTime;
+
+    // bumped by every explicit mark, 0 (or null on old rows) for auto-filled EXCUSED; offline sync compares it
+    // with the revision the client saw
+    private Long revision;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.attendance.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized balance of a student up to (and including) ledger entry lastEntryId.
+ * Current balance = balance + sum of entries with id > lastEntryId.
+ */
+@Entity
+@Table(name = "balance_snapshot")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshot {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal balance;
+
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+
+    @Column(name = "taken_at")
+    private LocalDateTime takenAt;
+}
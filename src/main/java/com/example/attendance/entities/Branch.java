@@ -0,0 +1,30 @@
+package com.example.attendance.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A school branch. Teachers, students, packages and (non-admin) users belong to one branch;
+ * see BranchScoped.
+ */
+@Entity
+@Table(name = "branch")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Branch {
+
+    public static final long DEFAULT_ID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String code;
+
+    @Column(nullable = false, length = 200)
+    private String name;
+}
@@ -0,0 +1,22 @@
+package com.example.attendance.entities;
+
+import com.example.attendance.config.BranchContext;
+import com.example.attendance.enums.UserRole;
+import jakarta.persistence.PrePersist;
+
+/**
+ * Fills branch_id of new BranchScoped rows: the current user's branch, or the default branch when there is
+ * none (admins, jobs). Admin users themselves belong to no branch and keep null. Hibernate then checks the
+ * value against the session's tenant.
+ */
+public class BranchAssigner {
+
+    @PrePersist
+    public void assign(Object entity) {
+        if (entity instanceof AppUser user && user.getRole() == UserRole.ADMIN) return;
+        if (entity instanceof BranchScoped scoped && scoped.getBranchId() == null) {
+            Long branch = BranchContext.current();
+            scoped.setBranchId(branch != null ? branch : Branch.DEFAULT_ID);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.attendance.entities;
+
+/**
+ * Entity owned by a branch. Its branch_id column is the Hibernate tenant id (@TenantId): every query and load
+ * in a session of a branch user is restricted to that branch, and inserts get the branch assigned
+ * (BranchTenantResolver). Sessions without a branch (admins, background jobs) see all branches.
+ * AppUser is the exception: its branch_id is plain data (null for admins), see BranchAssigner.
+ */
+public interface BranchScoped {
+
+    Long getBranchId();
+
+    void setBranchId(Long branchId);
+}
@@ -0,0 +1,25 @@
+package com.example.attendance.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Shared data-version counter (attendance.dataVersion.shared=true): lets every node build the same ETag
+ * for a (teacher, date) view. Incremented with MERGE inside the writing transaction.
+ */
+@Entity
+@Table(name = "data_version")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DataVersion {
+
+    @Id
+    @Column(name = "scope_key", length = 128)
+    private String scopeKey;
+
+    @Column(nullable = false)
+    private Long version;
+}
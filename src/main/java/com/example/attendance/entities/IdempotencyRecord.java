@@ -0,0 +1,56 @@
+package com.example.attendance.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored outcome of a request made with an Idempotency-Key.
+ * id is "scope:userId:key"; the row is written in the same transaction as the request's own changes.
+ * Always inserted (Persistable.isNew), never merged: a concurrent claim of the same key must fail on the
+ * primary key instead of silently becoming an update.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = {
+        @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord implements Persistable<String> {
+
+    @Id
+    @Column(length = 255)
+    private String id;
+
+    @Column(name = "status_code", nullable = false)
+    private Integer statusCode;
+
+    @Column(name = "response_body", columnDefinition = "text")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Transient
+    @Builder.Default
+    private boolean fresh = true;
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markStored() {
+        fresh = false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.attendance.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Highest journal sequence number that has been applied to the database.
+ * Updated in the same transaction as the applied batch, so replay after a crash is idempotent.
+ */
+@Entity
+@Table(name = "journal_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JournalCheckpoint {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,50 @@
+package com.example.attendance.entities;
+
+import com.example.attendance.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable ledger entry. Debt of a student = sum(amount) over its entries
+ * (positive for charges, negative for payments).
+ */
+@Entity
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_student_id", columnList = "student_id, id")
+})
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "student_id", nullable = false, updatable = false)
+    private Long studentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16, updatable = false)
+    private LedgerEntryType type;
+
+    @Column(nullable = false, precision = 12, scale = 2, updatable = false)
+    private BigDecimal amount;
+
+    // Payment.id for PAYMENT entries
+    @Column(name = "payment_id", updatable = false)
+    private Long paymentId;
+
+    @Column(name = "created_by_user_id", updatable = false)
+    private Long createdByUserId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(length = 512, updatable = false)
+    private String note;
+}
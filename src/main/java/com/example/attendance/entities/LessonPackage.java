@@ -2,6 +2,7 @@ package com.example.attendance.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.TenantId;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -11,12 +12,15 @@ import java.math.BigDecimal;
  * Реализовано через Lombok (Data + Builder).
  */
 @Entity
-@Table(name = "lesson_packages")
+@EntityListeners(BranchAssigner.class)
+@Table(name = "lesson_packages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lesson_packages_branch_code", columnNames = {"branch_id", "code"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class LessonPackage implements Serializable {
+public class LessonPackage implements Serializable, BranchScoped {
     private static final long serialVersionUID = 1L;
 
     @Id
@@ -26,7 +30,7 @@ public class LessonPackage implements Serializable {
     /**
      * Уникальный код пакета, например: LESSONS_12_MWF, LESSONS_12_TTS, LESSONS_6_MON_SAT, LESSONS_24
      */
-    @Column(nullable = false, unique = true, length = 64)
+    @Column(nullable = false, length = 64)
     private String code;
 
     /** Отображаемое название пакета */
@@ -43,4 +47,9 @@ public class LessonPackage implements Serializable {
 
     /** Количество занятий в пакете (опционально) */
     private Integer lessonsCount;
+
+    /** Филиал (BranchScoped); код пакета уникален в пределах филиала */
+    @TenantId
+    @Column(name = "branch_id")
+    private Long branchId;
 }
\ No newline at end of file
@@ -7,7 +7,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = {
+        @Index(name = "idx_payment_student_paid_at", columnList = "student_id, paid_at desc")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -2,21 +2,26 @@ package com.example.attendance.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.TenantId;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
+@EntityListeners(BranchAssigner.class)
 @Table(name = "students", indexes = {
-        @Index(name = "idx_student_teacher", columnList = "teacher_id"),
+        @Index(name = "idx_student_teacher_last_name", columnList = "teacher_id, last_name"),
+        @Index(name = "idx_student_branch_last_name", columnList = "branch_id, last_name"),
+        @Index(name = "idx_student_time_slot", columnList = "time_slot_id"),
         @Index(name = "idx_student_code", columnList = "student_code")
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Student implements Serializable {
+public class Student implements Serializable, BranchScoped {
     private static final long serialVersionUID = 1L;
 
     @Id
@@ -37,6 +42,11 @@ public class Student implements Serializable {
     @Column(name = "student_code", length = 64, unique = true)
     private String studentCode;
 
+    // branch (BranchScoped)
+    @TenantId
+    @Column(name = "branch_id")
+    private Long branchId;
+
     // reference to teacher (stores teacher.userId as before)
     @Column(name = "teacher_id")
     private Long teacherId;
@@ -61,10 +71,19 @@ public class Student implements Serializable {
     @Column(name = "remaining_lessons")
     private Integer remainingLessons;
 
-    // outstanding debt (packagePrice - payments) — we will maintain this server-side
-    @Column(name = "debt", precision = 10, scale = 2)
+    // outstanding debt, derived from the ledger (snapshot + entries after it); read-only —
+    // change it through LedgerService (charges / payments), never via setDebt.
+    // Clamped at 0 like the old column: an overpayment is a negative ledger balance (LedgerService.balance),
+    // never a negative debt
+    @Formula("greatest(0, coalesce((select bs.balance from balance_snapshot bs where bs.student_id = id), 0)"
+            + " + coalesce((select sum(le.amount) from ledger_entry le where le.student_id = id"
+            + " and le.id > coalesce((select bs2.last_entry_id from balance_snapshot bs2 where bs2.student_id = id), 0)), 0))")
     private BigDecimal debt;
 
+    // pre-ledger debt column, only read once to create OPENING ledger entries
+    @Column(name = "debt", precision = 10, scale = 2, insertable = false, updatable = false)
+    private BigDecimal legacyDebt;
+
     // simple flag if student needs a book
     @Column(name = "needs_book")
     private Boolean needsBook = false;
@@ -3,15 +3,19 @@ package com.example.attendance.entities;
 import com.example.attendance.enums.Shift;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.TenantId;
 
 @Entity
-@Table(name = "teacher")
+@EntityListeners(BranchAssigner.class)
+@Table(name = "teacher", indexes = {
+        @Index(name = "idx_teacher_branch", columnList = "branch_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Teacher {
+public class Teacher implements BranchScoped {
 
     @Id
     @Column(name = "user_id")
@@ -24,6 +28,11 @@ public class Teacher {
     @Enumerated(EnumType.STRING)
     private Shift shift;
 
+    // BranchScoped
+    @TenantId
+    @Column(name = "branch_id")
+    private Long branchId;
+
     @OneToOne
     @MapsId
     @JoinColumn(name = "user_id")
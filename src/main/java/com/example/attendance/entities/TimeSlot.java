@@ -6,7 +6,9 @@ import lombok.*;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "time_slot")
+@Table(name = "time_slot", indexes = {
+        @Index(name = "idx_time_slot_teacher_start", columnList = "teacher_id, start_time")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,21 @@
+package com.example.attendance.enums;
+
+/**
+ * Attention levels of a student, mildest first (AlertService). The CSS class is the row highlight used on the
+ * teacher dashboard and the manager student list.
+ */
+public enum AlertLevel {
+    WARN("row-warn"),   // few lessons left
+    LOW("row-low"),     // almost no lessons left
+    DEBT("row-debt");   // owes money
+
+    private final String cssClass;
+
+    AlertLevel(String cssClass) {
+        this.cssClass = cssClass;
+    }
+
+    public String cssClass() {
+        return cssClass;
+    }
+}
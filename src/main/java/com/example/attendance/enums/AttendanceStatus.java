@@ -10,5 +10,15 @@ public enum AttendanceStatus {
     PRESENT,
     LATE,
     ABSENT,
-    EXCUSED
+    EXCUSED;
+
+    /**
+     * PRESENT / LATE / ABSENT consume a lesson; EXCUSED does not.
+     */
+    public boolean consumesLesson() {
+        return switch (this) {
+            case PRESENT, LATE, ABSENT -> true;
+            case EXCUSED -> false;
+        };
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.attendance.enums;
+
+/**
+ * Domain events written to the outbox (OutboxService) in the transaction of the change.
+ *
+ * ATTENDANCE_MARKED: a teacher set or changed a status (auto-filled EXCUSED rows are not events).
+ * LESSON_CONSUMED: remainingLessons changed; payload lessons > 0 consumed, < 0 restored.
+ * PAYMENT_RECORDED: a payment was booked. CHARGE_RECORDED: any other ledger entry (charge, adjustment, opening).
+ * STUDENT_ENROLLED: a student was created. STUDENT_UPDATED: edited by a manager (teacher, package, lessons).
+ * STUDENT_REMOVED: deleted.
+ */
+public enum DomainEventType {
+    ATTENDANCE_MARKED,
+    LESSON_CONSUMED,
+    PAYMENT_RECORDED,
+    CHARGE_RECORDED,
+    STUDENT_ENROLLED,
+    STUDENT_UPDATED,
+    STUDENT_REMOVED
+}
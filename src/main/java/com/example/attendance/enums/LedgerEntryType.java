@@ -0,0 +1,12 @@
+package com.example.attendance.enums;
+
+/**
+ * Ledger entry kinds. Amounts are signed: CHARGE and positive ADJUSTMENT increase debt, PAYMENT decreases it.
+ * OPENING carries over the debt a student had before the ledger existed.
+ */
+public enum LedgerEntryType {
+    OPENING,
+    CHARGE,
+    PAYMENT,
+    ADJUSTMENT
+}
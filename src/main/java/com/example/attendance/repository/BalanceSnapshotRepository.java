@@ -0,0 +1,7 @@
+package com.example.attendance.repository;
+
+import com.example.attendance.entities.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+}
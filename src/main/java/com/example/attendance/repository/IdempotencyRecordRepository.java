@@ -0,0 +1,20 @@
+package com.example.attendance.repository;
+
+import com.example.attendance.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.id = :id and r.expiresAt < :now")
+    int deleteExpiredById(@Param("id") String id, @Param("now") LocalDateTime now);
+}
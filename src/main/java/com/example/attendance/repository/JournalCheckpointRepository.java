@@ -0,0 +1,7 @@
+package com.example.attendance.repository;
+
+import com.example.attendance.entities.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, String> {
+}
@@ -0,0 +1,43 @@
+package com.example.attendance.repository;
+
+import com.example.attendance.entities.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    List<LedgerEntry> findByStudentIdOrderByIdDesc(Long studentId);
+
+    @Query("select coalesce(sum(e.amount), 0) from LedgerEntry e where e.studentId = :studentId and e.id > :afterId")
+    BigDecimal sumAfter(@Param("studentId") Long studentId, @Param("afterId") Long afterId);
+
+    /**
+     * Sums of entries after each student's snapshot. Rows: [studentId, sum(amount)].
+     */
+    @Query("select e.studentId, sum(e.amount) from LedgerEntry e " +
+            "where e.studentId in :studentIds " +
+            "and e.id > coalesce((select b2.lastEntryId from BalanceSnapshot b2 where b2.studentId = e.studentId), 0) " +
+            "group by e.studentId")
+    List<Object[]> tailSums(@Param("studentIds") Collection<Long> studentIds);
+
+    /**
+     * Per-student sums of entries not yet covered by a snapshot and older than cutoff, for the students with
+     * studentId % shards == shard. Rows: [studentId, sum(amount), max(id)].
+     */
+    @Query("select e.studentId, sum(e.amount), max(e.id) from LedgerEntry e " +
+            "where e.createdAt < :cutoff and mod(e.studentId, :shards) = :shard " +
+            "and e.id > coalesce((select b.lastEntryId from BalanceSnapshot b where b.studentId = e.studentId), 0) " +
+            "group by e.studentId")
+    List<Object[]> unsnapshottedTotals(@Param("cutoff") LocalDateTime cutoff,
+                                       @Param("shards") long shards, @Param("shard") long shard);
+
+    @Query("select s.id, s.legacyDebt from Student s where s.legacyDebt is not null and s.legacyDebt <> 0 " +
+            "and not exists (select 1 from LedgerEntry e where e.studentId = s.id)")
+    List<Object[]> legacyDebtsWithoutLedger();
+}
@@ -3,8 +3,11 @@ package com.example.attendance.repository;
 import com.example.attendance.entities.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByStudentIdOrderByPaidAtDesc(Long studentId);
+
+    List<Payment> findByStudentIdIn(Collection<Long> studentIds);
 }
\ No newline at end of file
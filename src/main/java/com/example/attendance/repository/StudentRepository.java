@@ -2,8 +2,11 @@ package com.example.attendance.repository;
 
 import com.example.attendance.entities.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,13 +20,34 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
 
     List<Student> findByTeacherIdOrderByLastNameAsc(Long teacherId);
 
+    @Query("select s.id from Student s where s.teacherId = :teacherId")
+    List<Long> findIdsByTeacherId(@Param("teacherId") Long teacherId);
+
+    @Query("select distinct s.teacherId from Student s where s.id in :ids and s.teacherId is not null")
+    List<Long> findTeacherIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Rows: [studentId, teacherId (may be null)].
+     */
+    @Query("select s.id, s.teacherId from Student s where s.id in :ids")
+    List<Object[]> findTeacherIdByStudentIn(@Param("ids") Collection<Long> ids);
+
     Optional<Student> findByStudentCode(String studentCode);
 
     List<Student> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrStudentCodeContainingIgnoreCase(
             String firstName, String lastName, String studentCode);
 
-    // count convenience (Spring Data derives implementation)
-    long countByTeacherId(Long teacherId);
+    /**
+     * Students per teacher in one GROUP BY (teacherId null = unassigned); no entities are loaded.
+     */
+    @Query("select s.teacherId as teacherId, count(s) as students from Student s group by s.teacherId")
+    List<TeacherStudentCount> countGroupByTeacher();
+
+    interface TeacherStudentCount {
+        Long getTeacherId();
+
+        long getStudents();
+    }
 
     // find students assigned to a timeslot (if student entity contains timeSlotId column)
     List<Student> findByTimeSlotId(Long timeSlotId);
@@ -0,0 +1,258 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.AlertLevel;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Students needing attention: few lessons left (WARN below warnBelow, LOW below criticalBelow) or debt (DEBT).
+ *
+ * - The rules live here only: the teacher dashboard and the manager student list take their row classes from
+ *   evaluate(), the dashboard script gets the thresholds for its live preview.
+ * - student_alert holds one row per student with a level. It is updated incrementally: as a cluster outbox
+ *   consumer, only the students named in new events are re-evaluated (remaining lessons from students,
+ *   debt from the ledger), in the transaction that advances the consumer's cursor.
+ * - Teacher and manager alert lists are index reads of student_alert: O(alerts), not a roster scan.
+ * - A student entering a level or getting worse produces a notification, appended as a JSON line to
+ *   attendance.alerts.sinkFile (at least once: a batch retried after a failure may repeat lines).
+ * - A full rebuild on first start and nightly repairs changes that bypass the services (bulk loads). It sends
+ *   no notifications: it runs on every start, and its changes are not new events.
+ */
+@Service
+@RequiredArgsConstructor
+public class AlertService implements OutboxService.OutboxConsumer {
+
+    private static final int CHUNK = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(AlertService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final LedgerService ledgerService;
+    private final ClusterJobService clusterJobService;
+    private final ObjectMapper objectMapper;
+    private final DataVersionService dataVersionService;
+
+    @Value("${attendance.alerts.warnBelow:4}")
+    private int warnBelow;
+
+    @Value("${attendance.alerts.criticalBelow:2}")
+    private int criticalBelow;
+
+    @Value("${attendance.alerts.sinkFile:data/alerts/notifications.jsonl}")
+    private String sinkFile;
+
+    public record Alert(Long studentId, String firstName, String lastName, Long teacherId, AlertLevel level,
+                        Integer remaining, BigDecimal debt, LocalDateTime since) {
+    }
+
+    private record StudentState(Long teacherId, Long branchId, Integer remaining) {
+    }
+
+    public int warnBelow() {
+        return warnBelow;
+    }
+
+    public int criticalBelow() {
+        return criticalBelow;
+    }
+
+    /**
+     * Level for these values; null when the student needs no attention. Debt outranks remaining lessons.
+     */
+    public AlertLevel evaluate(Integer remaining, BigDecimal debt) {
+        if (debt != null && debt.signum() > 0) return AlertLevel.DEBT;
+        if (remaining == null) return null;
+        if (remaining < criticalBelow) return AlertLevel.LOW;
+        if (remaining < warnBelow) return AlertLevel.WARN;
+        return null;
+    }
+
+    /**
+     * Row highlight of a loaded student ("" when none).
+     */
+    public String rowClass(Student s) {
+        AlertLevel level = s == null ? null : evaluate(s.getRemainingLessons(), s.getDebt());
+        return level == null ? "" : level.cssClass();
+    }
+
+    public List<Alert> forTeacher(Long teacherId) {
+        if (teacherId == null) return List.of();
+        return query("where a.teacher_id = ?", teacherId);
+    }
+
+    /**
+     * Alerts of one branch, or of all branches for null.
+     */
+    public List<Alert> forBranch(Long branchId) {
+        return branchId == null ? query("") : query("where a.branch_id = ?", branchId);
+    }
+
+    /**
+     * Number of alerts per level in one branch, or in all branches for null (levels without alerts map to 0).
+     */
+    public Map<AlertLevel, Long> countsByLevel(Long branchId) {
+        Map<AlertLevel, Long> out = new EnumMap<>(AlertLevel.class);
+        for (AlertLevel level : AlertLevel.values()) out.put(level, 0L);
+        RowCallbackHandler row = rs -> out.put(AlertLevel.valueOf(rs.getString(1)), rs.getLong(2));
+        if (branchId == null) {
+            jdbcTemplate.query("select level, count(*) from student_alert group by level", row);
+        } else {
+            jdbcTemplate.query("select level, count(*) from student_alert where branch_id = ? group by level", row, branchId);
+        }
+        return out;
+    }
+
+    /* ---------- incremental evaluation ---------- */
+
+    @Override
+    public String name() {
+        return "alerts";
+    }
+
+    @Override
+    public boolean perNode() {
+        return false;
+    }
+
+    @Override
+    public void accept(List<OutboxService.DomainEvent> batch) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (OutboxService.DomainEvent e : batch) {
+            if (e.studentId() != null) ids.add(e.studentId());
+        }
+        reevaluate(ids, true);
+    }
+
+    /**
+     * On the first start (and nightly) evaluate every student, without notifications; removes rows of deleted
+     * students.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${attendance.alerts.rebuildCron:0 0 5 * * *}")
+    public void rebuild() {
+        clusterJobService.runSingle("alerts-rebuild", Duration.ofHours(12), run -> {
+            List<Long> all = jdbcTemplate.queryForList("select id from students order by id", Long.class);
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            for (int i = 0; i < all.size() && !run.lost(); i += CHUNK) {
+                List<Long> chunk = all.subList(i, Math.min(all.size(), i + CHUNK));
+                tx.executeWithoutResult(status -> reevaluate(chunk, false));
+                run.progress(Math.min(all.size(), i + CHUNK), all.size());
+            }
+            int orphans = jdbcTemplate.update("delete from student_alert where student_id not in (select id from students)");
+            if (orphans > 0) dataVersionService.bump(DataVersionService.ALERTS);
+            log.info("Alerts rebuilt: {} students need attention", jdbcTemplate.queryForObject("select count(*) from student_alert", Long.class));
+        });
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void reevaluate(Collection<Long> studentIds, boolean notify) {
+        if (studentIds.isEmpty()) return;
+        String in = String.join(", ", Collections.nCopies(studentIds.size(), "?"));
+        Object[] args = studentIds.toArray();
+
+        Map<Long, StudentState> students = new HashMap<>();
+        jdbcTemplate.query("select id, teacher_id, branch_id, remaining_lessons from students where id in (" + in + ")",
+                (RowCallbackHandler) rs -> students.put(rs.getLong(1), new StudentState(
+                        rs.getObject(2, Long.class), rs.getObject(3, Long.class), rs.getObject(4, Integer.class))),
+                args);
+        Map<Long, AlertLevel> current = new HashMap<>();
+        jdbcTemplate.query("select student_id, level from student_alert where student_id in (" + in + ")",
+                (RowCallbackHandler) rs -> current.put(rs.getLong(1), AlertLevel.valueOf(rs.getString(2))),
+                args);
+        Map<Long, BigDecimal> balances = students.isEmpty() ? Map.of() : ledgerService.balances(students.keySet());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map<String, Object>> notifications = new ArrayList<>();
+        boolean levelsChanged = false;
+        for (Long id : studentIds) {
+            StudentState st = students.get(id);
+            AlertLevel previous = current.get(id);
+            BigDecimal debt = balances.getOrDefault(id, BigDecimal.ZERO);
+            AlertLevel level = st == null ? null : evaluate(st.remaining(), debt);
+            if (level != previous) levelsChanged = true;
+            if (level == null) {
+                if (previous != null) jdbcTemplate.update("delete from student_alert where student_id = ?", id);
+                continue;
+            }
+            if (previous == null) {
+                jdbcTemplate.update("insert into student_alert (student_id, teacher_id, branch_id, level, remaining, debt, since, updated_at) " +
+                        "values (?, ?, ?, ?, ?, ?, ?, ?)", id, st.teacherId(), st.branchId(), level.name(), st.remaining(), debt, now, now);
+            } else {
+                // since = when the current level was entered
+                jdbcTemplate.update("update student_alert set teacher_id = ?, branch_id = ?, level = ?, remaining = ?, debt = ?, " +
+                                "since = case when level = ? then since else ? end, updated_at = ? where student_id = ?",
+                        st.teacherId(), st.branchId(), level.name(), st.remaining(), debt, level.name(), now, now, id);
+            }
+            if (notify && (previous == null || level.compareTo(previous) > 0)) {
+                Map<String, Object> n = new LinkedHashMap<>();
+                n.put("at", now.toLocalDateTime().toString());
+                n.put("studentId", id);
+                n.put("teacherId", st.teacherId());
+                n.put("level", level.name());
+                if (previous != null) n.put("previous", previous.name());
+                n.put("remaining", st.remaining());
+                n.put("debt", debt.toPlainString());
+                notifications.add(n);
+            }
+        }
+        if (levelsChanged) dataVersionService.bump(DataVersionService.ALERTS);
+        notify(notifications);
+    }
+
+    private synchronized void notify(List<Map<String, Object>> notifications) {
+        if (notifications.isEmpty()) return;
+        StringBuilder lines = new StringBuilder();
+        for (Map<String, Object> n : notifications) lines.append(objectMapper.writeValueAsString(n)).append('\n');
+        Path file = Path.of(sinkFile);
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Files.writeString(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            // the batch is retried with its cursor
+            throw new UncheckedIOException("Failed to write alert notifications to " + file, ex);
+        }
+    }
+
+    private List<Alert> query(String where, Object... args) {
+        return jdbcTemplate.query(
+                "select a.student_id, s.first_name, s.last_name, a.teacher_id, a.level, a.remaining, a.debt, a.since " +
+                        "from student_alert a join students s on s.id = a.student_id " + where +
+                        " order by case a.level when 'DEBT' then 0 when 'LOW' then 1 else 2 end, s.last_name, s.first_name",
+                (rs, i) -> new Alert(
+                        rs.getLong(1),
+                        rs.getString(2),
+                        rs.getString(3),
+                        rs.getObject(4, Long.class),
+                        AlertLevel.valueOf(rs.getString(5)),
+                        rs.getObject(6, Integer.class),
+                        rs.getBigDecimal(7),
+                        rs.getTimestamp(8).toLocalDateTime()),
+                args);
+    }
+}
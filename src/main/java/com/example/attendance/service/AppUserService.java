@@ -4,6 +4,7 @@ import com.example.attendance.entities.AppUser;
 import com.example.attendance.enums.UserRole;
 import com.example.attendance.repository.AppUserRepository;
 import jakarta.annotation.PostConstruct;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,6 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Service
+@Observed(name = "attendance.service")
 @RequiredArgsConstructor
 public class AppUserService implements UserDetailsService {
 
@@ -0,0 +1,235 @@
+package com.example.attendance.service;
+
+import com.example.attendance.enums.AttendanceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of attendance marks stored in memory-mapped, preallocated segment files.
+ *
+ * Record layout (fixed size, big endian):
+ *   magic(int) seq(long) markerUserId(long) studentId(long) epochDay(int) status(byte, -1 = none) extra(int) crc32(int)
+ *
+ * Every append is forced to disk before it returns. A torn or zeroed record terminates the scan of a segment,
+ * so a crash in the middle of a write only loses the record that was not acknowledged.
+ * Not thread-safe: callers serialize access (see AttendanceWriteBehindService).
+ */
+public class AttendanceJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceJournal.class);
+
+    static final int MAGIC = 0x41544A31; // "ATJ1"
+    static final int RECORD_SIZE = 4 + 8 + 8 + 8 + 4 + 1 + 4 + 4;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path dir;
+    private final int recordsPerSegment;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastSeq;
+
+    public AttendanceJournal(Path dir, int recordsPerSegment) {
+        this.dir = dir;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Open existing segments and position the writer after the last valid record.
+     *
+     * @param minSeq sequence numbers already known to be applied elsewhere; new records always get a larger seq
+     */
+    public void open(long minSeq) {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                                && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            lastSeq = minSeq;
+            for (Path file : files) {
+                Segment seg = Segment.map(file, segmentBytes());
+                seg.scan();
+                segments.add(seg);
+                if (seg.lastSeq > lastSeq) lastSeq = seg.lastSeq;
+            }
+            log.info("Attendance journal opened: dir={}, segments={}, lastSeq={}", dir, segments.size(), lastSeq);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open attendance journal at " + dir, ex);
+        }
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Assign sequence numbers, write and fsync the marks. Returns the marks with their seq filled in.
+     */
+    public List<AttendanceMark> append(List<AttendanceMark> marks) {
+        List<AttendanceMark> written = new ArrayList<>(marks.size());
+        Segment seg = activeSegment();
+        int flushFrom = seg.position;
+        for (AttendanceMark mark : marks) {
+            if (seg.isFull()) {
+                seg.force(flushFrom, seg.position - flushFrom);
+                seg = rollSegment();
+                flushFrom = seg.position;
+            }
+            AttendanceMark withSeq = mark.withSeq(++lastSeq);
+            seg.write(withSeq);
+            written.add(withSeq);
+        }
+        seg.force(flushFrom, seg.position - flushFrom);
+        return written;
+    }
+
+    /**
+     * All valid records with seq greater than afterSeq, in journal order.
+     */
+    public List<AttendanceMark> readAfter(long afterSeq) {
+        List<AttendanceMark> out = new ArrayList<>();
+        for (Segment seg : segments) {
+            if (seg.lastSeq <= afterSeq) continue;
+            seg.readInto(out, afterSeq);
+        }
+        return out;
+    }
+
+    /**
+     * Delete segments whose records are all applied (seq <= upToSeq). The active segment is kept.
+     */
+    public void release(long upToSeq) {
+        while (segments.size() > 1 && segments.get(0).lastSeq <= upToSeq) {
+            Segment seg = segments.remove(0);
+            try {
+                Files.deleteIfExists(seg.file);
+                log.debug("Released journal segment {}", seg.file.getFileName());
+            } catch (IOException ex) {
+                log.warn("Failed to delete journal segment {}: {}", seg.file, ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Segment seg : segments) {
+            seg.force(0, seg.position);
+        }
+        segments.clear();
+    }
+
+    /* ---------- helpers ---------- */
+
+    private long segmentBytes() {
+        return (long) recordsPerSegment * RECORD_SIZE;
+    }
+
+    private Segment activeSegment() {
+        if (segments.isEmpty()) return rollSegment();
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment rollSegment() {
+        Path file = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, lastSeq + 1, SEGMENT_SUFFIX));
+        try {
+            Segment seg = Segment.map(file, segmentBytes());
+            segments.add(seg);
+            return seg;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to create journal segment " + file, ex);
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long lastSeq;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path file, long size) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // mapping outlives the channel; preallocates the file to the full segment size
+                return new Segment(file, ch.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        boolean isFull() {
+            return position + RECORD_SIZE > buffer.capacity();
+        }
+
+        void scan() {
+            position = 0;
+            while (!isFull() && isValid(position)) {
+                lastSeq = buffer.getLong(position + 4);
+                position += RECORD_SIZE;
+            }
+        }
+
+        void write(AttendanceMark mark) {
+            int p = position;
+            buffer.putInt(p, MAGIC);
+            buffer.putLong(p + 4, mark.seq());
+            buffer.putLong(p + 12, mark.markerUserId() == null ? 0L : mark.markerUserId());
+            buffer.putLong(p + 20, mark.studentId());
+            buffer.putInt(p + 28, (int) mark.lessonDate().toEpochDay());
+            buffer.put(p + 32, mark.status() == null ? (byte) -1 : (byte) mark.status().ordinal());
+            buffer.putInt(p + 33, mark.extraLessons());
+            buffer.putInt(p + CRC_OFFSET, crc(p));
+            position += RECORD_SIZE;
+            lastSeq = mark.seq();
+        }
+
+        void readInto(List<AttendanceMark> out, long afterSeq) {
+            for (int p = 0; p < position; p += RECORD_SIZE) {
+                long seq = buffer.getLong(p + 4);
+                if (seq <= afterSeq) continue;
+                long marker = buffer.getLong(p + 12);
+                byte status = buffer.get(p + 32);
+                out.add(new AttendanceMark(seq,
+                        marker == 0L ? null : marker,
+                        buffer.getLong(p + 20),
+                        LocalDate.ofEpochDay(buffer.getInt(p + 28)),
+                        status < 0 ? null : AttendanceStatus.values()[status],
+                        buffer.getInt(p + 33)));
+            }
+        }
+
+        void force(int from, int length) {
+            if (length > 0) buffer.force(from, length);
+        }
+
+        private boolean isValid(int p) {
+            return buffer.getInt(p) == MAGIC && buffer.getInt(p + CRC_OFFSET) == crc(p);
+        }
+
+        private int crc(int p) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(p, CRC_OFFSET));
+            return (int) crc.getValue();
+        }
+    }
+}
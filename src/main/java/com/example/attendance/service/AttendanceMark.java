@@ -0,0 +1,34 @@
+package com.example.attendance.service;
+
+import com.example.attendance.enums.AttendanceStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Single attendance mark as written to the local journal.
+ * status may be null when only extra lessons were changed for the student.
+ */
+public record AttendanceMark(long seq,
+                             Long markerUserId,
+                             Long studentId,
+                             LocalDate lessonDate,
+                             AttendanceStatus status,
+                             int extraLessons) {
+
+    public AttendanceMark withSeq(long newSeq) {
+        return new AttendanceMark(newSeq, markerUserId, studentId, lessonDate, status, extraLessons);
+    }
+
+    /**
+     * Coalesce a newer mark for the same (student, date) into this one:
+     * the latest status wins, extra lessons add up, the highest seq is kept.
+     */
+    public AttendanceMark mergeNewer(AttendanceMark newer) {
+        return new AttendanceMark(Math.max(seq, newer.seq),
+                newer.markerUserId != null ? newer.markerUserId : markerUserId,
+                studentId,
+                lessonDate,
+                newer.status != null ? newer.status : status,
+                extraLessons + newer.extraLessons);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.attendance.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of the attendance table (PostgreSQL, migration V4) in shape.
+ *
+ * - Partitions from attendance.minDate up to attendance.partitions.monthsAhead months ahead always exist,
+ *   so a mark for any allowed date has a partition to go to; checked on startup and daily. Months already moved
+ *   to the cold archive (attendance.archive.*) are not recreated. Any other date lands in the DEFAULT partition
+ *   (migration V10); creating its month later moves those rows over.
+ * - With attendance.partitions.retainMonths > 0, months older than that are detached (CONCURRENTLY, no lock on
+ *   live reads and writes) and moved to the attendance.partitions.archiveSchema schema. This also keeps the
+ *   number of attached partitions bounded, so lookups by id alone (JPA updates) probe a fixed number of indexes.
+ *   Detached months are not recreated: the daily check starts at the oldest month still attached.
+ * Does nothing when attendance is not a partitioned table (H2, migrations not applied).
+ */
+@Service
+@RequiredArgsConstructor
+public class AttendancePartitionService {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("attendance_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final Logger log = LoggerFactory.getLogger(AttendancePartitionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterJobService clusterJobService;
+
+    @Value("${attendance.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attendance.partitions.monthsAhead:3}")
+    private int monthsAhead;
+
+    @Value("${attendance.partitions.retainMonths:0}")
+    private int retainMonths;
+
+    @Value("${attendance.partitions.archiveSchema:attendance_archive}")
+    private String archiveSchema;
+
+    @Value("${attendance.archive.enabled:false}")
+    private boolean coldArchiveEnabled;
+
+    @Value("${attendance.archive.afterMonths:12}")
+    private int coldArchiveAfterMonths;
+
+    @Value("${attendance.minDate:2025-12-01}")
+    private String minDateStr;
+
+    private volatile Boolean partitioned;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${attendance.partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!enabled || !isPartitioned()) return;
+        // startup of every node and the daily trigger: once per hour is plenty
+        clusterJobService.runExclusive("partitions", Duration.ofHours(1), run -> maintainPartitions());
+    }
+
+    private void maintainPartitions() {
+        YearMonth current = YearMonth.now();
+        LocalDate from = LocalDate.parse(minDateStr);
+        if (coldArchiveEnabled) {
+            // months older than that live in ColdArchiveService files: do not recreate their partitions
+            LocalDate archived = current.minusMonths(coldArchiveAfterMonths).atDay(1);
+            if (archived.isAfter(from)) from = archived;
+        }
+        if (retainMonths > 0) {
+            // months before the oldest attached one were detached into the archive schema
+            List<YearMonth> attached = attachedMonths();
+            if (!attached.isEmpty() && attached.get(0).atDay(1).isAfter(from)) from = attached.get(0).atDay(1);
+        }
+        ensureMonths(from, current.plusMonths(monthsAhead).atDay(1));
+        if (retainMonths > 0) detachBefore(current.minusMonths(retainMonths));
+    }
+
+    /**
+     * Make sure partitions exist for every month in [from, to] (bulk loads of older history call this first).
+     */
+    public void ensureMonths(LocalDate from, LocalDate to) {
+        if (!isPartitioned() || from == null || to == null || to.isBefore(from)) return;
+        for (YearMonth m = YearMonth.from(from); !m.isAfter(YearMonth.from(to)); m = m.plusMonths(1)) {
+            try {
+                jdbcTemplate.queryForObject("select attendance_ensure_partition(?)", String.class, m.atDay(1));
+            } catch (DataAccessException ex) {
+                // another node created it at the same moment, or a row for the month arrived in the default
+                // partition while its rows were moved out (retried by the next run)
+                log.warn("Partition for {} not created: {}", m, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Attached month partitions, oldest first.
+     */
+    public List<YearMonth> attachedMonths() {
+        if (!isPartitioned()) return List.of();
+        List<YearMonth> out = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(
+                "select c.relname from pg_inherits i " +
+                        "join pg_class c on c.oid = i.inhrelid " +
+                        "join pg_class p on p.oid = i.inhparent " +
+                        "where p.oid = to_regclass('attendance') order by c.relname", String.class)) {
+            Matcher m = PARTITION_NAME.matcher(name);
+            if (m.matches()) out.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+        }
+        return out;
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void detachBefore(YearMonth firstKept) {
+        for (YearMonth month : attachedMonths()) {
+            if (!month.isBefore(firstKept)) break;
+            String name = "attendance_" + month.format(NAME_FORMAT);
+            try {
+                // CONCURRENTLY cannot run inside a transaction: JdbcTemplate outside @Transactional autocommits
+                jdbcTemplate.execute("alter table attendance detach partition " + name + " concurrently");
+                jdbcTemplate.execute("create schema if not exists " + archiveSchema);
+                jdbcTemplate.execute("alter table " + name + " set schema " + archiveSchema);
+                log.info("Detached attendance partition {} into schema {}", name, archiveSchema);
+            } catch (DataAccessException ex) {
+                log.warn("Failed to detach attendance partition {}: {}", name, ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean known = partitioned;
+        if (known == null) {
+            try {
+                known = "p".equals(jdbcTemplate.queryForObject(
+                        "select relkind::text from pg_class where oid = to_regclass('attendance')", String.class));
+            } catch (DataAccessException ex) {
+                known = false; // not PostgreSQL
+            }
+            partitioned = known;
+        }
+        return known;
+    }
+}
@@ -3,12 +3,17 @@ package com.example.attendance.service;
 import com.example.attendance.entities.Attendance;
 import com.example.attendance.entities.Student;
 import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.enums.DomainEventType;
 import com.example.attendance.repository.AttendanceRepository;
+import io.micrometer.observation.annotation.Observed;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -21,6 +26,7 @@ import java.util.*;
  * - When attendance status changes, remainingLessons is adjusted accordingly (restored or consumed).
  */
 @Service
+@Observed(name = "attendance.service")
 @RequiredArgsConstructor
 public class AttendanceService {
 
@@ -28,6 +34,9 @@ public class AttendanceService {
 
     private final AttendanceRepository attendanceRepository;
     private final StudentService studentService;
+    private final MeterRegistry meterRegistry;
+    private final DataVersionService dataVersionService;
+    private final OutboxService outboxService;
 
     /**
      * Legacy convenience: save attendances for "today".
@@ -54,11 +63,60 @@ public class AttendanceService {
      */
     @Transactional
     public void saveAttendancesForDate(Long markerUserId, LocalDate date, Map<Long, AttendanceStatus> studentStatusMap) {
+        saveAttendancesForDate(markerUserId, date, studentStatusMap, Collections.emptyMap());
+    }
+
+    /**
+     * Same as {@link #saveAttendancesForDate(Long, LocalDate, Map)} plus "extra lessons" from the dashboard:
+     * extraLessonsMap (studentId -> delta) consumes (positive) or restores (negative) lessons on top of the status.
+     *
+     * Students and existing attendance rows for the date are loaded once up front and written back with saveAll,
+     * so the number of statements does not grow with a per-student lookup.
+     */
+    @Transactional
+    public void saveAttendancesForDate(Long markerUserId,
+                                       LocalDate date,
+                                       Map<Long, AttendanceStatus> studentStatusMap,
+                                       Map<Long, Integer> extraLessonsMap) {
         if (date == null) return;
         LocalDateTime now = LocalDateTime.now();
 
-        // Normalize input map
+        // Normalize input maps
         Map<Long, AttendanceStatus> inputMap = studentStatusMap == null ? Collections.emptyMap() : new HashMap<>(studentStatusMap);
+        Map<Long, Integer> extras = extraLessonsMap == null ? Collections.emptyMap() : extraLessonsMap;
+
+        // Teacher's students (for EXCUSED fill) plus any explicitly referenced students, loaded in bulk
+        List<Student> teacherStudents = studentService.findByTeacherId(markerUserId);
+        if (teacherStudents == null) teacherStudents = Collections.emptyList();
+
+        Map<Long, Student> studentsById = new HashMap<>();
+        for (Student st : teacherStudents) studentsById.put(st.getId(), st);
+
+        Set<Long> referenced = new HashSet<>(inputMap.keySet());
+        referenced.addAll(extras.keySet());
+        referenced.remove(null);
+        Set<Long> missing = new HashSet<>(referenced);
+        missing.removeAll(studentsById.keySet());
+        if (!missing.isEmpty()) {
+            for (Student st : studentService.findAllById(missing)) studentsById.put(st.getId(), st);
+        }
+
+        Set<Long> allIds = new HashSet<>(studentsById.keySet());
+        Map<Long, Attendance> existingByStudent = new HashMap<>();
+        if (!allIds.isEmpty()) {
+            for (Attendance a : attendanceRepository.findByLessonDateAndStudentIdIn(date, allIds)) {
+                existingByStudent.put(a.getStudentId(), a);
+            }
+        }
+
+        List<Attendance> toSave = new ArrayList<>();
+        Map<Long, Student> dirtyStudents = new LinkedHashMap<>();
+        int consumed = 0;
+        int restored = 0;
+        Map<Long, AttendanceStatus> marked = new LinkedHashMap<>();
+        Map<Long, AttendanceStatus> previousStatus = new HashMap<>();
+        Map<Long, Integer> remainingBefore = new HashMap<>();
+        for (Student st : studentsById.values()) remainingBefore.put(st.getId(), st.getRemainingLessons());
 
         // First, process all explicitly provided statuses
         for (Map.Entry<Long, AttendanceStatus> entry : inputMap.entrySet()) {
@@ -66,14 +124,13 @@ public class AttendanceService {
             AttendanceStatus newStatus = entry.getValue();
             if (studentId == null || newStatus == null) continue;
 
-            Optional<Student> sOpt = studentService.findById(studentId);
-            if (sOpt.isEmpty()) {
+            Student student = studentsById.get(studentId);
+            if (student == null) {
                 log.warn("saveAttendancesForDate: student not found id={}", studentId);
                 continue;
             }
-            Student student = sOpt.get();
 
-            Attendance existing = attendanceRepository.findByStudentIdAndLessonDate(studentId, date).orElse(null);
+            Attendance existing = existingByStudent.get(studentId);
 
             if (existing == null) {
                 // create new attendance with newStatus
@@ -83,55 +140,87 @@ public class AttendanceService {
                         .status(newStatus)
                         .markedByUserId(markerUserId)
                         .markedAt(now)
+                        .revision(1L)
                         .build();
                 if (consumesLesson(newStatus)) {
                     created.setCheckinTime(now);
                 } else {
                     created.setCheckinTime(null);
                 }
-                attendanceRepository.save(created);
+                toSave.add(created);
+                existingByStudent.put(studentId, created);
+                marked.put(studentId, newStatus);
 
                 // apply consumption if status consumes
-                if (consumesLesson(newStatus)) {
-                    decrementRemainingIfTracked(student);
+                if (remainingDelta(null, newStatus) < 0 && decrementRemainingIfTracked(student)) {
+                    dirtyStudents.put(studentId, student);
+                    consumed++;
                 }
             } else {
                 // update existing attendance: adjust student's remainingLessons when needed
                 AttendanceStatus prevStatus = existing.getStatus();
-                boolean prevConsumes = consumesLesson(prevStatus);
                 boolean newConsumes = consumesLesson(newStatus);
+                int delta = remainingDelta(prevStatus, newStatus);
+
+                if (prevStatus != newStatus) {
+                    marked.put(studentId, newStatus);
+                    previousStatus.put(studentId, prevStatus);
+                }
 
                 // update fields
                 existing.setStatus(newStatus);
                 existing.setMarkedByUserId(markerUserId);
                 existing.setMarkedAt(now);
                 existing.setCheckinTime(newConsumes ? now : null);
-                attendanceRepository.save(existing);
+                existing.setRevision(revisionOf(existing) + 1);
+                toSave.add(existing);
 
                 // adjust remainingLessons based on transition
-                if (!prevConsumes && newConsumes) {
+                if (delta < 0) {
                     // now consuming, decrement
-                    decrementRemainingIfTracked(student);
-                } else if (prevConsumes && !newConsumes) {
+                    if (decrementRemainingIfTracked(student)) {
+                        dirtyStudents.put(studentId, student);
+                        consumed++;
+                    }
+                } else if (delta > 0) {
                     // previously consumed, now non-consuming => restore 1 lesson
-                    incrementRemainingIfTracked(student);
+                    if (incrementRemainingIfTracked(student)) {
+                        dirtyStudents.put(studentId, student);
+                        restored++;
+                    }
                 } else {
                     // no change in consumption semantics -> do nothing
                 }
             }
         }
 
-        // Next, ensure students of this teacher that were NOT explicitly marked are created as EXCUSED (if no attendance exists)
-        // Find teacher's students
-        List<Student> teacherStudents = studentService.findByTeacherId(markerUserId);
-        if (teacherStudents == null) teacherStudents = Collections.emptyList();
+        // Extra lessons: positive delta consumes additional lessons, negative restores them
+        for (Map.Entry<Long, Integer> entry : extras.entrySet()) {
+            Long studentId = entry.getKey();
+            Integer delta = entry.getValue();
+            if (studentId == null || delta == null || delta == 0) continue;
+            Student student = studentsById.get(studentId);
+            if (student == null) {
+                log.warn("saveAttendancesForDate: student not found for extra lessons id={}", studentId);
+                continue;
+            }
+            int changed = 0;
+            for (int i = 0; i < Math.abs(delta); i++) {
+                if (delta > 0 ? decrementRemainingIfTracked(student) : incrementRemainingIfTracked(student)) changed++;
+            }
+            if (changed > 0) {
+                dirtyStudents.put(studentId, student);
+                if (delta > 0) consumed += changed; else restored += changed;
+            }
+        }
 
+        int excusedCreated = 0;
+        // Next, ensure students of this teacher that were NOT explicitly marked are created as EXCUSED (if no attendance exists)
         for (Student st : teacherStudents) {
             Long sid = st.getId();
             if (inputMap.containsKey(sid)) continue; // was explicitly handled
             // if attendance exists already, skip (we don't overwrite)
-            boolean exists = attendanceRepository.findByStudentIdAndLessonDate(sid, date).isPresent();
-            if (exists) continue;
+            if (existingByStudent.containsKey(sid)) continue;
             // create EXCUSED attendance, non-consuming
             Attendance exc = Attendance.builder()
                     .studentId(sid)
@@ -140,10 +229,45 @@ public class AttendanceService {
                     .markedByUserId(markerUserId)
                     .markedAt(now)
                     .checkinTime(null)
+                    .revision(0L)
                     .build();
-            attendanceRepository.save(exc);
+            toSave.add(exc);
+            excusedCreated++;
             // do NOT decrement remainingLessons for EXCUSED
         }
+        // counted once the changes are committed
+        countAfterCommit("attendance.excused.autocreated", excusedCreated);
+        countAfterCommit("attendance.lessons.consumed", consumed);
+        countAfterCommit("attendance.lessons.restored", restored);
+
+        if (!toSave.isEmpty()) attendanceRepository.saveAll(toSave);
+        if (!dirtyStudents.isEmpty()) studentService.updateStudents(dirtyStudents.values()); // bumps those teachers
+
+        // ETag versions of the (teacher, date) views touched by the new attendance rows
+        Set<Long> touchedTeachers = new HashSet<>();
+        for (Attendance a : toSave) {
+            Student st = studentsById.get(a.getStudentId());
+            if (st != null && st.getTeacherId() != null) touchedTeachers.add(st.getTeacherId());
+        }
+        for (Long teacherId : touchedTeachers) dataVersionService.bumpTeacherDate(teacherId, date);
+
+        // domain events, written with this transaction
+        for (Map.Entry<Long, AttendanceStatus> e : marked.entrySet()) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("date", date.toString());
+            payload.put("status", e.getValue().name());
+            AttendanceStatus prev = previousStatus.get(e.getKey());
+            if (prev != null) payload.put("previous", prev.name());
+            payload.put("markedBy", markerUserId);
+            outboxService.record(DomainEventType.ATTENDANCE_MARKED, e.getKey(), studentsById.get(e.getKey()).getTeacherId(), payload);
+        }
+        for (Student st : dirtyStudents.values()) {
+            Integer before = remainingBefore.get(st.getId());
+            Integer after = st.getRemainingLessons();
+            if (before == null || after == null || before.equals(after)) continue;
+            outboxService.record(DomainEventType.LESSON_CONSUMED, st.getId(), st.getTeacherId(),
+                    Map.of("lessons", before - after, "remaining", after, "date", date.toString()));
+        }
     }
 
     /**
@@ -159,33 +283,77 @@ public class AttendanceService {
         return attendanceRepository.findByStudentIdAndLessonDate(studentId, date);
     }
 
+    /**
+     * Attendance of many students on one date in one query (studentId -> attendance, absent when not marked).
+     */
+    public Map<Long, Attendance> findByDateForStudents(LocalDate date, Collection<Long> studentIds) {
+        if (date == null || studentIds == null || studentIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, Attendance> out = new HashMap<>();
+        for (Attendance a : attendanceRepository.findByLessonDateAndStudentIdIn(date, studentIds)) out.put(a.getStudentId(), a);
+        return out;
+    }
+
     /* ---------- helpers ---------- */
 
     private boolean consumesLesson(AttendanceStatus status) {
-        if (status == null) return false;
-        return switch (status) {
-            case PRESENT, LATE, ABSENT -> true;
-            default -> false; // EXCUSED and other non-consuming statuses
-        };
+        return status != null && status.consumesLesson();
+    }
+
+    /**
+     * Revision of an attendance row; rows written before revisions existed count as 0.
+     */
+    public static long revisionOf(Attendance attendance) {
+        return attendance == null || attendance.getRevision() == null ? 0L : attendance.getRevision();
     }
 
-    private void decrementRemainingIfTracked(Student student) {
+    /**
+     * Change of remainingLessons caused by an attendance moving from prev to next
+     * (prev == null means the attendance is created): -1 consumes, +1 restores, 0 no change.
+     */
+    public static int remainingDelta(AttendanceStatus prev, AttendanceStatus next) {
+        boolean prevConsumes = prev != null && prev.consumesLesson();
+        boolean nextConsumes = next != null && next.consumesLesson();
+        if (!prevConsumes && nextConsumes) return -1;
+        if (prevConsumes && !nextConsumes) return 1;
+        return 0;
+    }
+
+    /**
+     * @return true if the student's remainingLessons was changed (caller persists it); a student already at 0
+     * has nothing left to consume
+     */
+    private boolean decrementRemainingIfTracked(Student student) {
         Integer remaining = student.getRemainingLessons();
-        if (remaining == null) return; // not tracked -> do nothing
-        if (remaining > 0) {
-            student.setRemainingLessons(Math.max(0, remaining - 1));
-        } else {
-            student.setRemainingLessons(0);
+        if (remaining == null) return false; // not tracked -> do nothing
+        if (remaining <= 0) {
+            if (remaining < 0) {
+                student.setRemainingLessons(0);
+                return true;
+            }
+            return false;
         }
-        student.setUpdatedAt(java.time.Instant.now());
-        studentService.updateStudent(student);
+        student.setRemainingLessons(remaining - 1);
+        return true;
     }
 
-    private void incrementRemainingIfTracked(Student student) {
+    private boolean incrementRemainingIfTracked(Student student) {
         Integer remaining = student.getRemainingLessons();
-        if (remaining == null) return; // not tracked
+        if (remaining == null) return false; // not tracked
         student.setRemainingLessons(remaining + 1);
-        student.setUpdatedAt(java.time.Instant.now());
-        studentService.updateStudent(student);
+        return true;
+    }
+
+    private void countAfterCommit(String counter, int amount) {
+        if (amount <= 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    meterRegistry.counter(counter).increment(amount);
+                }
+            });
+        } else {
+            meterRegistry.counter(counter).increment(amount);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.Attendance;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.AttendanceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Applies attendance batches queued by the offline teacher dashboard (POST /teacher/attendance/sync).
+ *
+ * - Every item carries the revision of the attendance row the teacher saw when marking (baseRevision).
+ * - A status whose row was re-marked since (another device, a manager) is a conflict when it differs from the
+ *   current status: the server state wins and the item is reported back with the current status and revision.
+ *   Auto-filled EXCUSED rows have revision 0, so they never conflict with a real mark.
+ * - extraLessons are deltas and are always applied; the batch itself is deduplicated by (clientId, seq) upstream.
+ * - Writes go through saveAttendancesForDate synchronously (not write-behind), so returned revisions are final.
+ */
+@Service
+@Observed(name = "attendance.service")
+@RequiredArgsConstructor
+public class AttendanceSyncService {
+
+    private final Logger log = LoggerFactory.getLogger(AttendanceSyncService.class);
+
+    private final AttendanceRepository attendanceRepository;
+    private final AttendanceService attendanceService;
+    private final MeterRegistry meterRegistry;
+
+    public record Item(Long studentId, AttendanceStatus status, int extraLessons, Long baseRevision) {
+    }
+
+    /**
+     * Apply one queued batch for a date.
+     *
+     * @return JSON-ready result: seq, date, applied (statuses written), conflicts and the resulting revisions
+     */
+    @Transactional
+    public Map<String, Object> apply(Long teacherId, long seq, LocalDate date, List<Item> items) {
+        Set<Long> ids = new HashSet<>();
+        for (Item item : items) ids.add(item.studentId());
+        Map<Long, Attendance> current = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Attendance a : attendanceRepository.findByLessonDateAndStudentIdIn(date, ids)) current.put(a.getStudentId(), a);
+        }
+
+        Map<Long, AttendanceStatus> statuses = new HashMap<>();
+        Map<Long, Integer> extras = new HashMap<>();
+        List<Map<String, Object>> conflicts = new ArrayList<>();
+        for (Item item : items) {
+            if (item.status() != null) {
+                Attendance existing = current.get(item.studentId());
+                long base = item.baseRevision() == null ? 0L : item.baseRevision();
+                long revision = AttendanceService.revisionOf(existing);
+                if (existing != null && revision != base && existing.getStatus() != item.status()) {
+                    Map<String, Object> c = new HashMap<>();
+                    c.put("studentId", item.studentId());
+                    c.put("requested", item.status().name());
+                    c.put("status", existing.getStatus() == null ? null : existing.getStatus().name());
+                    c.put("revision", revision);
+                    conflicts.add(c);
+                } else {
+                    statuses.put(item.studentId(), item.status());
+                }
+            }
+            if (item.extraLessons() != 0) extras.merge(item.studentId(), item.extraLessons(), Integer::sum);
+        }
+
+        attendanceService.saveAttendancesForDate(teacherId, date, statuses, extras);
+        if (!conflicts.isEmpty()) {
+            meterRegistry.counter("attendance.sync.conflicts").increment(conflicts.size());
+            log.info("Offline sync teacherId={} date={} seq={}: {} conflicting marks kept server state",
+                    teacherId, date, seq, conflicts.size());
+        }
+
+        Map<String, Long> revisions = new HashMap<>();
+        if (!statuses.isEmpty()) {
+            for (Attendance a : attendanceRepository.findByLessonDateAndStudentIdIn(date, statuses.keySet())) {
+                revisions.put(a.getStudentId().toString(), AttendanceService.revisionOf(a));
+            }
+        }
+
+        Map<String, Object> out = new HashMap<>();
+        out.put("seq", seq);
+        out.put("date", date.toString());
+        out.put("applied", statuses.size());
+        out.put("conflicts", conflicts);
+        out.put("revisions", revisions);
+        return out;
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.JournalCheckpoint;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.JournalCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Opt-in write-behind path for attendance saves (attendance.writeBehind.enabled=true).
+ *
+ * - submit(): marks are appended to the fsync'd local journal and coalesced in memory per (student, date);
+ *   the caller is acknowledged as soon as the journal write is durable.
+ * - flush(): runs on a fixed delay, applies all pending marks in one transaction through
+ *   AttendanceService.saveAttendancesForDate (grouped by teacher and date) and advances the DB checkpoint
+ *   in the same transaction. Flushes are serialized (startup replay and shutdown call it too), and the
+ *   checkpoint only moves forward, never past a mark that is still pending.
+ * - A failing batch is retried group by group, then mark by mark, in transactions that are rolled back
+ *   (nothing is applied twice on a crash). Marks failing with a non-transient error (deleted student,
+ *   constraint violation) are parked: logged, counted in attendance.writeBehind.parked and appended to
+ *   parked.log in the journal directory. The rest is applied with the checkpoint as usual. Transient errors
+ *   (database down, lock conflicts) put the whole batch back for the next flush.
+ * - On startup, journal records after the DB checkpoint are replayed; records already applied are skipped,
+ *   so replay is idempotent even though extra lessons are deltas.
+ */
+@Service
+@RequiredArgsConstructor
+public class AttendanceWriteBehindService {
+
+    private static final String CHECKPOINT_NAME = "attendance-journal";
+
+    private final Logger log = LoggerFactory.getLogger(AttendanceWriteBehindService.class);
+
+    private final AttendanceService attendanceService;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final DataVersionService dataVersionService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${attendance.writeBehind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.writeBehind.dir:data/attendance-journal}")
+    private String journalDir;
+
+    @Value("${attendance.writeBehind.segmentRecords:65536}")
+    private int segmentRecords;
+
+    // guards journal appends and the pending map together, so a drained batch never skips an older seq
+    private final Object lock = new Object();
+    private final Map<MarkKey, AttendanceMark> pending = new LinkedHashMap<>();
+    // one flush at a time: a concurrent one could move the checkpoint past marks another one put back
+    private final Object flushLock = new Object();
+    private long checkpointSeq; // guarded by flushLock
+    private AttendanceJournal journal;
+    private Counter parkedCounter;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) return;
+        parkedCounter = meterRegistry.counter("attendance.writeBehind.parked");
+        long checkpoint = checkpointRepository.findById(CHECKPOINT_NAME).map(JournalCheckpoint::getLastSeq).orElse(0L);
+        synchronized (flushLock) {
+            checkpointSeq = checkpoint;
+        }
+        synchronized (lock) {
+            journal = new AttendanceJournal(Path.of(journalDir), segmentRecords);
+            journal.open(checkpoint);
+            List<AttendanceMark> unapplied = journal.readAfter(checkpoint);
+            for (AttendanceMark mark : unapplied) enqueue(mark);
+            if (!unapplied.isEmpty()) {
+                log.info("Replaying {} attendance marks from journal after seq={}", unapplied.size(), checkpoint);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Durably record the marks and return immediately; they are applied by the next flush.
+     *
+     * @return last journal sequence number assigned to this submission
+     */
+    public long submit(Long markerUserId,
+                       LocalDate date,
+                       Map<Long, AttendanceStatus> statuses,
+                       Map<Long, Integer> extraLessons) {
+        if (!enabled) throw new IllegalStateException("write-behind is disabled");
+        Set<Long> studentIds = new LinkedHashSet<>(statuses.keySet());
+        studentIds.addAll(extraLessons.keySet());
+
+        List<AttendanceMark> marks = new ArrayList<>(studentIds.size());
+        for (Long sid : studentIds) {
+            marks.add(new AttendanceMark(0L, markerUserId, sid, date, statuses.get(sid), extraLessons.getOrDefault(sid, 0)));
+        }
+        synchronized (lock) {
+            if (journal == null) throw new IllegalStateException("journal is not open yet");
+            List<AttendanceMark> written = journal.append(marks);
+            for (AttendanceMark mark : written) enqueue(mark);
+            // pending marks are overlaid on reads, so the teacher's view changes right now
+            dataVersionService.bumpTeacherDate(markerUserId, date);
+            return journal.lastSeq();
+        }
+    }
+
+    /**
+     * Statuses not yet flushed to the database, so reads right after a save show what the teacher just marked.
+     */
+    public Map<Long, AttendanceStatus> pendingStatuses(LocalDate date, Collection<Long> studentIds) {
+        if (!enabled || studentIds == null || studentIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, AttendanceStatus> out = new HashMap<>();
+        synchronized (lock) {
+            if (pending.isEmpty()) return Collections.emptyMap();
+            for (Long sid : studentIds) {
+                AttendanceMark mark = pending.get(new MarkKey(sid, date));
+                if (mark != null && mark.status() != null) out.put(sid, mark.status());
+            }
+        }
+        return out;
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.writeBehind.flushIntervalMs:500}")
+    public void flush() {
+        if (!enabled) return;
+        synchronized (flushLock) {
+            flushPending();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) return;
+        synchronized (flushLock) {
+            flushPending();
+            synchronized (lock) {
+                if (journal != null) journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void flushPending() {
+        List<AttendanceMark> batch;
+        long upTo;
+        synchronized (lock) {
+            if (journal == null || pending.isEmpty()) return;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            // marks appended from now on get higher seqs; nothing older than the batch is left behind
+            long maxSeq = batch.stream().mapToLong(AttendanceMark::seq).max().orElse(0L);
+            upTo = Math.max(checkpointSeq, maxSeq);
+        }
+
+        List<AttendanceMark> apply = batch;
+        try {
+            commit(apply, upTo);
+        } catch (RuntimeException ex) {
+            List<AttendanceMark> poison = isTransient(ex) ? null : findPoison(batch);
+            if (poison == null || poison.isEmpty()) {
+                log.error("Write-behind flush of {} marks failed, will retry", batch.size(), ex);
+                requeue(batch);
+                return;
+            }
+            park(poison, ex);
+            apply = new ArrayList<>(batch);
+            apply.removeAll(poison);
+            try {
+                commit(apply, upTo);
+            } catch (RuntimeException retry) {
+                log.error("Write-behind flush of {} marks failed after parking {}, will retry", apply.size(), poison.size(), retry);
+                requeue(apply);
+                return;
+            }
+        }
+
+        checkpointSeq = upTo;
+        synchronized (lock) {
+            journal.release(upTo);
+        }
+        log.debug("Write-behind flushed {} coalesced marks up to seq={}", apply.size(), upTo);
+    }
+
+    private void commit(List<AttendanceMark> marks, long maxSeq) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            applyBatch(marks);
+            checkpointRepository.save(JournalCheckpoint.builder()
+                    .name(CHECKPOINT_NAME)
+                    .lastSeq(maxSeq)
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+        });
+    }
+
+    /**
+     * Marks that fail on their own with a non-transient error; null when a transient error makes the probe
+     * meaningless. Every probe runs in a transaction that is rolled back.
+     */
+    private List<AttendanceMark> findPoison(List<AttendanceMark> batch) {
+        List<AttendanceMark> poison = new ArrayList<>();
+        for (List<AttendanceMark> group : groups(batch).values()) {
+            RuntimeException groupError = probe(group);
+            if (groupError == null) continue;
+            if (isTransient(groupError)) return null;
+            for (AttendanceMark mark : group) {
+                RuntimeException markError = probe(List.of(mark));
+                if (markError == null) continue;
+                if (isTransient(markError)) return null;
+                poison.add(mark);
+            }
+        }
+        return poison;
+    }
+
+    private RuntimeException probe(List<AttendanceMark> marks) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                applyBatch(marks);
+            });
+            return null;
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+    }
+
+    private static boolean isTransient(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void park(List<AttendanceMark> marks, RuntimeException cause) {
+        log.error("Parking {} write-behind marks that cannot be applied: {}", marks.size(), marks, cause);
+        parkedCounter.increment(marks.size());
+        StringBuilder lines = new StringBuilder();
+        for (AttendanceMark m : marks) {
+            // pending marks were overlaid on reads: the view goes back to what the database holds
+            dataVersionService.bumpTeacherDate(m.markerUserId(), m.lessonDate());
+            lines.append(m.seq()).append(',').append(m.markerUserId()).append(',').append(m.studentId()).append(',')
+                    .append(m.lessonDate()).append(',').append(m.status()).append(',').append(m.extraLessons()).append('\n');
+        }
+        try {
+            Files.writeString(Path.of(journalDir).resolve("parked.log"), lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            log.error("Failed to write parked marks to {}", journalDir, ex); // still in the log above
+        }
+    }
+
+    private void requeue(List<AttendanceMark> batch) {
+        synchronized (lock) {
+            // put the batch back under anything that arrived meanwhile (newer marks win)
+            for (AttendanceMark older : batch) {
+                pending.merge(new MarkKey(older.studentId(), older.lessonDate()), older, (current, o) -> o.mergeNewer(current));
+            }
+        }
+    }
+
+    private void enqueue(AttendanceMark mark) {
+        pending.merge(new MarkKey(mark.studentId(), mark.lessonDate()), mark, AttendanceMark::mergeNewer);
+    }
+
+    private void applyBatch(List<AttendanceMark> batch) {
+        // one saveAttendancesForDate per (teacher, date) keeps EXCUSED fill semantics of the synchronous path
+        for (Map.Entry<GroupKey, List<AttendanceMark>> e : groups(batch).entrySet()) {
+            Map<Long, AttendanceStatus> statuses = new HashMap<>();
+            Map<Long, Integer> extras = new HashMap<>();
+            for (AttendanceMark mark : e.getValue()) {
+                if (mark.status() != null) statuses.put(mark.studentId(), mark.status());
+                if (mark.extraLessons() != 0) extras.put(mark.studentId(), mark.extraLessons());
+            }
+            attendanceService.saveAttendancesForDate(e.getKey().markerUserId(), e.getKey().date(), statuses, extras);
+        }
+    }
+
+    private static Map<GroupKey, List<AttendanceMark>> groups(List<AttendanceMark> batch) {
+        Map<GroupKey, List<AttendanceMark>> groups = new LinkedHashMap<>();
+        for (AttendanceMark mark : batch) {
+            groups.computeIfAbsent(new GroupKey(mark.markerUserId(), mark.lessonDate()), k -> new ArrayList<>()).add(mark);
+        }
+        return groups;
+    }
+
+    private record MarkKey(Long studentId, LocalDate date) {
+    }
+
+    private record GroupKey(Long markerUserId, LocalDate date) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.attendance.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs scheduled jobs once per cluster, using leases in the job_lease table (works on PostgreSQL and H2).
+ *
+ * - Leader: one node holds the "leader" lease and runs the exclusive jobs (partitions, archive, cleanups);
+ *   when it stops renewing, another node takes the lease over within leaseTtl.
+ * - Every run takes the lease of its job (or job shard) too, so two nodes never run it at the same time even
+ *   while leadership changes hands, and a run that started less than minInterval ago is not repeated
+ *   (cron triggers of all nodes fire at the same moment).
+ * - Sharded jobs spread over all nodes: shard k of a job has its own lease, work is split by key % shards.
+ * - A heartbeat thread (independent of the single scheduler thread) renews the leader lease and the leases of
+ *   running jobs; a run whose lease was lost sees JobRun.lost() and should stop at the next chunk.
+ * - Leases use the clocks of the nodes: they must be NTP-synced, leaseTtl dwarfs any remaining skew.
+ * Metrics: attendance.jobs.duration{job,outcome}, attendance.jobs.skipped{job}, attendance.jobs.progress{job},
+ * attendance.jobs.leader.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterJobService {
+
+    public static final String LEADER = "leader";
+
+    private final Logger log = LoggerFactory.getLogger(ClusterJobService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${attendance.jobs.leaseTtl:PT60S}")
+    private Duration leaseTtl;
+
+    @Value("${attendance.jobs.heartbeatMs:15000}")
+    private long heartbeatMs;
+
+    private final String node = hostName() + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffL);
+    private final Map<String, JobRun> running = new ConcurrentHashMap<>();
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private volatile boolean leader;
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * Handle of one run: progress reporting and lease loss.
+     */
+    public final class JobRun {
+
+        private final String job;
+        private volatile boolean lost;
+
+        private JobRun(String job) {
+            this.job = job;
+        }
+
+        public boolean lost() {
+            return lost;
+        }
+
+        public void progress(long done, long total) {
+            Progress p = ClusterJobService.this.progress(job);
+            p.done.set(done);
+            p.total.set(total);
+        }
+    }
+
+    /**
+     * Sharded work: process the keys with key % shards == shard.
+     */
+    @FunctionalInterface
+    public interface ShardWork {
+        void run(int shard, int shards, JobRun run);
+    }
+
+    private record Progress(AtomicLong done, AtomicLong total) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (heartbeat != null) return;
+        meterRegistry.gauge("attendance.jobs.leader", this, s -> s.leader ? 1 : 0);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+        log.info("Cluster jobs: node {}", node);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (heartbeat != null) heartbeat.shutdownNow();
+        if (leader) release(LEADER, null);
+        leader = false;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public String node() {
+        return node;
+    }
+
+    /**
+     * Run on the leader only, at most once per minInterval cluster-wide. Returns false when skipped.
+     */
+    public boolean runExclusive(String job, Duration minInterval, Consumer<JobRun> work) {
+        if (!leader && !tryLead()) {
+            skipped(job);
+            return false;
+        }
+        return runLeased(job, job, minInterval, work);
+    }
+
+    /**
+     * Run on whichever node asks first (startup tasks of a node that may not be the leader), never on two
+     * nodes at once and at most once per minInterval. Returns false when skipped.
+     */
+    public boolean runSingle(String job, Duration minInterval, Consumer<JobRun> work) {
+        return runLeased(job, job, minInterval, work);
+    }
+
+    /**
+     * Run every shard whose lease this node gets, starting at a random shard so that nodes triggered together
+     * take different shards first. Returns the number of shards run here.
+     */
+    public int runSharded(String job, int shards, Duration minInterval, ShardWork work) {
+        int ran = 0;
+        int first = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = (first + i) % shards;
+            if (runLeased(job, job + "#" + shard, minInterval, run -> work.run(shard, shards, run))) ran++;
+        }
+        return ran;
+    }
+
+    /* ---------- helpers ---------- */
+
+    private boolean runLeased(String job, String lease, Duration minInterval, Consumer<JobRun> work) {
+        if (!acquire(lease, minInterval)) {
+            skipped(job);
+            return false;
+        }
+        JobRun run = new JobRun(job);
+        running.put(lease, run);
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            work.accept(run);
+            if (run.lost) outcome = "lost";
+        } catch (RuntimeException ex) {
+            outcome = "failure";
+            throw ex;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            running.remove(lease);
+            Timer.builder("attendance.jobs.duration").tag("job", job).tag("outcome", outcome)
+                    .register(meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+            if (!run.lost) release(lease, Duration.ofNanos(nanos));
+            log.debug("Job {} finished on {} ({}, {} ms)", lease, node, outcome, nanos / 1_000_000);
+        }
+        return true;
+    }
+
+    private void beat() {
+        try {
+            if (leader) {
+                if (!renew(LEADER)) {
+                    leader = false;
+                    log.warn("Node {} lost the leader lease", node);
+                }
+            } else {
+                tryLead();
+            }
+            running.forEach((lease, run) -> {
+                if (!renew(lease)) {
+                    run.lost = true;
+                    log.warn("Node {} lost the lease of running job {}", node, lease);
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Job heartbeat failed: {}", ex.getMessage());
+        }
+    }
+
+    private synchronized boolean tryLead() {
+        if (leader) return true;
+        if (acquire(LEADER, Duration.ZERO)) {
+            leader = true;
+            log.info("Node {} is the job leader", node);
+        }
+        return leader;
+    }
+
+    /**
+     * Take the lease when it is free, expired or already ours, and the last run started before now - minInterval.
+     */
+    private boolean acquire(String lease, Duration minInterval) {
+        Instant now = Instant.now();
+        Timestamp nowTs = Timestamp.from(now);
+        Timestamp expires = Timestamp.from(now.plus(leaseTtl));
+        Timestamp notAfter = Timestamp.from(now.minus(minInterval));
+        Integer updated = tx().execute(s -> jdbcTemplate.update(
+                "update job_lease set owner = ?, expires_at = ?, started_at = ? where name = ? " +
+                        "and (owner is null or owner = ? or expires_at < ?) " +
+                        "and (started_at is null or started_at <= ?)",
+                node, expires, nowTs, lease, node, nowTs, notAfter));
+        if (updated != null && updated == 1) return true;
+        try {
+            tx().executeWithoutResult(s -> jdbcTemplate.update(
+                    "insert into job_lease (name, owner, expires_at, started_at) values (?, ?, ?, ?)",
+                    lease, node, expires, nowTs));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            return false; // the row exists: held by another node or run recently
+        }
+    }
+
+    private boolean renew(String lease) {
+        Timestamp expires = Timestamp.from(Instant.now().plus(leaseTtl));
+        Integer updated = tx().execute(s -> jdbcTemplate.update(
+                "update job_lease set expires_at = ? where name = ? and owner = ?", expires, lease, node));
+        return updated != null && updated == 1;
+    }
+
+    private void release(String lease, Duration duration) {
+        Timestamp now = Timestamp.from(Instant.now());
+        try {
+            tx().executeWithoutResult(s -> {
+                if (duration == null) {
+                    jdbcTemplate.update("update job_lease set owner = null, expires_at = ? where name = ? and owner = ?",
+                            now, lease, node);
+                } else {
+                    jdbcTemplate.update("update job_lease set owner = null, expires_at = ?, finished_at = ?, duration_ms = ? " +
+                            "where name = ? and owner = ?", now, now, duration.toMillis(), lease, node);
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Failed to release job lease {}: {}", lease, ex.getMessage()); // expires by itself
+        }
+    }
+
+    private TransactionTemplate tx() {
+        // lease changes commit on their own, whatever the caller's transaction does
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+
+    private void skipped(String job) {
+        meterRegistry.counter("attendance.jobs.skipped", "job", job).increment();
+    }
+
+    private Progress progress(String job) {
+        return progress.computeIfAbsent(job, j -> {
+            Progress p = new Progress(new AtomicLong(), new AtomicLong());
+            meterRegistry.gauge("attendance.jobs.progress", Tags.of("job", j), p,
+                    x -> x.total.get() == 0 ? 0 : (double) x.done.get() / x.total.get());
+            return p;
+        });
+    }
+
+    private static String hostName() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isBlank()) host = System.getenv("COMPUTERNAME");
+        return host == null || host.isBlank() ? "node" : host;
+    }
+}
@@ -0,0 +1,522 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.Payment;
+import com.example.attendance.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Cold archive of closed months: attendance and payments older than attendance.archive.afterMonths are moved from
+ * the database into ColumnarFile files under attendance.archive.dir (one file per table and month) and deleted.
+ *
+ * - Attendance: sorted by (student, date); dates and ids delta-encoded, status dictionary-encoded (~5 bytes/row).
+ *   On PostgreSQL the month partition (attached, or detached into the partition archive schema) is dropped.
+ * - Payments: sorted by (student, paid_at); amounts in cents. Ledger entries stay, so debts do not change.
+ * - A month is read and deleted in one transaction that holds a SHARE lock on the partition. Its file is written
+ *   under a staging name (*.acol.staging) and only moved over the published file after the commit, so readers
+ *   never see a file whose rows are still live (or, after a rollback, never deleted). A staging file left by a
+ *   crash between commit and move is published by the next archive run: it always holds the month's complete rows.
+ *   Rows that still reach an archived month later are merged into its file on the next run (database row wins).
+ *   On PostgreSQL the month has no partition any more, so they land in the DEFAULT partition (migration V10); the
+ *   run picks up every month found there, and locks it while archiving a month without its own partition.
+ * - Read API: scanAttendance / scanPayments for reports, paymentsForStudent(s) merge archived and live payments
+ *   (the batch variant reads each archived month once for a whole list of students).
+ * - Several nodes: dir must be shared storage; the job runs on one node (ClusterJobService) and the others
+ *   learn about new or rewritten files through the InvalidationBus.
+ */
+@Service
+@RequiredArgsConstructor
+public class ColdArchiveService {
+
+    private static final String[] ATTENDANCE_COLUMNS = {"student_id", "lesson_date", "status", "marked_by_user_id",
+            "marked_at", "checkin_time", "revision"};
+    private static final ColumnarFile.Kind[] ATTENDANCE_KINDS = {ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG,
+            ColumnarFile.Kind.DICT, ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG};
+    private static final String[] PAYMENT_COLUMNS = {"student_id", "paid_at", "id", "amount_cents", "paid_by_user_id", "note"};
+    private static final ColumnarFile.Kind[] PAYMENT_KINDS = {ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG,
+            ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG, ColumnarFile.Kind.DICT};
+
+    private static final Pattern FILE_NAME = Pattern.compile("(attendance|payment)-(\\d{4})-(\\d{2})\\.acol");
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final Pattern PARTITION_NAME = Pattern.compile("attendance_(\\d{4})_(\\d{2})");
+    private static final String ARCHIVE_NOTICE = "archive";
+    private static final String DEFAULT_PARTITION = "attendance_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Comparator<Payment> NEWEST_FIRST =
+            Comparator.comparing(Payment::getPaidAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final Logger log = LoggerFactory.getLogger(ColdArchiveService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PaymentRepository paymentRepository;
+    private final ClusterJobService clusterJobService;
+    private final InvalidationBus invalidationBus;
+
+    @Value("${attendance.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.archive.dir:data/archive}")
+    private String dir;
+
+    @Value("${attendance.archive.afterMonths:12}")
+    private int afterMonths;
+
+    @Value("${attendance.partitions.archiveSchema:attendance_archive}")
+    private String partitionArchiveSchema;
+
+    private final Map<Path, ColumnarFile.Reader> readers = new ConcurrentHashMap<>();
+    private final Set<YearMonth> attendanceMonths = new ConcurrentSkipListSet<>();
+    private final Set<YearMonth> paymentMonths = new ConcurrentSkipListSet<>();
+    private volatile Boolean postgres;
+
+    @PostConstruct
+    void init() {
+        loadIndex();
+        // the archive job runs on one node; the others pick its files up from the shared directory
+        invalidationBus.subscribe(notice -> {
+            if (notice.type().equals(ARCHIVE_NOTICE)) {
+                int colon = notice.id().indexOf(':');
+                String table = notice.id().substring(0, colon);
+                YearMonth month = YearMonth.parse(notice.id().substring(colon + 1));
+                readers.remove(file(table, month)); // rewritten by a merge: map it again
+                (table.equals("attendance") ? attendanceMonths : paymentMonths).add(month);
+            } else if (notice.type().equals(InvalidationBus.RESYNC)) {
+                readers.clear();
+                loadIndex();
+            }
+        });
+    }
+
+    private void loadIndex() {
+        Path root = Path.of(dir);
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(f -> {
+                Matcher m = FILE_NAME.matcher(f.getFileName().toString());
+                if (!m.matches()) return;
+                YearMonth month = YearMonth.of(Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)));
+                (m.group(1).equals("attendance") ? attendanceMonths : paymentMonths).add(month);
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to list archive directory " + root, ex);
+        }
+        log.info("Cold archive: {} attendance months, {} payment months in {}", attendanceMonths.size(), paymentMonths.size(), root);
+    }
+
+    /**
+     * Nightly: archive every closed month older than afterMonths.
+     */
+    @Scheduled(cron = "${attendance.archive.cron:0 45 3 * * *}")
+    public void archiveClosedMonths() {
+        if (!enabled) return;
+        clusterJobService.runExclusive("archive", Duration.ofHours(12), this::archive);
+    }
+
+    private void archive(ClusterJobService.JobRun run) {
+        publishStaged();
+        YearMonth cutoff = YearMonth.now().minusMonths(afterMonths);
+        List<YearMonth> attendance = liveAttendanceMonths().stream().filter(m -> m.isBefore(cutoff)).toList();
+        List<YearMonth> payments = new ArrayList<>();
+        for (YearMonth m = oldestLivePaymentMonth(); m != null && m.isBefore(cutoff); m = m.plusMonths(1)) payments.add(m);
+        int total = attendance.size() + payments.size(), done = 0;
+        for (YearMonth month : attendance) {
+            if (run.lost()) return; // another node took over; it redoes the rest
+            archiveAttendanceMonth(month);
+            run.progress(++done, total);
+        }
+        for (YearMonth month : payments) {
+            if (run.lost()) return;
+            archivePaymentMonth(month);
+            run.progress(++done, total);
+        }
+    }
+
+    /**
+     * Row callback of a column scan over an archived attendance month.
+     */
+    public interface AttendanceRowVisitor {
+        void row(long studentId, long epochDay, String status);
+    }
+
+    /**
+     * Row callback of a column scan over an archived payment month.
+     */
+    public interface PaymentRowVisitor {
+        void row(long studentId, long paidAtEpochSecond, long amountCents);
+    }
+
+    public Set<YearMonth> archivedAttendanceMonths() {
+        return Collections.unmodifiableSet(attendanceMonths);
+    }
+
+    public boolean isAttendanceArchived(YearMonth month) {
+        return attendanceMonths.contains(month);
+    }
+
+    public boolean isPaymentArchived(YearMonth month) {
+        return paymentMonths.contains(month);
+    }
+
+    /**
+     * Move one month of attendance into its archive file. Returns the number of rows in the file.
+     */
+    public int archiveAttendanceMonth(YearMonth month) {
+        Path file = file("attendance", month);
+        Path staging = staging(file);
+        String partition = "attendance_" + month.format(PARTITION_SUFFIX);
+        boolean attached = isPostgres() && exists(partition);
+        boolean detached = isPostgres() && exists(partitionArchiveSchema + "." + partition);
+        // without its own partition the month's live rows are in the default one
+        boolean inDefault = isPostgres() && !attached && exists(DEFAULT_PARTITION);
+        String columns = String.join(", ", ATTENDANCE_COLUMNS);
+
+        Integer rows = staged(staging, () -> new TransactionTemplate(transactionManager).execute(status -> {
+            if (attached) jdbcTemplate.execute("lock table " + partition + " in share mode");
+            if (inDefault) jdbcTemplate.execute("lock table " + DEFAULT_PARTITION + " in share mode");
+            String sql = "select " + columns + " from attendance where lesson_date >= ? and lesson_date < ?";
+            if (detached) sql += " union all select " + columns + " from " + partitionArchiveSchema + "." + partition;
+            sql += " order by student_id, lesson_date";
+            int written = jdbcTemplate.query(sql, (ResultSetExtractor<Integer>) rs -> mergeAttendance(rs, file, staging),
+                    Date.valueOf(month.atDay(1)), Date.valueOf(month.plusMonths(1).atDay(1)));
+
+            if (attached) {
+                jdbcTemplate.execute("drop table " + partition);
+            } else {
+                jdbcTemplate.update("delete from attendance where lesson_date >= ? and lesson_date < ?",
+                        Date.valueOf(month.atDay(1)), Date.valueOf(month.plusMonths(1).atDay(1)));
+            }
+            if (detached) jdbcTemplate.execute("drop table " + partitionArchiveSchema + "." + partition);
+            return written;
+        }));
+        publish(staging, file);
+        attendanceMonths.add(month);
+        invalidationBus.publish(ARCHIVE_NOTICE, "attendance:" + month);
+        log.info("Archived attendance {}: {} rows -> {}", month, rows, file);
+        return rows == null ? 0 : rows;
+    }
+
+    /**
+     * Move one month of payments into its archive file. Returns the number of rows in the file.
+     */
+    public int archivePaymentMonth(YearMonth month) {
+        Path file = file("payment", month);
+        Path staging = staging(file);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        Integer rows = staged(staging, () -> new TransactionTemplate(transactionManager).execute(status -> {
+            // no lock: payments are always recorded with paid_at = now, never into a closed month
+            int written = jdbcTemplate.query(
+                    "select student_id, paid_at, id, amount, paid_by_user_id, note from payment " +
+                            "where paid_at >= ? and paid_at < ? order by student_id, paid_at, id",
+                    (ResultSetExtractor<Integer>) rs -> mergePayments(rs, file, staging), from, to);
+            jdbcTemplate.update("delete from payment where paid_at >= ? and paid_at < ?", from, to);
+            return written;
+        }));
+        publish(staging, file);
+        paymentMonths.add(month);
+        invalidationBus.publish(ARCHIVE_NOTICE, "payment:" + month);
+        log.info("Archived payments {}: {} rows -> {}", month, rows, file);
+        return rows == null ? 0 : rows;
+    }
+
+    /* ---------- read API: archived + live ---------- */
+
+    /**
+     * Scans the archived attendance of one month (only the three columns reports need are decoded into the
+     * visitor call). Returns false when the month is not archived.
+     */
+    public boolean scanAttendance(YearMonth month, AttendanceRowVisitor visitor) {
+        if (!attendanceMonths.contains(month)) return false;
+        ColumnarFile.Reader.Cursor c = reader(file("attendance", month)).cursor();
+        while (c.next()) visitor.row(c.getLong(0), c.getLong(1), c.getString(2));
+        return true;
+    }
+
+    /**
+     * Scans the archived payments of one month. Returns false when the month is not archived.
+     */
+    public boolean scanPayments(YearMonth month, PaymentRowVisitor visitor) {
+        if (!paymentMonths.contains(month)) return false;
+        ColumnarFile.Reader.Cursor c = reader(file("payment", month)).cursor();
+        while (c.next()) visitor.row(c.getLong(0), c.getLong(1), c.isNull(3) ? 0 : c.getLong(3));
+        return true;
+    }
+
+    /**
+     * Payments of a student, archived months included, newest first.
+     */
+    public List<Payment> paymentsForStudent(Long studentId) {
+        List<Payment> out = new ArrayList<>(paymentRepository.findByStudentIdOrderByPaidAtDesc(studentId));
+        if (paymentMonths.isEmpty() || studentId == null) return out;
+        for (YearMonth month : paymentMonths) {
+            ColumnarFile.Reader.Cursor c = reader(file("payment", month)).seek(studentId);
+            while (c.next()) {
+                long sid = c.getLong(0);
+                if (sid < studentId) continue;
+                if (sid > studentId) break;
+                out.add(toPayment(c));
+            }
+        }
+        out.sort(NEWEST_FIRST);
+        return out;
+    }
+
+    /**
+     * Payments of many students (every id is a key, newest first): one database query, and one pass over each
+     * archived month from the smallest to the largest requested id.
+     */
+    public Map<Long, List<Payment>> paymentsForStudents(Collection<Long> studentIds) {
+        Map<Long, List<Payment>> out = new HashMap<>();
+        TreeSet<Long> ids = new TreeSet<>();
+        if (studentIds != null) {
+            for (Long id : studentIds) {
+                if (id != null && ids.add(id)) out.put(id, new ArrayList<>());
+            }
+        }
+        if (ids.isEmpty()) return out;
+        for (Payment p : paymentRepository.findByStudentIdIn(ids)) out.get(p.getStudentId()).add(p);
+        long first = ids.first(), last = ids.last();
+        for (YearMonth month : paymentMonths) {
+            ColumnarFile.Reader.Cursor c = reader(file("payment", month)).seek(first);
+            while (c.next()) {
+                long sid = c.getLong(0);
+                if (sid > last) break;
+                List<Payment> payments = out.get(sid);
+                if (payments != null) payments.add(toPayment(c));
+            }
+        }
+        for (List<Payment> payments : out.values()) payments.sort(NEWEST_FIRST);
+        return out;
+    }
+
+    /* ---------- helpers ---------- */
+
+    /**
+     * Runs the archive transaction of one month; its staging file is removed when the transaction fails.
+     */
+    private Integer staged(Path staging, Supplier<Integer> transaction) {
+        try {
+            return transaction.get();
+        } catch (RuntimeException ex) {
+            try {
+                Files.deleteIfExists(staging);
+            } catch (IOException io) {
+                ex.addSuppressed(io);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Publishes staging files left by a run that died between its commit and the move. Also safe when it died
+     * before the commit: the staging file is then a superset of the live rows, which this run archives again.
+     * Only called from the archive job, so no other node is writing a staging file at the same time.
+     */
+    private void publishStaged() {
+        Path root = Path.of(dir);
+        if (!Files.isDirectory(root)) return;
+        List<Path> staged;
+        try (Stream<Path> files = Files.list(root)) {
+            staged = files.filter(f -> f.getFileName().toString().endsWith(STAGING_SUFFIX)).toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to list archive directory " + root, ex);
+        }
+        for (Path staging : staged) {
+            String name = staging.getFileName().toString();
+            Matcher m = FILE_NAME.matcher(name.substring(0, name.length() - STAGING_SUFFIX.length()));
+            if (!m.matches()) continue;
+            YearMonth month = YearMonth.of(Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)));
+            publish(staging, file(m.group(1), month));
+            (m.group(1).equals("attendance") ? attendanceMonths : paymentMonths).add(month);
+            invalidationBus.publish(ARCHIVE_NOTICE, m.group(1) + ":" + month);
+            log.warn("Cold archive: published {} left staged by an interrupted run", staging);
+        }
+    }
+
+    /**
+     * Moves a committed month's staging file over its published file; readers map the new file on next use.
+     */
+    private void publish(Path staging, Path file) {
+        try {
+            Files.move(staging, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            // the rows are already deleted from the database: the staging file is published on the next start
+            throw new UncheckedIOException("Failed to publish archive file " + file + " (kept as " + staging + ")", ex);
+        }
+        readers.remove(file);
+    }
+
+    private int mergeAttendance(ResultSet rs, Path file, Path target) throws SQLException {
+        ColumnarFile.Writer w = new ColumnarFile.Writer(ATTENDANCE_COLUMNS, ATTENDANCE_KINDS);
+        ColumnarFile.Reader.Cursor old = Files.exists(file) ? reader(file).cursor() : null;
+        boolean hasOld = old != null && old.next();
+        boolean hasLive = rs.next();
+        while (hasOld || hasLive) {
+            int cmp = !hasOld ? 1 : !hasLive ? -1 : compare(old.getLong(0), old.getLong(1),
+                    rs.getLong("student_id"), rs.getDate("lesson_date").toLocalDate().toEpochDay());
+            if (cmp < 0) {
+                w.add(old.getLong(0), old.getLong(1), old.getString(2), nullable(old, 3), nullable(old, 4),
+                        nullable(old, 5), nullable(old, 6));
+                hasOld = old.next();
+                continue;
+            }
+            if (cmp == 0) hasOld = old.next(); // database row replaces the archived one
+            w.add(rs.getLong("student_id"), rs.getDate("lesson_date").toLocalDate().toEpochDay(), rs.getString("status"),
+                    nullableLong(rs, "marked_by_user_id"), epochSecond(rs.getTimestamp("marked_at")),
+                    epochSecond(rs.getTimestamp("checkin_time")), nullableLong(rs, "revision"));
+            hasLive = rs.next();
+        }
+        w.writeTo(target);
+        return w.rows();
+    }
+
+    private int mergePayments(ResultSet rs, Path file, Path target) throws SQLException {
+        ColumnarFile.Writer w = new ColumnarFile.Writer(PAYMENT_COLUMNS, PAYMENT_KINDS);
+        ColumnarFile.Reader.Cursor old = Files.exists(file) ? reader(file).cursor() : null;
+        boolean hasOld = old != null && old.next();
+        boolean hasLive = rs.next();
+        while (hasOld || hasLive) {
+            // payment ids are unique: equal (student, paid_at) keeps both rows
+            int cmp = !hasOld ? 1 : !hasLive ? -1 : compare(old.getLong(0), old.getLong(1),
+                    rs.getLong("student_id"), epochSecond(rs.getTimestamp("paid_at")));
+            if (cmp <= 0) {
+                w.add(old.getLong(0), old.getLong(1), nullable(old, 2), nullable(old, 3), nullable(old, 4), old.getString(5));
+                hasOld = old.next();
+                continue;
+            }
+            BigDecimal amount = rs.getBigDecimal("amount");
+            w.add(rs.getLong("student_id"), epochSecond(rs.getTimestamp("paid_at")), rs.getLong("id"),
+                    amount == null ? null : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                    nullableLong(rs, "paid_by_user_id"), rs.getString("note"));
+            hasLive = rs.next();
+        }
+        w.writeTo(target);
+        return w.rows();
+    }
+
+    private Payment toPayment(ColumnarFile.Reader.Cursor c) {
+        return Payment.builder()
+                .id(nullable(c, 2))
+                .studentId(c.getLong(0))
+                .paidAt(LocalDateTime.ofEpochSecond(c.getLong(1), 0, ZoneOffset.UTC))
+                .amount(c.isNull(3) ? null : BigDecimal.valueOf(c.getLong(3), 2))
+                .paidByUserId(nullable(c, 4))
+                .note(c.getString(5))
+                .build();
+    }
+
+    private List<YearMonth> liveAttendanceMonths() {
+        if (isPostgres()) {
+            // partitions still in the database, attached or detached into the partition archive schema
+            TreeSet<YearMonth> months = new TreeSet<>();
+            for (String name : jdbcTemplate.queryForList(
+                    "select tablename from pg_tables where tablename like 'attendance\\_%' " +
+                            "and (schemaname = current_schema() or schemaname = ?)", String.class, partitionArchiveSchema)) {
+                Matcher m = PARTITION_NAME.matcher(name);
+                if (m.matches()) months.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+            }
+            // and months with rows in the default partition: written after their partition was archived or detached
+            if (exists(DEFAULT_PARTITION)) {
+                for (Date first : jdbcTemplate.queryForList(
+                        "select distinct cast(date_trunc('month', lesson_date) as date) from " + DEFAULT_PARTITION, Date.class)) {
+                    months.add(YearMonth.from(first.toLocalDate()));
+                }
+            }
+            if (!months.isEmpty()) return new ArrayList<>(months);
+        }
+        Date min = jdbcTemplate.queryForObject("select min(lesson_date) from attendance", Date.class);
+        List<YearMonth> out = new ArrayList<>();
+        if (min == null) return out;
+        for (YearMonth m = YearMonth.from(min.toLocalDate()); !m.isAfter(YearMonth.now()); m = m.plusMonths(1)) out.add(m);
+        return out;
+    }
+
+    private YearMonth oldestLivePaymentMonth() {
+        Timestamp min = jdbcTemplate.queryForObject("select min(paid_at) from payment", Timestamp.class);
+        return min == null ? null : YearMonth.from(min.toLocalDateTime());
+    }
+
+    private ColumnarFile.Reader reader(Path file) {
+        return readers.computeIfAbsent(file, ColumnarFile.Reader::open);
+    }
+
+    private Path file(String table, YearMonth month) {
+        return Path.of(dir, table + "-" + month + ".acol");
+    }
+
+    private static Path staging(Path file) {
+        return file.resolveSibling(file.getFileName() + STAGING_SUFFIX);
+    }
+
+    private boolean exists(String relation) {
+        try {
+            return jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, relation);
+        } catch (DataAccessException ex) {
+            return false;
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            known = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                    con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres"));
+            postgres = known;
+        }
+        return Boolean.TRUE.equals(known);
+    }
+
+    private static int compare(long studentA, long keyA, long studentB, long keyB) {
+        int c = Long.compare(studentA, studentB);
+        return c != 0 ? c : Long.compare(keyA, keyB);
+    }
+
+    private static Long nullable(ColumnarFile.Reader.Cursor c, int column) {
+        return c.isNull(column) ? null : c.getLong(column);
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long v = rs.getLong(column);
+        return rs.wasNull() ? null : v;
+    }
+
+    private static Long epochSecond(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.attendance.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable column-oriented file for archived rows, read through a memory mapping.
+ *
+ * Column kinds:
+ *   LONG — zigzag varint of the delta to the previous row in the block (0 = null, value codes are shifted by one);
+ *          rows sorted by the first column make ids and dates one byte each;
+ *   DICT — strings as varint codes into a per-column dictionary (0 = null).
+ * Rows are cut into blocks of BLOCK_ROWS; deltas restart at every block and the block index keeps the first
+ * key (column 0) and the byte offset of every column, so a reader seeks by key with a binary search and
+ * decodes only the blocks it needs.
+ *
+ * Layout (big endian):
+ *   magic(int) version(int) columnCount(int) [kind(byte) name(utf)]* rowCount(int) blockRows(int) blockCount(int)
+ *   [dictSize(int) [value(utf)]*] per DICT column
+ *   [firstKey(long) [offset(int)]*columnCount]*blockCount
+ *   [length(int) bytes]*columnCount
+ */
+public final class ColumnarFile {
+
+    static final int MAGIC = 0x41434F4C; // "ACOL"
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 4096;
+
+    public enum Kind { LONG, DICT }
+
+    private ColumnarFile() {
+    }
+
+    /* ---------- writing ---------- */
+
+    /**
+     * Collects rows in memory (already sorted by column 0) and writes the file atomically.
+     */
+    public static final class Writer {
+
+        private final String[] names;
+        private final Kind[] kinds;
+        private final VarintBuffer[] data;
+        private final long[] previous;
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final List<long[]> blockIndex = new ArrayList<>();
+        private int rows;
+
+        public Writer(String[] names, Kind[] kinds) {
+            if (names.length != kinds.length || kinds.length == 0 || kinds[0] != Kind.LONG) {
+                throw new IllegalArgumentException("column 0 must be the LONG sort key");
+            }
+            this.names = names.clone();
+            this.kinds = kinds.clone();
+            this.data = new VarintBuffer[kinds.length];
+            this.previous = new long[kinds.length];
+            for (int c = 0; c < kinds.length; c++) {
+                data[c] = new VarintBuffer();
+                dictionaries.add(kinds[c] == Kind.DICT ? new LinkedHashMap<>() : null);
+            }
+        }
+
+        /**
+         * @param values Long (or null) for LONG columns, String (or null) for DICT columns
+         */
+        public void add(Object... values) {
+            if (values.length != kinds.length) throw new IllegalArgumentException("expected " + kinds.length + " values");
+            if (rows % BLOCK_ROWS == 0) {
+                long[] entry = new long[kinds.length + 1];
+                entry[0] = values[0] == null ? Long.MIN_VALUE : (Long) values[0];
+                for (int c = 0; c < kinds.length; c++) {
+                    entry[c + 1] = data[c].size();
+                    previous[c] = 0;
+                }
+                blockIndex.add(entry);
+            }
+            for (int c = 0; c < kinds.length; c++) {
+                if (kinds[c] == Kind.LONG) {
+                    Long v = (Long) values[c];
+                    if (v == null) {
+                        data[c].writeVarint(0);
+                    } else {
+                        data[c].writeVarint(zigzag(v - previous[c]) + 1);
+                        previous[c] = v;
+                    }
+                } else {
+                    String s = (String) values[c];
+                    if (s == null) {
+                        data[c].writeVarint(0);
+                    } else {
+                        Map<String, Integer> dict = dictionaries.get(c);
+                        Integer code = dict.get(s);
+                        if (code == null) {
+                            code = dict.size() + 1;
+                            dict.put(s, code);
+                        }
+                        data[c].writeVarint(code);
+                    }
+                }
+            }
+            rows++;
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        /**
+         * Write to a temp file, force it to disk and move it over target.
+         */
+        public void writeTo(Path target) {
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try {
+                if (target.getParent() != null) Files.createDirectories(target.getParent());
+                try (OutputStream os = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(kinds.length);
+                    for (int c = 0; c < kinds.length; c++) {
+                        out.writeByte(kinds[c].ordinal());
+                        writeUtf(out, names[c]);
+                    }
+                    out.writeInt(rows);
+                    out.writeInt(BLOCK_ROWS);
+                    out.writeInt(blockIndex.size());
+                    for (int c = 0; c < kinds.length; c++) {
+                        if (kinds[c] != Kind.DICT) continue;
+                        Map<String, Integer> dict = dictionaries.get(c);
+                        out.writeInt(dict.size());
+                        for (String value : dict.keySet()) writeUtf(out, value);
+                    }
+                    for (long[] entry : blockIndex) {
+                        out.writeLong(entry[0]);
+                        for (int c = 0; c < kinds.length; c++) out.writeInt((int) entry[c + 1]);
+                    }
+                    for (VarintBuffer column : data) {
+                        out.writeInt(column.size());
+                        out.write(column.bytes, 0, column.size());
+                    }
+                }
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ch.force(true);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write columnar file " + target, ex);
+            }
+        }
+    }
+
+    /* ---------- reading ---------- */
+
+    /**
+     * Memory-mapped reader; thread-safe, every cursor keeps its own position. The mapping is released by the GC.
+     */
+    public static final class Reader {
+
+        private final Path path;
+        private final ByteBuffer buffer;
+        private final String[] names;
+        private final Kind[] kinds;
+        private final String[][] dictionaries;
+        private final int rows;
+        private final int blockRows;
+        private final long[] blockKeys;
+        private final int[][] blockOffsets;
+        private final int[] columnStart;
+
+        public static Reader open(Path path) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                return new Reader(path, mapped);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to open columnar file " + path, ex);
+            }
+        }
+
+        private Reader(Path path, ByteBuffer mapped) {
+            this.path = path;
+            ByteBuffer b = mapped.duplicate().order(ByteOrder.BIG_ENDIAN);
+            if (b.getInt() != MAGIC) throw new IllegalStateException("Not a columnar file: " + path);
+            int version = b.getInt();
+            if (version != VERSION) throw new IllegalStateException("Unsupported columnar file version " + version + ": " + path);
+            int columns = b.getInt();
+            names = new String[columns];
+            kinds = new Kind[columns];
+            for (int c = 0; c < columns; c++) {
+                kinds[c] = Kind.values()[b.get()];
+                names[c] = readUtf(b);
+            }
+            rows = b.getInt();
+            blockRows = b.getInt();
+            int blocks = b.getInt();
+            dictionaries = new String[columns][];
+            for (int c = 0; c < columns; c++) {
+                if (kinds[c] != Kind.DICT) continue;
+                String[] dict = new String[b.getInt() + 1];
+                for (int i = 1; i < dict.length; i++) dict[i] = readUtf(b);
+                dictionaries[c] = dict;
+            }
+            blockKeys = new long[blocks];
+            blockOffsets = new int[blocks][columns];
+            for (int k = 0; k < blocks; k++) {
+                blockKeys[k] = b.getLong();
+                for (int c = 0; c < columns; c++) blockOffsets[k][c] = b.getInt();
+            }
+            columnStart = new int[columns];
+            for (int c = 0; c < columns; c++) {
+                int length = b.getInt();
+                columnStart[c] = b.position();
+                b.position(b.position() + length);
+            }
+            this.buffer = b;
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public int column(String name) {
+            for (int c = 0; c < names.length; c++) if (names[c].equals(name)) return c;
+            throw new IllegalArgumentException("No column " + name + " in " + path);
+        }
+
+        /**
+         * Cursor over all rows.
+         */
+        public Cursor cursor() {
+            return new Cursor(0);
+        }
+
+        /**
+         * Cursor positioned at the block that may hold the first row with column 0 == key;
+         * rows before the key are still returned, callers skip them.
+         */
+        public Cursor seek(long key) {
+            int lo = 0, hi = blockKeys.length - 1, found = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (blockKeys[mid] < key) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return new Cursor(found);
+        }
+
+        /**
+         * Decodes one row at a time into primitive slots (no allocation per row).
+         */
+        public final class Cursor {
+
+            private final int[] pos = new int[kinds.length];
+            private final long[] values = new long[kinds.length];
+            private final boolean[] nulls = new boolean[kinds.length];
+            private int row;
+
+            private Cursor(int block) {
+                row = block * blockRows;
+                for (int c = 0; c < kinds.length; c++) {
+                    pos[c] = blockKeys.length == 0 ? columnStart[c] : columnStart[c] + blockOffsets[block][c];
+                }
+            }
+
+            /**
+             * Advance to the next row; false at the end of the file.
+             */
+            public boolean next() {
+                if (row >= rows) return false;
+                boolean blockStart = row % blockRows == 0;
+                for (int c = 0; c < kinds.length; c++) {
+                    long code = readVarint(c);
+                    if (kinds[c] == Kind.LONG) {
+                        if (blockStart) values[c] = 0;
+                        if (code == 0) {
+                            nulls[c] = true;
+                        } else {
+                            nulls[c] = false;
+                            values[c] += unzigzag(code - 1);
+                        }
+                    } else {
+                        nulls[c] = code == 0;
+                        values[c] = code;
+                    }
+                }
+                row++;
+                return true;
+            }
+
+            public boolean isNull(int column) {
+                return nulls[column];
+            }
+
+            public long getLong(int column) {
+                return values[column];
+            }
+
+            public String getString(int column) {
+                return nulls[column] ? null : dictionaries[column][(int) values[column]];
+            }
+
+            private long readVarint(int c) {
+                int p = pos[c];
+                long result = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(p++);
+                    result |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                pos[c] = p;
+                return result;
+            }
+        }
+    }
+
+    /* ---------- helpers ---------- */
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeUtf(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("value too long for a columnar dictionary");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readUtf(ByteBuffer b) {
+        int length = b.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class VarintBuffer {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void writeVarint(long v) {
+            if (size + 10 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
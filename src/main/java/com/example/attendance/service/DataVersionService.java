@@ -0,0 +1,296 @@
+package com.example.attendance.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters for cached / conditional views.
+ *
+ * - Named versions (teacher list, packages) for cached template fragments; "alerts" changes when a student
+ *   enters or leaves an alert level (the alert engine runs after the write commits, so the students counter
+ *   alone does not cover it).
+ * - Per-(teacher, date) versions behind the ETags of the attendance JSON: a striped counter array indexed by
+ *   hash, so memory stays fixed; a collision only costs a spurious cache miss, never a stale 304.
+ *   A teacher-wide stripe covers changes visible on every date (remaining lessons, debt), a structural counter
+ *   covers rare changes whose teachers are unknown (student edited, moved or deleted).
+ * - A students counter is bumped by every write and versions views over all students (manager lists).
+ * - Per-month versions (attendance of that month, or money moved in it) version the cached reports of a period.
+ * - In-memory bumps happen after commit, so a reader can never see new data under an old version or
+ *   old data under a new one being cached.
+ * - attendance.dataVersion.shared=true: versions are also kept in the data_version table (MERGE inside the
+ *   writing transaction) and read from there, so all nodes produce the same tags. The students and month rows,
+ *   touched by nearly every write, are striped by teacher (SHARED_STRIPES rows each, a tag sums them) so
+ *   writers of different teachers do not queue on one row; keys are merged in sorted order (no deadlocks).
+ * - Tags of (teacher, date) views start with the teacher id: two teachers never share a tag, so one
+ *   teacher's cached copy can never be revalidated for another (shared devices).
+ * - attendance.invalidation.enabled=true: every bump is also published on the InvalidationBus and applied to
+ *   the in-memory counters of the other nodes when it commits; a resync bumps everything. Tags then differ
+ *   between nodes (own epoch), which costs a miss when a client switches nodes but never serves stale data.
+ */
+@Service
+@RequiredArgsConstructor
+public class DataVersionService {
+
+    public static final String TEACHERS = "teachers";
+    public static final String PACKAGES = "packages";
+    public static final String ALERTS = "alerts";
+
+    private static final int STRIPES = 4096;
+    private static final int SHARED_STRIPES = 16;
+    private static final String STRUCTURAL_KEY = "structural";
+    private static final String STUDENTS_KEY = "students";
+
+    private static final String NAMED = "k";
+    private static final String TEACHER_DATE = "td";
+    private static final String TEACHERS_NOTICE = "t";
+    private static final String ALL = "all";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvalidationBus invalidationBus;
+
+    @Value("${attendance.dataVersion.shared:false}")
+    private boolean shared;
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLongArray teacherStripes = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray teacherDateStripes = new AtomicLongArray(STRIPES);
+    private final AtomicLong structural = new AtomicLong();
+    private final AtomicLong students = new AtomicLong();
+    // counters restart at 0 after a restart; the epoch keeps old tags from matching again
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffffL);
+
+    @PostConstruct
+    void subscribe() {
+        invalidationBus.subscribe(this::applyRemote);
+    }
+
+    public long version(String key) {
+        return versions.computeIfAbsent(key, k -> new AtomicLong()).get();
+    }
+
+    public void bump(String key) {
+        invalidationBus.publish(NAMED, key);
+        afterCommit(() -> increment(key));
+    }
+
+    /**
+     * Opaque version tag of the (teacher, date) attendance view.
+     */
+    public String teacherDateTag(Long teacherId, LocalDate date) {
+        if (shared) {
+            Map<String, Long> db = readShared(List.of(STRUCTURAL_KEY, teacherKey(teacherId), teacherDateKey(teacherId, date)));
+            return teacherId + "-s" + db.getOrDefault(STRUCTURAL_KEY, 0L)
+                    + "-" + db.getOrDefault(teacherKey(teacherId), 0L)
+                    + "-" + db.getOrDefault(teacherDateKey(teacherId, date), 0L);
+        }
+        return teacherId + "-" + epoch + "-" + structural.get()
+                + "-" + teacherStripes.get(stripe(teacherId))
+                + "-" + teacherDateStripes.get(stripe(Objects.hash(teacherId, date)));
+    }
+
+    /**
+     * Opaque version tag of views over all students (manager lists).
+     */
+    public String studentsTag() {
+        if (shared) {
+            return "s" + sum(readShared(striped(STUDENTS_KEY)));
+        }
+        return epoch + "-" + students.get();
+    }
+
+    /**
+     * Opaque version tag of everything reported for the months [from, to].
+     */
+    public String monthsTag(YearMonth from, YearMonth to) {
+        List<String> keys = new ArrayList<>();
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) keys.add(monthKey(m));
+        if (shared) {
+            List<String> rows = new ArrayList<>();
+            for (String key : keys) rows.addAll(striped(key));
+            rows.add(STRUCTURAL_KEY);
+            return "s" + sum(readShared(rows));
+        }
+        // counters only grow, so any bump changes the sum
+        long sum = structural.get();
+        for (String key : keys) sum += version(key);
+        return epoch + "-" + sum;
+    }
+
+    /**
+     * Attendance of the teacher's students changed for one date only.
+     */
+    public void bumpTeacherDate(Long teacherId, LocalDate date) {
+        if (teacherId == null || date == null) return;
+        if (shared) {
+            incrementShared(List.of(stripeKey(STUDENTS_KEY, teacherId), teacherDateKey(teacherId, date),
+                    stripeKey(monthKey(YearMonth.from(date)), teacherId)));
+        }
+        invalidationBus.publish(TEACHER_DATE, teacherId + "@" + date);
+        afterCommit(() -> applyTeacherDate(teacherId, date));
+    }
+
+    /**
+     * Something visible on every date of these teachers changed (remaining lessons, debt, student list).
+     * Money moves today, so the current month's reports are invalidated too.
+     */
+    public void bumpTeachers(Collection<Long> teacherIds) {
+        if (teacherIds == null || teacherIds.isEmpty()) return;
+        Set<Long> ids = new LinkedHashSet<>(teacherIds);
+        ids.remove(null);
+        if (ids.isEmpty()) return;
+        if (shared) {
+            List<String> keys = new ArrayList<>();
+            for (Long id : ids) {
+                keys.add(stripeKey(STUDENTS_KEY, id));
+                keys.add(stripeKey(monthKey(YearMonth.now()), id));
+                keys.add(teacherKey(id));
+            }
+            incrementShared(keys);
+        }
+        StringJoiner notice = new StringJoiner(",");
+        for (Long id : ids) notice.add(id.toString());
+        invalidationBus.publish(TEACHERS_NOTICE, notice.toString());
+        afterCommit(() -> applyTeachers(ids));
+    }
+
+    public void bumpTeacher(Long teacherId) {
+        if (teacherId != null) bumpTeachers(List.of(teacherId));
+    }
+
+    /**
+     * Invalidate every (teacher, date) view, for rare changes where the affected teachers are not known
+     * (student edited, moved to another teacher or deleted).
+     */
+    public void bumpAll() {
+        if (shared) incrementShared(List.of(STRUCTURAL_KEY, stripeKey(STUDENTS_KEY, 0L)));
+        invalidationBus.publish(ALL, "*");
+        afterCommit(this::applyAll);
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void applyRemote(InvalidationBus.Notice notice) {
+        switch (notice.type()) {
+            case NAMED -> increment(notice.id());
+            case TEACHER_DATE -> {
+                int at = notice.id().indexOf('@');
+                applyTeacherDate(Long.valueOf(notice.id().substring(0, at)), LocalDate.parse(notice.id().substring(at + 1)));
+            }
+            case TEACHERS_NOTICE -> {
+                List<Long> ids = new ArrayList<>();
+                for (String id : notice.id().split(",")) ids.add(Long.valueOf(id));
+                applyTeachers(ids);
+            }
+            case ALL -> applyAll();
+            case InvalidationBus.RESYNC -> {
+                // notices were lost: every view may be stale
+                applyAll();
+                versions.values().forEach(AtomicLong::incrementAndGet);
+            }
+            default -> {
+                // a newer node's notice type; nothing cached here depends on it
+            }
+        }
+    }
+
+    private void applyTeacherDate(Long teacherId, LocalDate date) {
+        teacherDateStripes.incrementAndGet(stripe(Objects.hash(teacherId, date)));
+        students.incrementAndGet();
+        increment(monthKey(YearMonth.from(date)));
+    }
+
+    private void applyTeachers(Collection<Long> ids) {
+        for (Long id : ids) teacherStripes.incrementAndGet(stripe(id));
+        students.incrementAndGet();
+        increment(monthKey(YearMonth.now()));
+    }
+
+    private void applyAll() {
+        structural.incrementAndGet();
+        students.incrementAndGet();
+    }
+
+    private void increment(String key) {
+        versions.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static int stripe(Object key) {
+        int h = Objects.hashCode(key);
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % STRIPES;
+    }
+
+    private static String teacherKey(Long teacherId) {
+        return "t:" + teacherId;
+    }
+
+    private static String monthKey(YearMonth month) {
+        return "m:" + month;
+    }
+
+    private static String teacherDateKey(Long teacherId, LocalDate date) {
+        return "t:" + teacherId + ":" + date;
+    }
+
+    private static String stripeKey(String key, Long teacherId) {
+        return key + "#" + Math.floorMod(Objects.hashCode(teacherId), SHARED_STRIPES);
+    }
+
+    private static List<String> striped(String key) {
+        List<String> out = new ArrayList<>(SHARED_STRIPES);
+        for (int i = 0; i < SHARED_STRIPES; i++) out.add(key + "#" + i);
+        return out;
+    }
+
+    private static long sum(Map<String, Long> versions) {
+        // counters only grow, so any bump changes the sum
+        long sum = 0;
+        for (long v : versions.values()) sum += v;
+        return sum;
+    }
+
+    private void incrementShared(List<String> keys) {
+        // one lock order for all writers
+        for (String key : new TreeSet<>(keys)) {
+            jdbcTemplate.update("merge into data_version d using (values (cast(? as varchar(128)))) s(k) on d.scope_key = s.k " +
+                    "when matched then update set version = d.version + 1 " +
+                    "when not matched then insert (scope_key, version) values (s.k, 1)", key);
+        }
+    }
+
+    private Map<String, Long> readShared(List<String> keys) {
+        Map<String, Long> out = new HashMap<>();
+        String in = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        jdbcTemplate.query("select scope_key, version from data_version where scope_key in (" + in + ")",
+                (RowCallbackHandler) rs -> out.put(rs.getString(1), rs.getLong(2)),
+                keys.toArray());
+        return out;
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.LessonPackage;
+import com.example.attendance.entities.TimeSlot;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.enums.Shift;
+import com.example.attendance.repository.LessonPackageRepository;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Deterministic synthetic dataset for load and scale testing.
+ *
+ * - Teachers are created through AppUserService / TeacherService, so they get default time slots like real ones.
+ * - Students are spread over all lesson packages; attendance follows each package's schedule,
+ *   payments and ledger charges are generated per month.
+ * - Bulk rows go through COPY FROM STDIN on PostgreSQL and through JDBC batches elsewhere (H2).
+ *
+ * The same Spec always produces the same rows (apart from generated ids and password hashes).
+ */
+@Service
+@RequiredArgsConstructor
+public class DatasetGenerator {
+
+    private static final String[] FIRST_NAMES = {"Айбек", "Нурлан", "Алина", "Мария", "Иван", "Элина", "Бакыт", "Асель",
+            "Тимур", "Дана", "Эрлан", "Айгерим", "Сергей", "Жанара", "Руслан", "Камила"};
+    private static final String[] LAST_NAMES = {"Иванов", "Садыков", "Ким", "Петрова", "Абдыкадыров", "Осмонова",
+            "Смирнов", "Токтогулов", "Исаева", "Жумабеков", "Ли", "Сулайманова"};
+    private static final int BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private final DataSource dataSource;
+    private final AppUserService appUserService;
+    private final TeacherService teacherService;
+    private final TimeSlotService timeSlotService;
+    private final LessonPackageRepository lessonPackageRepository;
+    private final DataVersionService dataVersionService;
+    private final AttendancePartitionService partitionService;
+
+    /**
+     * @param seed               random seed; same seed -> same data
+     * @param teachers           number of teachers to create
+     * @param studentsPerTeacher students per teacher
+     * @param historyMonths      months of attendance / payment history ending at endDate (0 = no history)
+     * @param endDate            last day of generated history (exclusive)
+     * @param usernamePrefix     prefix of generated teacher usernames (must not exist yet)
+     */
+    public record Spec(long seed, int teachers, int studentsPerTeacher, int historyMonths, LocalDate endDate, String usernamePrefix) {
+    }
+
+    public record Result(List<Long> teacherIds, List<String> usernames, long students, long attendanceRows,
+                         long payments, long ledgerEntries, Duration elapsed) {
+    }
+
+    public Result generate(Spec spec) {
+        if (spec.teachers() < 1 || spec.studentsPerTeacher() < 0 || spec.historyMonths() < 0) {
+            throw new IllegalArgumentException("teachers must be >= 1, studentsPerTeacher and historyMonths >= 0");
+        }
+        long started = System.nanoTime();
+        List<LessonPackage> packages = ensurePackages();
+
+        // teachers through the services (default slots, BCrypt passwords)
+        Random rnd = new Random(spec.seed());
+        List<Long> teacherIds = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        Map<Long, List<TimeSlot>> slotsByTeacher = new HashMap<>();
+        Shift[] shifts = Shift.values();
+        for (int t = 0; t < spec.teachers(); t++) {
+            String username = String.format("%s%04d", spec.usernamePrefix(), t);
+            AppUser user = appUserService.createTeacherUser(username, "teacher");
+            teacherService.createTeacherForUserById(user.getId(), pick(rnd, FIRST_NAMES), pick(rnd, LAST_NAMES),
+                    phone(rnd), shifts[rnd.nextInt(shifts.length)]);
+            teacherIds.add(user.getId());
+            usernames.add(username);
+            slotsByTeacher.put(user.getId(), timeSlotService.findByTeacherId(user.getId()));
+        }
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            boolean postgres = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres");
+
+            List<GeneratedStudent> students = insertStudents(con, spec, packages, teacherIds, slotsByTeacher);
+            con.commit();
+
+            long[] counts = new long[3];
+            if (spec.historyMonths() > 0) {
+                LocalDate end = spec.endDate();
+                LocalDate start = end.minusMonths(spec.historyMonths()).withDayOfMonth(1);
+                partitionService.ensureMonths(start, end);
+                try (RowSink attendance = sink(con, postgres, "attendance",
+                        "student_id", "lesson_date", "status", "marked_by_user_id", "marked_at", "checkin_time");
+                     RowSink payments = sink(con, postgres, "payment",
+                             "student_id", "amount", "paid_at", "paid_by_user_id", "note");
+                     RowSink charges = sink(con, postgres, "ledger_entry",
+                             "student_id", "type", "amount", "created_by_user_id", "created_at", "note")) {
+                    for (GeneratedStudent s : students) {
+                        generateHistory(spec.seed(), s, start, end, attendance, payments, charges, counts);
+                    }
+                }
+                // ledger entries for the generated payments in one set-based statement
+                try (PreparedStatement ps = con.prepareStatement(
+                        "insert into ledger_entry (student_id, type, amount, payment_id, created_by_user_id, created_at, note) " +
+                                "select p.student_id, 'PAYMENT', -p.amount, p.id, p.paid_by_user_id, p.paid_at, p.note " +
+                                "from payment p where p.note = 'generated' " +
+                                "and not exists (select 1 from ledger_entry e where e.payment_id = p.id)")) {
+                    counts[2] += ps.executeUpdate();
+                }
+            }
+            con.commit();
+
+            Result result = new Result(teacherIds, usernames, students.size(), counts[0], counts[1], counts[2],
+                    Duration.ofNanos(System.nanoTime() - started));
+            log.info("Generated dataset: teachers={}, students={}, attendance={}, payments={}, ledger={} in {} ({})",
+                    teacherIds.size(), result.students(), result.attendanceRows(), result.payments(), result.ledgerEntries(),
+                    result.elapsed(), postgres ? "COPY" : "JDBC batches");
+            return result;
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Dataset generation failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    /* ---------- students ---------- */
+
+    private record GeneratedStudent(long id, long teacherId, LessonPackage pkg, LocalTime slotStart, int index) {
+    }
+
+    private List<GeneratedStudent> insertStudents(Connection con, Spec spec, List<LessonPackage> packages,
+                                                  List<Long> teacherIds, Map<Long, List<TimeSlot>> slotsByTeacher) throws SQLException {
+        List<GeneratedStudent> out = new ArrayList<>(teacherIds.size() * spec.studentsPerTeacher());
+        Timestamp created = Timestamp.from(spec.endDate().minusMonths(spec.historyMonths()).atStartOfDay(ZoneOffset.UTC).toInstant());
+        String sql = "insert into students (first_name, last_name, phone, student_code, teacher_id, time_slot_id, package_id, " +
+                "package_code, package_price, remaining_lessons, needs_book, created_at, updated_at) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = con.prepareStatement(sql, new String[]{"id"})) {
+            int index = 0;
+            for (Long teacherId : teacherIds) {
+                List<TimeSlot> slots = slotsByTeacher.get(teacherId);
+                List<Object[]> pending = new ArrayList<>();
+                for (int i = 0; i < spec.studentsPerTeacher(); i++, index++) {
+                    Random r = studentRandom(spec.seed(), index);
+                    LessonPackage pkg = packages.get(r.nextInt(packages.size()));
+                    TimeSlot slot = slots.get(r.nextInt(slots.size()));
+                    int lessons = pkg.getLessonsCount() == null ? 12 : pkg.getLessonsCount();
+                    ps.setString(1, pick(r, FIRST_NAMES));
+                    ps.setString(2, pick(r, LAST_NAMES));
+                    ps.setString(3, phone(r));
+                    ps.setString(4, String.format("G%d-%07d", spec.seed(), index));
+                    ps.setLong(5, teacherId);
+                    ps.setLong(6, slot.getId());
+                    ps.setLong(7, pkg.getId());
+                    ps.setString(8, pkg.getCode());
+                    ps.setBigDecimal(9, pkg.getPrice());
+                    ps.setInt(10, r.nextInt(lessons + 1));
+                    ps.setBoolean(11, r.nextInt(5) == 0);
+                    ps.setTimestamp(12, created);
+                    ps.setTimestamp(13, created);
+                    ps.addBatch();
+                    pending.add(new Object[]{teacherId, pkg, slot.getStartTime(), index});
+                    if (pending.size() == BATCH_SIZE || i == spec.studentsPerTeacher() - 1) {
+                        ps.executeBatch();
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            int k = 0;
+                            while (keys.next()) {
+                                Object[] p = pending.get(k++);
+                                out.add(new GeneratedStudent(keys.getLong(1), (Long) p[0], (LessonPackage) p[1], (LocalTime) p[2], (Integer) p[3]));
+                            }
+                        }
+                        pending.clear();
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /* ---------- history ---------- */
+
+    private void generateHistory(long seed, GeneratedStudent s, LocalDate start, LocalDate end,
+                                 RowSink attendance, RowSink payments, RowSink charges, long[] counts) throws SQLException {
+        Random r = studentRandom(seed ^ 0x5DEECE66DL, s.index());
+        BigDecimal price = s.pkg().getPrice() == null ? BigDecimal.ZERO : s.pkg().getPrice();
+        YearMonth month = null;
+        for (LocalDate d = start; d.isBefore(end); d = d.plusDays(1)) {
+            if (!month(d).equals(month)) {
+                month = month(d);
+                LocalDateTime monthStart = d.atTime(9, 0);
+                if (price.signum() > 0) {
+                    charges.row(s.id(), "CHARGE", price, null, monthStart, "package " + s.pkg().getCode());
+                    counts[2]++;
+                    // most students pay in full, some partially, some skip a month (debt)
+                    int p = r.nextInt(20);
+                    BigDecimal paid = p < 16 ? price : (p < 19 ? price.divide(BigDecimal.valueOf(2)) : BigDecimal.ZERO);
+                    if (paid.signum() > 0) {
+                        payments.row(s.id(), paid, monthStart.plusDays(r.nextInt(10)), s.teacherId(), "generated");
+                        counts[1]++;
+                    }
+                }
+            }
+            if (!isLessonDay(s.pkg().getScheduleCode(), d.getDayOfWeek())) continue;
+            AttendanceStatus status = randomStatus(r);
+            LocalDateTime markedAt = d.atTime(s.slotStart()).plusMinutes(r.nextInt(15));
+            attendance.row(s.id(), d, status.name(), s.teacherId(), markedAt, status.consumesLesson() ? markedAt : null);
+            counts[0]++;
+        }
+    }
+
+    private boolean isLessonDay(String scheduleCode, DayOfWeek day) {
+        if (day == DayOfWeek.SUNDAY) return false;
+        if (scheduleCode == null) return day == DayOfWeek.MONDAY || day == DayOfWeek.WEDNESDAY || day == DayOfWeek.FRIDAY;
+        return switch (scheduleCode) {
+            case "TTS" -> day == DayOfWeek.TUESDAY || day == DayOfWeek.THURSDAY || day == DayOfWeek.SATURDAY;
+            case "MON_SAT" -> true;
+            default -> day == DayOfWeek.MONDAY || day == DayOfWeek.WEDNESDAY || day == DayOfWeek.FRIDAY;
+        };
+    }
+
+    private AttendanceStatus randomStatus(Random r) {
+        int p = r.nextInt(100);
+        if (p < 80) return AttendanceStatus.PRESENT;
+        if (p < 88) return AttendanceStatus.LATE;
+        if (p < 95) return AttendanceStatus.ABSENT;
+        return AttendanceStatus.EXCUSED;
+    }
+
+    /* ---------- helpers ---------- */
+
+    private List<LessonPackage> ensurePackages() {
+        createPackageIfMissing("LESSONS_12_MWF", "12 lessons (Mon/Wed/Fri)", BigDecimal.valueOf(3400), "MWF", 12);
+        createPackageIfMissing("LESSONS_12_TTS", "12 lessons (Tue/Thu/Sat)", BigDecimal.valueOf(3000), "TTS", 12);
+        createPackageIfMissing("LESSONS_6_MON_SAT", "6 lessons/week (Mon-Sat)", BigDecimal.valueOf(5400), "MON_SAT", 24);
+        createPackageIfMissing("LESSONS_24", "24 lessons", BigDecimal.valueOf(5400), "CUSTOM", 24);
+        List<LessonPackage> all = new ArrayList<>(lessonPackageRepository.findAll());
+        all.sort(Comparator.comparing(LessonPackage::getCode));
+        return all;
+    }
+
+    private void createPackageIfMissing(String code, String title, BigDecimal price, String schedule, Integer count) {
+        if (lessonPackageRepository.findByCode(code).isEmpty()) {
+            lessonPackageRepository.save(LessonPackage.builder()
+                    .code(code).title(title).price(price).scheduleCode(schedule).lessonsCount(count).build());
+            dataVersionService.bump(DataVersionService.PACKAGES);
+        }
+    }
+
+    private static Random studentRandom(long seed, int index) {
+        return new Random(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    private static YearMonth month(LocalDate d) {
+        return YearMonth.from(d);
+    }
+
+    private static String pick(Random r, String[] values) {
+        return values[r.nextInt(values.length)];
+    }
+
+    private static String phone(Random r) {
+        return String.format("+996%09d", r.nextInt(1_000_000_000));
+    }
+
+    private RowSink sink(Connection con, boolean postgres, String table, String... columns) throws SQLException {
+        return postgres ? new CopySink(con, table, columns) : new BatchSink(con, table, columns);
+    }
+
+    /**
+     * Destination for generated rows of one table.
+     */
+    private interface RowSink extends AutoCloseable {
+        void row(Object... values) throws SQLException;
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    /**
+     * COPY ... FROM STDIN (csv) — streams rows to PostgreSQL without per-row statements.
+     */
+    private static final class CopySink implements RowSink {
+        private static final int FLUSH_BYTES = 1 << 20;
+        private final CopyIn copyIn;
+        private final StringBuilder buf = new StringBuilder(FLUSH_BYTES + 1024);
+
+        CopySink(Connection con, String table, String... columns) throws SQLException {
+            String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+            this.copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        }
+
+        @Override
+        public void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) buf.append(',');
+                Object v = values[i];
+                if (v == null) continue; // unquoted empty = NULL
+                if (v instanceof String str) {
+                    buf.append('"').append(str.replace("\"", "\"\"")).append('"');
+                } else {
+                    buf.append(v);
+                }
+            }
+            buf.append('\n');
+            if (buf.length() >= FLUSH_BYTES) flush();
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buf.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buf.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            flush();
+            copyIn.endCopy();
+        }
+    }
+
+    /**
+     * Plain JDBC batches for databases without COPY (H2).
+     */
+    private static final class BatchSink implements RowSink {
+        private final PreparedStatement ps;
+        private int pending;
+
+        BatchSink(Connection con, String table, String... columns) throws SQLException {
+            String sql = "insert into " + table + " (" + String.join(", ", columns) + ") values ("
+                    + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+            this.ps = con.prepareStatement(sql);
+        }
+
+        @Override
+        public void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                ps.setObject(i + 1, values[i]);
+            }
+            ps.addBatch();
+            if (++pending == BATCH_SIZE) {
+                ps.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (pending > 0) ps.executeBatch();
+            ps.close();
+        }
+    }
+}
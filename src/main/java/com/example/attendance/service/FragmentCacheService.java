@@ -0,0 +1,66 @@
+package com.example.attendance.service;
+
+import com.example.attendance.config.BranchContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches rendered HTML of expensive, rarely-changing template fragments (teacher / package select options),
+ * keyed by fragment and DataVersionService version. The model supplier only runs on a miss,
+ * so a hit also skips the queries behind the fragment.
+ */
+@Service
+@RequiredArgsConstructor
+public class FragmentCacheService {
+
+    private final ITemplateEngine templateEngine;
+    private final DataVersionService dataVersionService;
+
+    @Value("${attendance.templates.fragmentCache:true}")
+    private boolean enabled;
+
+    private final Map<String, Rendered> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param template   template name, e.g. "fragments/select_options"
+     * @param fragment   fragment selector inside the template
+     * @param versionKey DataVersionService key the fragment depends on
+     * @param model      variables for rendering, called only when the fragment has to be rendered
+     */
+    public String render(String template, String fragment, String versionKey, Supplier<Map<String, Object>> model) {
+        if (!enabled) return process(template, fragment, model.get());
+        // options lists differ per branch
+        String key = template + "::" + fragment + "::" + BranchContext.current();
+        long version = dataVersionService.version(versionKey);
+        Rendered cached = cache.get(key);
+        if (cached != null && cached.version() == version) return cached.html();
+        String html = process(template, fragment, model.get());
+        cache.put(key, new Rendered(version, html));
+        return html;
+    }
+
+    /**
+     * Marks the option with the given value as selected in cached &lt;option&gt; markup.
+     */
+    public static String selectOption(String optionsHtml, Object value) {
+        if (optionsHtml == null || value == null) return optionsHtml;
+        return optionsHtml.replace("value=\"" + value + "\"", "value=\"" + value + "\" selected=\"selected\"");
+    }
+
+    private String process(String template, String fragment, Map<String, Object> model) {
+        Context ctx = new Context(Locale.getDefault(), model);
+        return templateEngine.process(template, Set.of(fragment), ctx);
+    }
+
+    private record Rendered(long version, String html) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.IdempotencyRecord;
+import com.example.attendance.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for payment and attendance endpoints.
+ *
+ * - Recent keys live in a bounded in-memory LRU and in the idempotency_key table (TTL, cleaned up on a schedule).
+ * - The first request claims the key (insert) and then runs the action and stores its response in the same
+ *   transaction, so a stored key always means the changes were committed, and a concurrent request with the
+ *   same key (any node) waits on or fails at the claim instead of running the action a second time.
+ * - Replays return the stored response without re-executing; a duplicate arriving while the first one is still
+ *   running (double click) waits for its outcome.
+ * - Only responses below 500 are stored; server errors are rolled back and may be retried with the same key.
+ *   So is an action whose transaction was marked rollback-only (a service call inside it failed even though
+ *   the action mapped the error to a 4xx): its response is returned but not stored.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAY_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository repository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ClusterJobService clusterJobService;
+
+    @Value("${attendance.idempotency.ttlMinutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${attendance.idempotency.memoryEntries:10000}")
+    private int memoryEntries;
+
+    @Value("${attendance.idempotency.waitMs:10000}")
+    private long waitMs;
+
+    @Value("${attendance.idempotency.cleanupIntervalMs:600000}")
+    private long cleanupIntervalMs;
+
+    private final Map<String, StoredResponse> recent = new LinkedHashMap<>(256, 0.75f, true);
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run action at most once per (scope, user, key). A blank key runs the action unconditionally.
+     */
+    public ResponseEntity<?> execute(String scope, Long userId, String key, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) return action.get();
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "bad_idempotency_key"));
+        }
+        String id = scope + ":" + userId + ":" + key.trim();
+
+        StoredResponse known = lookup(id);
+        if (known != null) return replay(known);
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> other = inFlight.putIfAbsent(id, mine);
+        if (other != null) {
+            return awaitOther(id, other);
+        }
+
+        boolean[] claimed = new boolean[1];
+        try {
+            ResponseEntity<?>[] original = new ResponseEntity<?>[1];
+            StoredResponse stored = new TransactionTemplate(transactionManager).execute(status -> {
+                // claim the key before running the action: a concurrent claim (another node, or a request that
+                // passed lookup() at the same time) blocks on this insert and fails on the primary key
+                LocalDateTime now = LocalDateTime.now();
+                repository.deleteExpiredById(id, now);
+                IdempotencyRecord claim = repository.saveAndFlush(IdempotencyRecord.builder()
+                        .id(id)
+                        .statusCode(0)
+                        .createdAt(now)
+                        .expiresAt(now.plusMinutes(ttlMinutes))
+                        .build());
+                claimed[0] = true;
+
+                ResponseEntity<?> response = action.get();
+                original[0] = response;
+                StoredResponse sr = new StoredResponse(response.getStatusCode().value(), writeBody(response.getBody()),
+                        LocalDateTime.now().plusMinutes(ttlMinutes));
+                if (sr.status() >= 500 || status.isRollbackOnly()) {
+                    // local rollback-only: rolled back quietly, no UnexpectedRollbackException on a 4xx
+                    status.setRollbackOnly(); // releases the claim too
+                    return null;
+                }
+                claim.setStatusCode(sr.status());
+                claim.setResponseBody(sr.body());
+                claim.setExpiresAt(sr.expiresAt());
+                return sr;
+            });
+            if (stored != null) remember(id, stored);
+            mine.complete(stored);
+            return original[0];
+        } catch (DataIntegrityViolationException ex) {
+            if (claimed[0]) {
+                // the action's own constraint violation, not a duplicate key
+                mine.completeExceptionally(ex);
+                throw ex;
+            }
+            StoredResponse existing = repository.findById(id)
+                    .filter(rec -> rec.getExpiresAt().isAfter(LocalDateTime.now()))
+                    .map(this::fromRecord)
+                    .orElse(null);
+            mine.complete(existing);
+            if (existing == null) {
+                // claimed by a transaction that has not committed yet (databases that do not wait on the key)
+                return ResponseEntity.status(409).body(Map.of("success", false, "error", "request_in_progress"));
+            }
+            log.info("Idempotency key {} was completed concurrently, replaying stored response", id);
+            remember(id, existing);
+            return replay(existing);
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    /**
+     * The in-memory LRU is cleaned on every node, the table by one node per interval.
+     */
+    @Scheduled(fixedDelayString = "${attendance.idempotency.cleanupIntervalMs:600000}")
+    public void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recent) {
+            recent.values().removeIf(r -> r.expiresAt().isBefore(now));
+        }
+        clusterJobService.runExclusive("idempotency-cleanup", Duration.ofMillis(cleanupIntervalMs / 2), run -> {
+            Integer removed = new TransactionTemplate(transactionManager).execute(status -> repository.deleteExpired(now));
+            if (removed != null && removed > 0) log.debug("Evicted {} expired idempotency keys", removed);
+        });
+    }
+
+    /* ---------- helpers ---------- */
+
+    private StoredResponse lookup(String id) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recent) {
+            StoredResponse r = recent.get(id);
+            if (r != null) {
+                if (r.expiresAt().isAfter(now)) return r;
+                recent.remove(id);
+            }
+        }
+        StoredResponse fromDb = repository.findById(id)
+                .filter(rec -> rec.getExpiresAt().isAfter(now))
+                .map(this::fromRecord)
+                .orElse(null);
+        if (fromDb != null) remember(id, fromDb);
+        return fromDb;
+    }
+
+    private void remember(String id, StoredResponse response) {
+        synchronized (recent) {
+            recent.put(id, response);
+            while (recent.size() > memoryEntries) {
+                recent.remove(recent.keySet().iterator().next());
+            }
+        }
+    }
+
+    private ResponseEntity<?> awaitOther(String id, CompletableFuture<StoredResponse> other) {
+        try {
+            StoredResponse r = other.get(waitMs, TimeUnit.MILLISECONDS);
+            if (r != null) return replay(r);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            log.debug("Concurrent request with idempotency key {} did not complete: {}", id, ex.toString());
+        }
+        return ResponseEntity.status(409).body(Map.of("success", false, "error", "request_in_progress"));
+    }
+
+    private ResponseEntity<?> replay(StoredResponse r) {
+        Object body = r.body() == null ? null : objectMapper.readValue(r.body(), Object.class);
+        return ResponseEntity.status(r.status()).header(REPLAY_HEADER, "true").body(body);
+    }
+
+    private String writeBody(Object body) {
+        return body == null ? null : objectMapper.writeValueAsString(body);
+    }
+
+    private StoredResponse fromRecord(IdempotencyRecord rec) {
+        return new StoredResponse(rec.getStatusCode(), rec.getResponseBody(), rec.getExpiresAt());
+    }
+
+    private record StoredResponse(int status, String body, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.attendance.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cross-node invalidation of in-process caches over PostgreSQL LISTEN/NOTIFY (attendance.invalidation.enabled).
+ *
+ * - publish(type, id) collects the change notices of a transaction; one pg_notify is issued before commit on
+ *   the transaction's own connection, so PostgreSQL delivers it exactly when (and only if) the data commits.
+ *   Payload: "node|seq|type:id;type:id;...", seq counts the notifications of the publishing node.
+ * - Every node LISTENs on a connection of its own, outside the pool, and hands the notices of other nodes to
+ *   the subscribers.
+ * - A seq that is still missing after gapTimeout (lost notification, commit failure after pg_notify), a lost
+ *   connection, or a notice too large for one payload makes every subscriber resync (drop everything local).
+ */
+@Service
+@RequiredArgsConstructor
+public class InvalidationBus {
+
+    public static final String CHANNEL = "attendance_invalidation";
+    public static final String RESYNC = "resync";
+
+    private static final int MAX_PAYLOAD = 7900; // NOTIFY limit is 8000 bytes
+    private static final int MAX_MISSING = 1000;
+    private static final Object PENDING_KEY = new Object();
+
+    public record Notice(String type, String id) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${attendance.invalidation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attendance.invalidation.pollMs:1000}")
+    private long pollMs;
+
+    @Value("${attendance.invalidation.gapTimeoutMs:5000}")
+    private long gapTimeoutMs;
+
+    private final String node = Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffffffffL);
+    private final AtomicLong seq = new AtomicLong();
+    private final List<Consumer<Notice>> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, PeerState> peers = new ConcurrentHashMap<>();
+    private final List<Thread> listeners = new ArrayList<>();
+    private volatile boolean running;
+
+    private Counter received;
+    private Counter resyncs;
+
+    /**
+     * Sequence bookkeeping of one publishing node.
+     */
+    private static final class PeerState {
+        long high;
+        final TreeMap<Long, Long> missingSince = new TreeMap<>();
+    }
+
+    private record Target(String name, String url, String username, String password) {
+    }
+
+    public void subscribe(Consumer<Notice> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Announce a change to the other nodes once the current transaction commits (immediately outside one).
+     */
+    public void publish(String type, String id) {
+        if (!running) return;
+        String notice = type + ":" + id;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(List.of(notice));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<String> pending = (List<String>) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending == null) {
+            List<String> batch = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDING_KEY, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(batch);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+                }
+            });
+            pending = batch;
+        }
+        pending.add(notice);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) return;
+        received = meterRegistry.counter("attendance.invalidation.received");
+        resyncs = meterRegistry.counter("attendance.invalidation.resyncs");
+        running = true;
+        Target target = new Target("shared", environment.getProperty("spring.datasource.url"),
+                environment.getProperty("spring.datasource.username"), environment.getProperty("spring.datasource.password"));
+        Thread t = new Thread(() -> listen(target), "invalidation-" + target.name());
+        t.setDaemon(true);
+        t.start();
+        listeners.add(t);
+        log.info("Invalidation bus started as node {}", node);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        for (Thread t : listeners) t.interrupt();
+        listeners.clear();
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void send(List<String> notices) {
+        if (notices.isEmpty()) return;
+        String body = String.join(";", new LinkedHashSet<>(notices));
+        if (body.length() > MAX_PAYLOAD) body = RESYNC + ":*";
+        String payload = node + "|" + seq.incrementAndGet() + "|" + body;
+        jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, CHANNEL, payload);
+    }
+
+    private void listen(Target target) {
+        long backoff = 1000;
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection con = DriverManager.getConnection(target.url(), target.username(), target.password())) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("listen " + CHANNEL);
+                }
+                PGConnection pg = con.unwrap(PGConnection.class);
+                if (connectedBefore) {
+                    // notifications sent while we were away are gone
+                    resync("reconnected to " + target.name());
+                }
+                connectedBefore = true;
+                backoff = 1000;
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications((int) pollMs);
+                    if (notifications != null) {
+                        for (PGNotification n : notifications) receive(n.getParameter());
+                    }
+                    checkGaps();
+                }
+            } catch (SQLException ex) {
+                if (!running) return;
+                log.warn("Invalidation listener on {} lost its connection, retrying in {} ms: {}",
+                        target.name(), backoff, ex.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || parts[0].equals(node)) return;
+        received.increment();
+        trackSequence(parts[0], Long.parseLong(parts[1]));
+        for (String notice : parts[2].split(";")) {
+            int colon = notice.indexOf(':');
+            if (colon < 0) continue;
+            String type = notice.substring(0, colon);
+            if (type.equals(RESYNC)) {
+                resync("oversized notice from " + parts[0]);
+                continue;
+            }
+            dispatch(new Notice(type, notice.substring(colon + 1)));
+        }
+    }
+
+    private synchronized void trackSequence(String peer, long s) {
+        PeerState state = peers.get(peer);
+        if (state == null) {
+            state = new PeerState();
+            state.high = s - 1; // first contact: nothing earlier is expected
+            peers.put(peer, state);
+        }
+        if (s > state.high) {
+            long now = System.currentTimeMillis();
+            for (long m = state.high + 1; m < s && state.missingSince.size() <= MAX_MISSING; m++) {
+                state.missingSince.put(m, now);
+            }
+            state.high = s;
+            if (state.missingSince.size() > MAX_MISSING) {
+                state.missingSince.clear();
+                resync("too many notices missing from " + peer);
+            }
+        } else {
+            // concurrent transactions can commit in another order than they took their seq
+            state.missingSince.remove(s);
+        }
+    }
+
+    private synchronized void checkGaps() {
+        long cutoff = System.currentTimeMillis() - gapTimeoutMs;
+        boolean gap = false;
+        for (PeerState state : peers.values()) {
+            if (!state.missingSince.isEmpty() && state.missingSince.firstEntry().getValue() < cutoff) {
+                state.missingSince.clear();
+                gap = true;
+            }
+        }
+        if (gap) resync("notices missing for " + gapTimeoutMs + " ms");
+    }
+
+    private void resync(String reason) {
+        log.info("Invalidation resync: {}", reason);
+        if (resyncs != null) resyncs.increment();
+        dispatch(new Notice(RESYNC, "*"));
+    }
+
+    private void dispatch(Notice notice) {
+        for (Consumer<Notice> subscriber : subscribers) {
+            try {
+                subscriber.accept(notice);
+            } catch (RuntimeException ex) {
+                log.warn("Invalidation subscriber failed on {}", notice, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.BalanceSnapshot;
+import com.example.attendance.entities.LedgerEntry;
+import com.example.attendance.entities.Payment;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.DomainEventType;
+import com.example.attendance.enums.LedgerEntryType;
+import com.example.attendance.repository.BalanceSnapshotRepository;
+import com.example.attendance.repository.LedgerEntryRepository;
+import com.example.attendance.repository.PaymentRepository;
+import com.example.attendance.repository.StudentRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Append-only ledger of charges and payments — the only place where a student's debt changes.
+ *
+ * - Writes are pure inserts into ledger_entry (and payment for payments); the students row is never updated.
+ * - Balance = BalanceSnapshot.balance + sum(entries after snapshot.lastEntryId). Snapshots are compacted
+ *   on a schedule, so the tail stays short and a lookup is two index reads.
+ * - Student.debt is a read-only formula over the same tables, so existing templates keep working; it is
+ *   clamped at 0 like the old column, balance()/balances() return the signed balance (negative = credit).
+ * - A snapshot covers every entry up to its lastEntryId, so no entry below it may commit after the snapshot.
+ *   On PostgreSQL compaction takes a SHARE lock on ledger_entry, which waits for in-flight inserts to commit
+ *   (bounded by snapshotLockTimeout, the shard is skipped when it expires); elsewhere (H2, single node) only
+ *   snapshotLagSeconds protects against a transaction committing that late.
+ */
+@Service
+@RequiredArgsConstructor
+public class LedgerService {
+
+    private final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final PaymentRepository paymentRepository;
+    private final StudentRepository studentRepository;
+    private final DataVersionService dataVersionService;
+    private final ClusterJobService clusterJobService;
+    private final PlatformTransactionManager transactionManager;
+    private final OutboxService outboxService;
+    private final JdbcTemplate jdbcTemplate;
+
+    // entries younger than this are left for the next compaction (hot students are not re-snapshotted on
+    // every run; without the PostgreSQL lock it is the only guard against late commits)
+    @Value("${attendance.ledger.snapshotLagSeconds:120}")
+    private long snapshotLagSeconds;
+
+    @Value("${attendance.ledger.snapshotLockTimeout:5s}")
+    private String snapshotLockTimeout;
+
+    @Value("${attendance.ledger.snapshotIntervalMs:300000}")
+    private long snapshotIntervalMs;
+
+    // compaction shards, spread over the nodes; a student always falls into the same shard
+    @Value("${attendance.ledger.snapshotShards:4}")
+    private int snapshotShards;
+
+    @Transactional
+    public LedgerEntry recordCharge(Long studentId, BigDecimal amount, Long userId, String note) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("charge amount must be > 0");
+        }
+        return append(studentId, LedgerEntryType.CHARGE, amount, null, userId, note);
+    }
+
+    /**
+     * Record a payment: inserts the Payment row and a matching negative ledger entry.
+     */
+    @Transactional
+    public Payment recordPayment(Long studentId, BigDecimal amount, Long userId, String note) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        Payment payment = paymentRepository.save(Payment.builder()
+                .studentId(studentId)
+                .amount(amount)
+                .paidAt(LocalDateTime.now())
+                .paidByUserId(userId)
+                .note(note)
+                .build());
+        // one lookup for the version bump and the event
+        List<Long> teacherIds = teacherIdsOf(studentId);
+        append(studentId, teacherIds, LedgerEntryType.PAYMENT, amount.negate(), payment.getId(), userId, note);
+        outboxService.record(DomainEventType.PAYMENT_RECORDED, studentId, teacherIds.isEmpty() ? null : teacherIds.get(0),
+                Map.of("paymentId", payment.getId(), "amount", amount.toPlainString()));
+        return payment;
+    }
+
+    /**
+     * Signed correction (positive increases debt).
+     */
+    @Transactional
+    public LedgerEntry recordAdjustment(Long studentId, BigDecimal delta, Long userId, String note) {
+        if (delta == null || delta.signum() == 0) {
+            throw new IllegalArgumentException("adjustment must be non-zero");
+        }
+        return append(studentId, LedgerEntryType.ADJUSTMENT, delta, null, userId, note);
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal balance(Long studentId) {
+        if (studentId == null) return BigDecimal.ZERO;
+        Optional<BalanceSnapshot> snap = balanceSnapshotRepository.findById(studentId);
+        BigDecimal base = snap.map(BalanceSnapshot::getBalance).orElse(BigDecimal.ZERO);
+        long after = snap.map(BalanceSnapshot::getLastEntryId).orElse(0L);
+        return base.add(ledgerEntryRepository.sumAfter(studentId, after));
+    }
+
+    /**
+     * Balances for many students in two queries. Students without entries map to zero.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> balances(Collection<Long> studentIds) {
+        if (studentIds == null || studentIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, BigDecimal> out = new HashMap<>();
+        for (Long id : studentIds) out.put(id, BigDecimal.ZERO);
+        for (BalanceSnapshot snap : balanceSnapshotRepository.findAllById(studentIds)) {
+            out.put(snap.getStudentId(), snap.getBalance());
+        }
+        for (Object[] row : ledgerEntryRepository.tailSums(studentIds)) {
+            out.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+        }
+        return out;
+    }
+
+    @Transactional(readOnly = true)
+    public List<LedgerEntry> history(Long studentId) {
+        return ledgerEntryRepository.findByStudentIdOrderByIdDesc(studentId);
+    }
+
+    private volatile Boolean postgres;
+
+    /**
+     * Fold entries older than the lag into per-student snapshots, one transaction per shard of students.
+     */
+    @Scheduled(fixedDelayString = "${attendance.ledger.snapshotIntervalMs:300000}")
+    public void compactSnapshots() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(snapshotLagSeconds);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        clusterJobService.runSharded("ledger-snapshots", snapshotShards, Duration.ofMillis(snapshotIntervalMs / 2),
+                (shard, shards, run) -> {
+                    try {
+                        tx.executeWithoutResult(status -> compactShard(cutoff, shards, shard));
+                    } catch (PessimisticLockingFailureException ex) {
+                        log.info("Ledger snapshot shard {}/{} skipped, inserts still in flight: {}", shard, shards, ex.getMessage());
+                    }
+                });
+    }
+
+    private void compactShard(LocalDateTime cutoff, int shards, int shard) {
+        if (isPostgres()) {
+            // waits for uncommitted inserts (they could hold ids below the new lastEntryId) and holds new ones
+            // off until this short transaction commits
+            jdbcTemplate.execute("set local lock_timeout = '" + snapshotLockTimeout.replace("'", "") + "'");
+            jdbcTemplate.execute("lock table ledger_entry in share mode");
+        }
+        List<Object[]> rows = ledgerEntryRepository.unsnapshottedTotals(cutoff, shards, shard);
+        if (rows.isEmpty()) return;
+
+        List<Long> ids = rows.stream().map(r -> (Long) r[0]).toList();
+        Map<Long, BalanceSnapshot> existing = new HashMap<>();
+        for (BalanceSnapshot snap : balanceSnapshotRepository.findAllById(ids)) existing.put(snap.getStudentId(), snap);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BalanceSnapshot> toSave = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Long studentId = (Long) row[0];
+            BalanceSnapshot snap = existing.getOrDefault(studentId,
+                    BalanceSnapshot.builder().studentId(studentId).balance(BigDecimal.ZERO).lastEntryId(0L).build());
+            snap.setBalance(snap.getBalance().add((BigDecimal) row[1]));
+            snap.setLastEntryId((Long) row[2]);
+            snap.setTakenAt(now);
+            toSave.add(snap);
+        }
+        balanceSnapshotRepository.saveAll(toSave);
+        log.debug("Compacted ledger snapshots for {} students (shard {}/{})", toSave.size(), shard, shards);
+    }
+
+    /**
+     * One-time carry-over of debts stored in the old students.debt column as OPENING entries.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyDebts() {
+        // nodes starting together must not both create the entries: the lease is released after the commit
+        clusterJobService.runSingle("ledger-legacy-debts", Duration.ZERO, run ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    List<Object[]> rows = ledgerEntryRepository.legacyDebtsWithoutLedger();
+                    if (rows.isEmpty()) return;
+                    Map<Long, Long> teacherByStudent = new HashMap<>();
+                    for (Object[] t : studentRepository.findTeacherIdByStudentIn(rows.stream().map(r -> (Long) r[0]).toList())) {
+                        teacherByStudent.put((Long) t[0], (Long) t[1]);
+                    }
+                    for (Object[] row : rows) {
+                        Long teacherId = teacherByStudent.get((Long) row[0]);
+                        append((Long) row[0], teacherId == null ? List.of() : List.of(teacherId), LedgerEntryType.OPENING,
+                                (BigDecimal) row[1], null, null, "opening balance");
+                    }
+                    log.info("Ledger: created opening entries for {} students with legacy debt", rows.size());
+                }));
+    }
+
+    /* ---------- helpers ---------- */
+
+    private boolean isPostgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            known = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                    con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres"));
+            postgres = known;
+        }
+        return Boolean.TRUE.equals(known);
+    }
+
+    private LedgerEntry append(Long studentId, LedgerEntryType type, BigDecimal amount, Long paymentId, Long userId, String note) {
+        if (studentId == null) throw new IllegalArgumentException("studentId is required");
+        return append(studentId, teacherIdsOf(studentId), type, amount, paymentId, userId, note);
+    }
+
+    /**
+     * Teacher of the student: one findById per recorded entry, answered from the persistence context when the
+     * caller already loaded or created the student in this transaction. Bulk paths (PaymentService.recordBatch,
+     * the legacy debt migration) load all teachers with one query and pass them in instead.
+     */
+    private List<Long> teacherIdsOf(Long studentId) {
+        return studentRepository.findById(studentId)
+                .map(Student::getTeacherId)
+                .map(List::of)
+                .orElse(List.of());
+    }
+
+    private LedgerEntry append(Long studentId, List<Long> teacherIds, LedgerEntryType type, BigDecimal amount,
+                               Long paymentId, Long userId, String note) {
+        if (studentId == null) throw new IllegalArgumentException("studentId is required");
+        // debt is shown on the teacher's views
+        dataVersionService.bumpTeachers(teacherIds);
+        if (type != LedgerEntryType.PAYMENT) {
+            outboxService.record(DomainEventType.CHARGE_RECORDED, studentId, teacherIds.isEmpty() ? null : teacherIds.get(0),
+                    Map.of("entryType", type.name(), "amount", amount.toPlainString()));
+        }
+        return ledgerEntryRepository.save(LedgerEntry.builder()
+                .studentId(studentId)
+                .type(type)
+                .amount(amount)
+                .paymentId(paymentId)
+                .createdByUserId(userId)
+                .createdAt(LocalDateTime.now())
+                .note(note)
+                .build());
+    }
+}
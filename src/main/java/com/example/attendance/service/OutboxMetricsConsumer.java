@@ -0,0 +1,36 @@
+package com.example.attendance.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Domain event counters (attendance.events{type}) and the delay from the write to delivery on this node
+ * (attendance.outbox.delay), to watch the relay.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxMetricsConsumer implements OutboxService.OutboxConsumer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public String name() {
+        return "metrics";
+    }
+
+    @Override
+    public void accept(List<OutboxService.DomainEvent> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Timer delay = meterRegistry.timer("attendance.outbox.delay");
+        for (OutboxService.DomainEvent e : batch) {
+            meterRegistry.counter("attendance.events", "type", e.type().name()).increment();
+            delay.record(Duration.between(e.createdAt(), now));
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.attendance.service;
+
+import com.example.attendance.enums.DomainEventType;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox of domain events (DomainEventType).
+ *
+ * - record() collects the events of a transaction; they are inserted into outbox_event with one JDBC batch just
+ *   before commit, on the transaction's connection, so an event exists if and only if its change committed.
+ * - A relay thread delivers new events in id order and in batches to the OutboxConsumer beans, woken by local
+ *   commits and polling every pollMs (events committed on other nodes).
+ *   perNode consumers (local caches, live views) get every event on every node, from the moment the node
+ *   started; their cursors are in memory. Cluster consumers (notifications) get every event once, on the job
+ *   leader; their cursor is advanced in outbox_cursor in the transaction that calls them.
+ *   A consumer that throws gets the same batch again (at-least-once), after a delay that doubles from pollMs
+ *   per failure. After maxAttempts failures the batch is delivered one event at a time and the events that
+ *   still fail are parked: skipped and logged, for cluster consumers also stored in outbox_parked (their
+ *   events are kept past retentionDays for a replay).
+ * - Ids are taken at insert and become visible at commit, so a missing id may still arrive: delivery stops
+ *   before it until it has been missing for gapWaitMs (then it is taken as a rolled back transaction).
+ * - Events older than retentionDays are deleted nightly.
+ * - A payload whose JSON exceeds the column is replaced by {"truncated": true}: the event (type and ids) is
+ *   still written and the business transaction is never failed by it; consumers read details from the tables.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private static final Object PENDING_KEY = new Object();
+    private static final int MAX_PAYLOAD = 2000;
+
+    private final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ClusterJobService clusterJobService;
+    private final ObjectProvider<OutboxConsumer> consumerProvider;
+
+    @Value("${attendance.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attendance.outbox.pollMs:1000}")
+    private long pollMs;
+
+    @Value("${attendance.outbox.batchSize:500}")
+    private int batchSize;
+
+    @Value("${attendance.outbox.gapWaitMs:30000}")
+    private long gapWaitMs;
+
+    @Value("${attendance.outbox.retentionDays:30}")
+    private int retentionDays;
+
+    @Value("${attendance.outbox.maxAttempts:5}")
+    private int maxAttempts;
+
+    private final Semaphore wake = new Semaphore(0);
+    private final Map<String, Long> localCursors = new ConcurrentHashMap<>();
+    private final Map<Long, Long> missingSince = new HashMap<>(); // first id of a hole -> first seen
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>(); // by consumer
+    private volatile boolean running;
+    private Thread relay;
+
+    public record DomainEvent(long id, DomainEventType type, Long studentId, Long teacherId,
+                              Map<String, Object> payload, LocalDateTime createdAt) {
+    }
+
+    /**
+     * In-process receiver of outbox events. Called on the relay thread (no branch: events of all branches);
+     * cluster consumers run inside the transaction that advances their cursor.
+     */
+    public interface OutboxConsumer {
+
+        /**
+         * Stable name; the cursor of a cluster consumer is stored under it.
+         */
+        String name();
+
+        /**
+         * true: every node receives every event; false: one node of the cluster does.
+         */
+        default boolean perNode() {
+            return true;
+        }
+
+        void accept(List<DomainEvent> batch);
+    }
+
+    private record PendingEvent(DomainEventType type, Long studentId, Long teacherId, String payload) {
+    }
+
+    /**
+     * Failed deliveries of the batch starting at firstId; the next attempt is not before retryAt.
+     */
+    private record Failure(long firstId, int attempts, long retryAt) {
+    }
+
+    /**
+     * Add an event to the current transaction (written right away outside one).
+     */
+    public void record(DomainEventType type, Long studentId, Long teacherId, Map<String, Object> payload) {
+        if (!enabled) return;
+        String json = payload == null || payload.isEmpty() ? null : objectMapper.writeValueAsString(payload);
+        if (json != null && json.length() > MAX_PAYLOAD) {
+            log.warn("Outbox payload of {} for student {} has {} chars, stored as truncated", type, studentId, json.length());
+            meterRegistry.counter("attendance.outbox.truncated", "type", type.name()).increment();
+            json = objectMapper.writeValueAsString(Map.of("truncated", true));
+        }
+        PendingEvent event = new PendingEvent(type, studentId, teacherId, json);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.of(event));
+            wake.release();
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<PendingEvent> pending = (List<PendingEvent>) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending == null) {
+            List<PendingEvent> batch = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDING_KEY, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(batch);
+                }
+
+                @Override
+                public void afterCommit() {
+                    wake.release();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+                }
+            });
+            pending = batch;
+        }
+        pending.add(event);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) return;
+        List<OutboxConsumer> consumers = consumerProvider.orderedStream().toList();
+        // per-node consumers start with what commits from now on
+        long max = maxId();
+        for (OutboxConsumer c : consumers) {
+            if (c.perNode()) localCursors.put(c.name(), max);
+        }
+        running = true;
+        relay = new Thread(() -> relayLoop(consumers), "outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+        log.info("Outbox relay started: {} consumer(s)", consumers.size());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (relay != null) relay.interrupt();
+    }
+
+    /**
+     * Nightly: drop delivered history.
+     */
+    @Scheduled(cron = "${attendance.outbox.cleanupCron:0 30 4 * * *}")
+    public void deleteOldEvents() {
+        if (!enabled) return;
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        clusterJobService.runExclusive("outbox-cleanup", Duration.ofHours(12), run -> {
+            int deleted = jdbcTemplate.update("delete from outbox_event where created_at < ? " +
+                    "and id not in (select event_id from outbox_parked)", cutoff);
+            if (deleted > 0) log.info("Outbox: deleted {} events older than {} days", deleted, retentionDays);
+        });
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void insert(List<PendingEvent> events) {
+        if (events.isEmpty()) return;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "insert into outbox_event (event_type, student_id, teacher_id, payload, created_at) values (?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingEvent e = events.get(i);
+                        ps.setString(1, e.type().name());
+                        if (e.studentId() == null) ps.setNull(2, Types.BIGINT); else ps.setLong(2, e.studentId());
+                        if (e.teacherId() == null) ps.setNull(3, Types.BIGINT); else ps.setLong(3, e.teacherId());
+                        ps.setString(4, e.payload());
+                        ps.setTimestamp(5, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return events.size();
+                    }
+                });
+    }
+
+    private void relayLoop(List<OutboxConsumer> consumers) {
+        while (running) {
+            try {
+                wake.tryAcquire(pollMs, TimeUnit.MILLISECONDS);
+                wake.drainPermits();
+                for (OutboxConsumer c : consumers) {
+                    if (c.perNode()) deliverLocal(c);
+                    else if (clusterJobService.isLeader()) deliverOnce(c);
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Outbox relay round failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void deliverLocal(OutboxConsumer consumer) {
+        long cursor = localCursors.get(consumer.name());
+        List<DomainEvent> batch = ready(cursor);
+        if (batch.isEmpty() || !due(consumer, batch)) return;
+        if (exhausted(consumer, batch)) {
+            for (DomainEvent e : batch) {
+                try {
+                    consumer.accept(List.of(e));
+                    delivered(consumer, List.of(e));
+                } catch (RuntimeException ex) {
+                    parked(consumer, e, ex);
+                }
+                localCursors.put(consumer.name(), e.id());
+            }
+            failures.remove(consumer.name());
+            return;
+        }
+        try {
+            consumer.accept(batch);
+        } catch (RuntimeException ex) {
+            failed(consumer, batch, ex);
+            return;
+        }
+        localCursors.put(consumer.name(), batch.get(batch.size() - 1).id());
+        failures.remove(consumer.name());
+        delivered(consumer, batch);
+    }
+
+    private void deliverOnce(OutboxConsumer consumer) {
+        long cursor = clusterCursor(consumer);
+        List<DomainEvent> batch = ready(cursor);
+        if (batch.isEmpty() || !due(consumer, batch)) return;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        if (exhausted(consumer, batch)) {
+            long from = cursor;
+            for (DomainEvent e : batch) {
+                long after = from;
+                try {
+                    if (!Boolean.TRUE.equals(tx.execute(status -> advance(consumer, after, e.id(), () -> consumer.accept(List.of(e)))))) return;
+                    delivered(consumer, List.of(e));
+                } catch (RuntimeException ex) {
+                    if (!Boolean.TRUE.equals(tx.execute(status -> advance(consumer, after, e.id(), () -> jdbcTemplate.update(
+                            "insert into outbox_parked (consumer, event_id, error, parked_at) values (?, ?, ?, ?)",
+                            consumer.name(), e.id(), error(ex), Timestamp.valueOf(LocalDateTime.now())))))) return;
+                    parked(consumer, e, ex);
+                }
+                from = e.id();
+            }
+            failures.remove(consumer.name());
+            return;
+        }
+        try {
+            Boolean advanced = tx.execute(status ->
+                    advance(consumer, cursor, batch.get(batch.size() - 1).id(), () -> consumer.accept(batch)));
+            failures.remove(consumer.name());
+            if (Boolean.TRUE.equals(advanced)) delivered(consumer, batch);
+        } catch (RuntimeException ex) {
+            failed(consumer, batch, ex);
+        }
+    }
+
+    /**
+     * Moves the cursor of a cluster consumer from one id to another and runs the action, in the caller's
+     * transaction. false when the cursor is elsewhere: another node delivered it (leadership changed hands).
+     */
+    private boolean advance(OutboxConsumer consumer, long from, long to, Runnable action) {
+        int updated = jdbcTemplate.update("update outbox_cursor set last_id = ? where consumer = ? and last_id = ?",
+                to, consumer.name(), from);
+        if (updated == 0) return false;
+        action.run();
+        return true;
+    }
+
+    /**
+     * false while a failed batch waits for its next attempt.
+     */
+    private boolean due(OutboxConsumer consumer, List<DomainEvent> batch) {
+        Failure f = failures.get(consumer.name());
+        return f == null || f.firstId() != batch.get(0).id() || System.currentTimeMillis() >= f.retryAt();
+    }
+
+    private boolean exhausted(OutboxConsumer consumer, List<DomainEvent> batch) {
+        Failure f = failures.get(consumer.name());
+        return f != null && f.firstId() == batch.get(0).id() && f.attempts() >= maxAttempts;
+    }
+
+    /**
+     * Cursor of a cluster consumer; a new consumer starts with the events committed from now on.
+     */
+    private Long clusterCursor(OutboxConsumer consumer) {
+        List<Long> rows = jdbcTemplate.queryForList("select last_id from outbox_cursor where consumer = ?",
+                Long.class, consumer.name());
+        if (!rows.isEmpty()) return rows.get(0);
+        long max = maxId();
+        try {
+            jdbcTemplate.update("insert into outbox_cursor (consumer, last_id) values (?, ?)", consumer.name(), max);
+            return max;
+        } catch (DataIntegrityViolationException ex) {
+            return jdbcTemplate.queryForObject("select last_id from outbox_cursor where consumer = ?", Long.class, consumer.name());
+        }
+    }
+
+    /**
+     * Events after the cursor, cut before the first id that is missing for less than gapWaitMs.
+     */
+    private List<DomainEvent> ready(long after) {
+        List<DomainEvent> events = jdbcTemplate.query(
+                "select id, event_type, student_id, teacher_id, payload, created_at from outbox_event " +
+                        "where id > ? order by id fetch first " + batchSize + " rows only",
+                (rs, i) -> new DomainEvent(
+                        rs.getLong(1),
+                        DomainEventType.valueOf(rs.getString(2)),
+                        rs.getObject(3, Long.class),
+                        rs.getObject(4, Long.class),
+                        parse(rs.getString(5)),
+                        rs.getTimestamp(6).toLocalDateTime()),
+                after);
+        long now = System.currentTimeMillis();
+        long expected = after + 1;
+        int cut = 0;
+        synchronized (missingSince) {
+            for (DomainEvent e : events) {
+                if (e.id() > expected) {
+                    // hole [expected, id): keyed by its first id
+                    long since = missingSince.computeIfAbsent(expected, k -> now);
+                    if (now - since < gapWaitMs) break;
+                }
+                cut++;
+                expected = e.id() + 1;
+            }
+            missingSince.values().removeIf(since -> now - since > 10 * gapWaitMs);
+        }
+        return events.subList(0, cut);
+    }
+
+    private long maxId() {
+        Long max = jdbcTemplate.queryForObject("select max(id) from outbox_event", Long.class);
+        return max == null ? 0L : max;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(String json) {
+        return json == null ? Map.of() : objectMapper.readValue(json, Map.class);
+    }
+
+    private void delivered(OutboxConsumer consumer, List<DomainEvent> batch) {
+        meterRegistry.counter("attendance.outbox.delivered", "consumer", consumer.name()).increment(batch.size());
+    }
+
+    private void failed(OutboxConsumer consumer, List<DomainEvent> batch, RuntimeException ex) {
+        long first = batch.get(0).id();
+        Failure previous = failures.get(consumer.name());
+        int attempts = previous != null && previous.firstId() == first ? previous.attempts() + 1 : 1;
+        long delay = Math.min(pollMs << Math.min(attempts - 1, 10), 300_000);
+        failures.put(consumer.name(), new Failure(first, attempts, System.currentTimeMillis() + delay));
+        meterRegistry.counter("attendance.outbox.failures", "consumer", consumer.name()).increment();
+        log.warn("Outbox consumer {} failed on events {}..{} (attempt {} of {}): {}", consumer.name(), first,
+                batch.get(batch.size() - 1).id(), attempts, maxAttempts, ex.getMessage());
+    }
+
+    private void parked(OutboxConsumer consumer, DomainEvent event, RuntimeException ex) {
+        meterRegistry.counter("attendance.outbox.parked", "consumer", consumer.name()).increment();
+        log.error("Outbox consumer {} parked event {} ({}, student {}) after {} attempts: {}", consumer.name(),
+                event.id(), event.type(), event.studentId(), maxAttempts, ex.getMessage(), ex);
+    }
+
+    private static String error(RuntimeException ex) {
+        String message = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
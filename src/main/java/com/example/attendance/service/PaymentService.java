@@ -2,24 +2,53 @@ package com.example.attendance.service;
 
 import com.example.attendance.entities.Payment;
 import com.example.attendance.entities.Student;
+import com.example.attendance.enums.DomainEventType;
 import com.example.attendance.repository.PaymentRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
+@Observed(name = "attendance.service")
 @RequiredArgsConstructor
 public class PaymentService {
 
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(PaymentService.class);
+
     private final PaymentRepository paymentRepository;
     private final StudentService studentService;
+    private final LedgerService ledgerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataVersionService dataVersionService;
+    private final ColdArchiveService coldArchiveService;
+    private final OutboxService outboxService;
+
+    public record PaymentBatchEntry(Long studentId, BigDecimal amount, String note) {
+    }
+
+    public record PaymentBatchResult(List<Payment> payments, Map<Long, BigDecimal> balances) {
+    }
 
     /**
-     * Make a payment for a student: record Payment and decrease Student.debt.
+     * Make a payment for a student: record Payment and the matching ledger entry (debt is derived from the ledger).
      * Returns the saved Payment.
      */
     @Transactional
@@ -28,34 +57,133 @@ public class PaymentService {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        Student student = studentService.findById(studentId).orElseThrow(() -> new IllegalArgumentException("Student not found: " + studentId));
+        studentService.findById(studentId).orElseThrow(() -> new IllegalArgumentException("Student not found: " + studentId));
+
+        return ledgerService.recordPayment(studentId, amount, paidByUserId, note);
+    }
+
+    /**
+     * Record many payments at once (end-of-day cash reconciliation). All entries are validated first —
+     * nothing is written if any entry is invalid.
+     *
+     * Payment rows are inserted with one JDBC batch, the matching ledger entries with a single
+     * INSERT ... SELECT over the new payment ids, and the resulting balances are read back in one go.
+     */
+    @Transactional
+    public PaymentBatchResult recordBatch(List<PaymentBatchEntry> entries, Long paidByUserId) {
+        validateBatch(entries);
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp paidAt = Timestamp.valueOf(now);
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(
+                        "insert into payment (student_id, amount, paid_at, paid_by_user_id, note) values (?, ?, ?, ?, ?)",
+                        new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PaymentBatchEntry e = entries.get(i);
+                        ps.setLong(1, e.studentId());
+                        ps.setBigDecimal(2, e.amount());
+                        ps.setTimestamp(3, paidAt);
+                        if (paidByUserId == null) ps.setNull(4, Types.BIGINT); else ps.setLong(4, paidByUserId);
+                        ps.setString(5, e.note());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return entries.size();
+                    }
+                },
+                keys);
+
+        List<Payment> payments = new ArrayList<>(entries.size());
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < entries.size(); i++) {
+            PaymentBatchEntry e = entries.get(i);
+            payments.add(Payment.builder()
+                    .id(((Number) keyList.get(i).get("id")).longValue())
+                    .studentId(e.studentId())
+                    .amount(e.amount())
+                    .paidAt(now)
+                    .paidByUserId(paidByUserId)
+                    .note(e.note())
+                    .build());
+        }
+
+        // one set-based statement for all ledger entries (debt is derived from the ledger)
+        String placeholders = payments.stream().map(p -> "?").collect(Collectors.joining(", "));
+        jdbcTemplate.update(
+                "insert into ledger_entry (student_id, type, amount, payment_id, created_by_user_id, created_at, note) " +
+                        "select p.student_id, 'PAYMENT', -p.amount, p.id, p.paid_by_user_id, p.paid_at, p.note " +
+                        "from payment p where p.id in (" + placeholders + ")",
+                payments.stream().map(Payment::getId).toArray());
 
-        // Normalize student's debt
-        if (student.getDebt() == null) {
-            student.setDebt(BigDecimal.ZERO);
+        Set<Long> studentIds = entries.stream().map(PaymentBatchEntry::studentId).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, BigDecimal> balances = ledgerService.balances(studentIds);
+        Map<Long, Long> teacherByStudent = studentService.teacherIdsByStudent(studentIds);
+        dataVersionService.bumpTeachers(teacherByStudent.values());
+        for (Payment p : payments) {
+            outboxService.record(DomainEventType.PAYMENT_RECORDED, p.getStudentId(), teacherByStudent.get(p.getStudentId()),
+                    Map.of("paymentId", p.getId(), "amount", p.getAmount().toPlainString()));
         }
+        log.info("Recorded batch of {} payments for {} students by userId={}", payments.size(), studentIds.size(), paidByUserId);
+        return new PaymentBatchResult(payments, balances);
+    }
 
-        BigDecimal newDebt = student.getDebt().subtract(amount);
-        if (newDebt.compareTo(BigDecimal.ZERO) < 0) {
-            newDebt = BigDecimal.ZERO; // don't go negative
+    /**
+     * Throws IllegalArgumentException listing every invalid entry. Read-only, so a failure does not mark a
+     * surrounding transaction rollback-only.
+     */
+    @Transactional(readOnly = true, noRollbackFor = IllegalArgumentException.class)
+    public void validateBatch(List<PaymentBatchEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("entries must not be empty");
+        }
+        if (entries.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("too many entries: " + entries.size() + " (max " + MAX_BATCH_SIZE + ")");
         }
-        student.setDebt(newDebt);
-        student.setUpdatedAt(java.time.Instant.now());
-        studentService.updateStudent(student);
+        Set<Long> ids = entries.stream().map(PaymentBatchEntry::studentId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> known = studentService.findAllById(ids).stream().map(Student::getId).collect(Collectors.toSet());
 
-        Payment payment = Payment.builder()
-                .studentId(studentId)
-                .amount(amount)
-                .paidAt(LocalDateTime.now())
-                .paidByUserId(paidByUserId)
-                .note(note)
-                .build();
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PaymentBatchEntry e = entries.get(i);
+            if (e.studentId() == null) {
+                errors.add("entries[" + i + "]: studentId is required");
+            } else if (!known.contains(e.studentId())) {
+                errors.add("entries[" + i + "]: student not found: " + e.studentId());
+            }
+            if (e.amount() == null || e.amount().compareTo(BigDecimal.ZERO) <= 0) {
+                errors.add("entries[" + i + "]: amount must be positive");
+            }
+            if (e.note() != null && e.note().length() > 255) {
+                errors.add("entries[" + i + "]: note is too long");
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+    }
 
-        return paymentRepository.save(payment);
+    @Transactional(readOnly = true)
+    public BigDecimal currentDebt(Long studentId) {
+        return ledgerService.balance(studentId);
     }
 
     @Transactional(readOnly = true)
     public List<Payment> findPaymentsForStudent(Long studentId) {
-        return paymentRepository.findByStudentIdOrderByPaidAtDesc(studentId);
+        // archived months come from the cold archive files
+        return coldArchiveService.paymentsForStudent(studentId);
+    }
+
+    /**
+     * Payments of many students at once (dashboards): one query and one pass per archived month instead of a
+     * query and a seek into every archived month per student. Every id is a key of the result.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Payment>> findPaymentsForStudents(Collection<Long> studentIds) {
+        return coldArchiveService.paymentsForStudents(studentIds);
     }
 }
\ No newline at end of file
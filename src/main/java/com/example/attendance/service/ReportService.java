@@ -0,0 +1,546 @@
+package com.example.attendance.service;
+
+import com.example.attendance.config.BranchContext;
+import com.example.attendance.entities.LessonPackage;
+import com.example.attendance.entities.Teacher;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.LessonPackageRepository;
+import com.example.attendance.repository.TeacherRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Manager reports over a range of months.
+ *
+ * - Attendance rate per teacher / time slot / package, lessons consumed versus lessons paid per teacher,
+ *   revenue per month, outstanding debt by age.
+ * - Short windows of live months are one GROUP BY in the database. Windows longer than
+ *   attendance.reports.sqlMaxMonths, or touching months in the cold archive, stream the rows of every month
+ *   (one partition / archive file each) through a fork-join pool and aggregate them in memory.
+ * - Grouping uses the current assignment of students (teacher, slot, package). A branch user only sees the
+ *   students of their branch (BranchContext), including in the archived months. Marks of deleted students
+ *   are left out on both paths (the GROUP BY joins students, the in-memory scan drops ids it did not load).
+ * - Read-only transactions, so with a replica configured the reports run there.
+ * - Results are cached per (report, period) under DataVersionService.monthsTag, so a write into any month of
+ *   the period recomputes it; attendance.reports.cacheTtl bounds the age of a result after edits of students.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportService {
+
+    private static final int STATUSES = AttendanceStatus.values().length;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int MAX_CACHED = 256;
+
+    public enum Dimension {
+        TEACHER("teacher_id"), SLOT("time_slot_id"), PACKAGE("package_id");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+    }
+
+    public record RateRow(Long key, String label, long present, long late, long absent, long excused) {
+        public long marked() {
+            return present + late + absent;
+        }
+
+        /**
+         * Attended (PRESENT + LATE) share of the lessons that took place; auto-filled EXCUSED rows are left out.
+         */
+        public double rate() {
+            return marked() == 0 ? 0 : (double) (present + late) / marked();
+        }
+    }
+
+    public record ConsumptionRow(Long teacherId, String teacher, long consumed, BigDecimal paid, BigDecimal paidLessons) {
+        public BigDecimal difference() {
+            return paidLessons.subtract(BigDecimal.valueOf(consumed));
+        }
+    }
+
+    public record RevenueRow(YearMonth month, long payments, BigDecimal amount) {
+    }
+
+    public record AgingRow(Long teacherId, String teacher, BigDecimal upTo30, BigDecimal upTo60, BigDecimal upTo90,
+                           BigDecimal over90) {
+        public BigDecimal total() {
+            return upTo30.add(upTo60).add(upTo90).add(over90);
+        }
+    }
+
+    private record Cached(String tag, long computedAt, Object value) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ReportService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ColdArchiveService coldArchiveService;
+    private final DataVersionService dataVersionService;
+    private final TeacherRepository teacherRepository;
+    private final LessonPackageRepository lessonPackageRepository;
+
+    @Value("${attendance.reports.sqlMaxMonths:3}")
+    private int sqlMaxMonths;
+
+    @Value("${attendance.reports.parallelism:4}")
+    private int parallelism;
+
+    @Value("${attendance.reports.cacheTtl:PT15M}")
+    private Duration cacheTtl;
+
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void start() {
+        // own pool: leaves block on JDBC, keep them off the common pool; parallelism <= connection pool size
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /* ---------- reports ---------- */
+
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<RateRow> attendanceRates(YearMonth from, YearMonth to, Dimension by) {
+        return (List<RateRow>) cached("rates:" + by, from, to, () -> {
+            Groups groups = loadGroups();
+            Counts counts = statusCounts(from, to, by, groups);
+            Map<Long, String> labels = labels(by);
+            List<RateRow> out = new ArrayList<>();
+            for (int key = 0; key < counts.keys(); key++) {
+                if (counts.total(key) == 0) continue;
+                out.add(new RateRow(key == 0 ? null : (long) key, label(labels, key),
+                        counts.get(key, AttendanceStatus.PRESENT), counts.get(key, AttendanceStatus.LATE),
+                        counts.get(key, AttendanceStatus.ABSENT), counts.get(key, AttendanceStatus.EXCUSED)));
+            }
+            out.sort(Comparator.comparing(RateRow::label));
+            return out;
+        });
+    }
+
+    /**
+     * Per teacher: lessons consumed (PRESENT / LATE / ABSENT) against lessons paid for in the period
+     * (payments divided by the per-lesson price of the student's package; students without a priced package
+     * count towards paid only).
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<ConsumptionRow> consumedVersusPaid(YearMonth from, YearMonth to) {
+        return (List<ConsumptionRow>) cached("consumption", from, to, () -> {
+            Groups groups = loadGroups();
+            Counts counts = statusCounts(from, to, Dimension.TEACHER, groups);
+
+            Map<Long, BigDecimal> paidByStudent = paymentsByStudent(from, to);
+            Map<Long, BigDecimal> paid = new HashMap<>();
+            Map<Long, BigDecimal> paidLessons = new HashMap<>();
+            paidByStudent.forEach((studentId, amount) -> {
+                long teacher = groups.key(groups.teacher, studentId);
+                if (teacher < 0) return; // other branch
+                paid.merge(teacher, amount, BigDecimal::add);
+                BigDecimal price = groups.lessonPrice(studentId);
+                if (price != null) paidLessons.merge(teacher, amount.divide(price, 2, RoundingMode.HALF_UP), BigDecimal::add);
+            });
+
+            Map<Long, String> labels = labels(Dimension.TEACHER);
+            Set<Long> teachers = new TreeSet<>(paid.keySet());
+            for (int key = 0; key < counts.keys(); key++) if (counts.total(key) > 0) teachers.add((long) key);
+            List<ConsumptionRow> out = new ArrayList<>();
+            for (long key : teachers) {
+                long consumed = 0;
+                for (AttendanceStatus s : AttendanceStatus.values()) if (s.consumesLesson()) consumed += counts.get((int) key, s);
+                out.add(new ConsumptionRow(key == 0 ? null : key, label(labels, key), consumed,
+                        paid.getOrDefault(key, BigDecimal.ZERO), paidLessons.getOrDefault(key, BigDecimal.ZERO)));
+            }
+            out.sort(Comparator.comparing(ConsumptionRow::teacher));
+            return out;
+        });
+    }
+
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<RevenueRow> revenueByMonth(YearMonth from, YearMonth to) {
+        return (List<RevenueRow>) cached("revenue", from, to, () -> {
+            Long branch = BranchContext.current();
+            Groups groups = branch == null ? null : loadGroups();
+            Map<YearMonth, long[]> counts = new TreeMap<>();
+            Map<YearMonth, BigDecimal> amounts = new TreeMap<>();
+            for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+                counts.put(m, new long[1]);
+                amounts.put(m, BigDecimal.ZERO);
+            }
+            jdbcTemplate.query("select extract(year from p.paid_at), extract(month from p.paid_at), count(*), sum(p.amount) " +
+                            "from payment p " + (branch == null ? "" : "join students s on s.id = p.student_id ") +
+                            "where p.paid_at >= ? and p.paid_at < ?" + branchFilter("and", "s") +
+                            " group by extract(year from p.paid_at), extract(month from p.paid_at)",
+                    (RowCallbackHandler) rs -> {
+                        YearMonth m = YearMonth.of(rs.getInt(1), rs.getInt(2));
+                        counts.get(m)[0] += rs.getLong(3);
+                        amounts.merge(m, rs.getBigDecimal(4), BigDecimal::add);
+                    },
+                    withBranch(start(from), start(to.plusMonths(1))));
+            for (YearMonth m : counts.keySet()) {
+                long[] cents = new long[1];
+                long[] n = counts.get(m);
+                if (coldArchiveService.scanPayments(m, (studentId, paidAt, amountCents) -> {
+                    if (groups != null && groups.key(groups.teacher, studentId) < 0) return;
+                    cents[0] += amountCents;
+                    n[0]++;
+                })) {
+                    amounts.merge(m, BigDecimal.valueOf(cents[0], 2), BigDecimal::add);
+                }
+            }
+            List<RevenueRow> out = new ArrayList<>();
+            counts.forEach((m, n) -> out.add(new RevenueRow(m, n[0], amounts.get(m))));
+            return out;
+        });
+    }
+
+    /**
+     * Outstanding debt per teacher as of today, by age of the charges it is made of: payments settle the oldest
+     * charges first, so the debt is the newest charges back to its amount. One windowed query over the ledger.
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<AgingRow> debtAging() {
+        LocalDate today = LocalDate.now();
+        YearMonth month = YearMonth.from(today);
+        return (List<AgingRow>) cached("aging:" + today, month, month, () -> {
+            Map<Long, BigDecimal[]> buckets = new TreeMap<>();
+            jdbcTemplate.query("with debt as (" +
+                            "  select student_id, sum(amount) as total from ledger_entry group by student_id having sum(amount) > 0), " +
+                            "charges as (" +
+                            "  select e.student_id, e.amount, e.created_at, d.total, " +
+                            "         sum(e.amount) over (partition by e.student_id order by e.id desc) as newer " +
+                            "  from ledger_entry e join debt d on d.student_id = e.student_id where e.amount > 0) " +
+                            "select teacher_id, bucket, sum(owed) from (" +
+                            "  select s.teacher_id, " +
+                            "         case when c.created_at >= ? then 0 when c.created_at >= ? then 1 when c.created_at >= ? then 2 else 3 end as bucket, " +
+                            "         least(c.amount, greatest(c.total - (c.newer - c.amount), 0)) as owed " +
+                            "  from charges c join students s on s.id = c.student_id" + branchFilter("where", "s") + ") x " +
+                            "group by teacher_id, bucket",
+                    (RowCallbackHandler) rs -> {
+                        long teacher = rs.getLong(1);
+                        BigDecimal[] row = buckets.computeIfAbsent(teacher,
+                                k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+                        row[rs.getInt(2)] = row[rs.getInt(2)].add(rs.getBigDecimal(3));
+                    },
+                    withBranch(start(today.minusDays(30)), start(today.minusDays(60)), start(today.minusDays(90))));
+            Map<Long, String> labels = labels(Dimension.TEACHER);
+            List<AgingRow> out = new ArrayList<>();
+            buckets.forEach((teacher, b) -> out.add(new AgingRow(teacher == 0 ? null : teacher, label(labels, teacher),
+                    b[0], b[1], b[2], b[3])));
+            out.sort(Comparator.comparing(AgingRow::total).reversed());
+            return out;
+        });
+    }
+
+    /* ---------- attendance aggregation ---------- */
+
+    private Counts statusCounts(YearMonth from, YearMonth to, Dimension by, Groups groups) {
+        List<YearMonth> months = new ArrayList<>();
+        boolean archived = false;
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+            months.add(m);
+            archived |= coldArchiveService.isAttendanceArchived(m);
+        }
+        if (months.size() <= sqlMaxMonths && !archived) {
+            Counts counts = new Counts();
+            jdbcTemplate.query("select s." + by.column + ", a.status, count(*) from attendance a " +
+                            "join students s on s.id = a.student_id " +
+                            "where a.lesson_date >= ? and a.lesson_date < ?" + branchFilter("and", "s") +
+                            " group by s." + by.column + ", a.status",
+                    (RowCallbackHandler) rs -> {
+                        String status = rs.getString(2);
+                        if (status != null) counts.add(rs.getLong(1), AttendanceStatus.valueOf(status).ordinal(), rs.getLong(3));
+                    },
+                    withBranch(Date.valueOf(from.atDay(1)), Date.valueOf(to.plusMonths(1).atDay(1))));
+            return counts;
+        }
+        long started = System.nanoTime();
+        Counts counts = pool.invoke(new MonthTask(months, 0, months.size(), groups.keys(by), groups, BranchContext.current()));
+        log.debug("Aggregated {} months of attendance by {} in {} ms", months.size(), by,
+                (System.nanoTime() - started) / 1_000_000);
+        return counts;
+    }
+
+    /**
+     * Splits the months in halves down to one month per task.
+     */
+    private final class MonthTask extends RecursiveTask<Counts> {
+
+        private final List<YearMonth> months;
+        private final int lo;
+        private final int hi;
+        private final long[] keys;
+        private final Groups groups;
+        private final Long branch;
+
+        MonthTask(List<YearMonth> months, int lo, int hi, long[] keys, Groups groups, Long branch) {
+            this.months = months;
+            this.lo = lo;
+            this.hi = hi;
+            this.keys = keys;
+            this.groups = groups;
+            this.branch = branch;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (hi - lo == 1) return BranchContext.callAs(branch, () -> scanMonth(months.get(lo), keys, groups));
+            int mid = (lo + hi) >>> 1;
+            MonthTask left = new MonthTask(months, lo, mid, keys, groups, branch);
+            left.fork();
+            Counts right = new MonthTask(months, mid, hi, keys, groups, branch).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    private Counts scanMonth(YearMonth month, long[] keys, Groups groups) {
+        Counts counts = new Counts();
+        coldArchiveService.scanAttendance(month, (studentId, day, status) -> {
+            if (status != null) counts.add(groups.key(keys, studentId), statusIndex(status), 1);
+        });
+        // live rows: the whole month, or marks that reached an archived month after it was archived
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true); // PostgreSQL only streams with a fetch size inside a transaction
+        tx.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "select student_id, status from attendance where lesson_date >= ? and lesson_date < ?");
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setDate(1, Date.valueOf(month.atDay(1)));
+                    ps.setDate(2, Date.valueOf(month.plusMonths(1).atDay(1)));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    String s = rs.getString(2);
+                    if (s != null) counts.add(groups.key(keys, rs.getLong(1)), statusIndex(s), 1);
+                }));
+        return counts;
+    }
+
+    /**
+     * Status counts per group key (dense: keys are ids), key 0 = no group, negative keys are not counted.
+     */
+    private static final class Counts {
+
+        private long[] data = new long[64 * STATUSES];
+
+        void add(long key, int status, long n) {
+            if (key < 0) return; // student of another branch
+            if (key > Integer.MAX_VALUE / STATUSES - 1) throw new IllegalStateException("Group id out of range: " + key);
+            int i = (int) key * STATUSES + status;
+            if (i >= data.length) data = Arrays.copyOf(data, Math.max(i + 1, data.length * 2));
+            data[i] += n;
+        }
+
+        long get(int key, AttendanceStatus status) {
+            int i = key * STATUSES + status.ordinal();
+            return i < data.length ? data[i] : 0;
+        }
+
+        long total(int key) {
+            long sum = 0;
+            for (int s = 0; s < STATUSES; s++) sum += data[key * STATUSES + s];
+            return sum;
+        }
+
+        int keys() {
+            return data.length / STATUSES;
+        }
+
+        Counts merge(Counts other) {
+            if (other.data.length > data.length) data = Arrays.copyOf(data, other.data.length);
+            for (int i = 0; i < other.data.length; i++) data[i] += other.data[i];
+            return this;
+        }
+    }
+
+    /* ---------- students and labels ---------- */
+
+    /**
+     * Current teacher / slot / package of every student of the current branch, in arrays indexed by student id.
+     */
+    private static final class Groups {
+
+        private final long[] teacher;
+        private final long[] slot;
+        private final long[] pkg;
+        private final BigDecimal[] lessonPrice;
+        private final boolean[] member;
+
+        Groups(int size) {
+            member = new boolean[size];
+            teacher = new long[size];
+            slot = new long[size];
+            pkg = new long[size];
+            lessonPrice = new BigDecimal[size];
+        }
+
+        long[] keys(Dimension by) {
+            return switch (by) {
+                case TEACHER -> teacher;
+                case SLOT -> slot;
+                case PACKAGE -> pkg;
+            };
+        }
+
+        /**
+         * Group of a student: 0 = none, -1 = not a current student of this branch (other branch, deleted,
+         * or an id past the loaded range — the same rows the inner join of the SQL path drops).
+         */
+        long key(long[] keys, long studentId) {
+            if (studentId <= 0 || studentId >= keys.length) return -1;
+            return member[(int) studentId] ? keys[(int) studentId] : -1;
+        }
+
+        BigDecimal lessonPrice(long studentId) {
+            return studentId > 0 && studentId < lessonPrice.length ? lessonPrice[(int) studentId] : null;
+        }
+    }
+
+    private Groups loadGroups() {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from students", Long.class);
+        Groups groups = new Groups(maxId == null ? 1 : Math.toIntExact(maxId + 1));
+        jdbcTemplate.query("select s.id, s.teacher_id, s.time_slot_id, s.package_id, s.package_price, p.lessons_count " +
+                        "from students s left join lesson_packages p on p.id = s.package_id" + branchFilter("where", "s"),
+                (RowCallbackHandler) rs -> {
+                    int id = rs.getInt(1);
+                    if (id >= groups.teacher.length) return; // inserted after max(id) was read
+                    groups.member[id] = true;
+                    groups.teacher[id] = rs.getLong(2);
+                    groups.slot[id] = rs.getLong(3);
+                    groups.pkg[id] = rs.getLong(4);
+                    BigDecimal price = rs.getBigDecimal(5);
+                    int lessons = rs.getInt(6);
+                    if (price != null && price.signum() > 0 && lessons > 0) {
+                        groups.lessonPrice[id] = price.divide(BigDecimal.valueOf(lessons), 4, RoundingMode.HALF_UP);
+                    }
+                },
+                withBranch());
+        return groups;
+    }
+
+    private Map<Long, String> labels(Dimension by) {
+        Map<Long, String> labels = new HashMap<>();
+        Map<Long, String> teachers = new HashMap<>();
+        if (by == Dimension.TEACHER || by == Dimension.SLOT) {
+            for (Teacher t : teacherRepository.findAll()) teachers.put(t.getUserId(), t.getFirstName() + " " + t.getLastName());
+        }
+        switch (by) {
+            case TEACHER -> labels.putAll(teachers);
+            case SLOT -> jdbcTemplate.query("select id, teacher_id, label from time_slot",
+                    (RowCallbackHandler) rs -> labels.put(rs.getLong(1),
+                            teachers.getOrDefault(rs.getLong(2), "?") + " · " + rs.getString(3)));
+            case PACKAGE -> {
+                for (LessonPackage p : lessonPackageRepository.findAll()) labels.put(p.getId(), p.getTitle());
+            }
+        }
+        return labels;
+    }
+
+    private static String label(Map<Long, String> labels, long key) {
+        if (key == 0) return "—";
+        return labels.getOrDefault(key, "#" + key);
+    }
+
+    /* ---------- payments ---------- */
+
+    private Map<Long, BigDecimal> paymentsByStudent(YearMonth from, YearMonth to) {
+        Map<Long, BigDecimal> out = new HashMap<>();
+        jdbcTemplate.query("select student_id, sum(amount) from payment where paid_at >= ? and paid_at < ? group by student_id",
+                (RowCallbackHandler) rs -> {
+                    BigDecimal amount = rs.getBigDecimal(2);
+                    if (amount != null) out.merge(rs.getLong(1), amount, BigDecimal::add);
+                },
+                start(from), start(to.plusMonths(1)));
+        for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+            coldArchiveService.scanPayments(m, (studentId, paidAt, amountCents) ->
+                    out.merge(studentId, BigDecimal.valueOf(amountCents, 2), BigDecimal::add));
+        }
+        return out;
+    }
+
+    /* ---------- cache ---------- */
+
+    private Object cached(String report, YearMonth from, YearMonth to, Supplier<Object> compute) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("Period start is after its end: " + from + " > " + to);
+        String key = report + ":" + from + ":" + to + ":" + BranchContext.current();
+        // tag read before computing: a write during the computation leaves the entry with an old tag
+        String tag = dataVersionService.monthsTag(from, to);
+        long now = System.currentTimeMillis();
+        Cached hit = cache.get(key);
+        if (hit != null && hit.tag().equals(tag) && now - hit.computedAt() < cacheTtl.toMillis()) return hit.value();
+        Object value = compute.get();
+        if (cache.size() >= MAX_CACHED) cache.clear();
+        cache.put(key, new Cached(tag, now, value));
+        return value;
+    }
+
+    /**
+     * " where|and alias.branch_id = ?" for a branch user, "" when all branches are visible. The filter is the
+     * last condition of a query, so withBranch appends its argument after the others.
+     */
+    private static String branchFilter(String keyword, String alias) {
+        return BranchContext.current() == null ? "" : " " + keyword + " " + alias + ".branch_id = ?";
+    }
+
+    private static Object[] withBranch(Object... args) {
+        Long branch = BranchContext.current();
+        if (branch == null) return args;
+        Object[] out = Arrays.copyOf(args, args.length + 1);
+        out[args.length] = branch;
+        return out;
+    }
+
+    // string switch: cheaper per row than Enum.valueOf
+    private static int statusIndex(String status) {
+        return switch (status) {
+            case "PRESENT" -> AttendanceStatus.PRESENT.ordinal();
+            case "LATE" -> AttendanceStatus.LATE.ordinal();
+            case "ABSENT" -> AttendanceStatus.ABSENT.ordinal();
+            case "EXCUSED" -> AttendanceStatus.EXCUSED.ordinal();
+            default -> throw new IllegalStateException("Unknown attendance status " + status);
+        };
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    private static Timestamp start(LocalDate day) {
+        return Timestamp.valueOf(day.atStartOfDay());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.attendance.service;
+
+import com.example.attendance.config.BranchContext;
+import com.example.attendance.enums.AlertLevel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read model of the manager pages: student totals per teacher plus debtor and low-balance counts.
+ *
+ * - Computed with one GROUP BY over students and one over student_alert; no student entities are loaded.
+ * - Cached per branch under studentsTag + the "alerts" version, so any student write or alert level change
+ *   recomputes it; bumps reach other nodes over the InvalidationBus, attendance.overview.cacheTtl bounds the
+ *   age of an entry when the bus is off or a notice is lost.
+ */
+@Service
+@RequiredArgsConstructor
+public class SchoolOverviewService {
+
+    private final StudentService studentService;
+    private final AlertService alertService;
+    private final DataVersionService dataVersionService;
+
+    @Value("${attendance.overview.cacheTtl:PT1M}")
+    private Duration cacheTtl;
+
+    private final Map<Long, Cached> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param studentsByTeacher teacher id -> students (null key = no teacher)
+     * @param debtors           students with debt
+     * @param lowBalance        students without debt but with fewer than warnBelow lessons left
+     */
+    public record Overview(long totalStudents, Map<Long, Long> studentsByTeacher, long debtors, long lowBalance) {
+    }
+
+    private record Cached(String tag, long computedAt, Overview value) {
+    }
+
+    public Overview overview() {
+        Long branch = BranchContext.current();
+        // tag read before computing: a write during the computation leaves the entry with an old tag
+        String tag = dataVersionService.studentsTag() + "-" + dataVersionService.version(DataVersionService.ALERTS);
+        long now = System.currentTimeMillis();
+        Cached hit = cache.get(branch == null ? -1L : branch);
+        if (hit != null && hit.tag().equals(tag) && now - hit.computedAt() < cacheTtl.toMillis()) return hit.value();
+
+        Map<Long, Long> byTeacher = studentService.countsByTeacher();
+        long total = 0;
+        for (long n : byTeacher.values()) total += n;
+        Map<AlertLevel, Long> alerts = alertService.countsByLevel(branch);
+        Overview value = new Overview(total, Collections.unmodifiableMap(byTeacher),
+                alerts.get(AlertLevel.DEBT), alerts.get(AlertLevel.LOW) + alerts.get(AlertLevel.WARN));
+        cache.put(branch == null ? -1L : branch, new Cached(tag, now, value));
+        return value;
+    }
+}
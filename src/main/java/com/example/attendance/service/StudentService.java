@@ -2,9 +2,11 @@ package com.example.attendance.service;
 
 import com.example.attendance.entities.LessonPackage;
 import com.example.attendance.entities.Student;
+import com.example.attendance.enums.DomainEventType;
 import com.example.attendance.enums.PackageType;
 import com.example.attendance.repository.LessonPackageRepository;
 import com.example.attendance.repository.StudentRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,10 +16,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
+@Observed(name = "attendance.service")
 @RequiredArgsConstructor
 public class StudentService {
 
@@ -25,6 +32,9 @@ public class StudentService {
 
     private final StudentRepository studentRepository;
     private final LessonPackageRepository lessonPackageRepository;
+    private final LedgerService ledgerService;
+    private final DataVersionService dataVersionService;
+    private final OutboxService outboxService;
 
     @Transactional
     public Student createStudent(String firstName,
@@ -57,13 +67,15 @@ public class StudentService {
             log.warn("Failed to set timeSlotId on Student via reflection: {}", ex.getMessage());
         }
 
+        // debt is not stored on the student: it becomes a ledger charge once the student has an id
+        BigDecimal openingCharge;
         LessonPackage pkg = resolvePackageForEnum(packageType);
         if (pkg != null) {
             s.assignPackage(pkg);
             if (pkg.getLessonsCount() != null) s.setRemainingLessons(pkg.getLessonsCount());
             BigDecimal computedDebt = (debtParam != null) ? debtParam : pkg.getPrice();
             if (computedDebt == null) computedDebt = BigDecimal.ZERO;
-            s.setDebt(computedDebt);
+            openingCharge = computedDebt;
 
             if (paymentNote != null && !paymentNote.isBlank() && pkg.getPrice() != null) {
                 BigDecimal diff = pkg.getPrice().subtract(computedDebt);
@@ -74,7 +86,7 @@ public class StudentService {
         } else {
             s.setPackagePrice(BigDecimal.ZERO);
             s.setPackageCode(null);
-            s.setDebt(debtParam == null ? BigDecimal.ZERO : debtParam);
+            openingCharge = debtParam == null ? BigDecimal.ZERO : debtParam;
         }
 
         if (s.getStudentCode() == null) {
@@ -89,6 +101,12 @@ public class StudentService {
             saved = studentRepository.save(saved);
         }
 
+        if (openingCharge.compareTo(BigDecimal.ZERO) > 0) {
+            ledgerService.recordCharge(saved.getId(), openingCharge, null, pkg != null ? "package " + pkg.getCode() : "initial debt");
+        }
+        dataVersionService.bumpTeacher(saved.getTeacherId());
+        recordEnrolled(saved);
+
         log.info("Created student id={} name={} {}, package={}", saved.getId(), saved.getFirstName(), saved.getLastName(), pkg != null ? pkg.getCode() : "none");
         return saved;
     }
@@ -131,9 +149,6 @@ public class StudentService {
         if (pkg.getLessonsCount() != null) s.setRemainingLessons(pkg.getLessonsCount());
 
         BigDecimal paid = initialPayment == null ? BigDecimal.ZERO : initialPayment;
-        BigDecimal debt = pkg.getPrice().subtract(paid);
-        if (debt.compareTo(BigDecimal.ZERO) < 0) debt = BigDecimal.ZERO;
-        s.setDebt(debt);
 
         if (paymentNote != null && !paymentNote.isBlank() && paid.compareTo(BigDecimal.ZERO) > 0) {
             s.setPaymentNote(paymentNote.trim());
@@ -151,14 +166,30 @@ public class StudentService {
             saved = studentRepository.save(saved);
         }
 
+        // debt = package price - initial payment, recorded as ledger entries
+        if (pkg.getPrice() != null && pkg.getPrice().compareTo(BigDecimal.ZERO) > 0) {
+            ledgerService.recordCharge(saved.getId(), pkg.getPrice(), null, "package " + pkg.getCode());
+        }
+        if (paid.compareTo(BigDecimal.ZERO) > 0) {
+            ledgerService.recordPayment(saved.getId(), paid, null, saved.getPaymentNote());
+        }
+        dataVersionService.bumpTeacher(saved.getTeacherId());
+        recordEnrolled(saved);
+
         log.info("Created student id={} name={} {}, package={}", saved.getId(), saved.getFirstName(), saved.getLastName(), pkg.getCode());
         return saved;
     }
 
+    /**
+     * Students per teacher id (null key = unassigned), counted in the database.
+     */
     @Transactional(readOnly = true)
-    public long countByTeacherId(Long teacherId) {
-        if (teacherId == null) return 0L;
-        return studentRepository.countByTeacherId(teacherId);
+    public Map<Long, Long> countsByTeacher() {
+        Map<Long, Long> out = new HashMap<>();
+        for (StudentRepository.TeacherStudentCount row : studentRepository.countGroupByTeacher()) {
+            out.put(row.getTeacherId(), row.getStudents());
+        }
+        return out;
     }
 
     @Transactional(readOnly = true)
@@ -182,24 +213,130 @@ public class StudentService {
         return studentRepository.findByTeacherIdOrderByLastNameAsc(teacherId);
     }
 
+    @Transactional(readOnly = true)
+    public List<Long> findIdsByTeacherId(Long teacherId) {
+        if (teacherId == null) return List.of();
+        return studentRepository.findIdsByTeacherId(teacherId);
+    }
+
     @Transactional
     public Student updateStudent(Student student) {
         student.setUpdatedAt(Instant.now());
-        return studentRepository.save(student);
+        // the student may have moved to another teacher: invalidate all teacher views
+        dataVersionService.bumpAll();
+        Student saved = studentRepository.save(student);
+        outboxService.record(DomainEventType.STUDENT_UPDATED, saved.getId(), saved.getTeacherId(), Map.of());
+        return saved;
+    }
+
+    /**
+     * Manager edit of a student: fields, package change and payment in one transaction, so a failure in any
+     * step leaves neither ledger entries nor field changes behind.
+     *
+     * - A different package is assigned with its lesson count and its price is charged.
+     * - A positive payment is recorded; the payment note is kept with it (or with a package change).
+     *
+     * Returns empty when the student does not exist.
+     */
+    @Transactional
+    public Optional<Student> editStudent(Long id,
+                                         String firstName,
+                                         String lastName,
+                                         String phone,
+                                         Long packageId,
+                                         Long teacherId,
+                                         Long timeSlotId,
+                                         Boolean book,
+                                         BigDecimal payment,
+                                         String paymentNote) {
+        Optional<Student> found = studentRepository.findById(id);
+        if (found.isEmpty()) return found;
+        Student s = found.get();
+
+        s.setFirstName(firstName);
+        s.setLastName(lastName);
+        s.setPhone(phone);
+        s.setTeacherId(teacherId);
+        s.setNeedsBook(Boolean.TRUE.equals(book));
+        s.setTimeSlotId(timeSlotId);
+
+        boolean packageChanged = false;
+        if (packageId != null) {
+            LessonPackage pkg = lessonPackageRepository.findById(packageId).orElse(null);
+            if (pkg == null) {
+                log.warn("editStudent: package not found id={}", packageId);
+            } else if (s.getLessonPackage() == null || !packageId.equals(s.getLessonPackage().getId())) {
+                packageChanged = true;
+                s.assignPackage(pkg);
+                if (pkg.getLessonsCount() != null) s.setRemainingLessons(pkg.getLessonsCount());
+                if (pkg.getPrice() != null && pkg.getPrice().compareTo(BigDecimal.ZERO) > 0) {
+                    ledgerService.recordCharge(id, pkg.getPrice(), null, "package " + pkg.getCode());
+                }
+                log.info("editStudent: package changed for id={} -> {}", id, pkg.getCode());
+            }
+        }
+
+        boolean paid = payment != null && payment.compareTo(BigDecimal.ZERO) > 0;
+        if (paid) {
+            ledgerService.recordPayment(id, payment, null, null);
+            log.info("editStudent: applied payment {} for student {}", payment, id);
+        }
+        if ((packageChanged || paid) && paymentNote != null && !paymentNote.isBlank()) {
+            s.setPaymentNote(paymentNote.trim());
+        }
+
+        return Optional.of(updateStudent(s));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Student> findAllById(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        return studentRepository.findAllById(ids);
+    }
+
+    /**
+     * studentId -> teacherId (null for students without a teacher).
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> teacherIdsByStudent(Collection<Long> studentIds) {
+        if (studentIds == null || studentIds.isEmpty()) return Map.of();
+        Map<Long, Long> out = new HashMap<>();
+        for (Object[] row : studentRepository.findTeacherIdByStudentIn(studentIds)) out.put((Long) row[0], (Long) row[1]);
+        return out;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findTeacherIds(Collection<Long> studentIds) {
+        if (studentIds == null || studentIds.isEmpty()) return List.of();
+        return studentRepository.findTeacherIdsByIdIn(studentIds);
     }
 
+    /**
+     * Bulk variant of updateStudent — one saveAll instead of a save per student.
+     */
+    @Transactional
+    public List<Student> updateStudents(Collection<Student> students) {
+        if (students == null || students.isEmpty()) return List.of();
+        Instant now = Instant.now();
+        for (Student s : students) s.setUpdatedAt(now);
+        dataVersionService.bumpTeachers(students.stream().map(Student::getTeacherId).toList());
+        return studentRepository.saveAll(students);
+    }
+
+    /**
+     * Record a payment for the student (Payment row + ledger entry) and return the new debt.
+     */
     @Transactional
     public BigDecimal applyPayment(Long studentId, BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("amount must be > 0");
         }
-        Student s = studentRepository.findById(studentId).orElseThrow(() -> new IllegalArgumentException("Student not found: " + studentId));
-        BigDecimal currentDebt = s.getDebt() == null ? BigDecimal.ZERO : s.getDebt();
-        BigDecimal newDebt = currentDebt.subtract(amount);
-        if (newDebt.compareTo(BigDecimal.ZERO) < 0) newDebt = BigDecimal.ZERO;
-        s.setDebt(newDebt);
-        s.setUpdatedAt(Instant.now());
-        studentRepository.save(s);
+        // loaded (not just checked) so the ledger finds the teacher in the persistence context
+        if (studentRepository.findById(studentId).isEmpty()) {
+            throw new IllegalArgumentException("Student not found: " + studentId);
+        }
+        ledgerService.recordPayment(studentId, amount, null, null);
+        BigDecimal newDebt = ledgerService.balance(studentId);
         log.info("Applied payment {} for student {}. New debt = {}", amount, studentId, newDebt);
         return newDebt;
     }
@@ -216,6 +353,8 @@ public class StudentService {
         if (id == null) return;
         try {
             studentRepository.deleteById(id);
+            dataVersionService.bumpAll();
+            outboxService.record(DomainEventType.STUDENT_REMOVED, id, null, Map.of());
             log.info("Deleted student with id={}", id);
         } catch (EmptyResultDataAccessException ex) {
             log.warn("Tried to delete non-existing student id={}", id);
@@ -237,9 +376,21 @@ public class StudentService {
         }
         s.setUpdatedAt(Instant.now());
         studentRepository.save(s);
+        dataVersionService.bumpTeacher(s.getTeacherId());
+        if (remaining > 0) {
+            outboxService.record(DomainEventType.LESSON_CONSUMED, s.getId(), s.getTeacherId(),
+                    Map.of("lessons", 1, "remaining", s.getRemainingLessons()));
+        }
         return s.getRemainingLessons();
     }
 
+    private void recordEnrolled(Student saved) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        if (saved.getPackageCode() != null) payload.put("package", saved.getPackageCode());
+        if (saved.getRemainingLessons() != null) payload.put("remaining", saved.getRemainingLessons());
+        outboxService.record(DomainEventType.STUDENT_ENROLLED, saved.getId(), saved.getTeacherId(), payload);
+    }
+
     private LessonPackage resolvePackageForEnum(PackageType packageType) {
         if (packageType == null) return null;
 
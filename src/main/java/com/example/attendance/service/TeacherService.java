@@ -7,6 +7,7 @@ import com.example.attendance.enums.Shift;
 import com.example.attendance.repository.TeacherRepository;
 import com.example.attendance.repository.TimeSlotRepository;
 import com.example.attendance.repository.AppUserRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Service
+@Observed(name = "attendance.service")
 @RequiredArgsConstructor
 public class TeacherService {
 
@@ -28,6 +30,7 @@ public class TeacherService {
     private final TeacherRepository teacherRepository;
     private final TimeSlotRepository timeSlotRepository;
     private final AppUserRepository appUserRepository;
+    private final DataVersionService dataVersionService;
 
     @PersistenceContext
     private final EntityManager entityManager;
@@ -62,6 +65,7 @@ public class TeacherService {
 
         entityManager.persist(t);
         entityManager.flush(); // force INSERT now to catch errors immediately
+        dataVersionService.bump(DataVersionService.TEACHERS);
 
         log.info("createTeacherForUserById: persisted Teacher. teacher.userId(after)={}, teacher object={}", t.getUserId(), t);
 
@@ -156,6 +160,7 @@ public class TeacherService {
         managed.setPhone(t.getPhone());
         managed.setShift(t.getShift());
         // updatedAt field if any could be set here
+        dataVersionService.bump(DataVersionService.TEACHERS);
         return teacherRepository.save(managed);
     }
 
@@ -166,6 +171,7 @@ public class TeacherService {
     public void deleteById(Long userId) {
         if (userId == null) return;
         teacherRepository.deleteById(userId);
+        dataVersionService.bump(DataVersionService.TEACHERS);
         log.info("Deleted Teacher with userId={}", userId);
     }
 }
\ No newline at end of file
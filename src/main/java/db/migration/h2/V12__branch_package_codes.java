@@ -0,0 +1,35 @@
+package db.migration.h2;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * H2 side of postgresql/V6: package codes are unique per branch, not globally. The unique constraint V1 put
+ * on code has a generated name in H2, so it is looked up (plain SQL cannot drop it by column).
+ */
+public class V12__branch_package_codes extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        List<String> constraints = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("select c.constraint_name from information_schema.table_constraints c " +
+                     "join information_schema.key_column_usage k on k.constraint_schema = c.constraint_schema " +
+                     "and k.constraint_name = c.constraint_name " +
+                     "where lower(c.table_name) = 'lesson_packages' and c.constraint_type = 'UNIQUE' " +
+                     "group by c.constraint_name having count(*) = 1 and max(lower(k.column_name)) = 'code'")) {
+            while (rs.next()) constraints.add(rs.getString(1));
+        }
+        try (Statement st = connection.createStatement()) {
+            for (String name : constraints) st.execute("alter table lesson_packages drop constraint \"" + name + "\"");
+            st.execute("alter table lesson_packages add constraint uk_lesson_packages_branch_code unique (branch_id, code)");
+        }
+    }
+}
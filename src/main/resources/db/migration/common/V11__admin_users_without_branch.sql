@@ -0,0 +1,2 @@
+-- Admin users created after V5 got the default branch from BranchAssigner; admins belong to no branch.
+update app_user set branch_id = null where role = 'ADMIN';
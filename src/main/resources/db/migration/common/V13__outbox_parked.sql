@@ -0,0 +1,10 @@
+-- Events a cluster consumer still failed on when delivered alone, after attendance.outbox.maxAttempts failed
+-- batches (OutboxService). Its cursor moved past them; the events are kept past retention for a replay.
+
+create table outbox_parked (
+    consumer  varchar(128)  not null,
+    event_id  bigint        not null,
+    error     varchar(1000),
+    parked_at timestamp     not null,
+    primary key (consumer, event_id)
+);
@@ -0,0 +1,115 @@
+-- Baseline: the schema as Hibernate's ddl-auto=update produced it up to this release.
+-- Databases created by ddl-auto are baselined at version 1 (spring.flyway.baseline-on-migrate) and skip this file.
+
+create table app_user (
+    id       bigint generated by default as identity primary key,
+    username varchar(255) not null unique,
+    password varchar(255),
+    role     varchar(255) check (role in ('ADMIN', 'MANAGER', 'TEACHER'))
+);
+
+create table teacher (
+    user_id    bigint not null primary key references app_user (id),
+    first_name varchar(255),
+    last_name  varchar(255),
+    phone      varchar(255),
+    shift      varchar(255) check (shift in ('FIRST', 'SECOND', 'FULL'))
+);
+
+create table time_slot (
+    id         bigint generated by default as identity primary key,
+    teacher_id bigint,
+    start_time time(6),
+    end_time   time(6),
+    label      varchar(255)
+);
+
+create table lesson_packages (
+    id            bigint generated by default as identity primary key,
+    code          varchar(64)    not null unique,
+    title         varchar(200)   not null,
+    price         numeric(10, 2) not null,
+    schedule_code varchar(32)    not null,
+    lessons_count integer
+);
+
+create table students (
+    id                bigint generated by default as identity primary key,
+    first_name        varchar(120) not null,
+    last_name         varchar(120) not null,
+    phone             varchar(40),
+    student_code      varchar(64) unique,
+    teacher_id        bigint,
+    time_slot_id      bigint,
+    package_id        bigint references lesson_packages (id),
+    package_code      varchar(64),
+    package_price     numeric(10, 2),
+    remaining_lessons integer,
+    debt              numeric(10, 2),
+    needs_book        boolean,
+    payment_note      varchar(512),
+    created_at        timestamp(6) with time zone not null,
+    updated_at        timestamp(6) with time zone
+);
+create index idx_student_teacher on students (teacher_id);
+create index idx_student_code on students (student_code);
+
+create table attendance (
+    id                bigint generated by default as identity primary key,
+    student_id        bigint,
+    lesson_date       date,
+    status            varchar(255) check (status in ('PRESENT', 'LATE', 'ABSENT', 'EXCUSED')),
+    marked_by_user_id bigint,
+    marked_at         timestamp(6),
+    checkin_time      timestamp(6),
+    revision          bigint,
+    unique (student_id, lesson_date)
+);
+
+create table payment (
+    id              bigint generated by default as identity primary key,
+    student_id      bigint,
+    amount          numeric(38, 2),
+    paid_at         timestamp(6),
+    paid_by_user_id bigint,
+    note            varchar(255)
+);
+
+create table ledger_entry (
+    id                 bigint generated by default as identity primary key,
+    student_id         bigint         not null,
+    type               varchar(16)    not null check (type in ('OPENING', 'CHARGE', 'PAYMENT', 'ADJUSTMENT')),
+    amount             numeric(12, 2) not null,
+    payment_id         bigint,
+    created_by_user_id bigint,
+    created_at         timestamp(6)   not null,
+    note               varchar(512)
+);
+create index idx_ledger_student_id on ledger_entry (student_id, id);
+
+create table balance_snapshot (
+    student_id    bigint         not null primary key,
+    balance       numeric(12, 2) not null,
+    last_entry_id bigint         not null,
+    taken_at      timestamp(6)
+);
+
+create table idempotency_key (
+    id            varchar(255) not null primary key,
+    status_code   integer      not null,
+    response_body text,
+    created_at    timestamp(6) not null,
+    expires_at    timestamp(6) not null
+);
+create index idx_idempotency_expires on idempotency_key (expires_at);
+
+create table journal_checkpoint (
+    name       varchar(64) not null primary key,
+    last_seq   bigint      not null,
+    updated_at timestamp(6)
+);
+
+create table data_version (
+    scope_key varchar(128) not null primary key,
+    version   bigint       not null
+);
@@ -0,0 +1,20 @@
+-- Composite indexes matched to the repository queries (checked by QueryPlanTest).
+
+-- AttendanceRepository.findByMarkedByUserIdAndLessonDateBetween
+create index if not exists idx_attendance_marker_date on attendance (marked_by_user_id, lesson_date);
+
+-- AttendanceRepository.countByStudentIdAndStatusAndLessonDateBetween: answered from the index alone
+create index if not exists idx_attendance_student_status_date on attendance (student_id, status, lesson_date);
+
+-- PaymentRepository.findByStudentIdOrderByPaidAtDesc: no sort step
+create index if not exists idx_payment_student_paid_at on payment (student_id, paid_at desc);
+
+-- TimeSlotRepository.findByTeacherIdOrderByStartTime
+create index if not exists idx_time_slot_teacher_start on time_slot (teacher_id, start_time);
+
+-- StudentRepository.findByTimeSlotId
+create index if not exists idx_student_time_slot on students (time_slot_id);
+
+-- StudentRepository.findByTeacherId / findByTeacherIdOrderByLastNameAsc; replaces the single-column index
+create index if not exists idx_student_teacher_last_name on students (teacher_id, last_name);
+drop index if exists idx_student_teacher;
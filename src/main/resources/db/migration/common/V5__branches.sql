@@ -0,0 +1,21 @@
+-- Branches: teachers, students, packages and users belong to one branch (admins to none).
+-- Existing data becomes branch 1.
+
+create table branch (
+    id   bigint generated by default as identity primary key,
+    code varchar(64)  not null unique,
+    name varchar(200) not null
+);
+insert into branch (id, code, name) values (1, 'main', 'Main');
+alter table branch alter column id restart with 2;
+
+alter table app_user add column branch_id bigint references branch (id);
+update app_user set branch_id = 1 where role is null or role <> 'ADMIN';
+
+alter table teacher add column branch_id bigint default 1 not null references branch (id);
+alter table students add column branch_id bigint default 1 not null references branch (id);
+alter table lesson_packages add column branch_id bigint default 1 not null references branch (id);
+
+-- every branch query of the manager lists (StudentService.findAll / search) starts with the branch
+create index idx_student_branch_last_name on students (branch_id, last_name);
+create index idx_teacher_branch on teacher (branch_id);
@@ -0,0 +1,11 @@
+-- Leases of cluster-wide jobs (ClusterJobService): one row per job, per job shard and for the leader.
+-- owner is null while nobody holds the lease; started_at / finished_at describe the last run.
+
+create table job_lease (
+    name        varchar(128) primary key,
+    owner       varchar(128),
+    expires_at  timestamp not null,
+    started_at  timestamp,
+    finished_at timestamp,
+    duration_ms bigint
+);
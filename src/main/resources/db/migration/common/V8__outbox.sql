@@ -0,0 +1,19 @@
+-- Transactional outbox (OutboxService): domain events are inserted in the transaction of the change and
+-- delivered to in-process consumers by the relay. Cursors of consumers delivered once per cluster live in
+-- outbox_cursor; per-node consumers keep theirs in memory.
+
+create table outbox_event (
+    id         bigint generated by default as identity primary key,
+    event_type varchar(32) not null,
+    student_id bigint,
+    teacher_id bigint,
+    payload    varchar(2000),
+    created_at timestamp   not null
+);
+
+create index idx_outbox_event_created on outbox_event (created_at);
+
+create table outbox_cursor (
+    consumer varchar(128) primary key,
+    last_id  bigint not null
+);
@@ -0,0 +1,16 @@
+-- Students needing attention (AlertService): one row per student whose remaining lessons or debt crossed a
+-- threshold, kept up to date from outbox events. Teacher and manager alert lists read only these rows.
+
+create table student_alert (
+    student_id bigint primary key,
+    teacher_id bigint,
+    branch_id  bigint,
+    level      varchar(16)   not null,
+    remaining  integer,
+    debt       numeric(12, 2) not null,
+    since      timestamp     not null,
+    updated_at timestamp     not null
+);
+
+create index idx_student_alert_teacher on student_alert (teacher_id);
+create index idx_student_alert_branch on student_alert (branch_id, level);
@@ -0,0 +1,28 @@
+-- A DEFAULT partition: a lesson date outside every month partition (far future, a month not created yet)
+-- is stored instead of failing the whole attendance batch.
+create table if not exists attendance_default partition of attendance default;
+
+-- Creating a month partition while the default one holds rows of that month fails, so the month is built
+-- next to the table, gets those rows moved over and is attached afterwards. The check constraint lets the
+-- attach skip its validation scan.
+create or replace function attendance_ensure_partition(p_day date) returns text
+    language plpgsql as
+$$
+declare
+    month_start date := date_trunc('month', p_day)::date;
+    month_end   date := (date_trunc('month', p_day) + interval '1 month')::date;
+    part        text := 'attendance_' || to_char(month_start, 'YYYY_MM');
+begin
+    if to_regclass(part) is null then
+        execute format('create table %I (like attendance including defaults including constraints)', part);
+        execute format('alter table %I add constraint %I check (lesson_date >= %L and lesson_date < %L)',
+                       part, part || '_range', month_start, month_end);
+        execute format('with moved as (delete from attendance_default where lesson_date >= %L and lesson_date < %L returning *) '
+                           || 'insert into %I select * from moved', month_start, month_end, part);
+        execute format('alter table attendance attach partition %I for values from (%L) to (%L)',
+                       part, month_start, month_end);
+        execute format('alter table %I drop constraint %I', part, part || '_range');
+    end if;
+    return part;
+end
+$$;
@@ -0,0 +1,12 @@
+-- PostgreSQL only: covering (INCLUDE) and partial indexes for index-only scans.
+
+-- StudentRepository.findIdsByTeacherId / countByTeacherId next to the ordered lookups
+create index if not exists idx_student_teacher_last_name_cover on students (teacher_id, last_name) include (id);
+drop index if exists idx_student_teacher_last_name;
+
+-- LedgerEntryRepository.sumAfter / tailSums and Student.debt: sums read from the index alone
+create index if not exists idx_ledger_student_cover on ledger_entry (student_id, id) include (amount);
+drop index if exists idx_ledger_student_id;
+
+-- LedgerEntryRepository.legacyDebtsWithoutLedger: only students that still carry a legacy debt
+create index if not exists idx_student_legacy_debt on students (id) where debt is not null and debt <> 0;
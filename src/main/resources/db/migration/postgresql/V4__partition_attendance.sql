@@ -0,0 +1,73 @@
+-- attendance becomes range-partitioned by lesson_date, one partition per month (attendance_YYYY_MM).
+-- Every repository query filters on lesson_date, so the planner only touches the months asked for;
+-- the (student_id, lesson_date) unique check of saveAttendancesForDate runs inside a single partition.
+-- Future partitions are created and old ones detached by AttendancePartitionService.
+
+alter table attendance rename to attendance_legacy;
+
+-- identity columns are not allowed on partitioned tables before PostgreSQL 17: a plain sequence default instead
+create sequence attendance_part_id_seq;
+
+create table attendance (
+    id                bigint not null default nextval('attendance_part_id_seq'),
+    student_id        bigint,
+    lesson_date       date   not null,
+    status            varchar(255) check (status in ('PRESENT', 'LATE', 'ABSENT', 'EXCUSED')),
+    marked_by_user_id bigint,
+    marked_at         timestamp(6),
+    checkin_time      timestamp(6),
+    revision          bigint,
+    -- a partitioned table's keys must contain the partition column
+    constraint attendance_part_pkey primary key (id, lesson_date),
+    constraint uk_attendance_student_date unique (student_id, lesson_date)
+) partition by range (lesson_date);
+
+alter sequence attendance_part_id_seq owned by attendance.id;
+
+-- creates the month partition holding p_day unless it exists; returns its name
+create or replace function attendance_ensure_partition(p_day date) returns text
+    language plpgsql as
+$$
+declare
+    month_start date := date_trunc('month', p_day)::date;
+    part        text := 'attendance_' || to_char(month_start, 'YYYY_MM');
+begin
+    if to_regclass(part) is null then
+        execute format('create table %I partition of attendance for values from (%L) to (%L)',
+                       part, month_start, (month_start + interval '1 month')::date);
+    end if;
+    return part;
+end
+$$;
+
+-- partitions for the existing history up to three months ahead
+do
+$$
+declare
+    m         date;
+    last_month date;
+begin
+    select date_trunc('month', coalesce(min(lesson_date), current_date))::date,
+           date_trunc('month', greatest(coalesce(max(lesson_date), current_date), current_date))::date + 3 * interval '1 month'
+    into m, last_month
+    from attendance_legacy;
+    while m <= last_month loop
+        perform attendance_ensure_partition(m);
+        m := (m + interval '1 month')::date;
+    end loop;
+end
+$$;
+
+-- rows without a lesson date were unreachable by every query and are not carried over
+insert into attendance (id, student_id, lesson_date, status, marked_by_user_id, marked_at, checkin_time, revision)
+select id, student_id, lesson_date, status, marked_by_user_id, marked_at, checkin_time, revision
+from attendance_legacy
+where lesson_date is not null;
+
+select setval('attendance_part_id_seq', coalesce((select max(id) from attendance), 0) + 1, false);
+
+drop table attendance_legacy;
+
+-- V2 indexes, now partitioned indexes (created on every partition)
+create index idx_attendance_marker_date on attendance (marked_by_user_id, lesson_date);
+create index idx_attendance_student_status_date on attendance (student_id, status, lesson_date);
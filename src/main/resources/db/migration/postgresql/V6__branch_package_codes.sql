@@ -0,0 +1,16 @@
+-- Package codes are unique per branch (H2 keeps the global constraint of V1).
+do $$
+declare
+    c text;
+begin
+    for c in
+        select con.conname from pg_constraint con
+        where con.conrelid = 'lesson_packages'::regclass and con.contype = 'u'
+          and con.conkey = array[(select attnum from pg_attribute
+                                  where attrelid = 'lesson_packages'::regclass and attname = 'code')]::int2[]
+    loop
+        execute format('alter table lesson_packages drop constraint %I', c);
+    end loop;
+end $$;
+
+alter table lesson_packages add constraint uk_lesson_packages_branch_code unique (branch_id, code);
@@ -0,0 +1,163 @@
+/**
+ * offline-store.js — IndexedDB for the teacher dashboard (window.OfflineStore):
+ * - roster: last attendance JSON per (user, date) with its ETag (offline fallback + If-None-Match after reload);
+ * - outbox: attendance batches saved while offline, keyed by a monotonic seq and sent in order to /teacher/attendance/sync.
+ * Everything is scoped by the logged-in user (setUser), so a shared device never shows or sends another teacher's data.
+ * Batches of the same date are merged only until their first send: a sent seq is frozen (the server may already
+ * have stored its result under clientId:seq), later marks always get a new seq.
+ * Batches the server refuses for good (403) are parked: kept on the device, never sent again.
+ */
+(function(){
+    const DB_NAME = 'attendance-offline';
+    const DB_VERSION = 2;
+    const CLIENT_ID_KEY = 'attendance.clientId';
+
+    let dbPromise = null;
+    let userId = null;
+
+    function open() {
+        if (!dbPromise) {
+            dbPromise = new Promise((resolve, reject) => {
+                const req = indexedDB.open(DB_NAME, DB_VERSION);
+                req.onupgradeneeded = () => {
+                    const db = req.result;
+                    // v1 stores were not scoped by user: their owner is unknown, so they are dropped
+                    if (db.objectStoreNames.contains('roster')) db.deleteObjectStore('roster');
+                    if (db.objectStoreNames.contains('outbox')) db.deleteObjectStore('outbox');
+                    db.createObjectStore('roster', { keyPath: ['userId', 'date'] });
+                    db.createObjectStore('outbox', { keyPath: 'seq' }).createIndex('userId', 'userId');
+                    if (!db.objectStoreNames.contains('meta')) db.createObjectStore('meta');
+                };
+                req.onsuccess = () => resolve(req.result);
+                req.onerror = () => reject(req.error);
+            });
+        }
+        return dbPromise;
+    }
+
+    function done(tx) {
+        return new Promise((resolve, reject) => {
+            tx.oncomplete = () => resolve();
+            tx.onerror = () => reject(tx.error);
+            tx.onabort = () => reject(tx.error);
+        });
+    }
+
+    function result(req) {
+        return new Promise((resolve, reject) => {
+            req.onsuccess = () => resolve(req.result);
+            req.onerror = () => reject(req.error);
+        });
+    }
+
+    function user() {
+        if (userId == null) throw new Error('OfflineStore: user is not set');
+        return userId;
+    }
+
+    function clientId() {
+        let id = localStorage.getItem(CLIENT_ID_KEY);
+        if (!id) {
+            id = (window.crypto && crypto.randomUUID) ? crypto.randomUUID()
+                : Date.now().toString(36) + '-' + Math.random().toString(36).slice(2);
+            localStorage.setItem(CLIENT_ID_KEY, id);
+        }
+        return id;
+    }
+
+    async function getRoster(date) {
+        const db = await open();
+        return result(db.transaction('roster').objectStore('roster').get([user(), date]));
+    }
+
+    async function putRoster(date, etag, data) {
+        const db = await open();
+        const tx = db.transaction('roster', 'readwrite');
+        tx.objectStore('roster').put({ userId: user(), date, etag, data, savedAt: Date.now() });
+        return done(tx);
+    }
+
+    async function userBatches(store) {
+        return result(store.index('userId').getAll(user()));
+    }
+
+    /**
+     * Queue items ({studentId, status, extraLessons, baseRevision}) for a date.
+     * Merges into the newest never-sent batch of that date: last status wins, extra lessons add up,
+     * the first baseRevision is kept (it is what the teacher saw before any queued change).
+     */
+    async function enqueue(date, items) {
+        const db = await open();
+        const tx = db.transaction(['outbox', 'meta'], 'readwrite');
+        const outbox = tx.objectStore('outbox');
+        const meta = tx.objectStore('meta');
+        const batches = await userBatches(outbox);
+        let target = null;
+        for (const b of batches) {
+            if (b.date === date && !b.sent && !b.parked) target = b;
+        }
+        if (!target) {
+            const last = (await result(meta.get('seq'))) || 0;
+            target = { seq: last + 1, userId: user(), date, items: [] };
+            meta.put(target.seq, 'seq');
+        }
+        const byStudent = new Map(target.items.map(i => [i.studentId, i]));
+        for (const item of items) {
+            const prev = byStudent.get(item.studentId);
+            if (!prev) { byStudent.set(item.studentId, Object.assign({}, item)); continue; }
+            if (item.status) prev.status = item.status;
+            prev.extraLessons = (prev.extraLessons || 0) + (item.extraLessons || 0);
+        }
+        target.items = Array.from(byStudent.values());
+        outbox.put(target);
+        await done(tx);
+        return target.seq;
+    }
+
+    /** Batches of the current user still to be sent (parked ones excluded). */
+    async function pending() {
+        const db = await open();
+        const batches = await userBatches(db.transaction('outbox').objectStore('outbox'));
+        return batches.filter(b => !b.parked);
+    }
+
+    /** Batches of the current user the server refused; kept for the teacher to see, never resent. */
+    async function parked() {
+        const db = await open();
+        const batches = await userBatches(db.transaction('outbox').objectStore('outbox'));
+        return batches.filter(b => b.parked);
+    }
+
+    async function update(seqs, change) {
+        const db = await open();
+        const tx = db.transaction('outbox', 'readwrite');
+        const outbox = tx.objectStore('outbox');
+        for (const seq of seqs) {
+            const b = await result(outbox.get(seq));
+            if (b && b.userId === user()) outbox.put(Object.assign(b, change));
+        }
+        return done(tx);
+    }
+
+    /** Freeze batches before they go on the wire: nothing is merged into them afterwards. */
+    function markSent(seqs) {
+        return update(seqs, { sent: true });
+    }
+
+    function park(seqs, reason) {
+        return update(seqs, { parked: true, parkedReason: reason || null, parkedAt: Date.now() });
+    }
+
+    async function remove(seqs) {
+        const db = await open();
+        const tx = db.transaction('outbox', 'readwrite');
+        for (const seq of seqs) tx.objectStore('outbox').delete(seq);
+        return done(tx);
+    }
+
+    window.OfflineStore = {
+        setUser(id) { userId = (id == null || id === '') ? null : String(id); },
+        hasUser() { return userId != null; },
+        clientId, getRoster, putRoster, enqueue, pending, parked, markSent, park, remove
+    };
+})();
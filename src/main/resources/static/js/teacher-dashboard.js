@@ -2,14 +2,22 @@
  * teacher-dashboard.js — student_status временно отключён:
  * - ФИО не кликаются, drawer не используется
  * - Остальной функционал сохранить/mark/update остался
+ * - Офлайн: список учеников хранится в IndexedDB (offline-store.js), сохранения без сети ставятся в очередь
+ *   и отправляются на /teacher/attendance/sync при появлении сети
  */
 (function(){
     const apiJsonUrl = '/teacher/attendance/json';
     const saveUrl = '/teacher/attendance/save_batch';
+    const syncUrl = '/teacher/attendance/sync';
+    const userIdMeta = document.querySelector('meta[name="user-id"]');
+    if (window.OfflineStore && userIdMeta) window.OfflineStore.setUser(userIdMeta.getAttribute('content'));
+    // no user id — no offline cache at all, rather than one shared by everyone on the device
+    const store = (window.OfflineStore && window.OfflineStore.hasUser()) ? window.OfflineStore : null;
     const dateInput = document.getElementById('datePicker');
     const minDateMeta = document.querySelector('meta[name="min-date"]');
     const studentsTableBody = document.querySelector('#studentsTable tbody');
     const saveBtn = document.getElementById('saveChangesBtn');
+    const syncStatus = document.getElementById('syncStatus');
 
     const csrfMeta = document.querySelector('meta[name="_csrf"]');
     const csrfHeaderMeta = document.querySelector('meta[name="_csrf_header"]');
@@ -20,6 +28,18 @@
 
     let currentDate = null;
     const changes = new Map();
+    // Idempotency-Key of the batch being saved: reused on retry, reset once the batch is saved or edited
+    let saveKey = null;
+    // last response per date: { etag, data } — revalidated with If-None-Match, a 304 reuses data
+    const loaded = new Map();
+    // studentId -> revision of the attendance row for currentDate, sent as baseRevision for conflict checks
+    const revisions = new Map();
+    let flushing = false;
+
+    function newIdempotencyKey() {
+        if (window.crypto && crypto.randomUUID) return crypto.randomUUID();
+        return Date.now().toString(36) + '-' + Math.random().toString(36).slice(2);
+    }
 
     // init flatpickr
     const fp = flatpickr(dateInput, {
@@ -29,9 +49,10 @@
         onChange: function(selectedDates, dateStr) { loadForDate(dateStr); }
     });
 
-    // thresholds
-    const WARN_THRESHOLD = 4; // show warning if remaining < WARN_THRESHOLD
-    const CRITICAL_THRESHOLD = 2;
+    // thresholds (from the server, see attendance.alerts.*)
+    const thresholds = document.getElementById('studentsTable').dataset;
+    const WARN_THRESHOLD = parseInt(thresholds.warnBelow, 10) || 4; // show warning if remaining < WARN_THRESHOLD
+    const CRITICAL_THRESHOLD = parseInt(thresholds.criticalBelow, 10) || 2;
 
     function createRow(student) {
         const tr = document.createElement('tr');
@@ -94,6 +115,7 @@
                 const prev = changes.get(sid) || { status: null, extra: 0 };
                 prev.status = b.dataset.status;
                 changes.set(sid, prev);
+                saveKey = null;
                 tdStatus.textContent = humanStatus(prev.status);
                 markRowModified(tr);
                 updateRemainingDisplay(tr);
@@ -133,6 +155,7 @@
             obj.extra = (obj.extra || 0) + 1;
             deltaSpan.textContent = obj.extra;
             changes.set(sid, obj);
+            saveKey = null;
             markRowModified(tr);
             updateRemainingDisplay(tr);
             updateRowState(tr);
@@ -144,6 +167,7 @@
             obj.extra = (obj.extra || 0) - 1;
             deltaSpan.textContent = obj.extra;
             changes.set(sid, obj);
+            saveKey = null;
             markRowModified(tr);
             updateRemainingDisplay(tr);
             updateRowState(tr);
@@ -251,9 +275,26 @@
                     return;
                 }
                 changes.clear();
+                saveKey = null;
             }
             currentDate = dateStr;
-            const res = await fetch(`${apiJsonUrl}?date=${encodeURIComponent(dateStr)}`, { credentials:'same-origin' });
+            const cached = loaded.get(dateStr) || (store ? await store.getRoster(dateStr).catch(() => null) : null);
+            const reqHeaders = cached ? { 'If-None-Match': cached.etag } : {};
+            let res;
+            try {
+                res = await fetch(`${apiJsonUrl}?date=${encodeURIComponent(dateStr)}`,
+                    { credentials:'same-origin', cache:'no-store', headers: reqHeaders });
+            } catch (networkErr) {
+                if (!cached) throw new Error('нет сети и нет сохранённого списка на эту дату');
+                await renderRows(cached.data);
+                showSyncStatus('Нет сети — показан сохранённый список');
+                return;
+            }
+            if (res.status === 304 && cached) {
+                loaded.set(dateStr, cached);
+                await renderRows(cached.data);
+                return;
+            }
             if (!res.ok) {
                 let body = null;
                 try { body = await res.json(); } catch(e) { body = await res.text(); }
@@ -266,24 +307,119 @@
                 }
             }
             const arr = await res.json();
-            studentsTableBody.innerHTML = '';
-            arr.forEach(s => {
-                const r = createRow(s);
-                r.__studentDebt = s.debt || 0;
-                studentsTableBody.appendChild(r);
-                updateRowState(r);
-            });
+            const etag = res.headers.get('ETag');
+            if (etag) {
+                loaded.set(dateStr, { etag, data: arr });
+                if (store) store.putRoster(dateStr, etag, arr).catch(e => console.warn('roster cache', e));
+            } else {
+                loaded.delete(dateStr);
+            }
+            await renderRows(arr);
         } catch (err) {
             alert('Не удалось загрузить список: ' + err.message);
             console.error(err);
         }
     }
 
+    async function renderRows(arr) {
+        studentsTableBody.innerHTML = '';
+        revisions.clear();
+        arr.forEach(s => {
+            const r = createRow(s);
+            r.__studentDebt = s.debt || 0;
+            if (s.attendance && s.attendance.revision != null) revisions.set(String(s.id), s.attendance.revision);
+            studentsTableBody.appendChild(r);
+            updateRowState(r);
+        });
+        await showQueued();
+    }
+
+    /* ---------- offline queue ---------- */
+
+    function showSyncStatus(text) {
+        if (syncStatus) syncStatus.textContent = text || '';
+    }
+
+    // queued (not yet synced) marks of the current date are shown over the loaded statuses
+    async function showQueued() {
+        if (!store) return;
+        let batches = [];
+        let refused = [];
+        try { batches = await store.pending(); refused = await store.parked(); } catch (e) { return; }
+        const status = [];
+        if (batches.length) status.push(`В очереди на отправку: ${batches.length}`);
+        if (refused.length) status.push(`Отклонено сервером: ${refused.length}`);
+        showSyncStatus(status.join(' · '));
+        for (const b of batches) {
+            if (b.date !== currentDate) continue;
+            for (const item of b.items) {
+                const tr = studentsTableBody.querySelector(`tr[data-student-id="${item.studentId}"]`);
+                if (!tr || !item.status) continue;
+                tr.querySelector('td.status-cell').textContent = humanStatus(item.status) + ' (не отправлено)';
+            }
+        }
+    }
+
+    async function queueOffline(items) {
+        await store.enqueue(currentDate, items);
+        changes.clear();
+        saveKey = null;
+        loaded.delete(currentDate);
+        await showQueued();
+        alert('Нет связи с сервером — изменения сохранены на устройстве и будут отправлены автоматически');
+    }
+
+    async function flushOutbox() {
+        if (!store || flushing || !navigator.onLine) return;
+        flushing = true;
+        try {
+            const batches = await store.pending();
+            if (batches.length === 0) { showSyncStatus(''); return; }
+            await store.markSent(batches.map(b => b.seq));
+            const headers = { 'Content-Type': 'application/json' };
+            if (csrfToken) headers[csrfHeader] = csrfToken;
+            const r = await fetch(syncUrl, { method: 'POST', credentials: 'same-origin', headers,
+                body: JSON.stringify({ clientId: store.clientId(), batches }) });
+            if (r.status === 403) {
+                // not (or no longer) allowed for this user: resending would fail forever and block newer batches
+                await store.park(batches.map(b => b.seq), 'forbidden');
+                await showQueued();
+                return;
+            }
+            if (!r.ok) {
+                // other 4xx means the queue cannot be sent as is — keep it and tell the teacher
+                if (r.status < 500) showSyncStatus('Очередь не отправлена: ошибка ' + r.status);
+                return;
+            }
+            const json = await r.json();
+            const results = json.results || [];
+            const refused = results.filter(x => x.error === 'not_your_student').map(x => x.seq);
+            if (refused.length) await store.park(refused, 'not_your_student');
+            await store.remove(results.filter(x => x.error !== 'not_your_student').map(x => x.seq));
+            const conflicts = [];
+            for (const res of results) {
+                if (res.error) console.warn('offline batch not applied', res);
+                (res.conflicts || []).forEach(c => conflicts.push(`${res.date}: ученик ${c.studentId} — уже отмечен как «${humanStatus(c.status)}»`));
+            }
+            if (conflicts.length) {
+                alert('Часть офлайн-отметок не применена, т.к. их уже изменили на сервере:\n' + conflicts.join('\n'));
+            }
+            loaded.delete(currentDate);
+            if (changes.size === 0 && results.some(x => x.date === currentDate)) await loadForDate(currentDate);
+            else await showQueued();
+        } catch (err) {
+            console.warn('offline sync failed, will retry', err);
+        } finally {
+            flushing = false;
+        }
+    }
+
     async function saveBatch() {
         if (changes.size === 0) { alert('Нет изменений для сохранения'); return; }
         const items = [];
         for (const [sid, obj] of changes.entries()) {
-            items.push({ studentId: parseInt(sid,10), status: obj.status || null, extraLessons: obj.extra || 0 });
+            items.push({ studentId: parseInt(sid,10), status: obj.status || null, extraLessons: obj.extra || 0,
+                baseRevision: revisions.has(sid) ? revisions.get(sid) : 0 });
         }
         const payload = { date: currentDate, items };
         const anyNegative = Array.from(document.querySelectorAll('td.remaining-cell')).some(td => {
@@ -294,9 +430,18 @@
             if (!confirm('В некоторых строках остаток стал отрицательным. Сохранить?')) return;
         }
         try {
-            const headers = { 'Content-Type': 'application/json' };
+            if (store && !navigator.onLine) { await queueOffline(items); return; }
+            if (!saveKey) saveKey = newIdempotencyKey();
+            const headers = { 'Content-Type': 'application/json', 'Idempotency-Key': saveKey };
             if (csrfToken) headers[csrfHeader] = csrfToken;
-            const r = await fetch(saveUrl, { method: 'POST', credentials: 'same-origin', headers, body: JSON.stringify(payload) });
+            let r;
+            try {
+                r = await fetch(saveUrl, { method: 'POST', credentials: 'same-origin', headers, body: JSON.stringify(payload) });
+            } catch (networkErr) {
+                if (store) { await queueOffline(items); return; }
+                throw networkErr;
+            }
+            if (r.status >= 502 && r.status <= 504 && store) { await queueOffline(items); return; }
             if (!r.ok) {
                 const text = await r.text();
                 throw new Error(text || 'Server error');
@@ -305,6 +450,8 @@
             if (json.success) {
                 alert('Сохранено успешно');
                 changes.clear();
+                saveKey = null;
+                loaded.delete(currentDate);
                 await loadForDate(currentDate);
             } else {
                 alert('Ошибка сохранения: ' + (json.error || JSON.stringify(json)));
@@ -319,6 +466,13 @@
 
     saveBtn.addEventListener('click', saveBatch);
 
-    // initial load
-    loadForDate(fp.input.value);
+    if ('serviceWorker' in navigator) {
+        navigator.serviceWorker.register('/teacher-sw.js', { scope: '/teacher' })
+            .catch(e => console.warn('service worker not registered', e));
+    }
+    window.addEventListener('online', flushOutbox);
+    setInterval(flushOutbox, 30000);
+
+    // initial load, then send whatever was queued offline last time
+    loadForDate(fp.input.value).then(flushOutbox);
 })();
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**
+ * teacher-sw.js — service worker of the teacher dashboard (registered with scope /teacher).
+ * - Static assets (/css, /js, /webjars): cache first — their URLs are content-hashed, so a cached copy is never stale.
+ * - Teacher pages (navigations): network first, the last good copy when offline.
+ * - Attendance JSON and POSTs are left to the page: it keeps the roster and the outbox in IndexedDB.
+ */
+const CACHE = 'attendance-teacher-v1';
+
+self.addEventListener('install', () => self.skipWaiting());
+
+self.addEventListener('activate', event => {
+    event.waitUntil((async () => {
+        for (const key of await caches.keys()) {
+            if (key !== CACHE) await caches.delete(key);
+        }
+        await self.clients.claim();
+    })());
+});
+
+self.addEventListener('fetch', event => {
+    const req = event.request;
+    if (req.method !== 'GET') return;
+    const url = new URL(req.url);
+    if (url.origin !== self.location.origin) return;
+
+    if (/^\/(css|js|webjars)\//.test(url.pathname)) {
+        event.respondWith(cacheFirst(req));
+    } else if (req.mode === 'navigate' && url.pathname.startsWith('/teacher')) {
+        event.respondWith(networkFirst(req));
+    }
+});
+
+async function cacheFirst(req) {
+    const cache = await caches.open(CACHE);
+    const hit = await cache.match(req);
+    if (hit) return hit;
+    const res = await fetch(req);
+    if (res.ok) cache.put(req, res.clone());
+    return res;
+}
+
+async function networkFirst(req) {
+    const cache = await caches.open(CACHE);
+    try {
+        const res = await fetch(req);
+        // redirected = the session expired and we got the login page: do not keep it as the dashboard
+        if (res.ok && !res.redirected) cache.put(req, res.clone());
+        return res;
+    } catch (err) {
+        const hit = await cache.match(req, { ignoreSearch: true });
+        if (hit) return hit;
+        throw err;
+    }
+}
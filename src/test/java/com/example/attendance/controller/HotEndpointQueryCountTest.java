@@ -0,0 +1,111 @@
+package com.example.attendance.controller;
+
+import com.example.attendance.config.RequestSqlMetricsFilter;
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.service.AppUserService;
+import com.example.attendance.service.AttendanceService;
+import com.example.attendance.service.StudentService;
+import com.example.attendance.service.TeacherService;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static com.example.attendance.support.SqlStatementAssertions.expectMaxQueries;
+import static com.example.attendance.support.SqlStatementAssertions.maxQueries;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement counts of the hot endpoints stay flat when the number of students grows (no per-row queries).
+ */
+@SpringBootTest(properties = "attendance.sqlStats.headers=true")
+@ActiveProfiles("test")
+class HotEndpointQueryCountTest {
+
+    @Autowired
+    WebApplicationContext context;
+
+    @Autowired
+    RequestSqlMetricsFilter sqlMetricsFilter;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    AttendanceService attendanceService;
+
+    private MockMvc mockMvc;
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(sqlMetricsFilter).build();
+        data = new TestData(appUserService, teacherService, studentService);
+    }
+
+    @Test
+    void statementsAreCounted() {
+        expectMaxQueries(1, () -> jdbcTemplate.queryForObject("select 1", Integer.class));
+        AssertionError tooMany = assertThrows(AssertionError.class, () -> expectMaxQueries(1, () -> {
+            jdbcTemplate.queryForObject("select 1", Integer.class);
+            jdbcTemplate.queryForObject("select 2", Integer.class);
+        }));
+        assertTrue(tooMany.getMessage().contains("2 were executed"), tooMany.getMessage());
+    }
+
+    @Test
+    void teacherAttendanceJsonDoesNotQueryPerStudent() throws Exception {
+        AppUser small = data.teacher();
+        data.students(small.getId(), 2);
+        AppUser large = data.teacher();
+        data.students(large.getId(), 25);
+        LocalDate date = LocalDate.now();
+        attendanceService.saveAttendancesForDate(large.getId(), date, Map.of());
+
+        long few = statements(get("/teacher/attendance/json").param("date", date.toString())
+                .principal(TestData.auth(small, "TEACHER")));
+        MvcResult many = mockMvc.perform(get("/teacher/attendance/json").param("date", date.toString())
+                        .principal(TestData.auth(large, "TEACHER")))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(8))
+                .andReturn();
+        assertEquals(few, Long.parseLong(many.getResponse().getHeader(RequestSqlMetricsFilter.STATEMENTS_HEADER)));
+    }
+
+    @Test
+    void managerDashboardAndTeacherListUseAggregates() throws Exception {
+        AppUser teacher = data.teacher();
+        data.students(teacher.getId(), 20);
+
+        mockMvc.perform(get("/manager")).andExpect(status().isOk()).andExpect(maxQueries(8));
+        mockMvc.perform(get("/manager/teacher_list")).andExpect(status().isOk()).andExpect(maxQueries(8));
+    }
+
+    private long statements(org.springframework.test.web.servlet.RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+        String header = result.getResponse().getHeader(RequestSqlMetricsFilter.STATEMENTS_HEADER);
+        assertNotNull(header);
+        return Long.parseLong(header);
+    }
+}
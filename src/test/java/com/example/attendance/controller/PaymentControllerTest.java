@@ -0,0 +1,85 @@
+package com.example.attendance.controller;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.enums.UserRole;
+import com.example.attendance.service.AppUserService;
+import com.example.attendance.service.IdempotencyService;
+import com.example.attendance.service.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentControllerTest {
+
+    @Autowired
+    PaymentController paymentController;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    IdempotencyService idempotencyService;
+
+    @Autowired
+    AppUserService appUserService;
+
+    private Authentication manager;
+    private AppUser managerUser;
+
+    @BeforeEach
+    void setUp() {
+        String username = "manager-" + UUID.randomUUID();
+        managerUser = appUserService.createUserDirect(username, "secret", UserRole.MANAGER);
+        manager = new UsernamePasswordAuthenticationToken(username, null, List.of(new SimpleGrantedAuthority("ROLE_MANAGER")));
+    }
+
+    @Test
+    void invalidBatchThroughIdempotentEndpointIsBadRequest() {
+        Map<String, Object> payload = Map.of("entries", List.of(
+                Map.of("studentId", Long.MAX_VALUE, "amount", 100),
+                Map.of("studentId", Long.MAX_VALUE - 1, "amount", -5)));
+        String key = UUID.randomUUID().toString();
+
+        ResponseEntity<?> response = paymentController.payBatch(payload, key, manager);
+        assertEquals(400, response.getStatusCode().value());
+        assertTrue(((Map<?, ?>) response.getBody()).get("message").toString().contains("student not found"));
+
+        // nothing stored under the key: the same key still works for a corrected batch
+        ResponseEntity<?> again = paymentController.payBatch(payload, key, manager);
+        assertEquals(400, again.getStatusCode().value());
+        assertNull(again.getHeaders().getFirst(IdempotencyService.REPLAY_HEADER));
+    }
+
+    @Test
+    void validationFailingInsideTheIdempotentTransactionIsBadRequestNotUnexpectedRollback() {
+        // the pre-check passed but the batch turned invalid by the time it ran (student deleted meanwhile)
+        List<PaymentService.PaymentBatchEntry> entries = List.of(
+                new PaymentService.PaymentBatchEntry(Long.MAX_VALUE, BigDecimal.TEN, null));
+
+        ResponseEntity<?> response = assertDoesNotThrow(() -> idempotencyService.execute("payment-batch",
+                managerUser.getId(), UUID.randomUUID().toString(), () -> {
+                    try {
+                        paymentService.recordBatch(entries, managerUser.getId());
+                        return ResponseEntity.ok(Map.of("success", true));
+                    } catch (IllegalArgumentException ex) {
+                        return ResponseEntity.badRequest().body(Map.of("success", false, "error", "validation_failed"));
+                    }
+                }));
+        assertEquals(400, response.getStatusCode().value());
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.attendance.repository;
+
+import com.example.attendance.config.BranchContext;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.support.SqlCapture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the repository methods against a schema built by the Flyway migrations and seeded with generated rows,
+ * captures the SQL Hibernate sends (SqlCapture, branch filter included) and EXPLAINs it: a plan that scans one of
+ * the large tables fails the test.
+ *
+ * By default on an in-memory H2 database (PostgreSQL mode, common migrations). Against PostgreSQL, with the
+ * PostgreSQL-only indexes, a school-sized dataset and a check that attendance is pruned to one month partition
+ * (a scratch schema "query_plan_test" is dropped and recreated):
+ * <pre>
+ * mvn test -Dtest=QueryPlanTest -Dexplain.url=jdbc:postgresql://localhost:5432/attendance \
+ *          -Dexplain.user=postgres -Dexplain.password=...
+ * </pre>
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlCapture.Config.class)
+class QueryPlanTest {
+
+    private static final String SCHEMA = "query_plan_test";
+    private static final boolean POSTGRES = System.getProperty("explain.url", "").startsWith("jdbc:postgresql:");
+
+    // H2 only needs enough rows for its optimizer to prefer an index
+    private static final int TEACHERS = POSTGRES ? 1_000 : 50;
+    private static final int STUDENTS = POSTGRES ? 50_000 : 2_500;
+    private static final int DAYS = POSTGRES ? 20 : 5;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2026, 1, 1);
+
+    private static final Set<String> LARGE_TABLES = Set.of("attendance", "students", "payment", "ledger_entry",
+            "balance_snapshot", "time_slot", "idempotency_key");
+    private static final Pattern H2_SCAN = Pattern.compile("(\\w+)\\.tablescan", Pattern.CASE_INSENSITIVE);
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private static boolean seeded;
+
+    @Autowired AttendanceRepository attendanceRepository;
+    @Autowired PaymentRepository paymentRepository;
+    @Autowired TimeSlotRepository timeSlotRepository;
+    @Autowired StudentRepository studentRepository;
+    @Autowired LedgerEntryRepository ledgerEntryRepository;
+    @Autowired BalanceSnapshotRepository balanceSnapshotRepository;
+    @Autowired IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws SQLException {
+        if (!POSTGRES) {
+            // a database of its own: the seed must not leak into other test classes
+            registry.add("spring.datasource.url", () -> "jdbc:h2:mem:query-plan;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                    + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+            return;
+        }
+        String url = System.getProperty("explain.url");
+        String user = System.getProperty("explain.user", "postgres");
+        String password = System.getProperty("explain.password", "");
+        try (Connection c = DriverManager.getConnection(url, user, password); Statement st = c.createStatement()) {
+            st.execute("drop schema if exists " + SCHEMA + " cascade");
+            st.execute("create schema " + SCHEMA);
+        }
+        registry.add("spring.datasource.url", () -> url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA);
+        registry.add("spring.datasource.username", () -> user);
+        registry.add("spring.datasource.password", () -> password);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.flyway.schemas", () -> SCHEMA);
+    }
+
+    @BeforeEach
+    void seed() {
+        if (seeded) return;
+        String series = POSTGRES ? "generate_series(1, %d) g(x)" : "system_range(1, %d) g";
+        jdbcTemplate.update("insert into app_user (username, password, role, branch_id) "
+                + "select 'plan_t' || g.x, 'x', 'TEACHER', 1 from " + series.formatted(TEACHERS));
+        jdbcTemplate.update("insert into teacher (user_id, first_name, last_name, branch_id) "
+                + "select id, 'T', username, 1 from app_user where username like 'plan_t%'");
+        long firstTeacher = jdbcTemplate.queryForObject("select min(user_id) from teacher where last_name like 'plan_t%'", Long.class);
+        for (int s = 0; s < 20; s++) {
+            jdbcTemplate.update("insert into time_slot (teacher_id, start_time, end_time, label) select user_id, ?, ?, ? from teacher",
+                    Time.valueOf(LocalTime.of(8, 0).plusMinutes(30L * s)), Time.valueOf(LocalTime.of(8, 30).plusMinutes(30L * s)), "slot" + s);
+        }
+        long firstSlot = jdbcTemplate.queryForObject("select min(id) from time_slot", Long.class);
+        jdbcTemplate.update("insert into students (first_name, last_name, student_code, teacher_id, time_slot_id, "
+                + "remaining_lessons, debt, needs_book, created_at, branch_id) "
+                + "select 'S' || g.x, 'L' || g.x, 'C' || g.x, " + firstTeacher + " + mod(g.x, " + TEACHERS + "), "
+                + firstSlot + " + mod(g.x, " + (TEACHERS * 20) + "), 12, case when mod(g.x, 5000) = 0 then 100 end, false, current_timestamp, 1 "
+                + "from " + series.formatted(STUDENTS));
+        if (POSTGRES) jdbcTemplate.queryForObject("select attendance_ensure_partition(?)", String.class, FIRST_DAY);
+        for (int d = 0; d < DAYS; d++) {
+            jdbcTemplate.update("insert into attendance (student_id, lesson_date, status, marked_by_user_id, marked_at, revision) "
+                    + "select id, ?, case mod(id + " + d + ", 4) when 0 then 'PRESENT' when 1 then 'LATE' when 2 then 'ABSENT' "
+                    + "else 'EXCUSED' end, teacher_id, current_timestamp, 1 from students", FIRST_DAY.plusDays(d));
+        }
+        for (int k = 0; k < 2; k++) {
+            jdbcTemplate.update("insert into payment (student_id, amount, paid_at, paid_by_user_id, note) "
+                    + "select id, 500, ?, 1, 'seed' from students", Timestamp.valueOf(FIRST_DAY.atStartOfDay().plusDays(7L * k)));
+        }
+        for (int k = 0; k < 4; k++) {
+            jdbcTemplate.update("insert into ledger_entry (student_id, type, amount, created_at, note) "
+                    + "select id, 'CHARGE', 250, ?, 'seed' from students", Timestamp.valueOf(FIRST_DAY.atStartOfDay().plusDays(3L * k)));
+        }
+        jdbcTemplate.update("insert into balance_snapshot (student_id, balance, last_entry_id, taken_at) "
+                + "select student_id, sum(amount), max(id), current_timestamp from ledger_entry where mod(id, 4) <> 0 group by student_id");
+        jdbcTemplate.update("insert into idempotency_key (id, status_code, created_at, expires_at) "
+                + "select 'attendance:1:' || g.x, 200, current_timestamp, ? from " + series.formatted(STUDENTS),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(1)));
+        jdbcTemplate.execute("analyze");
+        seeded = true;
+    }
+
+    @Test
+    void repositoryQueriesUseIndexes() {
+        long teacherId = jdbcTemplate.queryForObject("select user_id from teacher where last_name = 'plan_t17'", Long.class);
+        long studentId = jdbcTemplate.queryForObject("select id from students where student_code = 'C242'", Long.class);
+        long timeSlotId = jdbcTemplate.queryForObject("select max(time_slot_id) from students", Long.class);
+        List<Long> teacherStudents = jdbcTemplate.queryForList("select id from students where teacher_id = ?", Long.class, teacherId);
+        List<Long> someStudents = jdbcTemplate.queryForList("select id from students where teacher_id = ?", Long.class, teacherId + 1);
+        LocalDate day = FIRST_DAY.plusDays(2);
+        LocalDate monthEnd = FIRST_DAY.withDayOfMonth(FIRST_DAY.lengthOfMonth());
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("AttendanceRepository.findByStudentIdAndLessonDate",
+                () -> attendanceRepository.findByStudentIdAndLessonDate(studentId, day));
+        queries.put("AttendanceRepository.findByLessonDateAndStudentIdIn",
+                () -> attendanceRepository.findByLessonDateAndStudentIdIn(day, teacherStudents));
+        queries.put("AttendanceRepository.findByStudentIdAndLessonDateBetween",
+                () -> attendanceRepository.findByStudentIdAndLessonDateBetween(studentId, FIRST_DAY, monthEnd));
+        queries.put("AttendanceRepository.countByStudentIdAndStatusAndLessonDateBetween",
+                () -> attendanceRepository.countByStudentIdAndStatusAndLessonDateBetween(studentId, AttendanceStatus.ABSENT, FIRST_DAY, monthEnd));
+        queries.put("AttendanceRepository.findByMarkedByUserIdAndLessonDateBetween",
+                () -> attendanceRepository.findByMarkedByUserIdAndLessonDateBetween(teacherId, FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(4)));
+        queries.put("PaymentRepository.findByStudentIdOrderByPaidAtDesc",
+                () -> paymentRepository.findByStudentIdOrderByPaidAtDesc(studentId));
+        queries.put("PaymentRepository.findByStudentIdIn", () -> paymentRepository.findByStudentIdIn(someStudents));
+        queries.put("TimeSlotRepository.findByTeacherIdOrderByStartTime",
+                () -> timeSlotRepository.findByTeacherIdOrderByStartTime(teacherId));
+        // student queries of a logged-in manager or teacher: the branch filter is part of the SQL
+        queries.put("StudentRepository.findById", branch(() -> studentRepository.findById(studentId)));
+        queries.put("StudentRepository.findByTeacherId", branch(() -> studentRepository.findByTeacherId(teacherId)));
+        queries.put("StudentRepository.findByTeacherIdOrderByLastNameAsc",
+                branch(() -> studentRepository.findByTeacherIdOrderByLastNameAsc(teacherId)));
+        queries.put("StudentRepository.findIdsByTeacherId", branch(() -> studentRepository.findIdsByTeacherId(teacherId)));
+        queries.put("StudentRepository.findTeacherIdsByIdIn", branch(() -> studentRepository.findTeacherIdsByIdIn(someStudents)));
+        queries.put("StudentRepository.findTeacherIdByStudentIn", branch(() -> studentRepository.findTeacherIdByStudentIn(someStudents)));
+        queries.put("StudentRepository.findByStudentCode", branch(() -> studentRepository.findByStudentCode("C4242")));
+        queries.put("StudentRepository.findByTimeSlotId", branch(() -> studentRepository.findByTimeSlotId(timeSlotId)));
+        queries.put("LedgerEntryRepository.findByStudentIdOrderByIdDesc",
+                () -> ledgerEntryRepository.findByStudentIdOrderByIdDesc(studentId));
+        queries.put("LedgerEntryRepository.sumAfter", () -> ledgerEntryRepository.sumAfter(studentId, 0L));
+        queries.put("LedgerEntryRepository.tailSums", () -> ledgerEntryRepository.tailSums(someStudents));
+        if (POSTGRES) {
+            // served by a partial index that only the PostgreSQL migrations create
+            queries.put("LedgerEntryRepository.legacyDebtsWithoutLedger", ledgerEntryRepository::legacyDebtsWithoutLedger);
+        }
+        queries.put("BalanceSnapshotRepository.findAllById", () -> balanceSnapshotRepository.findAllById(someStudents));
+        queries.put("IdempotencyRecordRepository.deleteExpired",
+                rolledBack(() -> idempotencyRecordRepository.deleteExpired(LocalDateTime.now().minusHours(1))));
+        queries.put("IdempotencyRecordRepository.deleteExpiredById",
+                rolledBack(() -> idempotencyRecordRepository.deleteExpiredById("attendance:1:42", LocalDateTime.now())));
+        // Not listed, full scans by design: StudentRepository name/code substring search (leading wildcard),
+        // StudentRepository.countGroupByTeacher (counts every student) and LedgerEntryRepository.unsnapshottedTotals
+        // (each snapshot compaction shard reads every new entry).
+
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Runnable> q : queries.entrySet()) {
+            List<SqlCapture.Statement> statements = SqlCapture.capture(q.getValue());
+            assertFalse(statements.isEmpty(), q.getKey() + " executed no SQL");
+            for (SqlCapture.Statement statement : statements) {
+                // findById is a load by key: Hibernate checks the branch of the loaded row instead
+                if (q.getKey().startsWith("StudentRepository.find") && !q.getKey().endsWith("findById") && statement == statements.get(0)
+                        && !statement.sql().toLowerCase(Locale.ROOT).contains("branch_id")) {
+                    failures.add(q.getKey() + ": no branch filter in " + statement.sql());
+                }
+                failures.addAll(jdbcTemplate.execute((ConnectionCallback<List<String>>) c ->
+                        POSTGRES ? explainPostgres(c, q.getKey(), statement) : explainH2(c, q.getKey(), statement)));
+            }
+        }
+        assertTrue(failures.isEmpty(), "Queries without a usable index:\n" + String.join("\n", failures));
+    }
+
+    /* ---------- helpers ---------- */
+
+    private static Runnable branch(Runnable action) {
+        return () -> BranchContext.callAs(1L, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private Runnable rolledBack(Runnable action) {
+        return () -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            action.run();
+            status.setRollbackOnly();
+        });
+    }
+
+    private static List<String> explainH2(Connection c, String name, SqlCapture.Statement statement) throws SQLException {
+        List<String> failures = new ArrayList<>();
+        try (PreparedStatement ps = statement.prepare(c, "explain "); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Matcher scan = H2_SCAN.matcher(rs.getString(1));
+                while (scan.find()) {
+                    String table = scan.group(1).toLowerCase(Locale.ROOT);
+                    if (LARGE_TABLES.contains(table)) failures.add(name + ": table scan on " + table + " in " + statement.sql());
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static List<String> explainPostgres(Connection c, String name, SqlCapture.Statement statement) throws SQLException {
+        List<String> failures = new ArrayList<>();
+        try (PreparedStatement ps = statement.prepare(c, "explain (format json) "); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            Map<String, Object> plan = plan(rs.getString(1));
+            List<String> scans = new ArrayList<>();
+            collectSeqScans(plan, scans);
+            if (!scans.isEmpty()) failures.add(name + ": sequential scan on " + scans);
+            Set<String> partitions = new TreeSet<>();
+            collectRelations(plan, "attendance_", partitions);
+            if (partitions.size() > 1) failures.add(name + ": not pruned to one month, reads " + partitions);
+        }
+        return failures;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> plan(String json) {
+        List<Object> plans = MAPPER.readValue(json, List.class);
+        return (Map<String, Object>) ((Map<String, Object>) plans.get(0)).get("Plan");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectRelations(Map<String, Object> node, String prefix, Set<String> out) {
+        Object relation = node.get("Relation Name");
+        if (relation != null && relation.toString().startsWith(prefix)) out.add(relation.toString());
+        Object children = node.get("Plans");
+        if (children instanceof List<?> list) {
+            for (Object child : list) collectRelations((Map<String, Object>) child, prefix, out);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectSeqScans(Map<String, Object> node, List<String> out) {
+        String relation = String.valueOf(node.get("Relation Name"));
+        // month partitions count as the attendance table
+        String table = relation.startsWith("attendance_") ? "attendance" : relation;
+        if ("Seq Scan".equals(node.get("Node Type")) && LARGE_TABLES.contains(table)) out.add(relation);
+        Object children = node.get("Plans");
+        if (children instanceof List<?> list) {
+            for (Object child : list) collectSeqScans((Map<String, Object>) child, out);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.attendance.service;
+
+import com.example.attendance.enums.AlertLevel;
+import com.example.attendance.enums.DomainEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Alert rules and the student_alert table on a private H2 database (students reduced to the columns the
+ * engine reads); debts come from a mocked ledger.
+ */
+class AlertServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private AlertService alerts;
+    private Path sink;
+    private final Map<Long, BigDecimal> debts = new HashMap<>();
+    private long eventId;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:alerts-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/common/V7__job_lease.sql"),
+                new ClassPathResource("db/migration/common/V9__student_alert.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table students (id bigint primary key, teacher_id bigint, branch_id bigint, remaining_lessons integer)");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        LedgerService ledgerService = mock(LedgerService.class);
+        when(ledgerService.balances(anyCollection())).thenAnswer(inv -> {
+            Map<Long, BigDecimal> out = new HashMap<>();
+            for (Object id : inv.<Collection<?>>getArgument(0)) out.put((Long) id, debts.getOrDefault((Long) id, BigDecimal.ZERO));
+            return out;
+        });
+        ClusterJobService clusterJobService = new ClusterJobService(jdbcTemplate, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(clusterJobService, "leaseTtl", Duration.ofMinutes(1));
+
+        alerts = new AlertService(jdbcTemplate, transactionManager, ledgerService, clusterJobService,
+                JsonMapper.builder().build(), mock(DataVersionService.class));
+        sink = dir.resolve("notifications.jsonl");
+        ReflectionTestUtils.setField(alerts, "warnBelow", 4);
+        ReflectionTestUtils.setField(alerts, "criticalBelow", 2);
+        ReflectionTestUtils.setField(alerts, "sinkFile", sink.toString());
+    }
+
+    @Test
+    void evaluateUsesThresholdsAndDebtOutranksLessons() {
+        assertNull(alerts.evaluate(4, BigDecimal.ZERO));
+        assertEquals(AlertLevel.WARN, alerts.evaluate(3, BigDecimal.ZERO));
+        assertEquals(AlertLevel.WARN, alerts.evaluate(2, null));
+        assertEquals(AlertLevel.LOW, alerts.evaluate(1, BigDecimal.ZERO));
+        assertEquals(AlertLevel.LOW, alerts.evaluate(0, BigDecimal.ZERO));
+        assertEquals(AlertLevel.LOW, alerts.evaluate(-1, BigDecimal.ZERO));
+        // students without a tracked lesson count never get a lesson alert
+        assertNull(alerts.evaluate(null, BigDecimal.ZERO));
+
+        assertEquals(AlertLevel.DEBT, alerts.evaluate(10, new BigDecimal("0.01")));
+        assertEquals(AlertLevel.DEBT, alerts.evaluate(null, new BigDecimal("100")));
+        assertEquals(AlertLevel.DEBT, alerts.evaluate(0, new BigDecimal("100")));
+        // credit (prepaid) is not a debt
+        assertNull(alerts.evaluate(10, new BigDecimal("-50")));
+    }
+
+    @Test
+    void eventsUpdateTheAlertRowAndNotifyOnlyWhenItGetsWorse() throws IOException {
+        student(1L, 7L, 5);
+        event(1L);
+        assertNull(level(1L));
+
+        setRemaining(1L, 3);
+        event(1L);
+        assertEquals(AlertLevel.WARN, level(1L));
+        assertEquals(3, jdbcTemplate.queryForObject("select remaining from student_alert where student_id = 1", Integer.class));
+
+        setRemaining(1L, 1);
+        event(1L);
+        assertEquals(AlertLevel.LOW, level(1L));
+
+        debts.put(1L, new BigDecimal("20.00"));
+        event(1L);
+        assertEquals(AlertLevel.DEBT, level(1L));
+        assertEquals(0, new BigDecimal("20.00").compareTo(
+                jdbcTemplate.queryForObject("select debt from student_alert where student_id = 1", BigDecimal.class)));
+
+        // paid and topped up: back to WARN, no notification for an improvement
+        debts.remove(1L);
+        setRemaining(1L, 3);
+        event(1L);
+        assertEquals(AlertLevel.WARN, level(1L));
+
+        List<String> lines = notifications();
+        assertEquals(3, lines.size(), "WARN, LOW and DEBT were entered");
+        assertTrue(lines.get(0).contains("\"level\":\"WARN\""));
+        assertTrue(lines.get(1).contains("\"previous\":\"WARN\""));
+        assertTrue(lines.get(2).contains("\"level\":\"DEBT\""));
+    }
+
+    @Test
+    void alertRowIsDeletedWhenResolvedOrWhenTheStudentIsGone() {
+        student(1L, 7L, 1);
+        student(2L, 7L, 1);
+        alerts.accept(List.of(event(DomainEventType.LESSON_CONSUMED, 1L), event(DomainEventType.LESSON_CONSUMED, 2L)));
+        assertEquals(AlertLevel.LOW, level(1L));
+        assertEquals(AlertLevel.LOW, level(2L));
+        assertEquals(2, alerts.forTeacher(7L).size());
+
+        setRemaining(1L, 12);
+        jdbcTemplate.update("delete from students where id = 2");
+        alerts.accept(List.of(event(DomainEventType.PAYMENT_RECORDED, 1L), event(DomainEventType.STUDENT_REMOVED, 2L)));
+
+        assertNull(level(1L));
+        assertNull(level(2L));
+        assertTrue(alerts.forTeacher(7L).isEmpty());
+    }
+
+    @Test
+    void rebuildEvaluatesEveryStudentWithoutNotifications() {
+        student(1L, 7L, 1);
+        student(2L, 7L, 3);
+        student(3L, 7L, 10);
+        // left over from a student removed behind the services' back
+        jdbcTemplate.update("insert into student_alert (student_id, teacher_id, branch_id, level, debt, since, updated_at) " +
+                "values (99, 7, 1, 'LOW', 0, current_timestamp, current_timestamp)");
+
+        alerts.rebuild();
+
+        assertEquals(AlertLevel.LOW, level(1L));
+        assertEquals(AlertLevel.WARN, level(2L));
+        assertNull(level(3L));
+        assertNull(level(99L));
+        assertFalse(Files.exists(sink), "a rebuild sends no notifications");
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void student(Long id, Long teacherId, Integer remaining) {
+        jdbcTemplate.update("insert into students (id, teacher_id, branch_id, remaining_lessons) values (?, ?, 1, ?)", id, teacherId, remaining);
+    }
+
+    private void setRemaining(Long id, Integer remaining) {
+        jdbcTemplate.update("update students set remaining_lessons = ? where id = ?", remaining, id);
+    }
+
+    private void event(Long studentId) {
+        alerts.accept(List.of(event(DomainEventType.LESSON_CONSUMED, studentId)));
+    }
+
+    private OutboxService.DomainEvent event(DomainEventType type, Long studentId) {
+        return new OutboxService.DomainEvent(++eventId, type, studentId, 7L, Map.of(), LocalDateTime.now());
+    }
+
+    private AlertLevel level(Long studentId) {
+        List<String> rows = jdbcTemplate.queryForList("select level from student_alert where student_id = ?", String.class, studentId);
+        return rows.isEmpty() ? null : AlertLevel.valueOf(rows.get(0));
+    }
+
+    private List<String> notifications() throws IOException {
+        return Files.exists(sink) ? Files.readAllLines(sink) : List.of();
+    }
+}
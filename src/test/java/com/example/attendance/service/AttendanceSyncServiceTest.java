@@ -0,0 +1,175 @@
+package com.example.attendance.service;
+
+import com.example.attendance.controller.TeacherAttendanceController;
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.Attendance;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.AttendanceRepository;
+import com.example.attendance.repository.StudentRepository;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offline sync through POST /teacher/attendance/sync: replayed batches, revision conflicts, foreign students.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AttendanceSyncServiceTest {
+
+    @Autowired
+    TeacherAttendanceController controller;
+
+    @Autowired
+    AttendanceSyncService attendanceSyncService;
+
+    @Autowired
+    AttendanceService attendanceService;
+
+    @Autowired
+    AttendanceRepository attendanceRepository;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    StudentService studentService;
+
+    private TestData data;
+    private final LocalDate date = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(appUserService, teacherService, studentService);
+    }
+
+    @Test
+    void replayedBatchIsAppliedOnce() {
+        AppUser teacher = data.teacher();
+        Student student = data.students(teacher.getId(), 1).get(0);
+        setRemaining(student.getId(), 5);
+        Authentication auth = TestData.auth(teacher, "TEACHER");
+        Map<String, Object> payload = payload("client-" + UUID.randomUUID(), 1, date, item(student.getId(), "PRESENT", 1, 0));
+
+        Map<?, ?> first = firstResult(controller.sync(payload, auth));
+        Map<?, ?> again = firstResult(controller.sync(payload, auth));
+
+        // the second answer is the stored result of the first (numbers may come back as other Number types)
+        assertEquals(first.toString(), again.toString());
+        assertEquals(1, ((Number) first.get("applied")).intValue());
+        // PRESENT consumes one lesson, the extra lesson another — once, not twice
+        assertEquals(3, studentRepository.findById(student.getId()).orElseThrow().getRemainingLessons());
+        Attendance row = attendanceRepository.findByStudentIdAndLessonDate(student.getId(), date).orElseThrow();
+        assertEquals(AttendanceStatus.PRESENT, row.getStatus());
+    }
+
+    @Test
+    void markChangedSinceBaseRevisionIsAConflictAndServerStateWins() {
+        AppUser teacher = data.teacher();
+        List<Student> students = data.students(teacher.getId(), 2);
+        Long marked = students.get(0).getId();
+        Long untouched = students.get(1).getId();
+        // another device marks the student after the teacher went offline (row revision moves past 0)
+        attendanceService.saveAttendancesForDate(teacher.getId(), date, Map.of(marked, AttendanceStatus.EXCUSED));
+        attendanceService.saveAttendancesForDate(teacher.getId(), date, Map.of(marked, AttendanceStatus.PRESENT));
+        long serverRevision = AttendanceService.revisionOf(
+                attendanceRepository.findByStudentIdAndLessonDate(marked, date).orElseThrow());
+        assertTrue(serverRevision > 0);
+
+        Map<String, Object> result = attendanceSyncService.apply(teacher.getId(), 1, date, List.of(
+                new AttendanceSyncService.Item(marked, AttendanceStatus.ABSENT, 0, 0L),
+                new AttendanceSyncService.Item(untouched, AttendanceStatus.LATE, 0, 0L)));
+
+        List<?> conflicts = (List<?>) result.get("conflicts");
+        assertEquals(1, conflicts.size());
+        Map<?, ?> conflict = (Map<?, ?>) conflicts.get(0);
+        assertEquals(marked, conflict.get("studentId"));
+        assertEquals("ABSENT", conflict.get("requested"));
+        assertEquals("PRESENT", conflict.get("status"));
+        assertEquals(serverRevision, conflict.get("revision"));
+        assertEquals(AttendanceStatus.PRESENT, attendanceRepository.findByStudentIdAndLessonDate(marked, date).orElseThrow().getStatus());
+
+        // the auto-filled EXCUSED row (revision 0) is not a conflict
+        assertEquals(1, result.get("applied"));
+        assertEquals(AttendanceStatus.LATE, attendanceRepository.findByStudentIdAndLessonDate(untouched, date).orElseThrow().getStatus());
+
+        // resent with the revision the server reported, the mark goes through
+        Map<String, Object> retried = attendanceSyncService.apply(teacher.getId(), 2, date, List.of(
+                new AttendanceSyncService.Item(marked, AttendanceStatus.ABSENT, 0, serverRevision)));
+        assertTrue(((List<?>) retried.get("conflicts")).isEmpty());
+        assertEquals(AttendanceStatus.ABSENT, attendanceRepository.findByStudentIdAndLessonDate(marked, date).orElseThrow().getStatus());
+    }
+
+    @Test
+    void batchWithForeignStudentIsRefusedWithoutWritingAndOthersStillApply() {
+        AppUser teacher = data.teacher();
+        AppUser other = data.teacher();
+        Long own = data.students(teacher.getId(), 1).get(0).getId();
+        Long foreign = data.students(other.getId(), 1).get(0).getId();
+        String clientId = "client-" + UUID.randomUUID();
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("clientId", clientId);
+        payload.put("batches", List.of(
+                Map.of("seq", 1, "date", date.toString(), "items", List.of(
+                        item(own, "PRESENT", 0, 0), item(foreign, "ABSENT", 0, 0))),
+                Map.of("seq", 2, "date", date.toString(), "items", List.of(item(own, "LATE", 0, 0)))));
+        ResponseEntity<?> response = controller.sync(payload, TestData.auth(teacher, "TEACHER"));
+
+        assertEquals(200, response.getStatusCode().value());
+        List<?> results = (List<?>) ((Map<?, ?>) response.getBody()).get("results");
+        Map<?, ?> refused = (Map<?, ?>) results.get(0);
+        assertEquals("not_your_student", refused.get("error"));
+        assertEquals(foreign, refused.get("studentId"));
+        assertTrue(attendanceRepository.findByStudentIdAndLessonDate(foreign, date).isEmpty());
+
+        // seq 2 is applied; seq 1 wrote nothing, so the own student carries seq 2's mark only
+        assertNull(((Map<?, ?>) results.get(1)).get("error"));
+        assertEquals(AttendanceStatus.LATE, attendanceRepository.findByStudentIdAndLessonDate(own, date).orElseThrow().getStatus());
+    }
+
+    private void setRemaining(Long studentId, int remaining) {
+        Student s = studentRepository.findById(studentId).orElseThrow();
+        s.setRemainingLessons(remaining);
+        studentRepository.save(s);
+    }
+
+    private static Map<String, Object> item(Long studentId, String status, int extraLessons, long baseRevision) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("studentId", studentId);
+        item.put("status", status);
+        item.put("extraLessons", extraLessons);
+        item.put("baseRevision", baseRevision);
+        return item;
+    }
+
+    @SafeVarargs
+    private static Map<String, Object> payload(String clientId, long seq, LocalDate date, Map<String, Object>... items) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("clientId", clientId);
+        payload.put("batches", List.of(Map.of("seq", seq, "date", date.toString(), "items", List.of(items))));
+        return payload;
+    }
+
+    private static Map<?, ?> firstResult(ResponseEntity<?> response) {
+        assertEquals(200, response.getStatusCode().value());
+        return (Map<?, ?>) ((List<?>) ((Map<?, ?>) response.getBody()).get("results")).get(0);
+    }
+}
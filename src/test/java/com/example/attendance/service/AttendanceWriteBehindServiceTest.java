@@ -0,0 +1,157 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.JournalCheckpoint;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.JournalCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AttendanceWriteBehindServiceTest {
+
+    private static final long TEACHER = 7L;
+    private static final long POISON = 13L;
+    private static final LocalDate DATE = LocalDate.of(2026, 10, 5);
+
+    @TempDir
+    Path dir;
+
+    private AttendanceService attendanceService;
+    private JournalCheckpointRepository checkpointRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private AttendanceWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        attendanceService = mock(AttendanceService.class);
+        checkpointRepository = mock(JournalCheckpointRepository.class);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        PlatformTransactionManager tm = mock(PlatformTransactionManager.class);
+        when(tm.getTransaction(any())).thenAnswer(i -> mock(TransactionStatus.class));
+        meterRegistry = new SimpleMeterRegistry();
+
+        service = new AttendanceWriteBehindService(attendanceService, checkpointRepository, tm,
+                mock(DataVersionService.class), meterRegistry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(service, "segmentRecords", 64);
+        service.recover();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failingMarkIsParkedAndTheRestIsApplied() throws Exception {
+        doAnswer(i -> {
+            Map<Long, AttendanceStatus> statuses = i.getArgument(2);
+            if (statuses.containsKey(POISON)) throw new DataIntegrityViolationException("student " + POISON + " is gone");
+            return null;
+        }).when(attendanceService).saveAttendancesForDate(eq(TEACHER), eq(DATE), anyMap(), anyMap());
+
+        long seq = service.submit(TEACHER, DATE,
+                Map.of(1L, AttendanceStatus.PRESENT, POISON, AttendanceStatus.ABSENT, 2L, AttendanceStatus.LATE), Map.of());
+        service.flush();
+
+        // the last (committed) apply holds the good marks only
+        ArgumentCaptor<Map<Long, AttendanceStatus>> statuses = ArgumentCaptor.forClass(Map.class);
+        verify(attendanceService, atLeastOnce()).saveAttendancesForDate(eq(TEACHER), eq(DATE), statuses.capture(), anyMap());
+        assertEquals(Map.of(1L, AttendanceStatus.PRESENT, 2L, AttendanceStatus.LATE), statuses.getValue());
+
+        ArgumentCaptor<JournalCheckpoint> checkpoint = ArgumentCaptor.forClass(JournalCheckpoint.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertEquals(seq, checkpoint.getValue().getLastSeq());
+
+        assertEquals(1.0, meterRegistry.counter("attendance.writeBehind.parked").count());
+        List<String> parked = Files.readAllLines(dir.resolve("parked.log"));
+        assertEquals(1, parked.size());
+        assertTrue(parked.get(0).contains("," + POISON + ","));
+
+        // nothing left: later flushes are not blocked
+        clearInvocations(attendanceService);
+        service.flush();
+        verifyNoInteractions(attendanceService);
+        assertTrue(service.pendingStatuses(DATE, List.of(1L, 2L, POISON)).isEmpty());
+    }
+
+    @Test
+    void transientFailureKeepsTheWholeBatch() {
+        doThrow(new QueryTimeoutException("database is busy"))
+                .when(attendanceService).saveAttendancesForDate(anyLong(), any(), anyMap(), anyMap());
+
+        service.submit(TEACHER, DATE, Map.of(1L, AttendanceStatus.PRESENT), Map.of());
+        service.flush();
+
+        verify(checkpointRepository, never()).save(any());
+        assertEquals(0.0, meterRegistry.counter("attendance.writeBehind.parked").count());
+        assertEquals(Map.of(1L, AttendanceStatus.PRESENT), service.pendingStatuses(DATE, List.of(1L)));
+    }
+
+    @Test
+    void flushesDoNotOverlapAndTheCheckpointOnlyMovesForward() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (first.getAndSet(false)) {
+                    entered.countDown();
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return null;
+        }).when(attendanceService).saveAttendancesForDate(anyLong(), any(), anyMap(), anyMap());
+
+        long firstSeq = service.submit(TEACHER, DATE, Map.of(1L, AttendanceStatus.PRESENT), Map.of());
+        Thread scheduled = new Thread(service::flush);
+        scheduled.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // a shutdown (or replay) flush while the scheduled one is still applying
+        long secondSeq = service.submit(TEACHER, DATE.plusDays(1), Map.of(2L, AttendanceStatus.LATE), Map.of());
+        Thread other = new Thread(service::flush);
+        other.start();
+        for (int i = 0; i < 500 && other.getState() != Thread.State.BLOCKED; i++) Thread.sleep(10);
+        assertEquals(Thread.State.BLOCKED, other.getState(), "the second flush waits for the first");
+
+        release.countDown();
+        scheduled.join(5000);
+        other.join(5000);
+
+        assertEquals(1, maxInFlight.get());
+        ArgumentCaptor<JournalCheckpoint> checkpoints = ArgumentCaptor.forClass(JournalCheckpoint.class);
+        verify(checkpointRepository, times(2)).save(checkpoints.capture());
+        assertEquals(List.of(firstSeq, secondSeq), checkpoints.getAllValues().stream().map(JournalCheckpoint::getLastSeq).toList());
+    }
+}
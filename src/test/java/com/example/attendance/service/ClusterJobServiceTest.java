@@ -0,0 +1,120 @@
+package com.example.attendance.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes sharing one job_lease table (an H2 database of its own, so the application's node is not involved).
+ * The heartbeat thread is not started: tests call beat() where a node would renew its leases.
+ */
+class ClusterJobServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ClusterJobService first;
+    private ClusterJobService second;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:cluster-jobs-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/common/V7__job_lease.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        first = node(jdbcTemplate, transactionManager);
+        second = node(jdbcTemplate, transactionManager);
+        assertNotEquals(first.node(), second.node());
+    }
+
+    @Test
+    void jobHeldByOneNodeIsSkippedByTheOther() {
+        AtomicBoolean secondRanMeanwhile = new AtomicBoolean(true);
+        assertTrue(first.runSingle("import", Duration.ZERO,
+                run -> secondRanMeanwhile.set(second.runSingle("import", Duration.ZERO, r -> fail("ran twice")))));
+        assertFalse(secondRanMeanwhile.get());
+        assertNull(owner("import"));
+
+        // released: the other node may run it now
+        AtomicInteger runs = new AtomicInteger();
+        assertTrue(second.runSingle("import", Duration.ZERO, run -> runs.incrementAndGet()));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void jobRunRecentlyIsNotRepeatedWithinMinInterval() {
+        AtomicInteger runs = new AtomicInteger();
+        assertTrue(first.runSingle("cleanup", Duration.ofHours(1), run -> runs.incrementAndGet()));
+        // cron triggers of both nodes fire together: the late one finds the run already done
+        assertFalse(second.runSingle("cleanup", Duration.ofHours(1), run -> runs.incrementAndGet()));
+        assertFalse(first.runSingle("cleanup", Duration.ofHours(1), run -> runs.incrementAndGet()));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void leaderLeaseIsTakenOverAfterItExpires() {
+        AtomicInteger runs = new AtomicInteger();
+        assertTrue(first.runExclusive("partitions", Duration.ZERO, run -> runs.incrementAndGet()));
+        assertTrue(first.isLeader());
+        assertFalse(second.runExclusive("partitions", Duration.ZERO, run -> runs.incrementAndGet()));
+        assertFalse(second.isLeader());
+
+        // the leader stops renewing (hung or gone) and its lease runs out
+        expire(ClusterJobService.LEADER);
+        assertTrue(second.runExclusive("partitions", Duration.ZERO, run -> runs.incrementAndGet()));
+        assertTrue(second.isLeader());
+        assertEquals(second.node(), owner(ClusterJobService.LEADER));
+        assertEquals(2, runs.get());
+
+        // the old leader notices at its next heartbeat and stops running exclusive jobs
+        ReflectionTestUtils.invokeMethod(first, "beat");
+        assertFalse(first.isLeader());
+        assertFalse(first.runExclusive("partitions", Duration.ZERO, run -> runs.incrementAndGet()));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void runWhoseLeaseExpiredIsTakenOverAndSeesItIsLost() {
+        AtomicBoolean lostSeen = new AtomicBoolean();
+        AtomicBoolean takenOver = new AtomicBoolean();
+        assertTrue(first.runSingle("rebuild", Duration.ZERO, run -> {
+            expire("rebuild");
+            takenOver.set(second.runSingle("rebuild", Duration.ZERO, r -> {
+            }));
+            ReflectionTestUtils.invokeMethod(first, "beat");
+            lostSeen.set(run.lost());
+        }));
+        assertTrue(takenOver.get());
+        assertTrue(lostSeen.get());
+    }
+
+    private static ClusterJobService node(JdbcTemplate jdbcTemplate, DataSourceTransactionManager transactionManager) {
+        ClusterJobService node = new ClusterJobService(jdbcTemplate, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(node, "leaseTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(node, "heartbeatMs", 1000L);
+        return node;
+    }
+
+    private void expire(String lease) {
+        jdbcTemplate.update("update job_lease set expires_at = ? where name = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), lease);
+    }
+
+    private String owner(String lease) {
+        return jdbcTemplate.queryForObject("select owner from job_lease where name = ?", String.class, lease);
+    }
+}
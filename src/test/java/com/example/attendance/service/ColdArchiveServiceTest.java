@@ -0,0 +1,143 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.Payment;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.repository.PaymentRepository;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Archive reads against the live tables of the test database. The service is a private instance writing into a
+ * temporary directory, so the application's archive state is not touched.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ColdArchiveServiceTest {
+
+    // months no other test writes into; archiving them deletes their live rows
+    private static final YearMonth MONTH = YearMonth.of(2020, 1);
+    private static final YearMonth ATTENDANCE_MONTH = YearMonth.of(2020, 2);
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    ClusterJobService clusterJobService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    AttendanceService attendanceService;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    StudentService studentService;
+
+    private TestData data;
+    private ColdArchiveService archive;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(appUserService, teacherService, studentService);
+        archive = new ColdArchiveService(jdbcTemplate, transactionManager, paymentRepository, clusterJobService,
+                mock(InvalidationBus.class));
+        ReflectionTestUtils.setField(archive, "dir", dir.toString());
+        ReflectionTestUtils.setField(archive, "partitionArchiveSchema", "attendance_archive");
+    }
+
+    @Test
+    void batchPaymentLookupMatchesThePerStudentOne() {
+        AppUser teacher = data.teacher();
+        List<Student> students = data.students(teacher.getId(), 3);
+        Long a = students.get(0).getId(), b = students.get(1).getId(), none = students.get(2).getId();
+
+        Payment oldA = paymentService.makePayment(a, new BigDecimal("10.00"), null, "old");
+        Payment oldB = paymentService.makePayment(b, new BigDecimal("20.00"), null, null);
+        jdbcTemplate.update("update payment set paid_at = ? where id in (?, ?)",
+                Timestamp.valueOf(MONTH.atDay(15).atTime(10, 0)), oldA.getId(), oldB.getId());
+        assertEquals(2, archive.archivePaymentMonth(MONTH));
+        Payment liveA = paymentService.makePayment(a, new BigDecimal("100.00"), null, null);
+
+        Map<Long, List<Payment>> batch = archive.paymentsForStudents(List.of(b, a, none, a));
+
+        assertEquals(List.of(liveA.getId(), oldA.getId()), ids(batch.get(a)));
+        assertEquals(List.of(oldB.getId()), ids(batch.get(b)));
+        assertEquals(List.of(), batch.get(none));
+        for (Long id : List.of(a, b, none)) {
+            assertEquals(ids(archive.paymentsForStudent(id)), ids(batch.get(id)), "student " + id);
+        }
+        Payment archived = batch.get(a).get(1);
+        assertEquals(0, new BigDecimal("10.00").compareTo(archived.getAmount()));
+        assertEquals(LocalDateTime.of(2020, 1, 15, 10, 0), archived.getPaidAt());
+        assertEquals("old", archived.getNote());
+    }
+
+    @Test
+    void lateMarksOfAnArchivedMonthAreMergedOnTheNextRun() {
+        AppUser teacher = data.teacher();
+        Long student = data.students(teacher.getId(), 1).get(0).getId();
+        LocalDate first = ATTENDANCE_MONTH.atDay(3), late = ATTENDANCE_MONTH.atDay(10);
+
+        attendanceService.saveAttendancesForDate(teacher.getId(), first, Map.of(student, AttendanceStatus.PRESENT));
+        archive.archiveAttendanceMonth(ATTENDANCE_MONTH);
+
+        // written after the month left the database: a correction of the archived day and a new day
+        attendanceService.saveAttendancesForDate(teacher.getId(), first, Map.of(student, AttendanceStatus.ABSENT));
+        attendanceService.saveAttendancesForDate(teacher.getId(), late, Map.of(student, AttendanceStatus.LATE));
+        List<YearMonth> live = ReflectionTestUtils.invokeMethod(archive, "liveAttendanceMonths");
+        assertTrue(live.contains(ATTENDANCE_MONTH), "live months " + live);
+
+        archive.archiveAttendanceMonth(ATTENDANCE_MONTH);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from attendance where lesson_date >= ? and lesson_date < ?", Integer.class,
+                ATTENDANCE_MONTH.atDay(1), ATTENDANCE_MONTH.plusMonths(1).atDay(1)));
+
+        Map<LocalDate, String> marks = new HashMap<>();
+        archive.scanAttendance(ATTENDANCE_MONTH, (studentId, epochDay, status) -> {
+            if (studentId == student) marks.put(LocalDate.ofEpochDay(epochDay), status);
+        });
+        assertEquals(Map.of(first, "ABSENT", late, "LATE"), marks);
+    }
+
+    private static List<Long> ids(List<Payment> payments) {
+        return payments.stream().map(Payment::getId).toList();
+    }
+}
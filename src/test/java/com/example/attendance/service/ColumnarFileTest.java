@@ -0,0 +1,121 @@
+package com.example.attendance.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarFileTest {
+
+    private static final String[] COLUMNS = {"student_id", "day", "status", "amount"};
+    private static final ColumnarFile.Kind[] KINDS = {ColumnarFile.Kind.LONG, ColumnarFile.Kind.LONG,
+            ColumnarFile.Kind.DICT, ColumnarFile.Kind.LONG};
+    private static final String[] STATUSES = {"PRESENT", "LATE", "ABSENT", "EXCUSED", null};
+
+    @TempDir
+    Path dir;
+
+    private record Row(long studentId, Long day, String status, Long amount) {
+    }
+
+    @Test
+    void roundTripOverSeveralBlocksKeepsValuesAndNulls() {
+        List<Row> rows = rows(3 * ColumnarFile.BLOCK_ROWS + 17);
+        Path file = write(rows);
+
+        ColumnarFile.Reader reader = ColumnarFile.Reader.open(file);
+        assertEquals(rows.size(), reader.rows());
+        assertEquals(2, reader.column("status"));
+        ColumnarFile.Reader.Cursor c = reader.cursor();
+        for (Row expected : rows) {
+            assertTrue(c.next());
+            assertEquals(expected, read(c));
+        }
+        assertFalse(c.next());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    void seekStartsAtTheBlockHoldingTheFirstRowOfAKey() {
+        List<Row> rows = rows(3 * ColumnarFile.BLOCK_ROWS);
+        ColumnarFile.Reader reader = ColumnarFile.Reader.open(write(rows));
+
+        // every key, including ones whose rows straddle a block boundary and ones not in the file
+        for (long key = 0; key <= rows.get(rows.size() - 1).studentId() + 1; key += 7) {
+            long k = key;
+            List<Row> expected = rows.stream().filter(r -> r.studentId() == k).toList();
+            List<Row> found = new ArrayList<>();
+            ColumnarFile.Reader.Cursor c = reader.seek(key);
+            while (c.next()) {
+                if (c.getLong(0) < key) continue;
+                if (c.getLong(0) > key) break;
+                found.add(read(c));
+            }
+            assertEquals(expected, found, "key " + key);
+        }
+    }
+
+    @Test
+    void emptyFileHasNoRows() {
+        ColumnarFile.Reader reader = ColumnarFile.Reader.open(write(List.of()));
+        assertEquals(0, reader.rows());
+        assertFalse(reader.cursor().next());
+        assertFalse(reader.seek(42).next());
+    }
+
+    @Test
+    void rewriteReplacesTheFile() {
+        Path file = write(rows(10));
+        List<Row> replacement = rows(3);
+        ColumnarFile.Writer w = writer(replacement);
+        w.writeTo(file);
+
+        ColumnarFile.Reader reader = ColumnarFile.Reader.open(file);
+        assertEquals(3, reader.rows());
+    }
+
+    @Test
+    void sortKeyMustBeALongColumn() {
+        assertThrows(IllegalArgumentException.class, () -> new ColumnarFile.Writer(new String[]{"status"},
+                new ColumnarFile.Kind[]{ColumnarFile.Kind.DICT}));
+    }
+
+    /* ---------- helpers ---------- */
+
+    // sorted by student; days jump back and forth (negative deltas), large and negative amounts, nulls everywhere
+    private static List<Row> rows(int count) {
+        Random random = new Random(42);
+        List<Row> out = new ArrayList<>(count);
+        long student = 1;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(5) == 0) student += 1 + random.nextInt(3);
+            Long day = random.nextInt(20) == 0 ? null : 20_000L + random.nextInt(400) - 200;
+            Long amount = random.nextInt(10) == 0 ? null : (random.nextBoolean() ? -1 : 1) * (long) random.nextInt(Integer.MAX_VALUE) * 1000;
+            out.add(new Row(student, day, STATUSES[random.nextInt(STATUSES.length)], amount));
+        }
+        return out;
+    }
+
+    private Path write(List<Row> rows) {
+        Path file = dir.resolve("test-" + rows.size() + ".acol");
+        writer(rows).writeTo(file);
+        return file;
+    }
+
+    private static ColumnarFile.Writer writer(List<Row> rows) {
+        ColumnarFile.Writer w = new ColumnarFile.Writer(COLUMNS, KINDS);
+        for (Row r : rows) w.add(r.studentId(), r.day(), r.status(), r.amount());
+        assertEquals(rows.size(), w.rows());
+        return w;
+    }
+
+    private static Row read(ColumnarFile.Reader.Cursor c) {
+        return new Row(c.getLong(0), c.isNull(1) ? null : c.getLong(1), c.getString(2), c.isNull(3) ? null : c.getLong(3));
+    }
+}
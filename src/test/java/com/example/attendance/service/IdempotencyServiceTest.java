@@ -0,0 +1,125 @@
+package com.example.attendance.service;
+
+import com.example.attendance.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    @Autowired
+    IdempotencyRecordRepository repository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ClusterJobService clusterJobService;
+
+    @Test
+    void concurrentDuplicateOnTwoNodesRunsTheActionOnce() throws Exception {
+        // two instances = two nodes: separate in-memory state, one idempotency_key table
+        IdempotencyService nodeA = node();
+        IdempotencyService nodeB = node();
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> onA = pool.submit(call(nodeA, key, executions, start));
+            Future<ResponseEntity<?>> onB = pool.submit(call(nodeB, key, executions, start));
+            start.countDown();
+            ResponseEntity<?> first = onA.get(30, TimeUnit.SECONDS);
+            ResponseEntity<?> second = onB.get(30, TimeUnit.SECONDS);
+
+            assertEquals(1, executions.get(), "the action must run exactly once");
+            for (ResponseEntity<?> r : List.of(first, second)) {
+                int status = r.getStatusCode().value();
+                // replayed 200, or 409 when the database reports the duplicate before the first one commits
+                assertTrue(status == 200 || status == 409, "unexpected status " + status);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(repository.findById("test:1:" + key).isPresent());
+    }
+
+    @Test
+    void replayReturnsStoredResponseWithoutRunningAgain() {
+        IdempotencyService service = node();
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executions = new AtomicInteger();
+
+        ResponseEntity<?> first = service.execute("test", 1L, key, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(Map.of("n", 1));
+        });
+        ResponseEntity<?> again = node().execute("test", 1L, key, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(Map.of("n", 2));
+        });
+
+        assertEquals(1, executions.get());
+        assertEquals(200, first.getStatusCode().value());
+        assertEquals("true", again.getHeaders().getFirst(IdempotencyService.REPLAY_HEADER));
+        assertEquals(Map.of("n", 1), again.getBody());
+    }
+
+    @Test
+    void serverErrorReleasesTheKey() {
+        IdempotencyService service = node();
+        String key = UUID.randomUUID().toString();
+
+        service.execute("test", 1L, key, () -> ResponseEntity.status(503).build());
+        ResponseEntity<?> retry = service.execute("test", 1L, key, () -> ResponseEntity.ok(Map.of("ok", true)));
+
+        assertEquals(200, retry.getStatusCode().value());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAY_HEADER));
+    }
+
+    private Callable<ResponseEntity<?>> call(IdempotencyService node, String key, AtomicInteger executions, CountDownLatch start) {
+        return () -> {
+            start.await();
+            return node.execute("test", 1L, key, () -> {
+                executions.incrementAndGet();
+                sleep(300); // keep the claim open while the other node arrives
+                return ResponseEntity.ok(Map.of("success", true));
+            });
+        };
+    }
+
+    private IdempotencyService node() {
+        IdempotencyService service = new IdempotencyService(repository, transactionManager, objectMapper, clusterJobService);
+        ReflectionTestUtils.setField(service, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(service, "memoryEntries", 100);
+        ReflectionTestUtils.setField(service, "waitMs", 5000L);
+        return service;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
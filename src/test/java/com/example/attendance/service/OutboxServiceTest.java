@@ -0,0 +1,183 @@
+package com.example.attendance.service;
+
+import com.example.attendance.enums.DomainEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Relay delivery on a private H2 database: id order, waiting for missing ids, cursor advance, bounded retries.
+ * The relay thread is not started; tests run one delivery round at a time.
+ */
+class OutboxServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private OutboxService outbox;
+    private final Recorder consumer = new Recorder();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:outbox-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/common/V8__outbox.sql"),
+                new ClassPathResource("db/migration/common/V13__outbox_parked.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        outbox = new OutboxService(jdbcTemplate, new DataSourceTransactionManager(dataSource), JsonMapper.builder().build(),
+                new SimpleMeterRegistry(), null, null);
+        ReflectionTestUtils.setField(outbox, "enabled", true);
+        ReflectionTestUtils.setField(outbox, "pollMs", 0L);
+        ReflectionTestUtils.setField(outbox, "batchSize", 500);
+        ReflectionTestUtils.setField(outbox, "gapWaitMs", 60_000L);
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 3);
+        // a new cluster consumer starts after the events that exist: create its cursor on the empty table
+        deliver();
+        assertEquals(0L, cursor());
+    }
+
+    @Test
+    void eventsAreDeliveredInIdOrderAndTheCursorAdvances() {
+        for (long student = 1; student <= 3; student++) {
+            outbox.record(DomainEventType.ATTENDANCE_MARKED, student, 7L, Map.of("status", "PRESENT"));
+        }
+
+        deliver();
+
+        assertEquals(List.of(List.of(1L, 2L, 3L)), consumer.batches);
+        assertEquals(List.of(1L, 2L, 3L), consumer.batches.get(0).stream().map(this::studentOf).toList());
+        assertEquals(3L, cursor());
+        deliver();
+        assertEquals(1, consumer.batches.size(), "nothing new after the cursor");
+    }
+
+    @Test
+    void deliveryStopsBeforeAMissingIdUntilItArrives() {
+        insert(1);
+        insert(3); // id 2 is taken by a transaction that has not committed yet
+
+        deliver();
+        assertEquals(List.of(List.of(1L)), consumer.batches);
+        assertEquals(1L, cursor());
+
+        deliver();
+        assertEquals(1, consumer.batches.size(), "still waiting for id 2");
+
+        insert(2);
+        deliver();
+        assertEquals(List.of(2L, 3L), consumer.batches.get(1));
+        assertEquals(3L, cursor());
+    }
+
+    @Test
+    void idMissingLongerThanGapWaitIsSkipped() {
+        insert(1);
+        insert(3);
+        deliver();
+        assertEquals(1L, cursor());
+
+        // the hole at id 2 was first seen gapWaitMs ago: its transaction rolled back
+        Map<Long, Long> missingSince = missingSince();
+        synchronized (missingSince) {
+            missingSince.replaceAll((id, since) -> since - 60_001L);
+        }
+        deliver();
+        assertEquals(List.of(3L), consumer.batches.get(1));
+        assertEquals(3L, cursor());
+    }
+
+    @Test
+    void failingEventIsRetriedThenParkedAndTheOthersAreDelivered() {
+        insert(1);
+        insert(2);
+        insert(3);
+        consumer.failOn = 2L;
+
+        for (int i = 0; i < 3; i++) deliver();
+        assertEquals(3, consumer.failures);
+        assertEquals(0L, cursor(), "the cursor stays while the batch is retried");
+
+        // attempts used up: one event at a time, the failing one parked
+        deliver();
+        assertEquals(List.of(List.of(1L), List.of(3L)), consumer.batches);
+        assertEquals(3L, cursor());
+        assertEquals(List.of(2L), jdbcTemplate.queryForList(
+                "select event_id from outbox_parked where consumer = ?", Long.class, consumer.name()));
+
+        deliver();
+        assertEquals(2, consumer.batches.size());
+    }
+
+    @Test
+    void oversizedPayloadIsStoredTruncatedInsteadOfFailingTheWrite() {
+        outbox.record(DomainEventType.PAYMENT_RECORDED, 1L, null, Map.of("note", "x".repeat(5000)));
+
+        String payload = jdbcTemplate.queryForObject("select payload from outbox_event", String.class);
+        assertEquals("{\"truncated\":true}", payload);
+    }
+
+    /* ---------- helpers ---------- */
+
+    private void deliver() {
+        ReflectionTestUtils.invokeMethod(outbox, "deliverOnce", consumer);
+    }
+
+    private void insert(long id) {
+        jdbcTemplate.update("insert into outbox_event (id, event_type, student_id, created_at) values (?, ?, ?, ?)",
+                id, DomainEventType.ATTENDANCE_MARKED.name(), id, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private long cursor() {
+        return jdbcTemplate.queryForObject("select last_id from outbox_cursor where consumer = ?", Long.class, consumer.name());
+    }
+
+    private Long studentOf(long eventId) {
+        return jdbcTemplate.queryForObject("select student_id from outbox_event where id = ?", Long.class, eventId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> missingSince() {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(outbox, "missingSince");
+    }
+
+    /**
+     * Cluster consumer that records the ids of every batch it accepted and throws on one event id.
+     */
+    private static final class Recorder implements OutboxService.OutboxConsumer {
+
+        final List<List<Long>> batches = new ArrayList<>();
+        Long failOn;
+        int failures;
+
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public boolean perNode() {
+            return false;
+        }
+
+        @Override
+        public void accept(List<OutboxService.DomainEvent> batch) {
+            List<Long> ids = batch.stream().map(OutboxService.DomainEvent::id).toList();
+            if (failOn != null && ids.contains(failOn)) {
+                failures++;
+                throw new IllegalStateException("cannot handle event " + failOn);
+            }
+            batches.add(ids);
+        }
+    }
+}
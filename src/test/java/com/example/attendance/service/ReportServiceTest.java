@@ -0,0 +1,122 @@
+package com.example.attendance.service;
+
+import com.example.attendance.controller.ReportController;
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.AttendanceStatus;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Attendance rates: the GROUP BY path and the fork-join path count the same rows.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReportServiceTest {
+
+    // a month no other test writes into, so the report covers only the rows created here
+    private static final YearMonth MONTH = YearMonth.of(2024, 3);
+
+    @Autowired
+    ReportService reportService;
+
+    @Autowired
+    ReportController reportController;
+
+    @Autowired
+    AttendanceService attendanceService;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    StudentService studentService;
+
+    private TestData data;
+    private ReportService target;
+    private int sqlMaxMonths;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(appUserService, teacherService, studentService);
+        target = AopTestUtils.getTargetObject(reportService);
+        sqlMaxMonths = (Integer) ReflectionTestUtils.getField(target, "sqlMaxMonths");
+    }
+
+    @AfterEach
+    void restore() {
+        ReflectionTestUtils.setField(target, "sqlMaxMonths", sqlMaxMonths);
+    }
+
+    @Test
+    void sqlAndForkJoinPathsAgreeIncludingDeletedStudents() {
+        AppUser teacher = data.teacher();
+        List<Student> students = data.students(teacher.getId(), 2);
+        Student orphan = studentService.createStudent("Orphan", "Test", null, null, null, null, false, null, null);
+        // created last: the highest student id, past the range loaded when it is gone
+        Student deleted = data.students(teacher.getId(), 1).get(0);
+
+        LocalDate day = MONTH.atDay(4);
+        attendanceService.saveAttendancesForDate(teacher.getId(), day, Map.of(
+                students.get(0).getId(), AttendanceStatus.PRESENT,
+                students.get(1).getId(), AttendanceStatus.ABSENT,
+                orphan.getId(), AttendanceStatus.LATE,
+                deleted.getId(), AttendanceStatus.PRESENT));
+        attendanceService.saveAttendancesForDate(teacher.getId(), day.plusDays(7), Map.of(
+                students.get(0).getId(), AttendanceStatus.LATE,
+                deleted.getId(), AttendanceStatus.ABSENT));
+        studentService.deleteById(deleted.getId());
+
+        for (ReportService.Dimension by : ReportService.Dimension.values()) {
+            List<ReportService.RateRow> sql = rates(by, Integer.MAX_VALUE);
+            List<ReportService.RateRow> forkJoin = rates(by, 0);
+            assertEquals(sql, forkJoin, "by " + by);
+        }
+
+        List<ReportService.RateRow> byTeacher = rates(ReportService.Dimension.TEACHER, Integer.MAX_VALUE);
+        ReportService.RateRow own = byTeacher.stream().filter(r -> teacher.getId().equals(r.key())).findFirst().orElseThrow();
+        // the deleted student's PRESENT and ABSENT are not counted; the auto-filled EXCUSED of the second day is
+        assertEquals(1, own.present());
+        assertEquals(1, own.late());
+        assertEquals(1, own.absent());
+        assertEquals(1, own.excused());
+        ReportService.RateRow none = byTeacher.stream().filter(r -> r.key() == null).findFirst().orElseThrow();
+        assertEquals(1, none.late());
+    }
+
+    @Test
+    void invalidPeriodIsABadRequest() {
+        ResponseEntity<Map<String, Object>> reversed = reportController.reportsJson(MONTH, MONTH.minusMonths(1),
+                ReportService.Dimension.TEACHER);
+        assertEquals(400, reversed.getStatusCode().value());
+        assertEquals("bad_period", reversed.getBody().get("error"));
+
+        ResponseEntity<Map<String, Object>> tooLong = reportController.reportsJson(MONTH,
+                MONTH.plusMonths(121), ReportService.Dimension.TEACHER);
+        assertEquals(400, tooLong.getStatusCode().value());
+    }
+
+    private List<ReportService.RateRow> rates(ReportService.Dimension by, int sqlMaxMonths) {
+        ReflectionTestUtils.setField(target, "sqlMaxMonths", sqlMaxMonths);
+        ((Map<?, ?>) ReflectionTestUtils.getField(target, "cache")).clear();
+        return reportService.attendanceRates(MONTH, MONTH, by);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.PackageType;
+import com.example.attendance.repository.StudentRepository;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Student totals of the manager overview: the GROUP BY projection against counts over the loaded students.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SchoolOverviewServiceTest {
+
+    @Autowired
+    SchoolOverviewService schoolOverviewService;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    StudentService studentService;
+
+    private TestData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(appUserService, teacherService, studentService);
+    }
+
+    @Test
+    void groupByCountsMatchPerTeacherCountsIncludingUnassigned() {
+        AppUser teacher = data.teacher();
+        AppUser other = data.teacher();
+        data.students(teacher.getId(), 3);
+        data.students(other.getId(), 1);
+        studentService.createStudent("Unassigned", "Test", null, PackageType.LESSONS_12, null, null, false, BigDecimal.ZERO, null);
+
+        // HashMap: the unassigned bucket has a null key
+        Map<Long, Long> expected = new HashMap<>();
+        List<Student> all = studentRepository.findAll();
+        for (Student s : all) expected.merge(s.getTeacherId(), 1L, Long::sum);
+
+        Map<Long, Long> counted = new HashMap<>();
+        for (StudentRepository.TeacherStudentCount row : studentRepository.countGroupByTeacher()) {
+            assertNull(counted.put(row.getTeacherId(), row.getStudents()), "one row per teacher");
+        }
+        assertEquals(expected, counted);
+        assertEquals(3L, counted.get(teacher.getId()));
+        assertEquals(1L, counted.get(other.getId()));
+        assertTrue(counted.containsKey(null));
+        assertEquals(all.stream().filter(s -> s.getTeacherId() == null).count(), counted.get(null));
+
+        SchoolOverviewService.Overview overview = schoolOverviewService.overview();
+        assertEquals(expected, overview.studentsByTeacher());
+        assertEquals(all.size(), overview.totalStudents());
+    }
+}
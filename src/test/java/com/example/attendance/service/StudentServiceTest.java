@@ -0,0 +1,93 @@
+package com.example.attendance.service;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.LessonPackage;
+import com.example.attendance.entities.Student;
+import com.example.attendance.repository.LessonPackageRepository;
+import com.example.attendance.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Manager edit of a student: field changes and ledger entries are committed together.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StudentServiceTest {
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    LessonPackageRepository lessonPackageRepository;
+
+    @Autowired
+    AppUserService appUserService;
+
+    @Autowired
+    TeacherService teacherService;
+
+    private TestData data;
+    private AppUser teacher;
+    private Student student;
+    private LessonPackage pkg;
+
+    @BeforeEach
+    void setUp() {
+        data = new TestData(appUserService, teacherService, studentService);
+        teacher = data.teacher();
+        student = data.students(teacher.getId(), 1).get(0);
+        pkg = lessonPackageRepository.save(LessonPackage.builder()
+                .code("EDIT_" + UUID.randomUUID()).title("Edit test").price(new BigDecimal("1200.00"))
+                .scheduleCode("MWF").lessonsCount(8).build());
+    }
+
+    @Test
+    void editChargesTheNewPackageAndRecordsThePayment() {
+        int entries = ledgerService.history(student.getId()).size();
+        BigDecimal balance = ledgerService.balance(student.getId());
+
+        assertTrue(studentService.editStudent(student.getId(), "Renamed", student.getLastName(), null, pkg.getId(),
+                teacher.getId(), null, true, new BigDecimal("500.00"), " cash ").isPresent());
+
+        assertEquals(entries + 2, ledgerService.history(student.getId()).size());
+        assertEquals(0, balance.add(new BigDecimal("700.00")).compareTo(ledgerService.balance(student.getId())));
+        Student saved = studentService.findById(student.getId()).orElseThrow();
+        assertEquals("Renamed", saved.getFirstName());
+        assertEquals(pkg.getCode(), saved.getPackageCode());
+        assertEquals(8, saved.getRemainingLessons());
+        assertEquals("cash", saved.getPaymentNote());
+    }
+
+    @Test
+    void failingEditLeavesNoChargeOrPaymentBehind() {
+        int entries = ledgerService.history(student.getId()).size();
+        BigDecimal balance = ledgerService.balance(student.getId());
+
+        // first_name is varchar(120): the student update fails at commit, after the ledger inserts
+        assertThrows(RuntimeException.class, () -> studentService.editStudent(student.getId(), "x".repeat(200),
+                student.getLastName(), null, pkg.getId(), teacher.getId(), null, false, new BigDecimal("500.00"), null));
+
+        assertEquals(entries, ledgerService.history(student.getId()).size());
+        assertEquals(0, balance.compareTo(ledgerService.balance(student.getId())));
+        Student unchanged = studentService.findById(student.getId()).orElseThrow();
+        assertEquals(student.getFirstName(), unchanged.getFirstName());
+        assertEquals(student.getPackageCode(), unchanged.getPackageCode());
+    }
+
+    @Test
+    void unknownStudentIsEmpty() {
+        assertTrue(studentService.editStudent(Long.MAX_VALUE, "A", "B", null, null, null, null, false, null, null).isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.attendance.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Records the SQL (with bound parameters) that JDBC actually receives, so tests can check what Hibernate
+ * generates for a repository method instead of a hand-written copy of it.
+ *
+ * <pre>
+ * &#64;SpringBootTest &#64;Import(SqlCapture.Config.class)
+ * List&lt;SqlCapture.Statement&gt; sql = SqlCapture.capture(() -> studentRepository.findByTeacherId(17L));
+ * </pre>
+ */
+public final class SqlCapture {
+
+    private static final ThreadLocal<List<Statement>> CURRENT = new ThreadLocal<>();
+
+    private SqlCapture() {
+    }
+
+    /**
+     * A prepared statement as executed: SQL text and parameters by index (1-based).
+     */
+    public record Statement(String sql, Map<Integer, Object> parameters) {
+
+        /**
+         * Prepares prefix + sql on the connection with the same parameters (e.g. prefix "explain ").
+         */
+        public PreparedStatement prepare(Connection connection, String prefix) throws SQLException {
+            PreparedStatement ps = connection.prepareStatement(prefix + sql);
+            for (Map.Entry<Integer, Object> p : parameters.entrySet()) ps.setObject(p.getKey(), p.getValue());
+            return ps;
+        }
+    }
+
+    /**
+     * Runs the action on the current thread and returns the statements it executed, in order.
+     */
+    public static List<Statement> capture(Runnable action) {
+        List<Statement> previous = CURRENT.get();
+        List<Statement> out = new ArrayList<>();
+        CURRENT.set(out);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+        return out;
+    }
+
+    @TestConfiguration
+    public static class Config {
+
+        @Bean
+        public static BeanPostProcessor sqlCaptureDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource ds && !(bean instanceof CapturingDataSource)) {
+                        return new CapturingDataSource(ds);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    static final class CapturingDataSource extends DelegatingDataSource {
+
+        CapturingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrap(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrap(super.getConnection(username, password));
+        }
+
+        private static Connection wrap(Connection target) {
+            return (Connection) Proxy.newProxyInstance(SqlCapture.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = call(target, method, args);
+                        if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement ps) {
+                            return preparedStatement(ps, (String) args[0], (Connection) proxy);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement preparedStatement(PreparedStatement target, String sql, Connection connection) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(SqlCapture.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("getConnection") && method.getParameterCount() == 0) return connection;
+                        if (name.equals("clearParameters")) parameters.clear();
+                        // setXxx(index, value, ...): setNull(index, type) binds null
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                            parameters.put(index, name.equals("setNull") ? null : args[1]);
+                        }
+                        if (name.startsWith("execute")) {
+                            List<Statement> out = CURRENT.get();
+                            if (out != null) out.add(new Statement(sql, new TreeMap<>(parameters)));
+                        }
+                        return call(target, method, args);
+                    });
+        }
+
+        private static Object call(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
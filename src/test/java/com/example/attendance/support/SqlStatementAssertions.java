@@ -0,0 +1,62 @@
+package com.example.attendance.support;
+
+import com.example.attendance.config.RequestSqlMetricsFilter;
+import com.example.attendance.config.SqlStats;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Statement-count assertions for integration tests, to catch per-row (N+1) queries coming back.
+ *
+ * <pre>
+ * var students = expectMaxQueries(3, () -> studentService.findByTeacherId(teacherId));
+ * mockMvc.perform(get("/teacher")).andExpect(maxQueries(5));
+ * </pre>
+ */
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    /**
+     * Runs the action on the current thread and fails if it executed more than max SQL statements.
+     */
+    public static <T> T expectMaxQueries(int max, Callable<T> action) {
+        T result;
+        long statements;
+        try (SqlStats.Scope scope = SqlStats.open()) {
+            try {
+                result = action.call();
+            } catch (Exception ex) {
+                throw new AssertionError("action failed", ex);
+            }
+            statements = scope.statements();
+        }
+        assertTrue(statements <= max, "expected at most " + max + " SQL statements but " + statements + " were executed");
+        return result;
+    }
+
+    public static void expectMaxQueries(int max, Runnable action) {
+        expectMaxQueries(max, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * MockMvc matcher on the X-Sql-Statements header added by RequestSqlMetricsFilter
+     * (the filter must be registered with the MockMvc instance).
+     */
+    public static ResultMatcher maxQueries(int max) {
+        return result -> {
+            String header = result.getResponse().getHeader(RequestSqlMetricsFilter.STATEMENTS_HEADER);
+            if (header == null) fail("response has no " + RequestSqlMetricsFilter.STATEMENTS_HEADER + " header");
+            long statements = Long.parseLong(header);
+            assertTrue(statements <= max, "expected at most " + max + " SQL statements but request executed " + statements);
+        };
+    }
+}
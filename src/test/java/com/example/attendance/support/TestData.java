@@ -0,0 +1,54 @@
+package com.example.attendance.support;
+
+import com.example.attendance.entities.AppUser;
+import com.example.attendance.entities.Student;
+import com.example.attendance.enums.PackageType;
+import com.example.attendance.enums.Shift;
+import com.example.attendance.service.AppUserService;
+import com.example.attendance.service.StudentService;
+import com.example.attendance.service.TeacherService;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fixtures for integration tests: teachers with students, created through the services (unique names, so
+ * tests sharing one context do not collide).
+ */
+public final class TestData {
+
+    private final AppUserService appUserService;
+    private final TeacherService teacherService;
+    private final StudentService studentService;
+
+    public TestData(AppUserService appUserService, TeacherService teacherService, StudentService studentService) {
+        this.appUserService = appUserService;
+        this.teacherService = teacherService;
+        this.studentService = studentService;
+    }
+
+    public AppUser teacher() {
+        String username = "teacher-" + UUID.randomUUID();
+        AppUser user = appUserService.createTeacherUser(username, "secret");
+        teacherService.createTeacherForUserById(user.getId(), "Test", username, "+000", Shift.FIRST);
+        return user;
+    }
+
+    public List<Student> students(Long teacherId, int count) {
+        List<Student> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            out.add(studentService.createStudent("Student" + i, "Test" + UUID.randomUUID(), null, PackageType.LESSONS_12,
+                    teacherId, null, false, BigDecimal.ZERO, null));
+        }
+        return out;
+    }
+
+    public static Authentication auth(AppUser user, String role) {
+        return new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+    }
+}